@@ -41,10 +41,20 @@ tso() {
     exec java $JVM_FLAGS -Dlog4j.configuration=file:../conf/log4j.xml -cp $CLASSPATH org.apache.omid.benchmarks.tso.TSOServerBenchmark $@
 }
 
+load() {
+    exec java $JVM_FLAGS -Dlog4j.configuration=file:../conf/log4j.xml -cp $CLASSPATH org.apache.omid.benchmarks.tso.TSOLoadGenerator $@
+}
+
+bulkload() {
+    exec java $JVM_FLAGS -Dlog4j.configuration=file:../conf/log4j.xml -cp $CLASSPATH org.apache.omid.benchmarks.hbase.BulkLoadBenchmark $@
+}
+
 usage() {
     echo "Usage: benchmarks.sh <benchmark> <options>"
     echo "where <benchmark> is one of:"
     echo "  tso           Starts the tso benchmark."
+    echo "  load          Finds the max throughput of the tso within a target p99 latency."
+    echo "  bulkload      Loads rows into a table with the regular or the bulk load write paths."
 }
 
 # if no args specified, show usage
@@ -58,6 +68,10 @@ shift
 
 if [ "$COMMAND" = "tso" ]; then
     tso $@;
+elif [ "$COMMAND" = "load" ]; then
+    load $@;
+elif [ "$COMMAND" = "bulkload" ]; then
+    bulkload $@;
 else
     exec java -cp $CLASSPATH $COMMAND $@
 fi
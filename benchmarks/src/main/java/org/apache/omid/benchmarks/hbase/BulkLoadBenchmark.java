@@ -0,0 +1,143 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.omid.benchmarks.hbase;
+
+import com.beust.jcommander.JCommander;
+import com.beust.jcommander.Parameter;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.Connection;
+import org.apache.hadoop.hbase.client.ConnectionFactory;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.Table;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.omid.transaction.HBaseBulkLoader;
+import org.apache.omid.transaction.HBaseOmidClientConfiguration;
+import org.apache.omid.transaction.HBaseTransactionManager;
+import org.apache.omid.transaction.TTable;
+import org.apache.omid.transaction.Transaction;
+import org.apache.omid.transaction.TransactionManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loads rows into an existing transactional table through the regular transactional write path, where every cell is
+ * sent to the TSO and post-committed, or through {@link HBaseBulkLoader}, and reports the load throughput.
+ */
+public class BulkLoadBenchmark {
+
+    private static final Logger LOG = LoggerFactory.getLogger(BulkLoadBenchmark.class);
+
+    enum LoadPath {
+        REGULAR, ATOMIC, PRE_COMMITTED
+    }
+
+    private static class Config {
+
+        @Parameter(names = "-table", description = "Transactional table to load", required = true)
+        String table;
+
+        @Parameter(names = "-family", description = "Column family to load")
+        String family = "data";
+
+        @Parameter(names = "-tsoConnectionString", description = "TSO host:port")
+        String tsoConnectionString = "localhost:24758";
+
+        @Parameter(names = "-path", description = "REGULAR, ATOMIC or PRE_COMMITTED")
+        LoadPath path = LoadPath.ATOMIC;
+
+        @Parameter(names = "-rows", description = "Number of rows to load")
+        int rows = 1_000_000;
+
+        @Parameter(names = "-columns", description = "Number of columns per row")
+        int columns = 10;
+
+        @Parameter(names = "-valueSize", description = "Size in bytes of each value")
+        int valueSize = 100;
+
+        @Parameter(names = "-batchSize", description = "Rows written to HBase per batch")
+        int batchSize = HBaseBulkLoader.DEFAULT_BATCH_SIZE;
+
+        @Parameter(names = "-rowsPerTransaction", description = "Rows per transaction in the REGULAR path")
+        int rowsPerTransaction = 10_000;
+
+    }
+
+    public static void main(String[] args) throws Exception {
+        Config config = new Config();
+        new JCommander(config, args);
+
+        HBaseOmidClientConfiguration clientConf = new HBaseOmidClientConfiguration();
+        clientConf.setConnectionString(config.tsoConnectionString);
+
+        byte[] family = Bytes.toBytes(config.family);
+        byte[] value = new byte[config.valueSize];
+        new Random().nextBytes(value);
+
+        try (TransactionManager tm = HBaseTransactionManager.newInstance(clientConf);
+             Connection connection = ConnectionFactory.createConnection(clientConf.getHBaseConfiguration());
+             Table table = connection.getTable(TableName.valueOf(config.table))) {
+
+            long start = System.nanoTime();
+            long commits = 0;
+            if (config.path == LoadPath.REGULAR) {
+                TTable ttable = new TTable(table);
+                ttable.setAutoFlush(false);
+                Transaction tx = tm.begin();
+                for (int i = 0; i < config.rows; i++) {
+                    ttable.put(tx, newPut(i, family, config.columns, value));
+                    if ((i + 1) % config.batchSize == 0) {
+                        ttable.flushCommits();
+                    }
+                    if ((i + 1) % config.rowsPerTransaction == 0) {
+                        tm.commit(tx);
+                        commits++;
+                        tx = tm.begin();
+                    }
+                }
+                tm.commit(tx);
+                commits++;
+            } else {
+                HBaseBulkLoader.Mode mode = config.path == LoadPath.ATOMIC
+                        ? HBaseBulkLoader.Mode.ATOMIC : HBaseBulkLoader.Mode.PRE_COMMITTED;
+                HBaseBulkLoader loader = new HBaseBulkLoader(tm, table, mode, config.batchSize);
+                for (int i = 0; i < config.rows; i++) {
+                    loader.put(newPut(i, family, config.columns, value));
+                }
+                loader.commit();
+                commits++;
+            }
+            long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+            LOG.info("Loaded {} rows of {} columns through the {} path in {} ms ({} transactions, {} rows/s)",
+                     config.rows, config.columns, config.path, elapsedMs, commits,
+                     elapsedMs == 0 ? "-" : config.rows * 1000L / elapsedMs);
+        }
+    }
+
+    private static Put newPut(int row, byte[] family, int columns, byte[] value) {
+        Put put = new Put(Bytes.toBytes(String.format("row-%010d", row)));
+        for (int c = 0; c < columns; c++) {
+            put.addColumn(family, Bytes.toBytes("col-" + c), value);
+        }
+        return put;
+    }
+
+}
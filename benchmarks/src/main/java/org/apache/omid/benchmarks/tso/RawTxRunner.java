@@ -33,7 +33,9 @@ import org.apache.omid.tso.client.AbortException;
 import org.apache.omid.tso.client.CellId;
 import org.apache.omid.tso.client.OmidClientConfiguration;
 import org.apache.omid.tso.client.TSOClient;
+import org.apache.omid.tso.client.TSOClientPool;
 import org.apache.omid.tso.client.TSOFuture;
+import org.apache.omid.tso.client.TSOProtocol;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -67,7 +69,7 @@ class RawTxRunner implements Runnable {
     private final Random randomGen;
 
     // Main elements
-    private final TSOClient tsoClient;
+    private final TSOProtocol tsoClient;
     private final CommitTable.Client commitTableClient;
 
     // Asynchronous executor for tx post begin sequence: TimestampListener -> Committer -> CommitListener
@@ -139,9 +141,15 @@ class RawTxRunner implements Runnable {
 
         // TSO Client initialization
         OmidClientConfiguration tsoClientConf = expConfig.getOmidClientConfiguration();
-        this.tsoClient = TSOClient.newInstance(tsoClientConf);
+        if (tsoClientConf.getConnectionPoolSize() > 1) {
+            this.tsoClient = TSOClientPool.newInstance(tsoClientConf);
+        } else {
+            this.tsoClient = TSOClient.newInstance(tsoClientConf);
+        }
         LOG.info("TxRunner-{} [ Connection Type {}/Connection String {} ]", txRunnerId,
                  tsoClientConf.getConnectionType(), tsoClientConf.getConnectionString());
+        LOG.info("TxRunner-{} [ Connections {}/Selection Policy {} ]", txRunnerId,
+                 tsoClientConf.getConnectionPoolSize(), tsoClientConf.getConnectionSelectionPolicy());
 
         // Limiter for configured request per second
         this.rateLimiter = RateLimiter.create((double) txRateInReqPerSec, warmUpPeriodInSecs, TimeUnit.SECONDS);
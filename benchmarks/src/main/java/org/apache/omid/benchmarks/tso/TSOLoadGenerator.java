@@ -0,0 +1,407 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.omid.benchmarks.tso;
+
+import org.apache.phoenix.thirdparty.com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramLogWriter;
+import org.HdrHistogram.Recorder;
+import org.apache.omid.benchmarks.tso.TSOLoadGeneratorConfig.LoadMode;
+import org.apache.omid.benchmarks.utils.IntegerGenerator;
+import org.apache.omid.tso.TSOServer;
+import org.apache.omid.tso.client.AbortException;
+import org.apache.omid.tso.client.CellId;
+import org.apache.omid.tso.client.OmidClientConfiguration;
+import org.apache.omid.tso.client.TSOClient;
+import org.apache.omid.tso.client.TSOClientPool;
+import org.apache.omid.tso.client.TSOFuture;
+import org.apache.omid.tso.client.TSOProtocol;
+import org.apache.omid.tso.util.DummyCellIdImpl;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Finds the maximum commit throughput the TSO sustains within a target p99 transaction latency.
+ *
+ * Each transaction gets a start timestamp and commits a writeset. The load is raised step by step, in closed loop by
+ * raising the number of transactions in flight, or in open loop by raising the rate the transactions are started at.
+ * In open loop, the latency of each transaction is measured from the time it was scheduled to start instead of the
+ * time it was actually sent, so a stalled TSO shows up in the percentiles instead of just slowing down the load
+ * (coordinated omission).
+ *
+ * The latencies are recorded in HdrHistograms. The percentiles of each step are written to a summary file and the
+ * histograms to a log that can be merged with the logs of other generator processes loading the same TSO.
+ */
+public class TSOLoadGenerator implements Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TSOLoadGenerator.class);
+
+    private static final long DRAIN_TIMEOUT_IN_SECS = 30;
+
+    // A step is not sustainable if the TSO completes less than this fraction of the transactions offered in open loop
+    private static final double MIN_THROUGHPUT_RATIO = 0.95;
+
+    private static final String SUMMARY_FORMAT = "%-12s %14s %14s %10s %10s %10s %10s %10s %10s %10s %s%n";
+
+    private final TSOLoadGeneratorConfig config;
+    private final TSOServer tsoServer;
+    private final TSOProtocol tsoClient;
+    private final ExecutorService callbackExec;
+
+    // Transaction latencies in microseconds
+    private final Recorder latencyRecorder = new Recorder(3);
+
+    private final AtomicInteger outstandingTxs = new AtomicInteger();
+    private final AtomicLong committedTxs = new AtomicLong();
+    private final AtomicLong abortedTxs = new AtomicLong();
+    private final AtomicLong failedTxs = new AtomicLong();
+
+    // Whether the finished transactions are replaced by new ones in closed loop
+    private volatile boolean closedLoopRunning = false;
+
+    private TSOLoadGenerator(TSOLoadGeneratorConfig config) throws IOException {
+
+        this.config = config;
+
+        if (config.isInProcessTSO()) {
+            LOG.info("Starting in-process TSO Server...");
+            tsoServer = TSOServer.getInitializedTsoServer(config.getTsoServerConfiguration());
+            tsoServer.startAsync();
+            tsoServer.awaitRunning();
+        } else {
+            tsoServer = null;
+        }
+
+        OmidClientConfiguration tsoClientConf = config.getOmidClientConfiguration();
+        if (tsoClientConf.getConnectionPoolSize() > 1) {
+            tsoClient = TSOClientPool.newInstance(tsoClientConf);
+        } else {
+            tsoClient = TSOClient.newInstance(tsoClientConf);
+        }
+
+        callbackExec = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(),
+                                                    new ThreadFactoryBuilder().setNameFormat("load-callback-%d")
+                                                            .setDaemon(true).build());
+
+    }
+
+    public static void main(String[] args) throws Exception {
+
+        TSOLoadGeneratorConfig config = new TSOLoadGeneratorConfig();
+        try (TSOLoadGenerator loadGenerator = new TSOLoadGenerator(config)) {
+            loadGenerator.run();
+        }
+
+    }
+
+    private void run() throws IOException, InterruptedException {
+
+        LoadMode mode = config.getLoadMode();
+        long targetP99InMicros = TimeUnit.MILLISECONDS.toMicros(config.getTargetP99LatencyInMs());
+        LOG.info("----- Starting TSO load generator in {} mode. Target p99 {} ms -----",
+                 mode, config.getTargetP99LatencyInMs());
+
+        try (PrintWriter summary = new PrintWriter(new FileWriter(config.getSummaryFile()));
+             PrintStream histogramLog = new PrintStream(new FileOutputStream(config.getHistogramLogFile()))) {
+
+            HistogramLogWriter histogramLogWriter = new HistogramLogWriter(histogramLog);
+            histogramLogWriter.outputLogFormatVersion();
+            histogramLogWriter.outputStartTime(System.currentTimeMillis());
+            histogramLogWriter.outputLegend();
+
+            summary.printf("# TSO load generator. Mode %s. Target p99 %d ms. Writeset size %d%n",
+                           mode, config.getTargetP99LatencyInMs(), config.getWritesetSize());
+            summary.printf(SUMMARY_FORMAT, "# load", "tx/s", "commits/s", "aborts", "errors",
+                           "p50(us)", "p90(us)", "p99(us)", "p999(us)", "max(us)", "sustainable");
+
+            int load = initialLoad();
+            LOG.info("Warming up for {} secs", config.getWarmUpPeriodInSecs());
+            runStep(load, config.getWarmUpPeriodInSecs());
+
+            StepResult best = null;
+            while (load <= maxLoad()) {
+                StepResult result = runStep(load, config.getStepLengthInSecs());
+                boolean sustainable = result.isSustainable(targetP99InMicros);
+                LOG.info("Load {}: {} tx/s, {} commits/s, p99 {} us. Sustainable: {}",
+                         load, (long) result.txPerSec, (long) result.commitsPerSec,
+                         result.latencies.getValueAtPercentile(99.0), sustainable);
+
+                result.latencies.setTag(mode + "-" + load);
+                histogramLogWriter.outputIntervalHistogram(result.latencies);
+                summary.printf(SUMMARY_FORMAT, load, (long) result.txPerSec, (long) result.commitsPerSec,
+                               result.aborted, result.failed,
+                               result.latencies.getValueAtPercentile(50.0),
+                               result.latencies.getValueAtPercentile(90.0),
+                               result.latencies.getValueAtPercentile(99.0),
+                               result.latencies.getValueAtPercentile(99.9),
+                               result.latencies.getMaxValue(),
+                               sustainable);
+                summary.flush();
+
+                if (!sustainable) {
+                    break;
+                }
+                best = result;
+                load = nextLoad(load);
+            }
+
+            if (best != null) {
+                summary.printf("# Max sustainable throughput: %d commits/s (%d tx/s) at load %d%n",
+                               (long) best.commitsPerSec, (long) best.txPerSec, best.load);
+                LOG.info("----- Max sustainable throughput: {} commits/s at load {} -----",
+                         (long) best.commitsPerSec, best.load);
+            } else {
+                summary.printf("# No load was sustainable within the target p99%n");
+                LOG.info("----- No load was sustainable within the target p99 -----");
+            }
+
+        }
+
+    }
+
+    // ----------------------------------------------------------------------------------------------------------------
+    // Load steps
+    // ----------------------------------------------------------------------------------------------------------------
+
+    private int initialLoad() {
+        return config.getLoadMode() == LoadMode.CLOSED_LOOP
+                ? config.getInitialConcurrency() : config.getInitialTxRatePerSecond();
+    }
+
+    private int maxLoad() {
+        return config.getLoadMode() == LoadMode.CLOSED_LOOP
+                ? config.getMaxConcurrency() : config.getMaxTxRatePerSecond();
+    }
+
+    private int nextLoad(int load) {
+        return config.getLoadMode() == LoadMode.CLOSED_LOOP ? load * 2 : load + config.getTxRateStepPerSecond();
+    }
+
+    private StepResult runStep(int load, long lengthInSecs) throws InterruptedException {
+
+        committedTxs.set(0);
+        abortedTxs.set(0);
+        failedTxs.set(0);
+        latencyRecorder.reset();
+
+        long stepStartInNs = System.nanoTime();
+        long stepEndInNs = stepStartInNs + TimeUnit.SECONDS.toNanos(lengthInSecs);
+        if (config.getLoadMode() == LoadMode.CLOSED_LOOP) {
+            runClosedLoop(load, stepEndInNs);
+        } else {
+            runOpenLoop(load, stepStartInNs, stepEndInNs);
+        }
+        double stepLengthInSecs = (System.nanoTime() - stepStartInNs) / 1e9;
+        drain();
+
+        return new StepResult(load,
+                              latencyRecorder.getIntervalHistogram(),
+                              (committedTxs.get() + abortedTxs.get()) / stepLengthInSecs,
+                              committedTxs.get() / stepLengthInSecs,
+                              abortedTxs.get(),
+                              failedTxs.get());
+
+    }
+
+    private void runClosedLoop(int concurrency, long stepEndInNs) {
+
+        closedLoopRunning = true;
+        for (int i = 0; i < concurrency; i++) {
+            startTx(System.nanoTime());
+        }
+        sleepUntil(stepEndInNs);
+        closedLoopRunning = false;
+
+    }
+
+    private void runOpenLoop(int txRatePerSecond, long stepStartInNs, long stepEndInNs) {
+
+        double intervalInNs = 1e9 / txRatePerSecond;
+        long txCount = 0;
+        long intendedStartInNs = stepStartInNs;
+        while (intendedStartInNs < stepEndInNs) {
+            sleepUntil(intendedStartInNs);
+            // Bound the memory used when the TSO falls behind. The time waiting is still accounted in the latency of
+            // the transaction, as it's measured from its intended start
+            while (outstandingTxs.get() >= config.getMaxOutstandingTxs()) {
+                LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(100));
+            }
+            startTx(intendedStartInNs);
+            txCount++;
+            intendedStartInNs = stepStartInNs + (long) (txCount * intervalInNs);
+        }
+
+    }
+
+    private void drain() throws InterruptedException {
+
+        long drainEndInNs = System.nanoTime() + TimeUnit.SECONDS.toNanos(DRAIN_TIMEOUT_IN_SECS);
+        while (outstandingTxs.get() > 0 && System.nanoTime() < drainEndInNs) {
+            TimeUnit.MILLISECONDS.sleep(1);
+        }
+        if (outstandingTxs.get() > 0) {
+            LOG.warn("{} transactions still in flight after {} secs", outstandingTxs.get(), DRAIN_TIMEOUT_IN_SECS);
+        }
+
+    }
+
+    private static void sleepUntil(long deadlineInNs) {
+        long remainingInNs;
+        while ((remainingInNs = deadlineInNs - System.nanoTime()) > 0) {
+            if (remainingInNs > TimeUnit.MICROSECONDS.toNanos(50)) {
+                LockSupport.parkNanos(remainingInNs - TimeUnit.MICROSECONDS.toNanos(50));
+            }
+        }
+    }
+
+    // ----------------------------------------------------------------------------------------------------------------
+    // Transactions
+    // ----------------------------------------------------------------------------------------------------------------
+
+    private void startTx(final long intendedStartInNs) {
+
+        outstandingTxs.incrementAndGet();
+        final TSOFuture<Long> tsFuture = tsoClient.getNewStartTimestamp();
+        tsFuture.addListener(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    long startTimestamp = tsFuture.get();
+                    final TSOFuture<Long> commitFuture = tsoClient.commit(startTimestamp, newWriteset());
+                    commitFuture.addListener(new Runnable() {
+                        @Override
+                        public void run() {
+                            try {
+                                commitFuture.get();
+                                txFinished(intendedStartInNs, committedTxs);
+                            } catch (ExecutionException e) {
+                                txFinished(intendedStartInNs,
+                                           e.getCause() instanceof AbortException ? abortedTxs : failedTxs);
+                            } catch (InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                                txFinished(intendedStartInNs, failedTxs);
+                            }
+                        }
+                    }, callbackExec);
+                } catch (ExecutionException e) {
+                    LOG.debug("Error getting start timestamp", e.getCause());
+                    txFinished(intendedStartInNs, failedTxs);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    txFinished(intendedStartInNs, failedTxs);
+                }
+            }
+        }, callbackExec);
+
+    }
+
+    private void txFinished(long intendedStartInNs, AtomicLong outcomeCounter) {
+
+        long latencyInNs = System.nanoTime() - intendedStartInNs;
+        latencyRecorder.recordValue(Math.max(0, TimeUnit.NANOSECONDS.toMicros(latencyInNs)));
+        outcomeCounter.incrementAndGet();
+        outstandingTxs.decrementAndGet();
+        if (closedLoopRunning) {
+            startTx(System.nanoTime());
+        }
+
+    }
+
+    private Set<CellId> newWriteset() {
+
+        IntegerGenerator cellIdGenerator = config.getCellIdGenerator();
+        Set<CellId> cells = new HashSet<>();
+        synchronized (cellIdGenerator) {
+            for (int i = 0; i < config.getWritesetSize(); i++) {
+                cells.add(new DummyCellIdImpl(cellIdGenerator.nextInt()));
+            }
+        }
+        return cells;
+
+    }
+
+    @Override
+    public void close() throws IOException {
+
+        closedLoopRunning = false;
+        try {
+            tsoClient.close().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            LOG.warn("Error closing TSO client", e.getCause());
+        }
+        callbackExec.shutdownNow();
+        if (tsoServer != null) {
+            tsoServer.stopAsync();
+            tsoServer.awaitTerminated();
+        }
+
+    }
+
+    // ----------------------------------------------------------------------------------------------------------------
+    // Helper classes
+    // ----------------------------------------------------------------------------------------------------------------
+
+    private class StepResult {
+
+        final int load;
+        final Histogram latencies;
+        final double txPerSec;
+        final double commitsPerSec;
+        final long aborted;
+        final long failed;
+
+        StepResult(int load, Histogram latencies, double txPerSec, double commitsPerSec, long aborted, long failed) {
+            this.load = load;
+            this.latencies = latencies;
+            this.txPerSec = txPerSec;
+            this.commitsPerSec = commitsPerSec;
+            this.aborted = aborted;
+            this.failed = failed;
+        }
+
+        boolean isSustainable(long targetP99InMicros) {
+            if (failed > 0 || latencies.getTotalCount() == 0) {
+                return false;
+            }
+            if (latencies.getValueAtPercentile(99.0) > targetP99InMicros) {
+                return false;
+            }
+            return config.getLoadMode() == LoadMode.CLOSED_LOOP || txPerSec >= load * MIN_THROUGHPUT_RATIO;
+        }
+
+    }
+
+}
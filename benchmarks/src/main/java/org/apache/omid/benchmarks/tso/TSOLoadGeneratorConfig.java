@@ -0,0 +1,208 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.omid.benchmarks.tso;
+
+import org.apache.omid.YAMLUtils;
+import org.apache.omid.benchmarks.utils.IntegerGenerator;
+import org.apache.omid.tso.TSOServerConfig;
+import org.apache.omid.tso.client.OmidClientConfiguration;
+
+public class TSOLoadGeneratorConfig {
+
+    private static final String CONFIG_FILE_NAME = "tso-load-generator-config.yml";
+    private static final String DEFAULT_CONFIG_FILE_NAME = "default-tso-load-generator-config.yml";
+
+    public enum LoadMode {CLOSED_LOOP, OPEN_LOOP}
+
+    private LoadMode loadMode;
+
+    private long warmUpPeriodInSecs;
+    private long stepLengthInSecs;
+    private long targetP99LatencyInMs;
+
+    private int initialConcurrency;
+    private int maxConcurrency;
+
+    private int initialTxRatePerSecond;
+    private int txRateStepPerSecond;
+    private int maxTxRatePerSecond;
+    private int maxOutstandingTxs;
+
+    private IntegerGenerator cellIdGenerator;
+    private int writesetSize;
+
+    private String summaryFile;
+    private String histogramLogFile;
+
+    private boolean inProcessTSO;
+    private TSOServerConfig tsoServerConfiguration;
+    private OmidClientConfiguration omidClientConfiguration;
+
+    // ----------------------------------------------------------------------------------------------------------------
+    // Instantiation
+    // ----------------------------------------------------------------------------------------------------------------
+
+    TSOLoadGeneratorConfig() {
+        this(CONFIG_FILE_NAME);
+    }
+
+    TSOLoadGeneratorConfig(String configFileName) {
+        new YAMLUtils().loadSettings(configFileName, DEFAULT_CONFIG_FILE_NAME, this);
+    }
+
+    // ----------------------------------------------------------------------------------------------------------------
+    // Getters and setters for config params
+    // ----------------------------------------------------------------------------------------------------------------
+
+    public LoadMode getLoadMode() {
+        return loadMode;
+    }
+
+    public void setLoadMode(LoadMode loadMode) {
+        this.loadMode = loadMode;
+    }
+
+    public long getWarmUpPeriodInSecs() {
+        return warmUpPeriodInSecs;
+    }
+
+    public void setWarmUpPeriodInSecs(long warmUpPeriodInSecs) {
+        this.warmUpPeriodInSecs = warmUpPeriodInSecs;
+    }
+
+    public long getStepLengthInSecs() {
+        return stepLengthInSecs;
+    }
+
+    public void setStepLengthInSecs(long stepLengthInSecs) {
+        this.stepLengthInSecs = stepLengthInSecs;
+    }
+
+    public long getTargetP99LatencyInMs() {
+        return targetP99LatencyInMs;
+    }
+
+    public void setTargetP99LatencyInMs(long targetP99LatencyInMs) {
+        this.targetP99LatencyInMs = targetP99LatencyInMs;
+    }
+
+    public int getInitialConcurrency() {
+        return initialConcurrency;
+    }
+
+    public void setInitialConcurrency(int initialConcurrency) {
+        this.initialConcurrency = initialConcurrency;
+    }
+
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    public void setMaxConcurrency(int maxConcurrency) {
+        this.maxConcurrency = maxConcurrency;
+    }
+
+    public int getInitialTxRatePerSecond() {
+        return initialTxRatePerSecond;
+    }
+
+    public void setInitialTxRatePerSecond(int initialTxRatePerSecond) {
+        this.initialTxRatePerSecond = initialTxRatePerSecond;
+    }
+
+    public int getTxRateStepPerSecond() {
+        return txRateStepPerSecond;
+    }
+
+    public void setTxRateStepPerSecond(int txRateStepPerSecond) {
+        this.txRateStepPerSecond = txRateStepPerSecond;
+    }
+
+    public int getMaxTxRatePerSecond() {
+        return maxTxRatePerSecond;
+    }
+
+    public void setMaxTxRatePerSecond(int maxTxRatePerSecond) {
+        this.maxTxRatePerSecond = maxTxRatePerSecond;
+    }
+
+    public int getMaxOutstandingTxs() {
+        return maxOutstandingTxs;
+    }
+
+    public void setMaxOutstandingTxs(int maxOutstandingTxs) {
+        this.maxOutstandingTxs = maxOutstandingTxs;
+    }
+
+    public IntegerGenerator getCellIdGenerator() {
+        return cellIdGenerator;
+    }
+
+    public void setCellIdGenerator(IntegerGenerator cellIdGenerator) {
+        this.cellIdGenerator = cellIdGenerator;
+    }
+
+    public int getWritesetSize() {
+        return writesetSize;
+    }
+
+    public void setWritesetSize(int writesetSize) {
+        this.writesetSize = writesetSize;
+    }
+
+    public String getSummaryFile() {
+        return summaryFile;
+    }
+
+    public void setSummaryFile(String summaryFile) {
+        this.summaryFile = summaryFile;
+    }
+
+    public String getHistogramLogFile() {
+        return histogramLogFile;
+    }
+
+    public void setHistogramLogFile(String histogramLogFile) {
+        this.histogramLogFile = histogramLogFile;
+    }
+
+    public boolean isInProcessTSO() {
+        return inProcessTSO;
+    }
+
+    public void setInProcessTSO(boolean inProcessTSO) {
+        this.inProcessTSO = inProcessTSO;
+    }
+
+    public TSOServerConfig getTsoServerConfiguration() {
+        return tsoServerConfiguration;
+    }
+
+    public void setTsoServerConfiguration(TSOServerConfig tsoServerConfiguration) {
+        this.tsoServerConfiguration = tsoServerConfiguration;
+    }
+
+    public OmidClientConfiguration getOmidClientConfiguration() {
+        return omidClientConfiguration;
+    }
+
+    public void setOmidClientConfiguration(OmidClientConfiguration omidClientConfiguration) {
+        this.omidClientConfiguration = omidClientConfiguration;
+    }
+
+}
@@ -254,6 +254,14 @@ public class CodahaleMetricsProvider implements MetricsProvider, MetricsRegistry
             timer.update(durationInNs, TimeUnit.NANOSECONDS);
         }
 
+        @Override
+        public void update(long durationInNs, long count) {
+            // Codahale timers have no bulk update
+            for (long i = 0; i < count; i++) {
+                timer.update(durationInNs, TimeUnit.NANOSECONDS);
+            }
+        }
+
     }
 
     private static class CodahaleMeterWrapper implements Meter {
@@ -21,6 +21,8 @@ import org.apache.phoenix.thirdparty.com.google.common.base.Optional;
 import org.apache.phoenix.thirdparty.com.google.common.util.concurrent.ListenableFuture;
 
 import java.io.IOException;
+import java.util.Collection;
+import java.util.Map;
 
 public interface CommitTable {
 
@@ -64,6 +66,16 @@ public interface CommitTable {
          */
         ListenableFuture<Optional<CommitTimestamp>> getCommitTimestamp(long startTimestamp);
 
+        /**
+         * Batched version of {@link #getCommitTimestamp(long)}, looking up the commit data of several transactions
+         * in a single round trip to the commit table when the storage allows it.
+         *
+         * @param startTimestamps the start timestamps of the transactions
+         * @return Map from each of the start timestamps to an Optional of CommitTimestamp that represents a valid,
+         *         invalid, or no timestamp.
+         */
+        ListenableFuture<Map<Long, Optional<CommitTimestamp>>> getCommitTimestamps(Collection<Long> startTimestamps);
+
         ListenableFuture<Long> readLowWatermark();
 
         ListenableFuture<Void> deleteCommitEntry(long startTimestamp);
@@ -17,19 +17,105 @@
  */
 package org.apache.omid.committable;
 
+import org.apache.omid.committable.CommitTable.CommitTimestamp.Location;
+import org.apache.omid.metrics.Counter;
+import org.apache.omid.metrics.Gauge;
+import org.apache.omid.metrics.MetricsRegistry;
+import org.apache.omid.metrics.NullMetricsProvider;
 import org.apache.phoenix.thirdparty.com.google.common.base.Optional;
+import org.apache.phoenix.thirdparty.com.google.common.util.concurrent.Futures;
 import org.apache.phoenix.thirdparty.com.google.common.util.concurrent.ListenableFuture;
 import org.apache.phoenix.thirdparty.com.google.common.util.concurrent.SettableFuture;
-import org.apache.omid.committable.CommitTable.CommitTimestamp.Location;
 
+import javax.inject.Inject;
 import java.io.IOException;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import static org.apache.omid.metrics.MetricsUtils.name;
+
+/**
+ * Commit table kept in memory, mainly for testing and for TSOs that don't need to persist their commits.
+ *
+ * The entries are kept in primitive open addressing hash maps, striped by start timestamp to spread the contention
+ * of the concurrent writers and readers.
+ *
+ * Optionally, when the low watermark is updated, the entries of the transactions that started before it are evicted,
+ * so the size of the table is bounded by the commits in the low watermark window. The stripes are scanned only after
+ * a number of insertions proportional to the size of the table, to amortize the cost of the eviction when the low
+ * watermark is updated often. Eviction is disabled by default because it's only safe when the shadow cells of the
+ * evicted transactions are known to be written: otherwise the readers find neither the shadow cell nor the commit
+ * entry of a committed transaction, so they can invalidate it (in low latency mode or after an epoch change) and the
+ * compactor can garbage collect its cells.
+ *
+ * Besides the future based API of the {@link CommitTable.Client}, {@link Client#lookupCommitTimestamp(long)} allows
+ * to check the commit timestamp of a transaction without allocating.
+ */
 public class InMemoryCommitTable implements CommitTable {
 
-    final ConcurrentHashMap<Long, Long> table = new ConcurrentHashMap<>();
+    /**
+     * Returned by {@link Client#lookupCommitTimestamp(long)} when the transaction is not in the commit table
+     */
+    public static final long NO_COMMIT_TIMESTAMP = LongLongHashMap.NO_VALUE;
+
+    private static final int STRIPE_BITS = 6;
+    private static final int MIN_INSERTIONS_BETWEEN_EVICTIONS = 1024;
+
+    private static final ListenableFuture<Optional<CommitTimestamp>> ABSENT_COMMIT_TIMESTAMP =
+            Futures.immediateFuture(Optional.<CommitTimestamp>absent());
+    private static final ListenableFuture<Optional<CommitTimestamp>> INVALID_COMMIT_TIMESTAMP =
+            Futures.immediateFuture(Optional.of(
+                    new CommitTimestamp(Location.COMMIT_TABLE, INVALID_TRANSACTION_MARKER, false)));
+
+    private final LongLongHashMap[] stripes = new LongLongHashMap[1 << STRIPE_BITS];
+    private final boolean evictBelowLowWatermark;
+
+    private volatile long lowWatermark;
+    private final AtomicInteger insertionsSinceEviction = new AtomicInteger();
+    private volatile int entriesAfterEviction = 0;
+
+    private final Counter evictedEntriesCounter;
+
+    public InMemoryCommitTable() {
+        this(new NullMetricsProvider());
+    }
+
+    @Inject
+    public InMemoryCommitTable(MetricsRegistry metrics) {
+        this(metrics, false);
+    }
+
+    /**
+     * @param evictBelowLowWatermark whether to remove the entries of the transactions started before the low
+     *                               watermark when it's updated. Disabled, all the entries are kept until deleted.
+     *                               Enable it only when the shadow cells of the committed transactions are always
+     *                               written before their start timestamp falls below the low watermark, as the
+     *                               evicted transactions are no longer found as committed by the readers
+     */
+    public InMemoryCommitTable(MetricsRegistry metrics, boolean evictBelowLowWatermark) {
+
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new LongLongHashMap();
+        }
+        this.evictBelowLowWatermark = evictBelowLowWatermark;
+
+        this.evictedEntriesCounter = metrics.counter(name("commitTable", "inMemory", "evictedEntries"));
+        metrics.gauge(name("commitTable", "inMemory", "entries"), new Gauge<Integer>() {
+            @Override
+            public Integer getValue() {
+                return countElements();
+            }
+        });
+        metrics.gauge(name("commitTable", "inMemory", "occupancy"), new Gauge<Double>() {
+            @Override
+            public Double getValue() {
+                return getOccupancy();
+            }
+        });
 
-    long lowWatermark;
+    }
 
     @Override
     public CommitTable.Writer getWriter() {
@@ -47,12 +133,15 @@ public class InMemoryCommitTable implements CommitTable {
             // In this implementation, we use only one location that represents
             // both the value and the invalidation. Therefore, putIfAbsent is
             // required to make sure the entry was not invalidated.
-            table.putIfAbsent(startTimestamp, commitTimestamp);
+            putIfAbsent(startTimestamp, commitTimestamp);
         }
 
         @Override
         public void updateLowWatermark(long lowWatermark) throws IOException {
-            InMemoryCommitTable.this.lowWatermark = lowWatermark;
+            if (lowWatermark > InMemoryCommitTable.this.lowWatermark) {
+                InMemoryCommitTable.this.lowWatermark = lowWatermark;
+                maybeEvictBelowLowWatermark();
+            }
         }
 
         @Override
@@ -62,7 +151,11 @@ public class InMemoryCommitTable implements CommitTable {
 
         @Override
         public void clearWriteBuffer() {
-            table.clear();
+            for (LongLongHashMap stripe : stripes) {
+                synchronized (stripe) {
+                    stripe.clear();
+                }
+            }
         }
 
         @Override
@@ -71,26 +164,46 @@ public class InMemoryCommitTable implements CommitTable {
             // In this implementation, we use only one location that represents
             // both the value and the invalidation. Therefore, putIfAbsent is
             // required to make sure the entry was not invalidated.
-            return (table.putIfAbsent(startTimestamp, commitTimestamp) == null);
+            return putIfAbsent(startTimestamp, commitTimestamp) == NO_COMMIT_TIMESTAMP;
         }
     }
 
     public class Client implements CommitTable.Client {
         @Override
         public ListenableFuture<Optional<CommitTimestamp>> getCommitTimestamp(long startTimestamp) {
-            startTimestamp = removeCheckpointBits(startTimestamp);
-            SettableFuture<Optional<CommitTimestamp>> f = SettableFuture.create();
-            Long result = table.get(startTimestamp);
-            if (result == null) {
-                f.set(Optional.<CommitTimestamp>absent());
+            long result = lookupCommitTimestamp(startTimestamp);
+            if (result == NO_COMMIT_TIMESTAMP) {
+                return ABSENT_COMMIT_TIMESTAMP;
+            } else if (result == INVALID_TRANSACTION_MARKER) {
+                return INVALID_COMMIT_TIMESTAMP;
             } else {
-                if (result == INVALID_TRANSACTION_MARKER) {
-                    f.set(Optional.of(new CommitTimestamp(Location.COMMIT_TABLE, INVALID_TRANSACTION_MARKER, false)));
-                } else {
-                    f.set(Optional.of(new CommitTimestamp(Location.COMMIT_TABLE, result, true)));
-                }
+                return Futures.immediateFuture(Optional.of(new CommitTimestamp(Location.COMMIT_TABLE, result, true)));
+            }
+        }
+
+        @Override
+        public ListenableFuture<Map<Long, Optional<CommitTimestamp>>> getCommitTimestamps(
+                Collection<Long> startTimestamps) {
+            Map<Long, Optional<CommitTimestamp>> commitTimestamps = new HashMap<>(startTimestamps.size());
+            for (Long startTimestamp : startTimestamps) {
+                // Already done, as everything is in memory
+                commitTimestamps.put(startTimestamp, Futures.getUnchecked(getCommitTimestamp(startTimestamp)));
+            }
+            return Futures.immediateFuture(commitTimestamps);
+        }
+
+        /**
+         * Allocation-free version of {@link #getCommitTimestamp(long)}
+         *
+         * @return the commit timestamp of the transaction, {@link #INVALID_TRANSACTION_MARKER} if it was invalidated
+         *         or {@link #NO_COMMIT_TIMESTAMP} if it's not in the commit table
+         */
+        public long lookupCommitTimestamp(long startTimestamp) {
+            startTimestamp = removeCheckpointBits(startTimestamp);
+            LongLongHashMap stripe = stripeOf(startTimestamp);
+            synchronized (stripe) {
+                return stripe.get(startTimestamp);
             }
-            return f;
         }
 
         @Override
@@ -100,47 +213,93 @@ public class InMemoryCommitTable implements CommitTable {
             return f;
         }
 
+        /**
+         * Allocation-free version of {@link #readLowWatermark()}
+         */
+        public long lookupLowWatermark() {
+            return lowWatermark;
+        }
+
         @Override
         public ListenableFuture<Void> deleteCommitEntry(long startTimestamp) {
             startTimestamp = removeCheckpointBits(startTimestamp);
-            SettableFuture<Void> f = SettableFuture.create();
-            table.remove(startTimestamp);
-            f.set(null);
-            return f;
+            LongLongHashMap stripe = stripeOf(startTimestamp);
+            synchronized (stripe) {
+                stripe.remove(startTimestamp);
+            }
+            return Futures.immediateFuture(null);
         }
 
         @Override
         public ListenableFuture<Boolean> tryInvalidateTransaction(long startTimestamp) {
             startTimestamp = removeCheckpointBits(startTimestamp);
-            SettableFuture<Boolean> f = SettableFuture.create();
-            Long old = table.get(startTimestamp);
-
-            // If the transaction represented by startTimestamp is not in the map
-            if (old == null) {
-                // Try to invalidate the transaction
-                old = table.putIfAbsent(startTimestamp, INVALID_TRANSACTION_MARKER);
-                // If we were able to invalidate or someone else invalidate before us
-                if (old == null || old == INVALID_TRANSACTION_MARKER) {
-                    f.set(true);
-                    return f;
-                }
-            } else {
-                // Check if the value we read marked the transaction as invalid
-                if (old == INVALID_TRANSACTION_MARKER) {
-                    f.set(true);
-                    return f;
-                }
+            // Try to invalidate the transaction. If it was already in the map, it succeeds only when the value we
+            // read marked the transaction as invalid
+            long old = putIfAbsent(startTimestamp, INVALID_TRANSACTION_MARKER);
+            return Futures.immediateFuture(old == NO_COMMIT_TIMESTAMP || old == INVALID_TRANSACTION_MARKER);
+        }
+    }
+
+    public int countElements() {
+        int count = 0;
+        for (LongLongHashMap stripe : stripes) {
+            synchronized (stripe) {
+                count += stripe.size();
             }
+        }
+        return count;
+    }
 
-            // At this point the transaction was already in the map at the beginning
-            // of the method or was added right before we tried to invalidate.
-            f.set(false);
-            return f;
+    /**
+     * @return the fraction of the slots allocated by the table that are in use
+     */
+    public double getOccupancy() {
+        long entries = 0;
+        long capacity = 0;
+        for (LongLongHashMap stripe : stripes) {
+            synchronized (stripe) {
+                entries += stripe.size();
+                capacity += stripe.capacity();
+            }
         }
+        return (double) entries / capacity;
     }
 
-    public int countElements() {
-        return table.size();
+    private long putIfAbsent(long startTimestamp, long commitTimestamp) {
+        LongLongHashMap stripe = stripeOf(startTimestamp);
+        long old;
+        synchronized (stripe) {
+            old = stripe.putIfAbsent(startTimestamp, commitTimestamp);
+        }
+        if (old == NO_COMMIT_TIMESTAMP) {
+            insertionsSinceEviction.incrementAndGet();
+        }
+        return old;
+    }
+
+    private void maybeEvictBelowLowWatermark() {
+        if (!evictBelowLowWatermark) {
+            return;
+        }
+        int insertions = insertionsSinceEviction.get();
+        if (insertions < Math.max(MIN_INSERTIONS_BETWEEN_EVICTIONS, entriesAfterEviction / 2)) {
+            return;
+        }
+        insertionsSinceEviction.addAndGet(-insertions);
+        long evicted = 0;
+        int entries = 0;
+        for (LongLongHashMap stripe : stripes) {
+            synchronized (stripe) {
+                evicted += stripe.removeKeysLowerThan(lowWatermark);
+                entries += stripe.size();
+            }
+        }
+        entriesAfterEviction = entries;
+        evictedEntriesCounter.inc(evicted);
+    }
+
+    private LongLongHashMap stripeOf(long startTimestamp) {
+        return stripes[(int) ((startTimestamp * 0x9E3779B97F4A7C15L) >>> (64 - STRIPE_BITS))];
     }
 
     static long removeCheckpointBits(long startTimestamp) {
@@ -0,0 +1,256 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.omid.committable;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing hash map from long to long, using linear probing and backward shift deletion.
+ *
+ * Keeps the keys and values in two primitive arrays, so it does not allocate per entry like a {@code Map<Long, Long>}
+ * does. {@link #NO_VALUE} can not be used as a key and is returned by the lookups when the key is not in the map.
+ *
+ * Not thread safe.
+ */
+public class LongLongHashMap {
+
+    public static final long NO_VALUE = Long.MIN_VALUE;
+
+    private static final long FREE_KEY = NO_VALUE;
+    private static final int MIN_CAPACITY = 16;
+    private static final float LOAD_FACTOR = 0.5f;
+
+    private long[] keys;
+    private long[] values;
+    private int mask;
+    private int size;
+    private int resizeThreshold;
+
+    public LongLongHashMap() {
+        this(MIN_CAPACITY);
+    }
+
+    public LongLongHashMap(int expectedSize) {
+        allocate(capacityFor(expectedSize));
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return the value associated to the key or {@link #NO_VALUE} if there's none
+     */
+    public long get(long key) {
+        checkKey(key);
+        int slot = slotOf(key);
+        return (slot < 0) ? NO_VALUE : values[slot];
+    }
+
+    public boolean containsKey(long key) {
+        checkKey(key);
+        return slotOf(key) >= 0;
+    }
+
+    /**
+     * @return the previous value associated to the key or {@link #NO_VALUE} if there was none
+     */
+    public long put(long key, long value) {
+        checkKey(key);
+        int slot = hash(key);
+        while (keys[slot] != FREE_KEY) {
+            if (keys[slot] == key) {
+                long previous = values[slot];
+                values[slot] = value;
+                return previous;
+            }
+            slot = (slot + 1) & mask;
+        }
+        insertAt(slot, key, value);
+        return NO_VALUE;
+    }
+
+    /**
+     * Associates the value to the key only if the key is not in the map yet
+     *
+     * @return the current value associated to the key or {@link #NO_VALUE} if there was none and the value was added
+     */
+    public long putIfAbsent(long key, long value) {
+        checkKey(key);
+        int slot = hash(key);
+        while (keys[slot] != FREE_KEY) {
+            if (keys[slot] == key) {
+                return values[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        insertAt(slot, key, value);
+        return NO_VALUE;
+    }
+
+    /**
+     * @return the value associated to the removed key or {@link #NO_VALUE} if the key was not in the map
+     */
+    public long remove(long key) {
+        checkKey(key);
+        int slot = slotOf(key);
+        if (slot < 0) {
+            return NO_VALUE;
+        }
+        long value = values[slot];
+        shiftBackFrom(slot);
+        size--;
+        return value;
+    }
+
+    /**
+     * Removes all the entries with a key lower than the one passed
+     *
+     * @return the number of entries removed
+     */
+    public int removeKeysLowerThan(long threshold) {
+        if (size == 0) {
+            return 0;
+        }
+        // Start after a free slot, so the entries moved back by the removals are never behind the current slot
+        int start = 0;
+        while (keys[start] != FREE_KEY) {
+            start++;
+        }
+        int removed = 0;
+        int visited = 0;
+        while (visited < keys.length) {
+            int slot = (start + visited) & mask;
+            long key = keys[slot];
+            if (key != FREE_KEY && key < threshold) {
+                shiftBackFrom(slot);
+                size--;
+                removed++;
+                // Check again the slot, as it may hold an entry moved back
+            } else {
+                visited++;
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * @return the number of slots allocated, which grows as entries are added
+     */
+    public int capacity() {
+        return keys.length;
+    }
+
+    public void clear() {
+        if (size > 0) {
+            Arrays.fill(keys, FREE_KEY);
+            size = 0;
+        }
+    }
+
+    // ----------------------------------------------------------------------------------------------------------------
+    // Helper methods
+    // ----------------------------------------------------------------------------------------------------------------
+
+    private void insertAt(int slot, long key, long value) {
+        keys[slot] = key;
+        values[slot] = value;
+        if (++size > resizeThreshold) {
+            resize(keys.length << 1);
+        }
+    }
+
+    private int slotOf(long key) {
+        int slot = hash(key);
+        while (keys[slot] != FREE_KEY) {
+            if (keys[slot] == key) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    // Moves back the entries of the probe sequence following the freed slot, so lookups don't need tombstones
+    private void shiftBackFrom(int freeSlot) {
+        int slot = (freeSlot + 1) & mask;
+        while (keys[slot] != FREE_KEY) {
+            int home = hash(keys[slot]);
+            boolean homeInBetween = (freeSlot <= slot)
+                    ? (freeSlot < home && home <= slot)
+                    : (freeSlot < home || home <= slot);
+            if (!homeInBetween) {
+                keys[freeSlot] = keys[slot];
+                values[freeSlot] = values[slot];
+                freeSlot = slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[freeSlot] = FREE_KEY;
+    }
+
+    private void resize(int capacity) {
+        long[] oldKeys = keys;
+        long[] oldValues = values;
+        allocate(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            long key = oldKeys[i];
+            if (key != FREE_KEY) {
+                int slot = hash(key);
+                while (keys[slot] != FREE_KEY) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = key;
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new long[capacity];
+        Arrays.fill(keys, FREE_KEY);
+        mask = capacity - 1;
+        resizeThreshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private int hash(long key) {
+        // Fibonacci hashing spreads the consecutive timestamps, which are multiples of the checkpoints per txn
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    private static int capacityFor(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity * LOAD_FACTOR < expectedSize) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    private static void checkKey(long key) {
+        if (key == FREE_KEY) {
+            throw new IllegalArgumentException("Key " + key + " is reserved");
+        }
+    }
+
+}
@@ -0,0 +1,135 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.omid.committable;
+
+import org.apache.omid.committable.CommitTable.CommitTimestamp;
+import org.apache.omid.metrics.NullMetricsProvider;
+import org.apache.phoenix.thirdparty.com.google.common.base.Optional;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class TestInMemoryCommitTable {
+
+    private static final int NUM_TXS = 10_000;
+
+    @Test(timeOut = 10_000)
+    public void testLookups() throws Exception {
+
+        InMemoryCommitTable commitTable = new InMemoryCommitTable();
+        InMemoryCommitTable.Client client = (InMemoryCommitTable.Client) commitTable.getClient();
+        CommitTable.Writer writer = commitTable.getWriter();
+
+        writer.addCommittedTransaction(100, 101);
+        assertTrue(writer.atomicAddCommittedTransaction(200, 201));
+        assertFalse(writer.atomicAddCommittedTransaction(200, 202));
+
+        assertEquals(client.lookupCommitTimestamp(100), 101);
+        assertEquals(client.lookupCommitTimestamp(200), 201);
+        // Checkpoints share the entry of their transaction
+        assertEquals(client.lookupCommitTimestamp(201), 201);
+        assertEquals(client.lookupCommitTimestamp(300), InMemoryCommitTable.NO_COMMIT_TIMESTAMP);
+
+        Optional<CommitTimestamp> ct = client.getCommitTimestamp(100).get();
+        assertTrue(ct.isPresent());
+        assertEquals(ct.get().getValue(), 101);
+        assertTrue(ct.get().isValid());
+        assertFalse(client.getCommitTimestamp(300).get().isPresent());
+
+        client.deleteCommitEntry(100).get();
+        assertEquals(client.lookupCommitTimestamp(100), InMemoryCommitTable.NO_COMMIT_TIMESTAMP);
+        assertEquals(commitTable.countElements(), 1);
+
+    }
+
+    @Test(timeOut = 10_000)
+    public void testInvalidation() throws Exception {
+
+        InMemoryCommitTable commitTable = new InMemoryCommitTable();
+        CommitTable.Client client = commitTable.getClient();
+        CommitTable.Writer writer = commitTable.getWriter();
+
+        writer.addCommittedTransaction(100, 101);
+        assertFalse(client.tryInvalidateTransaction(100).get());
+
+        assertTrue(client.tryInvalidateTransaction(200).get());
+        assertTrue(client.tryInvalidateTransaction(200).get());
+        assertFalse(writer.atomicAddCommittedTransaction(200, 201));
+
+        Optional<CommitTimestamp> ct = client.getCommitTimestamp(200).get();
+        assertTrue(ct.isPresent());
+        assertEquals(ct.get().getValue(), CommitTable.INVALID_TRANSACTION_MARKER);
+        assertFalse(ct.get().isValid());
+
+    }
+
+    @Test(timeOut = 10_000)
+    public void testEntriesBelowLowWatermarkAreEvicted() throws Exception {
+
+        InMemoryCommitTable commitTable = new InMemoryCommitTable(new NullMetricsProvider(), true);
+        InMemoryCommitTable.Client client = (InMemoryCommitTable.Client) commitTable.getClient();
+        CommitTable.Writer writer = commitTable.getWriter();
+
+        for (long i = 1; i <= NUM_TXS; i++) {
+            long startTimestamp = i * CommitTable.MAX_CHECKPOINTS_PER_TXN;
+            writer.addCommittedTransaction(startTimestamp, startTimestamp + 1);
+        }
+        assertEquals(commitTable.countElements(), NUM_TXS);
+
+        long lowWatermark = (NUM_TXS / 2) * CommitTable.MAX_CHECKPOINTS_PER_TXN;
+        writer.updateLowWatermark(lowWatermark);
+        assertEquals(client.lookupLowWatermark(), lowWatermark);
+        assertEquals(client.readLowWatermark().get().longValue(), lowWatermark);
+        assertEquals(commitTable.countElements(), NUM_TXS / 2 + 1);
+        assertEquals(client.lookupCommitTimestamp(lowWatermark - CommitTable.MAX_CHECKPOINTS_PER_TXN),
+                     InMemoryCommitTable.NO_COMMIT_TIMESTAMP);
+        assertEquals(client.lookupCommitTimestamp(lowWatermark), lowWatermark + 1);
+
+        // The low watermark never goes back
+        writer.updateLowWatermark(1);
+        assertEquals(client.lookupLowWatermark(), lowWatermark);
+
+        // Few insertions since the last eviction don't trigger a new one
+        writer.addCommittedTransaction(1, 2);
+        writer.updateLowWatermark(lowWatermark + CommitTable.MAX_CHECKPOINTS_PER_TXN);
+        assertEquals(commitTable.countElements(), NUM_TXS / 2 + 2);
+
+    }
+
+    @Test(timeOut = 10_000)
+    public void testEvictionIsDisabledByDefault() throws Exception {
+
+        InMemoryCommitTable commitTable = new InMemoryCommitTable(new NullMetricsProvider());
+        CommitTable.Writer writer = commitTable.getWriter();
+
+        for (long i = 1; i <= NUM_TXS; i++) {
+            long startTimestamp = i * CommitTable.MAX_CHECKPOINTS_PER_TXN;
+            writer.addCommittedTransaction(startTimestamp, startTimestamp + 1);
+        }
+        writer.updateLowWatermark(NUM_TXS * CommitTable.MAX_CHECKPOINTS_PER_TXN);
+        assertEquals(commitTable.countElements(), NUM_TXS);
+        assertTrue(commitTable.getOccupancy() > 0);
+
+        writer.clearWriteBuffer();
+        assertEquals(commitTable.countElements(), 0);
+
+    }
+
+}
@@ -0,0 +1,133 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.omid.committable;
+
+import org.testng.annotations.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.apache.omid.committable.LongLongHashMap.NO_VALUE;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class TestLongLongHashMap {
+
+    @Test(timeOut = 10_000)
+    public void testBasicBehaviour() {
+
+        LongLongHashMap map = new LongLongHashMap();
+        assertTrue(map.isEmpty());
+        assertEquals(map.get(0), NO_VALUE);
+
+        assertEquals(map.put(0, 1), NO_VALUE);
+        assertEquals(map.put(0, 2), 1);
+        assertEquals(map.putIfAbsent(0, 3), 2);
+        assertEquals(map.putIfAbsent(-1, -1), NO_VALUE);
+        assertEquals(map.size(), 2);
+        assertTrue(map.containsKey(-1));
+
+        assertEquals(map.remove(0), 2);
+        assertEquals(map.remove(0), NO_VALUE);
+        assertFalse(map.containsKey(0));
+        assertEquals(map.get(-1), -1);
+
+        map.clear();
+        assertTrue(map.isEmpty());
+        assertEquals(map.get(-1), NO_VALUE);
+
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testReservedKeyIsRejected() {
+        new LongLongHashMap().put(NO_VALUE, 0);
+    }
+
+    @Test(timeOut = 30_000)
+    public void testRandomOperationsMatchHashMap() {
+
+        Random random = new Random(0xC0FFEE);
+        LongLongHashMap map = new LongLongHashMap();
+        Map<Long, Long> expected = new HashMap<>();
+
+        // Few distinct keys, so removals shift back the collision chains often
+        for (int i = 0; i < 500_000; i++) {
+            long key = random.nextInt(2048) * (long) CommitTable.MAX_CHECKPOINTS_PER_TXN;
+            long value = random.nextLong();
+            switch (random.nextInt(4)) {
+                case 0:
+                    assertEquals(map.put(key, value), valueOf(expected.put(key, value)));
+                    break;
+                case 1:
+                    assertEquals(map.remove(key), valueOf(expected.remove(key)));
+                    break;
+                case 2:
+                    Long current = expected.get(key);
+                    if (current == null) {
+                        expected.put(key, value);
+                    }
+                    assertEquals(map.putIfAbsent(key, value), valueOf(current));
+                    break;
+                default:
+                    assertEquals(map.get(key), valueOf(expected.get(key)));
+                    break;
+            }
+            assertEquals(map.size(), expected.size());
+        }
+        for (Map.Entry<Long, Long> entry : expected.entrySet()) {
+            assertEquals(map.get(entry.getKey()), entry.getValue().longValue());
+        }
+
+    }
+
+    @Test(timeOut = 30_000)
+    public void testRemoveKeysLowerThan() {
+
+        Random random = new Random(0xBEEF);
+        for (int round = 0; round < 100; round++) {
+            LongLongHashMap map = new LongLongHashMap();
+            Map<Long, Long> expected = new HashMap<>();
+            for (int i = 0; i < 5_000; i++) {
+                long key = random.nextInt(100_000);
+                map.put(key, i);
+                expected.put(key, (long) i);
+            }
+            long threshold = random.nextInt(100_000);
+            int removed = 0;
+            for (Long key : expected.keySet()) {
+                if (key < threshold) {
+                    removed++;
+                }
+            }
+            assertEquals(map.removeKeysLowerThan(threshold), removed);
+            assertEquals(map.size(), expected.size() - removed);
+            for (Map.Entry<Long, Long> entry : expected.entrySet()) {
+                long value = entry.getKey() < threshold ? NO_VALUE : entry.getValue();
+                assertEquals(map.get(entry.getKey()), value);
+            }
+        }
+
+    }
+
+    private static long valueOf(Long value) {
+        return value == null ? NO_VALUE : value;
+    }
+
+}
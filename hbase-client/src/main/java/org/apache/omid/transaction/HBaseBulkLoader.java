@@ -0,0 +1,221 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.omid.transaction;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.Table;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.phoenix.thirdparty.com.google.common.base.Preconditions;
+
+/**
+ * Loads large amounts of rows into a table as a single transaction without going through the regular write path, where
+ * every cell written is shipped to the TSO for conflict detection. Rows are written to HBase in batches as they are
+ * added and the load is made visible in one of two ways:
+ *
+ * <ul>
+ *   <li>{@link Mode#ATOMIC}: A fence is created on the table up front, so the transactions in flight that write to the
+ *   table will abort, and the rows are written with the start timestamp of a new transaction. They become visible all
+ *   at once when {@link #commit()} registers the transaction in the commit table. The load only takes part in the
+ *   conflict detection at the table level, as in {@link TTable} conflict free mode, so the commit request sent to the
+ *   TSO does not depend on the number of cells loaded. The shadow cells are added after the commit in batches. The
+ *   load keeps in memory an entry per cell loaded, to write the shadow cells or to remove the cells on rollback, so
+ *   the memory used grows with the size of the load.</li>
+ *   <li>{@link Mode#PRE_COMMITTED}: A fence is created on the table up front, so the transactions that started before
+ *   it and write to the table will abort, and its timestamp is used as both the start and the commit timestamp of the
+ *   load. Rows are written together with their shadow cells and nothing is kept in memory, but each batch becomes
+ *   visible as soon as it is written to every transaction that started after the fence, including the ones already
+ *   running. Such a transaction may read the same row twice and get different results, so this mode breaks snapshot
+ *   isolation for the readers of the table. It must only be used on tables no transaction reads while the load runs,
+ *   e.g. tables being populated before being put in service. The load can not be rolled back either.</li>
+ * </ul>
+ *
+ * <b>Warning:</b> in both modes the load does not detect write-write conflicts at the cell level. The fence aborts the
+ * writers of the table that started before the load, but the transactions started after it that write the same cells
+ * and commit meanwhile are not detected, so the updates of one of them may be lost. Loads should go to ranges of rows
+ * not written concurrently by other transactions.
+ *
+ * Instances are not thread safe.
+ */
+public class HBaseBulkLoader {
+
+    private static final Logger LOG = LoggerFactory.getLogger(HBaseBulkLoader.class);
+
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+
+    public enum Mode {
+        /**
+         * The load becomes visible at once on commit. Safe for tables read concurrently
+         */
+        ATOMIC,
+        /**
+         * Each batch becomes visible when written. Only for tables not read by any transaction during the load
+         */
+        PRE_COMMITTED
+    }
+
+    private final TransactionManager tm;
+    private final Table table;
+    private final Mode mode;
+    private final int batchSize;
+    private final HBaseTransaction transaction;
+
+    // Only used in ATOMIC mode, where the puts are written through a conflict free TTable to track the shadow cells.
+    // It keeps a cell id per cell loaded until the load finishes
+    private final TTable conflictFreeTable;
+    // Only used in PRE_COMMITTED mode
+    private final List<Put> pendingPuts = new ArrayList<>();
+
+    private int pendingPutsCount = 0;
+    private long loadedCells = 0;
+    private boolean finished = false;
+
+    public HBaseBulkLoader(TransactionManager tm, Table table, Mode mode) throws IOException, TransactionException {
+        this(tm, table, mode, DEFAULT_BATCH_SIZE);
+    }
+
+    public HBaseBulkLoader(TransactionManager tm, Table table, Mode mode, int batchSize)
+            throws IOException, TransactionException {
+        Preconditions.checkArgument(batchSize > 0, "The batch size must be positive");
+        this.tm = tm;
+        this.table = table;
+        this.mode = mode;
+        this.batchSize = batchSize;
+        switch (mode) {
+            case ATOMIC:
+                // The load only registers the table in the TSO, so it can't conflict with the writers in flight
+                tm.fence(table.getName().getName());
+                this.transaction = (HBaseTransaction) tm.begin();
+                this.conflictFreeTable = new TTable(table, true);
+                this.conflictFreeTable.setAutoFlush(false);
+                break;
+            case PRE_COMMITTED:
+                this.transaction = (HBaseTransaction) tm.fence(table.getName().getName());
+                this.conflictFreeTable = null;
+                LOG.warn("Pre-committed bulk load into {}. Transactions reading it before the load finishes may see "
+                         + "partial results", table.getName());
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown bulk load mode " + mode);
+        }
+        LOG.info("Bulk load into {} started in {} mode with timestamp {}",
+                 table.getName(), mode, transaction.getStartTimestamp());
+    }
+
+    /**
+     * @return the timestamp the cells of the load are written with
+     */
+    public long getTimestamp() {
+        return transaction.getStartTimestamp();
+    }
+
+    /**
+     * @return the number of cells added so far, not counting the shadow cells
+     */
+    public long getLoadedCells() {
+        return loadedCells;
+    }
+
+    /**
+     * Adds a row to the load. The put is buffered and written to HBase when the batch is full.
+     *
+     * @param put the row to load. Timestamps are not allowed
+     * @throws IOException if writing the batch to HBase fails
+     */
+    public void put(Put put) throws IOException {
+        Preconditions.checkState(!finished, "The bulk load has already finished");
+        if (put.getTimeStamp() != HConstants.LATEST_TIMESTAMP) {
+            throw new IllegalArgumentException("Timestamp not allowed in transactional user operations");
+        }
+        long timestamp = transaction.getStartTimestamp();
+        for (List<Cell> cells : put.getFamilyCellMap().values()) {
+            for (Cell cell : cells) {
+                CellUtils.validateCell(cell, timestamp);
+                loadedCells++;
+            }
+        }
+        if (mode == Mode.ATOMIC) {
+            conflictFreeTable.put(transaction, put);
+        } else {
+            pendingPuts.add(TTable.markPutAsCommitted(put, timestamp, timestamp));
+        }
+        if (++pendingPutsCount >= batchSize) {
+            flush();
+        }
+    }
+
+    /**
+     * Writes to HBase the rows buffered so far.
+     *
+     * @throws IOException if writing to HBase fails
+     */
+    public void flush() throws IOException {
+        if (mode == Mode.ATOMIC) {
+            conflictFreeTable.flushCommits();
+        } else if (!pendingPuts.isEmpty()) {
+            table.put(pendingPuts);
+            pendingPuts.clear();
+        }
+        pendingPutsCount = 0;
+    }
+
+    /**
+     * Writes the remaining rows and makes the load visible to the transactions starting from now on.
+     *
+     * @return the commit timestamp of the load
+     * @throws RollbackException if the TSO aborts the load. Only in ATOMIC mode
+     * @throws TransactionException in case of any issues committing the load
+     * @throws IOException if writing to HBase fails
+     */
+    public long commit() throws RollbackException, TransactionException, IOException {
+        Preconditions.checkState(!finished, "The bulk load has already finished");
+        flush();
+        finished = true;
+        long commitTimestamp;
+        if (mode == Mode.ATOMIC) {
+            tm.commit(transaction);
+            commitTimestamp = transaction.getCommitTimestamp();
+        } else {
+            commitTimestamp = transaction.getStartTimestamp();
+        }
+        LOG.info("Bulk load into {} committed {} cells with commit timestamp {}",
+                 table.getName(), loadedCells, commitTimestamp);
+        return commitTimestamp;
+    }
+
+    /**
+     * Discards the load, removing the rows written so far. Only supported in ATOMIC mode.
+     *
+     * @throws TransactionException in case of any issues rolling back the load
+     */
+    public void rollback() throws TransactionException {
+        Preconditions.checkState(mode != Mode.PRE_COMMITTED, "A pre-committed bulk load can not be rolled back");
+        Preconditions.checkState(!finished, "The bulk load has already finished");
+        finished = true;
+        // The rows still buffered are never written, and the cleanup of the transaction removes the ones written
+        tm.rollback(transaction);
+    }
+
+}
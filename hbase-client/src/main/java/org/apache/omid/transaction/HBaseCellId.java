@@ -19,12 +19,13 @@ package org.apache.omid.transaction;
 
 import static com.google.common.base.Charsets.UTF_8;
 
-import org.apache.omid.tso.client.CellId;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.omid.tso.client.GroupedCellId;
 
 import org.apache.phoenix.thirdparty.com.google.common.hash.Hasher;
 import org.apache.phoenix.thirdparty.com.google.common.hash.Hashing;
 
-public class HBaseCellId implements CellId {
+public class HBaseCellId implements GroupedCellId {
 
     private final TTable table;
     private final byte[] row;
@@ -94,6 +95,26 @@ public class HBaseCellId implements CellId {
                 .hash().asLong();
     }
 
+    /**
+     * The cells are grouped by column family within the row, so a family deletion, marked with the family delete
+     * qualifier, is a write to the whole group. The length of the row is hashed too, so the id of the group never
+     * matches the id of the family delete cell
+     */
+    @Override
+    public long getGroupId() {
+        return getHasher()
+                .putBytes(table.getTableName())
+                .putInt(row.length)
+                .putBytes(row)
+                .putBytes(family)
+                .hash().asLong();
+    }
+
+    @Override
+    public boolean isGroupWrite() {
+        return Bytes.equals(qualifier, CellUtils.FAMILY_DELETE_QUALIFIER);
+    }
+
     public static Hasher getHasher() {
         return Hashing.murmur3_128().newHasher();
     }
@@ -25,6 +25,7 @@ import org.apache.omid.YAMLUtils;
 import org.apache.omid.metrics.MetricsRegistry;
 import org.apache.omid.tools.hbase.SecureHBaseConfig;
 import org.apache.omid.tso.client.OmidClientConfiguration.ConflictDetectionLevel;
+import org.apache.omid.tso.client.OmidClientConfiguration.IsolationLevel;
 import org.apache.omid.tso.client.OmidClientConfiguration.PostCommitMode;
 import org.apache.omid.tso.client.OmidClientConfiguration;
 import org.apache.hadoop.conf.Configuration;
@@ -42,6 +43,7 @@ public class HBaseOmidClientConfiguration extends SecureHBaseConfig {
     private static final String CONFIG_FILE_NAME = "hbase-omid-client-config.yml";
     private Configuration hbaseConfiguration = HBaseConfiguration.create();
     private String commitTableName;
+    private int commitTableGroupCommitMaxBatchSize = 64;
     @Inject
     private OmidClientConfiguration omidClientConfiguration;
     private MetricsRegistry metrics;
@@ -99,6 +101,30 @@ public class HBaseOmidClientConfiguration extends SecureHBaseConfig {
         omidClientConfiguration.setConflictAnalysisLevel(conflictAnalysisLevel);
     }
 
+    public long getStaleSnapshotMaxAgeInMs() {
+        return omidClientConfiguration.getStaleSnapshotMaxAgeInMs();
+    }
+
+    public void setStaleSnapshotMaxAgeInMs(long staleSnapshotMaxAgeInMs) {
+        omidClientConfiguration.setStaleSnapshotMaxAgeInMs(staleSnapshotMaxAgeInMs);
+    }
+
+    public IsolationLevel getIsolationLevel() {
+        return omidClientConfiguration.getIsolationLevel();
+    }
+
+    public void setIsolationLevel(IsolationLevel isolationLevel) {
+        omidClientConfiguration.setIsolationLevel(isolationLevel);
+    }
+
+    public int getMaxReadSetSize() {
+        return omidClientConfiguration.getMaxReadSetSize();
+    }
+
+    public void setMaxReadSetSize(int maxReadSetSize) {
+        omidClientConfiguration.setMaxReadSetSize(maxReadSetSize);
+    }
+
     public String getCommitTableName() {
         return commitTableName;
     }
@@ -109,6 +135,20 @@ public class HBaseOmidClientConfiguration extends SecureHBaseConfig {
         this.commitTableName = commitTableName;
     }
 
+    public int getCommitTableGroupCommitMaxBatchSize() {
+        return commitTableGroupCommitMaxBatchSize;
+    }
+
+    /**
+     * Maximum number of transactions written together to the commit table by the clients that commit their own
+     * transactions (low latency mode). 1 disables the batching.
+     */
+    @Inject(optional = true)
+    @Named("omid.client.hbase.commitTableGroupCommitMaxBatchSize")
+    public void setCommitTableGroupCommitMaxBatchSize(int commitTableGroupCommitMaxBatchSize) {
+        this.commitTableGroupCommitMaxBatchSize = commitTableGroupCommitMaxBatchSize;
+    }
+
     public OmidClientConfiguration getOmidClientConfiguration() {
         return omidClientConfiguration;
     }
@@ -31,10 +31,13 @@ import org.apache.hadoop.hbase.util.Bytes;
 import org.apache.omid.committable.CommitTable;
 import org.apache.omid.committable.hbase.HBaseCommitTable;
 import org.apache.omid.committable.hbase.HBaseCommitTableConfig;
+import org.apache.omid.metrics.MetricsRegistry;
 import org.apache.omid.tools.hbase.HBaseLogin;
 import org.apache.omid.tso.client.CellId;
+import org.apache.omid.tso.client.OmidClientConfiguration;
 import org.apache.omid.tso.client.OmidClientConfiguration.ConflictDetectionLevel;
 import org.apache.omid.tso.client.TSOClient;
+import org.apache.omid.tso.client.TSOClientPool;
 import org.apache.omid.tso.client.TSOProtocol;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -48,6 +51,7 @@ public class HBaseTransactionManager extends AbstractTransactionManager implemen
 
     private static final Logger LOG = LoggerFactory.getLogger(HBaseTransactionManager.class);
     private final Connection connection;
+    private final MetricsRegistry metrics;
 
     private static class HBaseTransactionFactory implements TransactionFactory<HBaseCellId> {
 
@@ -130,7 +134,11 @@ public class HBaseTransactionManager extends AbstractTransactionManager implemen
         }
 
         private Optional<TSOProtocol> buildTSOClient() throws IOException, InterruptedException {
-            return Optional.of((TSOProtocol) TSOClient.newInstance(hbaseOmidClientConf.getOmidClientConfiguration()));
+            OmidClientConfiguration omidClientConf = hbaseOmidClientConf.getOmidClientConfiguration();
+            if (omidClientConf.getConnectionPoolSize() > 1) {
+                return Optional.of((TSOProtocol) TSOClientPool.newInstance(omidClientConf));
+            }
+            return Optional.of((TSOProtocol) TSOClient.newInstance(omidClientConf));
         }
 
 
@@ -144,8 +152,10 @@ public class HBaseTransactionManager extends AbstractTransactionManager implemen
         private Optional<CommitTable.Writer> buildCommitTableWriter(Connection connection) throws IOException {
             HBaseCommitTableConfig commitTableConf = new HBaseCommitTableConfig();
             commitTableConf.setTableName(hbaseOmidClientConf.getCommitTableName());
-            CommitTable commitTable = new HBaseCommitTable(connection, commitTableConf);
-            return Optional.of(commitTable.getWriter());
+            HBaseCommitTable commitTable = new HBaseCommitTable(connection, commitTableConf);
+            // Shared by all the threads using this transaction manager, so their commits are batched in low latency mode
+            int maxBatchSize = hbaseOmidClientConf.getCommitTableGroupCommitMaxBatchSize();
+            return Optional.of(commitTable.getGroupCommitWriter(maxBatchSize));
         }
 
         private Optional<PostCommitActions> buildPostCommitter(CommitTable.Client commitTableClient, Connection connection) {
@@ -189,6 +199,10 @@ public class HBaseTransactionManager extends AbstractTransactionManager implemen
                 commitTableWriter,
                 hBaseTransactionFactory);
         this.connection = connection;
+        this.metrics = hBaseOmidClientConfiguration.getMetrics();
+        setStaleSnapshotMaxAgeInMs(hBaseOmidClientConfiguration.getStaleSnapshotMaxAgeInMs());
+        setIsolationLevel(hBaseOmidClientConfiguration.getIsolationLevel());
+        setMaxReadSetSize(hBaseOmidClientConfiguration.getMaxReadSetSize());
     }
 
     // ----------------------------------------------------------------------------------------------------------------
@@ -253,6 +267,13 @@ public class HBaseTransactionManager extends AbstractTransactionManager implemen
 
     }
 
+    /**
+     * Registry of the client metrics, also used by the client side snapshot filters of the transactions
+     */
+    MetricsRegistry getMetrics() {
+        return metrics;
+    }
+
     public void setConflictDetectionLevel(ConflictDetectionLevel conflictDetectionLevel) {
         tsoClient.setConflictDetectionLevel(conflictDetectionLevel);
     }
@@ -23,14 +23,20 @@ import static org.apache.omid.committable.CommitTable.CommitTimestamp.Location.N
 import static org.apache.omid.committable.CommitTable.CommitTimestamp.Location.SHADOW_CELL;
 
 import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.hadoop.hbase.Cell;
 import org.apache.hadoop.hbase.CellUtil;
@@ -44,27 +50,57 @@ import org.apache.hadoop.hbase.client.metrics.ScanMetrics;
 import org.apache.hadoop.hbase.util.Bytes;
 import org.apache.omid.committable.CommitTable;
 import org.apache.omid.committable.CommitTable.CommitTimestamp;
+import org.apache.omid.metrics.Histogram;
+import org.apache.omid.metrics.MetricsRegistry;
+import org.apache.omid.metrics.NullMetricsProvider;
 import org.apache.omid.transaction.AbstractTransaction.VisibilityLevel;
 import org.apache.omid.transaction.HBaseTransactionManager.CommitTimestampLocatorImpl;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import org.apache.phoenix.thirdparty.com.google.common.base.Function;
+import static org.apache.omid.metrics.MetricsUtils.name;
+
 import org.apache.phoenix.thirdparty.com.google.common.base.Optional;
-import org.apache.phoenix.thirdparty.com.google.common.base.Predicate;
-import org.apache.phoenix.thirdparty.com.google.common.collect.ImmutableList;
-import org.apache.phoenix.thirdparty.com.google.common.collect.Iterables;
+import org.apache.phoenix.thirdparty.com.google.common.base.Preconditions;
 import org.apache.phoenix.thirdparty.com.google.common.collect.Maps;
-import org.apache.phoenix.thirdparty.com.google.common.collect.Multimaps;
+import org.apache.phoenix.thirdparty.com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 public class SnapshotFilterImpl implements SnapshotFilter {
 
     private static Logger LOG = LoggerFactory.getLogger(SnapshotFilterImpl.class);
 
+    // Upper bound of the threads shared by the prefetching scanners to fetch their next window of raw rows
+    private static final int SCANNER_PREFETCH_THREADS = 2 * Runtime.getRuntime().availableProcessors();
+
+    // Shared by the prefetching scanners to fetch the raw rows in background. The commit table lookups don't need
+    // it as the commit table client is already asynchronous. Excess prefetches wait in the queue
+    private static final ExecutorService SCANNER_PREFETCH_EXECUTOR = createScannerPrefetchExecutor();
+
     private TableAccessWrapper tableAccessWrapper;
 
     private CommitTable.Client commitTableClient;
 
+    // Number of raw rows prefetched and resolved together by the client scanners. Zero disables prefetching
+    private int scannerPrefetchRows = 0;
+
+    public static final int DEFAULT_MAX_VERSIONS_PER_FETCH = 1024;
+
+    // Upper bound of the number of versions requested per column when looking for older versions
+    private int maxVersionsPerFetch = DEFAULT_MAX_VERSIONS_PER_FETCH;
+
+    // Round trips to HBase needed by each read on top of the initial one to find the versions in the snapshot
+    private Histogram extraRoundTripsHistogram = new NullMetricsProvider().histogram("");
+    private boolean metricsSet = false;
+
+    private static ExecutorService createScannerPrefetchExecutor() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                SCANNER_PREFETCH_THREADS, SCANNER_PREFETCH_THREADS, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(),
+                new ThreadFactoryBuilder().setNameFormat("omid-scanner-prefetch-%d").setDaemon(true).build());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
     public TableAccessWrapper getTableAccessWrapper() {
         return tableAccessWrapper;
     }
@@ -90,6 +126,47 @@ public class SnapshotFilterImpl implements SnapshotFilter {
         this.commitTableClient = commitTableClient;
     }
 
+    /**
+     * Makes the scanners returned by {@link #getScanner(Scan, HBaseTransaction)} prefetch the given number of raw
+     * rows in background and resolve the commit timestamps and the older versions required by the whole window of
+     * rows at once, instead of paying those round trips row by row.
+     *
+     * @param scannerPrefetchRows size of the window of rows. Zero disables prefetching
+     */
+    public void setScannerPrefetchRows(int scannerPrefetchRows) {
+        this.scannerPrefetchRows = scannerPrefetchRows;
+    }
+
+    /**
+     * Sets the maximum number of versions of a column requested at once when the versions read do not contain the
+     * one belonging to the snapshot. The number of versions requested doubles on each round trip up to this bound.
+     *
+     * @param maxVersionsPerFetch maximum number of versions per column and request
+     */
+    public void setMaxVersionsPerFetch(int maxVersionsPerFetch) {
+        Preconditions.checkArgument(maxVersionsPerFetch >= 1,
+                                    "The maximum number of versions per fetch must be positive");
+        this.maxVersionsPerFetch = maxVersionsPerFetch;
+    }
+
+    /**
+     * Registers the instrumentation of the reads in the given registry. When not called, the registry of the
+     * {@link HBaseTransactionManager} of the first transaction read through this filter is used.
+     *
+     * @param metrics registry where the metrics are registered
+     */
+    public void setMetrics(MetricsRegistry metrics) {
+        this.extraRoundTripsHistogram = metrics.histogram(name("omid", "snapshotFilter", "client", "extraRoundTrips"));
+        this.metricsSet = true;
+    }
+
+    private Histogram getExtraRoundTripsHistogram(HBaseTransaction transaction) {
+        if (!metricsSet && transaction.getTransactionManager() instanceof HBaseTransactionManager) {
+            setMetrics(((HBaseTransactionManager) transaction.getTransactionManager()).getMetrics());
+        }
+        return extraRoundTripsHistogram;
+    }
+
     private String getRowFamilyString(Cell cell) {
         return Bytes.toString((CellUtil.cloneRow(cell))) + ":" + Bytes.toString(CellUtil.cloneFamily(cell));
     }
@@ -104,6 +181,10 @@ public class SnapshotFilterImpl implements SnapshotFilter {
      * @return Whether the cell was deleted
      */
     private boolean checkFamilyDeletionCache(Cell cell, HBaseTransaction transaction, Map<String, Long> familyDeletionCache, Map<Long, Long> commitCache) throws IOException {
+        if (familyDeletionCache.isEmpty()) {
+            // Most rows have no family deletions, so avoid building the key
+            return false;
+        }
         String key = getRowFamilyString(cell);
         Long familyDeletionCommitTimestamp = familyDeletionCache.get(key);
         if (familyDeletionCommitTimestamp != null && familyDeletionCommitTimestamp >= cell.getTimestamp()) {
@@ -349,6 +430,7 @@ public class SnapshotFilterImpl implements SnapshotFilter {
                         }
 
                         cmtCache = buildCommitCache(resultCells);
+                        Cell previousLastCell = lastCell;
                         for (Cell c : resultCells) {
                             if (CellUtils.isFamilyDeleteCell(c)) {
                                     commitTimeStamp = getTSIfInSnapshot(c, transaction, cmtCache);
@@ -360,6 +442,10 @@ public class SnapshotFilterImpl implements SnapshotFilter {
                                     lastCell = c;
                             }
                         }
+                        if (lastCell == previousLastCell) {
+                            // Only shadow cells were left below the last family deletion marker
+                            break;
+                        }
                     }
                 }
             }
@@ -423,74 +509,142 @@ public class SnapshotFilterImpl implements SnapshotFilter {
         assert (rawCells != null && transaction != null && versionsToRequest >= 1);
 
         List<Cell> keyValuesInSnapshot = new ArrayList<>();
-        List<Get> pendingGetsList = new ArrayList<>();
+        int extraRoundTrips = resolveCellsInSnapshot(rawCells, transaction, versionsToRequest, familyDeletionCache,
+                                                     attributeMap, keyValuesInSnapshot);
+        getExtraRoundTripsHistogram(transaction).update(extraRoundTrips);
+        if (extraRoundTrips > 0) {
+            // The cells taken from the raw cells are already sorted. Only the older versions need to be merged
+            Collections.sort(keyValuesInSnapshot, KeyValue.COMPARATOR);
+        }
 
-        int numberOfVersionsToFetch = versionsToRequest * 2;
-        if (numberOfVersionsToFetch < 1) {
-            numberOfVersionsToFetch = versionsToRequest;
+        return keyValuesInSnapshot;
+    }
+
+    /**
+     * Adds to keyValuesInSnapshot the cells belonging to the snapshot, fetching older versions of the columns whose
+     * snapshot value is not among the cells read until it is found or there are no more versions. Each round trip
+     * only reads the versions older than the ones already seen, at most maxVersionsPerFetch per column, and only the
+     * versions read by the last round trip are kept in memory.
+     *
+     * @return the number of round trips done to fetch older versions
+     */
+    private int resolveCellsInSnapshot(List<Cell> rawCells, HBaseTransaction transaction, int versionsToRequest,
+                                       Map<String, Long> familyDeletionCache, Map<String,byte[]> attributeMap,
+                                       List<Cell> keyValuesInSnapshot) throws IOException {
+
+        int extraRoundTrips = 0;
+        int numberOfVersionsToFetch = versionsToRequest;
+        List<Cell> cells = rawCells;
+        while (true) {
+            numberOfVersionsToFetch = nextNumberOfVersionsToFetch(numberOfVersionsToFetch);
+            List<Get> pendingGets = new ArrayList<>();
+            collectCellsInSnapshot(cells, transaction, numberOfVersionsToFetch, familyDeletionCache,
+                                   buildCommitCache(cells), attributeMap, keyValuesInSnapshot, pendingGets);
+            if (pendingGets.isEmpty()) {
+                return extraRoundTrips;
+            }
+
+            Result[] pendingGetsResults = tableAccessWrapper.get(pendingGets);
+            extraRoundTrips++;
+            // Each pending get reads a different column, so the columns of the results are still contiguous
+            cells = new ArrayList<>();
+            for (Result pendingGetResult : pendingGetsResults) {
+                if (!pendingGetResult.isEmpty()) {
+                    cells.addAll(pendingGetResult.listCells());
+                }
+            }
+            if (cells.isEmpty()) {
+                return extraRoundTrips;
+            }
         }
 
-        Map<Long, Long> commitCache = buildCommitCache(rawCells);
+    }
+
+    private int nextNumberOfVersionsToFetch(int numberOfVersionsFetched) {
+        return (int) Math.min(2L * numberOfVersionsFetched, Math.max(numberOfVersionsFetched, maxVersionsPerFetch));
+    }
+
+    /**
+     * Adds to keyValuesInSnapshot the raw cells belonging to the transaction snapshot and adds to pendingGets the
+     * requests for older versions of the columns whose snapshot value is not among the raw cells.
+     */
+    private void collectCellsInSnapshot(List<Cell> rawCells, HBaseTransaction transaction, int numberOfVersionsToFetch,
+                                        Map<String, Long> familyDeletionCache, Map<Long, Long> commitCache,
+                                        Map<String,byte[]> attributeMap, List<Cell> keyValuesInSnapshot,
+                                        List<Get> pendingGets) throws IOException {
+
         buildFamilyDeletionCache(transaction, rawCells, familyDeletionCache, commitCache, attributeMap);
 
-        ImmutableList<Collection<Cell>> filteredCells;
-        if (transaction.getVisibilityLevel() == VisibilityLevel.SNAPSHOT_ALL) {
-            filteredCells = groupCellsByColumnFilteringShadowCells(rawCells);
-        } else {
-            filteredCells = groupCellsByColumnFilteringShadowCellsAndFamilyDeletion(rawCells);
+        boolean snapshotAll = transaction.getVisibilityLevel() == VisibilityLevel.SNAPSHOT_ALL;
+
+        // HBase returns the cells sorted by column and then by version, so the cells of each column are contiguous and
+        // the columns can be filtered in a single pass over the raw cells, without grouping or copying them
+        int numberOfCells = rawCells.size();
+        int columnStart = 0;
+        while (columnStart < numberOfCells) {
+            Cell firstCell = rawCells.get(columnStart);
+            int columnEnd = columnStart + 1;
+            while (columnEnd < numberOfCells && CellUtil.matchingColumn(firstCell, rawCells.get(columnEnd))) {
+                columnEnd++;
+            }
+            if (!CellUtils.isShadowCell(firstCell)) {
+                filterColumnForSnapshot(rawCells, columnStart, columnEnd, transaction, snapshotAll,
+                                        numberOfVersionsToFetch, familyDeletionCache, commitCache, attributeMap,
+                                        keyValuesInSnapshot, pendingGets);
+            }
+            columnStart = columnEnd;
         }
 
-        for (Collection<Cell> columnCells : filteredCells) {
-            boolean snapshotValueFound = false;
-            Cell oldestCell = null;
-            for (Cell cell : columnCells) {
-                oldestCell = cell;
-                if (getTSIfInTransaction(cell, transaction).isPresent() ||
-                        getTSIfInSnapshot(cell, transaction, commitCache).isPresent()) {
+    }
 
-                    if (transaction.getVisibilityLevel() == VisibilityLevel.SNAPSHOT_ALL) {
-                        keyValuesInSnapshot.add(cell);
-                        if (getTSIfInTransaction(cell, transaction).isPresent()) {
-                            snapshotValueFound = false;
-                            continue;
-                        } else {
-                            snapshotValueFound = true;
-                            break;
-                        }
+    /**
+     * Filters the versions of a column, found in rawCells between columnStart (inclusive) and columnEnd (exclusive)
+     */
+    private void filterColumnForSnapshot(List<Cell> rawCells, int columnStart, int columnEnd,
+                                         HBaseTransaction transaction, boolean snapshotAll,
+                                         int numberOfVersionsToFetch, Map<String, Long> familyDeletionCache,
+                                         Map<Long, Long> commitCache, Map<String,byte[]> attributeMap,
+                                         List<Cell> keyValuesInSnapshot, List<Get> pendingGets) throws IOException {
+
+        boolean snapshotValueFound = false;
+        Cell oldestCell = null;
+        for (int i = columnStart; i < columnEnd; i++) {
+            Cell cell = rawCells.get(i);
+            if (!snapshotAll && CellUtils.isFamilyDeleteCell(cell)) {
+                continue;
+            }
+            oldestCell = cell;
+            boolean inTransaction = getTSIfInTransaction(cell, transaction).isPresent();
+            if (inTransaction || getTSIfInSnapshot(cell, transaction, commitCache).isPresent()) {
+
+                if (snapshotAll) {
+                    keyValuesInSnapshot.add(cell);
+                    if (inTransaction) {
+                        snapshotValueFound = false;
+                        continue;
                     } else {
-                        if (!checkFamilyDeletionCache(cell, transaction, familyDeletionCache, commitCache) &&
-                                !CellUtils.isTombstone(cell)) {
-                            keyValuesInSnapshot.add(cell);
-                        }
                         snapshotValueFound = true;
                         break;
-
                     }
+                } else {
+                    if (!checkFamilyDeletionCache(cell, transaction, familyDeletionCache, commitCache) &&
+                            !CellUtils.isTombstone(cell)) {
+                        keyValuesInSnapshot.add(cell);
+                    }
+                    snapshotValueFound = true;
+                    break;
+
                 }
             }
-            if (!snapshotValueFound) {
-                assert (oldestCell != null);
-                Get pendingGet = createPendingGet(oldestCell, numberOfVersionsToFetch);
-                for (Map.Entry<String,byte[]> entry : attributeMap.entrySet()) {
-                    pendingGet.setAttribute(entry.getKey(), entry.getValue());
-                }
-                pendingGetsList.add(pendingGet);
-            }
         }
-
-        if (!pendingGetsList.isEmpty()) {
-            Result[] pendingGetsResults = tableAccessWrapper.get(pendingGetsList);
-            for (Result pendingGetResult : pendingGetsResults) {
-                if (!pendingGetResult.isEmpty()) {
-                    keyValuesInSnapshot.addAll(
-                        filterCellsForSnapshot(pendingGetResult.listCells(), transaction, numberOfVersionsToFetch, familyDeletionCache, attributeMap));
-                }
+        if (!snapshotValueFound && oldestCell != null) {
+            Get pendingGet = createPendingGet(oldestCell, numberOfVersionsToFetch);
+            for (Map.Entry<String,byte[]> entry : attributeMap.entrySet()) {
+                pendingGet.setAttribute(entry.getKey(), entry.getValue());
             }
+            pendingGets.add(pendingGet);
         }
 
-        Collections.sort(keyValuesInSnapshot, KeyValue.COMPARATOR);
-
-        return keyValuesInSnapshot;
     }
 
     @Override
@@ -508,6 +662,9 @@ public class SnapshotFilterImpl implements SnapshotFilter {
     @Override
     public ResultScanner getScanner(Scan scan, HBaseTransaction transaction) throws IOException {
 
+        if (scannerPrefetchRows > 0) {
+            return new PrefetchingTransactionalClientScanner(transaction, scan, 1, scannerPrefetchRows);
+        }
         return new TransactionalClientScanner(transaction, scan, 1);
 
     }
@@ -543,57 +700,6 @@ public class SnapshotFilterImpl implements SnapshotFilter {
         }
     }
 
-    static ImmutableList<Collection<Cell>> groupCellsByColumnFilteringShadowCellsAndFamilyDeletion(List<Cell> rawCells) {
-
-        Predicate<Cell> shadowCellAndFamilyDeletionFilter = new Predicate<Cell>() {
-
-            @Override
-            public boolean apply(Cell cell) {
-                boolean familyDeletionMarkerCondition = CellUtils.isFamilyDeleteCell(cell);
-
-                return cell != null && !CellUtils.isShadowCell(cell) && !familyDeletionMarkerCondition;
-            }
-
-        };
-
-        Function<Cell, ColumnWrapper> cellToColumnWrapper = new Function<Cell, ColumnWrapper>() {
-
-            @Override
-            public ColumnWrapper apply(Cell cell) {
-                return new ColumnWrapper(CellUtil.cloneFamily(cell), CellUtil.cloneQualifier(cell));
-            }
-
-        };
-
-        return Multimaps.index(Iterables.filter(rawCells, shadowCellAndFamilyDeletionFilter), cellToColumnWrapper)
-            .asMap().values()
-            .asList();
-    }
-
-
-    static ImmutableList<Collection<Cell>> groupCellsByColumnFilteringShadowCells(List<Cell> rawCells) {
-
-        Predicate<Cell> shadowCellFilter = new Predicate<Cell>() {
-            @Override
-            public boolean apply(Cell cell) {
-                return cell != null && !CellUtils.isShadowCell(cell);
-            }
-        };
-
-        Function<Cell, ColumnWrapper> cellToColumnWrapper = new Function<Cell, ColumnWrapper>() {
-
-            @Override
-            public ColumnWrapper apply(Cell cell) {
-                return new ColumnWrapper(CellUtil.cloneFamily(cell), CellUtil.cloneQualifier(cell));
-            }
-
-        };
-
-        return Multimaps.index(Iterables.filter(rawCells, shadowCellFilter), cellToColumnWrapper)
-                .asMap().values()
-                .asList();
-    }
-
     @Override
     public void close() throws Exception {
         tableAccessWrapper.close();
@@ -602,11 +708,11 @@ public class SnapshotFilterImpl implements SnapshotFilter {
 
     public class TransactionalClientScanner implements ResultScanner {
 
-        private HBaseTransaction state;
-        private ResultScanner innerScanner;
-        private int maxVersions;
+        HBaseTransaction state;
+        ResultScanner innerScanner;
+        int maxVersions;
         Map<String, Long> familyDeletionCache;
-        private Map<String,byte[]> attributeMap;
+        Map<String,byte[]> attributeMap;
 
         TransactionalClientScanner(HBaseTransaction state, Scan scan, int maxVersions)
                 throws IOException {
@@ -719,5 +825,198 @@ public class SnapshotFilterImpl implements SnapshotFilter {
 
     }
 
+    /**
+     * Client scanner that works on windows of rows instead of on a row at a time. While the rows of a window are
+     * handed out, the next window of raw rows is already being fetched in background. For each window, the commit
+     * timestamps not found in the shadow cells are looked up in the commit table in parallel and the older versions
+     * required by all its rows are retrieved in a single multi-get.
+     */
+    public class PrefetchingTransactionalClientScanner extends TransactionalClientScanner {
+
+        private final int prefetchRows;
+        private final ArrayDeque<Result> filteredRows = new ArrayDeque<>();
+        private Future<Result[]> nextRawRows;
+        private boolean exhausted = false;
+
+        PrefetchingTransactionalClientScanner(HBaseTransaction state, Scan scan, int maxVersions, int prefetchRows)
+                throws IOException {
+            super(state, scan, maxVersions);
+            this.prefetchRows = prefetchRows;
+            this.nextRawRows = prefetchRawRows();
+        }
+
+        @Override
+        public Result next() throws IOException {
+            while (filteredRows.isEmpty()) {
+                if (exhausted) {
+                    return null;
+                }
+                Result[] rawRows = waitFor(nextRawRows);
+                if (rawRows.length == 0) {
+                    exhausted = true;
+                    nextRawRows = null;
+                } else {
+                    nextRawRows = prefetchRawRows();
+                    filterRows(rawRows);
+                }
+            }
+            return filteredRows.poll();
+        }
+
+        @Override
+        public void close() {
+            // Don't close the inner scanner while it's being used in background
+            if (nextRawRows != null) {
+                try {
+                    nextRawRows.get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException e) {
+                    LOG.debug("Ignoring error prefetching rows on close", e);
+                }
+                nextRawRows = null;
+            }
+            super.close();
+        }
+
+        private Future<Result[]> prefetchRawRows() {
+            return SCANNER_PREFETCH_EXECUTOR.submit(new Callable<Result[]>() {
+                @Override
+                public Result[] call() throws IOException {
+                    return innerScanner.next(prefetchRows);
+                }
+            });
+        }
+
+        private void filterRows(Result[] rawRows) throws IOException {
+
+            int numberOfVersionsToFetch = nextNumberOfVersionsToFetch(maxVersions);
+
+            // Commit timestamps don't change once known, so a single cache serves all the rows of the window
+            Map<Long, Long> commitCache = lookUpCommitTimestamps(rawRows);
+
+            // 1) Filter the raw cells of every row gathering the requests for older versions
+            List<List<Cell>> rowsCells = new ArrayList<>(rawRows.length);
+            List<Get> pendingGets = new ArrayList<>();
+            List<Integer> pendingGetsRows = new ArrayList<>();
+            int[] rowsExtraRoundTrips = new int[rawRows.length];
+            for (int i = 0; i < rawRows.length; i++) {
+                List<Cell> rowCells = new ArrayList<>();
+                rowsCells.add(rowCells);
+                if (rawRows[i].isEmpty()) {
+                    continue;
+                }
+                List<Cell> rawCells = rawRows[i].listCells();
+                commitCache.putAll(buildCommitCache(rawCells));
+                int previousPendingGets = pendingGets.size();
+                collectCellsInSnapshot(rawCells, state, numberOfVersionsToFetch, familyDeletionCache, commitCache,
+                                       attributeMap, rowCells, pendingGets);
+                for (int j = previousPendingGets; j < pendingGets.size(); j++) {
+                    pendingGetsRows.add(i);
+                }
+            }
+
+            // 2) Retrieve the older versions for the whole window at once
+            if (!pendingGets.isEmpty()) {
+                Result[] pendingGetsResults = tableAccessWrapper.get(pendingGets);
+                for (int j = 0; j < pendingGetsResults.length; j++) {
+                    int row = pendingGetsRows.get(j);
+                    int extraRoundTrips = 1;
+                    if (!pendingGetsResults[j].isEmpty()) {
+                        extraRoundTrips += resolveCellsInSnapshot(pendingGetsResults[j].listCells(), state,
+                                                                  numberOfVersionsToFetch, familyDeletionCache,
+                                                                  attributeMap, rowsCells.get(row));
+                    }
+                    rowsExtraRoundTrips[row] = Math.max(rowsExtraRoundTrips[row], extraRoundTrips);
+                }
+            }
+
+            for (int i = 0; i < rowsCells.size(); i++) {
+                List<Cell> rowCells = rowsCells.get(i);
+                getExtraRoundTripsHistogram(state).update(rowsExtraRoundTrips[i]);
+                if (!rowCells.isEmpty()) {
+                    if (rowsExtraRoundTrips[i] > 0) {
+                        Collections.sort(rowCells, KeyValue.COMPARATOR);
+                    }
+                    filteredRows.add(Result.create(rowCells));
+                }
+            }
+
+        }
+
+        /**
+         * Looks up at once the commit table entries of the cells in the window that have no shadow cell and
+         * were not written by the current transaction. Cells found committed are healed with their shadow cells.
+         *
+         * @return the commit timestamps found, indexed by start timestamp
+         */
+        private Map<Long, Long> lookUpCommitTimestamps(Result[] rawRows) throws IOException {
+
+            Map<Long, List<Cell>> cellsToLookUp = new HashMap<>();
+            for (Result rawRow : rawRows) {
+                if (rawRow.isEmpty()) {
+                    continue;
+                }
+                List<Cell> rawCells = rawRow.listCells();
+                Map<Long, Long> shadowCells = buildCommitCache(rawCells);
+                for (Cell cell : rawCells) {
+                    if (CellUtils.isShadowCell(cell)
+                            || shadowCells.containsKey(cell.getTimestamp())
+                            || getTSIfInTransaction(cell, state).isPresent()) {
+                        continue;
+                    }
+                    List<Cell> cells = cellsToLookUp.get(cell.getTimestamp());
+                    if (cells == null) {
+                        cells = new ArrayList<>();
+                        cellsToLookUp.put(cell.getTimestamp(), cells);
+                    }
+                    cells.add(cell);
+                }
+            }
+
+            Map<Long, Long> commitCache = new HashMap<>();
+            if (cellsToLookUp.isEmpty()) {
+                return commitCache;
+            }
+
+            if (commitTableClient == null) {
+                assert (state.getTransactionManager() != null);
+                commitTableClient = state.getTransactionManager().getCommitTableClient();
+            }
+
+            // A single commit table round trip for the whole window
+            Map<Long, Optional<CommitTimestamp>> lookups =
+                    waitFor(commitTableClient.getCommitTimestamps(cellsToLookUp.keySet()));
+
+            for (Map.Entry<Long, Optional<CommitTimestamp>> lookup : lookups.entrySet()) {
+                Optional<CommitTimestamp> commitTimestamp = lookup.getValue();
+                // Invalidated or not found transactions are left to the regular resolution path
+                if (commitTimestamp.isPresent() && commitTimestamp.get().isValid()) {
+                    commitCache.put(lookup.getKey(), commitTimestamp.get().getValue());
+                    for (Cell cell : cellsToLookUp.get(lookup.getKey())) {
+                        healShadowCell(cell, commitTimestamp.get().getValue());
+                    }
+                }
+            }
+
+            return commitCache;
+
+        }
+
+        private <T> T waitFor(Future<T> future) throws IOException {
+            try {
+                return future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while prefetching rows", e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                }
+                throw new IOException("Problem prefetching rows", e.getCause());
+            }
+        }
+
+    }
 
 }
@@ -50,6 +50,8 @@ import org.apache.hadoop.hbase.io.TimeRange;
 import org.apache.hadoop.hbase.util.Bytes;
 import org.apache.omid.committable.CommitTable;
 import org.apache.omid.tso.client.OmidClientConfiguration.ConflictDetectionLevel;
+import org.apache.omid.tso.client.OmidClientConfiguration.IsolationLevel;
+import org.apache.omid.tso.client.TSOClient;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -73,6 +75,9 @@ public class TTable implements Closeable {
     private boolean autoFlush = true;
     
     private final boolean conflictFree;
+
+    // Families of the table, used to delete whole rows without reading them when conflicts are detected per family
+    private volatile Set<byte[]> tableFamilies;
     
     // ----------------------------------------------------------------------------------------------------------------
     // Construction
@@ -132,7 +137,7 @@ public class TTable implements Closeable {
         this.mutations = new ArrayList<Mutation>();
         this.serverSideFilter = serverSideFilter;
         this.snapshotFilter = (serverSideFilter) ?  new AttributeSetSnapshotFilter(hTable) :
-                new SnapshotFilterImpl(new HTableAccessWrapper(hTable, hTable));
+                newClientSideSnapshotFilter(hTable, null);
     }
 
     public TTable(Table hTable, SnapshotFilter snapshotFilter, boolean conflictFree) throws IOException {
@@ -148,7 +153,20 @@ public class TTable implements Closeable {
         this.mutations = new ArrayList<Mutation>();
         this.serverSideFilter = table.getConfiguration().getBoolean("omid.server.side.filter", false);
         this.snapshotFilter = (serverSideFilter) ?  new AttributeSetSnapshotFilter(hTable) :
+                newClientSideSnapshotFilter(hTable, commitTableClient);
+    }
+
+    private static SnapshotFilterImpl newClientSideSnapshotFilter(Table hTable, CommitTable.Client commitTableClient)
+            throws IOException {
+        SnapshotFilterImpl snapshotFilter =
                 new SnapshotFilterImpl(new HTableAccessWrapper(hTable, hTable), commitTableClient);
+        Configuration conf = hTable.getConfiguration();
+        if (conf != null) {
+            snapshotFilter.setScannerPrefetchRows(conf.getInt("omid.client.scanner.prefetch.rows", 0));
+            snapshotFilter.setMaxVersionsPerFetch(conf.getInt("omid.client.snapshot.maxVersionsPerFetch",
+                                                              SnapshotFilterImpl.DEFAULT_MAX_VERSIONS_PER_FETCH));
+        }
+        return snapshotFilter;
     }
 
     // ----------------------------------------------------------------------------------------------------------------
@@ -215,7 +233,85 @@ public class TTable implements Closeable {
         }
         LOG.trace("Initial Get = {}", tsget);
 
-        return snapshotFilter.get(tsget, transaction);
+        Result result = snapshotFilter.get(tsget, transaction);
+        if (isSerializable(transaction)) {
+            addReadSetElements(transaction, get, result);
+        }
+        return result;
+    }
+
+    private boolean isSerializable(HBaseTransaction transaction) {
+        return !transaction.isReadOnly()
+                && transaction.getTransactionManager().getIsolationLevel() == IsolationLevel.SERIALIZABLE;
+    }
+
+    private long getTableReadSetKey(HBaseTransaction transaction) {
+        return TSOClient.getTableIntentionId(transaction.getTransactionManager().getHashForTable(getTableName()));
+    }
+
+    /**
+     * Records the read of a serializable transaction with the same keys that the writes register in the TSO with the
+     * conflict detection level in use. The reads of whole families also record the intention key of the family, which
+     * the writes of serializable transactions register for any cell of the family, so new cells are detected too.
+     */
+    private void addReadSetElements(HBaseTransaction transaction, Get get, Result result) throws IOException {
+        ConflictDetectionLevel conflictDetectionLevel =
+                enforceHBaseTransactionManagerAsParam(transaction.getTransactionManager()).getConflictDetectionLevel();
+        long tableKey = getTableReadSetKey(transaction);
+        byte[] row = get.getRow();
+        long ts = transaction.getStartTimestamp();
+
+        if (conflictDetectionLevel == ConflictDetectionLevel.ROW) {
+            HBaseCellId rowCell =
+                    new HBaseCellId(this, row, HConstants.EMPTY_BYTE_ARRAY, HConstants.EMPTY_BYTE_ARRAY, ts);
+            transaction.addReadSetElement(tableKey, rowCell.getRowId());
+            return;
+        }
+
+        Map<byte[], NavigableSet<byte[]>> familyMap = get.getFamilyMap();
+        if (familyMap.isEmpty()) {
+            for (byte[] family : getTableFamilies()) {
+                addFamilyReadSetElements(transaction, tableKey, row, family, result, conflictDetectionLevel);
+            }
+            return;
+        }
+        for (Map.Entry<byte[], NavigableSet<byte[]>> entry : familyMap.entrySet()) {
+            byte[] family = entry.getKey();
+            NavigableSet<byte[]> qualifiers = entry.getValue();
+            if (qualifiers == null || qualifiers.isEmpty()) {
+                addFamilyReadSetElements(transaction, tableKey, row, family, result, conflictDetectionLevel);
+                continue;
+            }
+            for (byte[] qualifier : qualifiers) {
+                transaction.addReadSetElement(tableKey, new HBaseCellId(this, row, family, qualifier, ts).getCellId());
+            }
+            if (conflictDetectionLevel == ConflictDetectionLevel.HIERARCHICAL) {
+                // Detects the concurrent deletions of the whole family
+                HBaseCellId familyCell = new HBaseCellId(this, row, family, CellUtils.FAMILY_DELETE_QUALIFIER, ts);
+                transaction.addReadSetElement(tableKey, familyCell.getGroupId());
+            }
+        }
+    }
+
+    private void addFamilyReadSetElements(HBaseTransaction transaction, long tableKey, byte[] row, byte[] family,
+                                          Result result, ConflictDetectionLevel conflictDetectionLevel) {
+        long ts = transaction.getStartTimestamp();
+        HBaseCellId familyCell = new HBaseCellId(this, row, family, CellUtils.FAMILY_DELETE_QUALIFIER, ts);
+        if (conflictDetectionLevel == ConflictDetectionLevel.HIERARCHICAL) {
+            long groupId = familyCell.getGroupId();
+            transaction.addReadSetElement(tableKey, groupId);
+            transaction.addReadSetElement(tableKey, TSOClient.getGroupIntentionId(groupId));
+            return;
+        }
+        transaction.addReadSetElement(tableKey, familyCell.getCellId());
+        transaction.addReadSetElement(tableKey, TSOClient.getGroupIntentionId(familyCell.getGroupId()));
+        // The writes of snapshot isolation transactions don't register the intention key
+        NavigableMap<byte[], byte[]> cells = result.getFamilyMap(family);
+        if (cells != null) {
+            for (byte[] qualifier : cells.keySet()) {
+                transaction.addReadSetElement(tableKey, new HBaseCellId(this, row, family, qualifier, ts).getCellId());
+            }
+        }
     }
 
     static private void propagateAttributes(OperationWithAttributes from, OperationWithAttributes to) {
@@ -276,6 +372,7 @@ public class TTable implements Closeable {
         throwExceptionIfOpSetsTimerange(delete);
 
         HBaseTransaction transaction = enforceHBaseTransactionAsParam(tx);
+        throwExceptionIfTransactionIsReadOnly(transaction);
 
         final long writeTimestamp = transaction.getWriteTimestamp();
         boolean deleteFamily = false;
@@ -284,9 +381,18 @@ public class TTable implements Closeable {
         final Get deleteG = new Get(delete.getRow());
         propagateAttributes(delete, deleteP);
         propagateAttributes(delete, deleteG);
+        ConflictDetectionLevel conflictDetectionLevel =
+                enforceHBaseTransactionManagerAsParam(transaction.getTransactionManager()).getConflictDetectionLevel();
         Map<byte[], List<Cell>> fmap = delete.getFamilyCellMap();
         if (fmap.isEmpty()) {
-            familyQualifierBasedDeletion(transaction, deleteP, deleteG);
+            if (conflictDetectionLevel == ConflictDetectionLevel.HIERARCHICAL) {
+                for (byte[] family : getTableFamilies()) {
+                    deleteG.addFamily(family);
+                }
+                familyQualifierBasedDeletionWithOutRead(transaction, deleteP, deleteG);
+            } else {
+                familyQualifierBasedDeletion(transaction, deleteP, deleteG);
+            }
         }
 
         for (List<Cell> cells : fmap.values()) {
@@ -332,8 +438,9 @@ public class TTable implements Closeable {
             }
         }
         if (deleteFamily) {
-            if (enforceHBaseTransactionManagerAsParam(transaction.getTransactionManager()).
-                    getConflictDetectionLevel() == ConflictDetectionLevel.ROW) {
+            // Row and hierarchical conflict detection register the family deletion without knowing its cells
+            if (conflictDetectionLevel == ConflictDetectionLevel.ROW
+                    || conflictDetectionLevel == ConflictDetectionLevel.HIERARCHICAL) {
                 familyQualifierBasedDeletionWithOutRead(transaction, deleteP, deleteG);
             } else {
                 familyQualifierBasedDeletion(transaction, deleteP, deleteG);
@@ -403,6 +510,7 @@ public class TTable implements Closeable {
         throwExceptionIfOpSetsTimerange(put);
 
         HBaseTransaction transaction = enforceHBaseTransactionAsParam(tx);
+        throwExceptionIfTransactionIsReadOnly(transaction);
 
         final long writeTimestamp = transaction.getWriteTimestamp();
 
@@ -439,6 +547,13 @@ public class TTable implements Closeable {
         return tsput;
     }
     
+    private Set<byte[]> getTableFamilies() throws IOException {
+        if (tableFamilies == null) {
+            tableFamilies = getTableDescriptor().getFamiliesKeys();
+        }
+        return tableFamilies;
+    }
+
     private void addWriteSetElement(HBaseTransaction transaction, HBaseCellId cellId) {
         if (conflictFree) {
             transaction.addConflictFreeWriteSetElement(cellId);
@@ -495,6 +610,11 @@ public class TTable implements Closeable {
             }
         }
 
+        // The rows that could enter the range of the scan are unknown, so serializable transactions read the table
+        if (isSerializable(transaction)) {
+            transaction.addTableReadSetElement(getTableReadSetKey(transaction));
+        }
+
         return snapshotFilter.getScanner(tsscan, transaction);
     }
 
@@ -727,6 +847,13 @@ public class TTable implements Closeable {
         }
     }
 
+    private void throwExceptionIfTransactionIsReadOnly(HBaseTransaction transaction) {
+        if (transaction.isReadOnly()) {
+            throw new IllegalStateException(
+                "Write operations not allowed in read-only transaction " + transaction.getTransactionId());
+        }
+    }
+
     private HBaseTransaction enforceHBaseTransactionAsParam(Transaction tx) {
         if (tx instanceof HBaseTransaction) {
             return (HBaseTransaction) tx;
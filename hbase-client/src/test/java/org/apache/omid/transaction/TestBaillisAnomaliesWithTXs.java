@@ -26,6 +26,7 @@ import java.io.IOException;
 import java.util.Arrays;
 
 import org.apache.hadoop.hbase.client.Delete;
+import org.apache.hadoop.hbase.client.Get;
 import org.apache.hadoop.hbase.client.Put;
 import org.apache.hadoop.hbase.client.Result;
 import org.apache.hadoop.hbase.client.ResultScanner;
@@ -34,6 +35,7 @@ import org.apache.hadoop.hbase.filter.CompareFilter;
 import org.apache.hadoop.hbase.filter.Filter;
 import org.apache.hadoop.hbase.filter.SingleColumnValueFilter;
 import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.omid.tso.client.OmidClientConfiguration.IsolationLevel;
 import org.slf4j.Logger;
 import org.testng.ITestContext;
 import org.testng.annotations.BeforeMethod;
@@ -566,6 +568,92 @@ public class TestBaillisAnomaliesWithTXs extends OmidTestBase {
         // 7) select * from test where value % 3 = 0; -- Either. Returns 3 => 30, 4 => 42
     }
 
+    @Test(timeOut = 10_000)
+    public void testSerializablePreventsWriteSkew(ITestContext context) throws Exception {
+        // Same history as in testSIDoesNotPreventWriteSkew, reading the rows with gets
+
+        // 0) Start transactions
+        TransactionManager tm = newTransactionManager(context);
+        ((HBaseTransactionManager) tm).setIsolationLevel(IsolationLevel.SERIALIZABLE);
+        TTable txTable = new TTable(connection, TEST_TABLE);
+        Transaction tx1 = tm.begin();
+        Transaction tx2 = tm.begin();
+
+        // 1) select * from test where id in (1,2); -- T1
+        // 2) select * from test where id in (1,2); -- T2
+        for (Transaction tx : Arrays.asList(tx1, tx2)) {
+            assertEquals(txTable.get(tx, new Get(rowId1).addColumn(famName, colName)).getValue(famName, colName),
+                         dataValue1);
+            assertEquals(txTable.get(tx, new Get(rowId2).addColumn(famName, colName)).getValue(famName, colName),
+                         dataValue2);
+        }
+
+        // 3) update test set value = 11 where id = 1; -- T1
+        Put updateRow1Tx1 = new Put(rowId1);
+        updateRow1Tx1.addColumn(famName, colName, Bytes.toBytes("11"));
+        txTable.put(tx1, updateRow1Tx1);
+
+        // 4) update test set value = 21 where id = 2; -- T2
+        Put updateRow2Tx2 = new Put(rowId2);
+        updateRow2Tx2.addColumn(famName, colName, Bytes.toBytes("21"));
+        txTable.put(tx2, updateRow2Tx2);
+
+        // 5) commit; -- T1
+        tm.commit(tx1);
+
+        // 6) commit; -- T2. Should fail, as T1 wrote the row 1 read by T2
+        try {
+            tm.commit(tx2);
+            fail();
+        } catch (RollbackException e) {
+            // Expected
+        }
+    }
+
+    @Test(timeOut = 10_000)
+    public void testSerializablePreventsAntiDependencyCycles(ITestContext context) throws Exception {
+        // Same history as in testSIDoesNotPreventAntiDependencyCycles
+
+        // 0) Start transactions
+        TransactionManager tm = newTransactionManager(context);
+        ((HBaseTransactionManager) tm).setIsolationLevel(IsolationLevel.SERIALIZABLE);
+        TTable txTable = new TTable(connection, TEST_TABLE);
+        Transaction tx1 = tm.begin();
+        Transaction tx2 = tm.begin();
+
+        Filter f = new SingleColumnValueFilter(famName, colName, CompareFilter.CompareOp.EQUAL, Bytes.toBytes("30"));
+        Scan value30 = new Scan();
+        value30.setFilter(f);
+        value30.addColumn(famName, colName);
+
+        // 1) select * from test where value % 3 = 0; -- T1
+        assertNumberOfRows(txTable, tx1, 0, value30);
+
+        // 2) select * from test where value % 3 = 0; -- T2
+        assertNumberOfRows(txTable, tx2, 0, value30);
+
+        // 3) insert into test (id, value) values(3, 30); -- T1
+        Put insertRow3Tx1 = new Put(rowId1);
+        insertRow3Tx1.addColumn(famName, colName, Bytes.toBytes("30"));
+        txTable.put(tx1, insertRow3Tx1);
+
+        // 4) insert into test (id, value) values(4, 42); -- T2
+        Put updateRow4Tx2 = new Put(rowId2);
+        updateRow4Tx2.addColumn(famName, colName, Bytes.toBytes("42"));
+        txTable.put(tx2, updateRow4Tx2);
+
+        // 5) commit; -- T1
+        tm.commit(tx1);
+
+        // 6) commit; -- T2. Should fail, as T1 wrote to the table scanned by T2
+        try {
+            tm.commit(tx2);
+            fail();
+        } catch (RollbackException e) {
+            // Expected
+        }
+    }
+
     /**
      * This translates the table initialization done in:
      * https://github.com/ept/hermitage/blob/master/postgres.md
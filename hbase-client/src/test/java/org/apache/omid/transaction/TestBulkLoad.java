@@ -0,0 +1,163 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.omid.transaction;
+
+import static org.apache.omid.transaction.CellUtils.hasCell;
+import static org.apache.omid.transaction.CellUtils.hasShadowCell;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.util.Arrays;
+
+import org.apache.hadoop.hbase.client.Get;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.testng.ITestContext;
+import org.testng.annotations.Test;
+
+@Test(groups = "sharedHBase")
+public class TestBulkLoad extends OmidTestBase {
+
+    private static final int ROWS = 25;
+    private static final int BATCH_SIZE = 10;
+
+    private final byte[] family = Bytes.toBytes(TEST_FAMILY);
+    private final byte[] qualifier = Bytes.toBytes("col");
+
+    private static byte[] row(int i) {
+        return Bytes.toBytes(String.format("row-%04d", i));
+    }
+
+    private static byte[] value(int i) {
+        return Bytes.toBytes("value-" + i);
+    }
+
+    private void load(HBaseBulkLoader loader) throws Exception {
+        for (int i = 0; i < ROWS; i++) {
+            loader.put(new Put(row(i)).addColumn(family, qualifier, value(i)));
+        }
+    }
+
+    private void assertLoaded(TransactionManager tm, TTable table, boolean loaded) throws Exception {
+        Transaction tx = tm.begin();
+        for (int i = 0; i < ROWS; i++) {
+            Result result = table.get(tx, new Get(row(i)).addColumn(family, qualifier));
+            if (loaded) {
+                assertTrue(Arrays.equals(result.getValue(family, qualifier), value(i)), "Row " + i + " not loaded");
+            } else {
+                assertTrue(result.isEmpty(), "Row " + i + " should not be visible");
+            }
+        }
+        tm.commit(tx);
+    }
+
+    @Test(timeOut = 60_000)
+    public void testAtomicLoadIsVisibleOnlyAfterCommit(ITestContext context) throws Exception {
+        TransactionManager tm = newTransactionManager(context);
+        TTable table = new TTable(connection, TEST_TABLE);
+
+        HBaseBulkLoader loader = new HBaseBulkLoader(tm, table.getHTable(), HBaseBulkLoader.Mode.ATOMIC, BATCH_SIZE);
+        load(loader);
+        assertTrue(hasCell(row(0), family, qualifier, loader.getTimestamp(), new TTableCellGetterAdapter(table)),
+                   "Full batches should have been written");
+        assertLoaded(tm, table, false);
+
+        long commitTimestamp = loader.commit();
+        assertTrue(commitTimestamp > loader.getTimestamp());
+        assertEquals(loader.getLoadedCells(), ROWS);
+        assertLoaded(tm, table, true);
+        for (int i = 0; i < ROWS; i++) {
+            assertTrue(hasShadowCell(row(i), family, qualifier, loader.getTimestamp(),
+                                     new TTableCellGetterAdapter(table)), "Shadow cell should be there");
+        }
+    }
+
+    @Test(timeOut = 60_000)
+    public void testAtomicLoadRollback(ITestContext context) throws Exception {
+        TransactionManager tm = newTransactionManager(context);
+        TTable table = new TTable(connection, TEST_TABLE);
+
+        HBaseBulkLoader loader = new HBaseBulkLoader(tm, table.getHTable(), HBaseBulkLoader.Mode.ATOMIC, BATCH_SIZE);
+        load(loader);
+        loader.rollback();
+
+        assertLoaded(tm, table, false);
+        for (int i = 0; i < ROWS; i++) {
+            assertFalse(hasCell(row(i), family, qualifier, loader.getTimestamp(), new TTableCellGetterAdapter(table)),
+                        "Cell should have been removed");
+        }
+    }
+
+    @Test(timeOut = 60_000)
+    public void testAtomicLoadFencesOlderWriters(ITestContext context) throws Exception {
+        TransactionManager tm = newTransactionManager(context);
+        TTable table = new TTable(connection, TEST_TABLE);
+
+        Transaction olderWriter = tm.begin();
+        table.put(olderWriter, new Put(row(0)).addColumn(family, qualifier, Bytes.toBytes("older")));
+
+        HBaseBulkLoader loader = new HBaseBulkLoader(tm, table.getHTable(), HBaseBulkLoader.Mode.ATOMIC, BATCH_SIZE);
+        load(loader);
+        loader.commit();
+        assertLoaded(tm, table, true);
+
+        try {
+            tm.commit(olderWriter);
+            fail("A transaction started before the fence of the load must abort");
+        } catch (RollbackException e) {
+            // Expected
+        }
+    }
+
+    @Test(timeOut = 60_000)
+    public void testPreCommittedLoadFencesOlderWriters(ITestContext context) throws Exception {
+        TransactionManager tm = newTransactionManager(context);
+        TTable table = new TTable(connection, TEST_TABLE);
+
+        Transaction olderWriter = tm.begin();
+        table.put(olderWriter, new Put(row(0)).addColumn(family, qualifier, Bytes.toBytes("older")));
+
+        HBaseBulkLoader loader =
+                new HBaseBulkLoader(tm, table.getHTable(), HBaseBulkLoader.Mode.PRE_COMMITTED, BATCH_SIZE);
+        load(loader);
+        try {
+            loader.rollback();
+            fail("A pre-committed load can not be rolled back");
+        } catch (IllegalStateException e) {
+            // Expected
+        }
+        assertEquals(loader.commit(), loader.getTimestamp());
+
+        for (int i = 0; i < ROWS; i++) {
+            assertTrue(hasShadowCell(row(i), family, qualifier, loader.getTimestamp(),
+                                     new TTableCellGetterAdapter(table)), "Shadow cell should be there");
+        }
+        assertLoaded(tm, table, true);
+
+        try {
+            tm.commit(olderWriter);
+            fail("A transaction started before the fence of the load must abort");
+        } catch (RollbackException e) {
+            // Expected
+        }
+    }
+
+}
@@ -17,21 +17,25 @@
  */
 package org.apache.omid.transaction;
 
-import org.apache.phoenix.thirdparty.com.google.common.collect.ImmutableList;
 import org.apache.hadoop.hbase.Cell;
 import org.apache.hadoop.hbase.CellUtil;
 import org.apache.hadoop.hbase.KeyValue;
 import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.omid.committable.NullCommitTable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.testng.annotations.Test;
 
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
 
 @Test(groups = "noHBase")
 public class TestColumnIterator {
@@ -43,57 +47,54 @@ public class TestColumnIterator {
     private final byte[] qualifier2 = Bytes.toBytes("c2");
     final byte[] data = Bytes.toBytes("data");
 
-    private static final Logger LOG = LoggerFactory.getLogger(TestTransactionCleanup.class);
+    private static final Logger LOG = LoggerFactory.getLogger(TestColumnIterator.class);
+
+    private static final long SNAPSHOT_START_TIMESTAMP = 10L;
 
     private final List<Cell> cells = new ArrayList<Cell>(
             Arrays.asList(
-                    // Group 1 (3 elems but grouping should filter shadow cell, so check for 2)
+                    // Column 1: 2 versions in the snapshot, only the newest one should be returned
                     new KeyValue(row, family1, qualifier1, 0, data),
                     new KeyValue(row, family1, qualifier1, 1, data),
-                    new KeyValue(row, family1, CellUtils.addShadowCellSuffixPrefix(qualifier1), 0, data),
-                    // Group 2 (2 elems but grouping should filter shadow cell, so check for 1)
+                    new KeyValue(row, family1, CellUtils.addShadowCellSuffixPrefix(qualifier1), 0, Bytes.toBytes(2L)),
+                    new KeyValue(row, family1, CellUtils.addShadowCellSuffixPrefix(qualifier1), 1, Bytes.toBytes(3L)),
+                    // Column 2: the newest version committed after the snapshot, so the oldest one should be returned
                     new KeyValue(row, family1, qualifier2, 0, data),
-                    new KeyValue(row, family1, CellUtils.addShadowCellSuffixPrefix(qualifier2), 0, data),
-                    // Group 3 (2 elems but grouping should filter shadow cell, so check for 1)
+                    new KeyValue(row, family1, qualifier2, 5, data),
+                    new KeyValue(row, family1, CellUtils.addShadowCellSuffixPrefix(qualifier2), 0, Bytes.toBytes(2L)),
+                    new KeyValue(row, family1, CellUtils.addShadowCellSuffixPrefix(qualifier2), 5, Bytes.toBytes(15L)),
+                    // Column 3: a single version in the snapshot
                     new KeyValue(row, family2, qualifier1, 0, data),
-                    new KeyValue(row, family2, CellUtils.addShadowCellSuffixPrefix(qualifier1), 0, data)
+                    new KeyValue(row, family2, CellUtils.addShadowCellSuffixPrefix(qualifier1), 0, Bytes.toBytes(2L))
             )
     );
 
     @Test(timeOut = 10_000)
-    public void testGroupingCellsByColumnFilteringShadowCells() {
+    public void testSinglePassFilteringSplitsCellsByColumnSkippingShadowCells() throws Exception {
+
+        // HBase returns the cells of a row sorted by column and version
+        Collections.sort(cells, KeyValue.COMPARATOR);
+        HBaseTransaction transaction = new HBaseTransaction(SNAPSHOT_START_TIMESTAMP, 0L, new HashSet<HBaseCellId>(),
+                                                            new HashSet<HBaseCellId>(), null, false);
+        SnapshotFilterImpl snapshotFilter = new SnapshotFilterImpl(new NullCommitTable().getClient());
 
-        ImmutableList<Collection<Cell>> groupedColumnsWithoutShadowCells =
-                SnapshotFilterImpl.groupCellsByColumnFilteringShadowCellsAndFamilyDeletion(cells);
-        LOG.info("Column Groups " + groupedColumnsWithoutShadowCells);
-        assertEquals(groupedColumnsWithoutShadowCells.size(), 3, "Should be 3 column groups");
-        int group1Counter = 0;
-        int group2Counter = 0;
-        int group3Counter = 0;
-        for (Collection<Cell> columns : groupedColumnsWithoutShadowCells) {
-            for (Cell cell : columns) {
-                byte[] cellFamily = CellUtil.cloneFamily(cell);
-                byte[] cellQualifier = CellUtil.cloneQualifier(cell);
-                // Group 1
-                if (Bytes.equals(cellFamily, family1) &&
-                        Bytes.equals(cellQualifier, qualifier1)) {
-                    group1Counter++;
-                }
-                // Group 2
-                if (Bytes.equals(cellFamily, family1) &&
-                        Bytes.equals(cellQualifier, qualifier2)) {
-                    group2Counter++;
-                }
-                // Group 3
-                if (Bytes.equals(cellFamily, family2) &&
-                        Bytes.equals(cellQualifier, qualifier1)) {
-                    group3Counter++;
-                }
-            }
+        List<Cell> cellsInSnapshot = snapshotFilter.filterCellsForSnapshot(cells, transaction, 1,
+                                                                           new HashMap<String, Long>(),
+                                                                           new HashMap<String, byte[]>());
+        LOG.info("Cells in snapshot " + cellsInSnapshot);
+
+        assertEquals(cellsInSnapshot.size(), 3, "Should be 1 cell per column");
+        for (Cell cell : cellsInSnapshot) {
+            assertFalse(CellUtils.isShadowCell(cell), "Shadow cells should be filtered");
         }
+        assertColumnVersion(cellsInSnapshot.get(0), family1, qualifier1, 1);
+        assertColumnVersion(cellsInSnapshot.get(1), family1, qualifier2, 0);
+        assertColumnVersion(cellsInSnapshot.get(2), family2, qualifier1, 0);
+    }
 
-        assertEquals(group1Counter, 2, "Group 1 should have 2 elems");
-        assertEquals(group2Counter, 1, "Group 2 should have 1 elems");
-        assertEquals(group3Counter, 1, "Group 3 should have 1 elems");
+    private static void assertColumnVersion(Cell cell, byte[] family, byte[] qualifier, long version) {
+        assertTrue(Bytes.equals(CellUtil.cloneFamily(cell), family), "Unexpected family in " + cell);
+        assertTrue(Bytes.equals(CellUtil.cloneQualifier(cell), qualifier), "Unexpected qualifier in " + cell);
+        assertEquals(cell.getTimestamp(), version, "Unexpected version of " + cell);
     }
 }
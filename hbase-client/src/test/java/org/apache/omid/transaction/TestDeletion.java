@@ -19,6 +19,7 @@ package org.apache.omid.transaction;
 
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
 
 import java.io.IOException;
 import java.util.HashMap;
@@ -286,6 +287,74 @@ public class TestDeletion extends OmidTestBase {
         ((HBaseTransactionManager) tm).setConflictDetectionLevel(ConflictDetectionLevel.CELL);
     }
 
+    @Test(timeOut = 10_000)
+    public void runTestDeleteFamilyAndRowHierarchicalCA(ITestContext context) throws Exception {
+
+        TransactionManager tm = newTransactionManager(context);
+        TTable tt = new TTable(connection, TEST_TABLE);
+
+        ((HBaseTransactionManager) tm).setConflictDetectionLevel(ConflictDetectionLevel.HIERARCHICAL);
+
+        int rowsWritten = 10;
+        FamCol famColA = new FamCol(famA, colA);
+        FamCol famColB = new FamCol(famB, colB);
+        Transaction t1 = tm.begin();
+        writeRows(tt, t1, rowsWritten, famColA, famColB);
+        tm.commit(t1);
+
+        // The family deletion conflicts with a concurrent write to a cell of the family...
+        Transaction t2 = tm.begin();
+        Transaction t3 = tm.begin();
+        Put p = new Put(modrow);
+        p.addColumn(famA, colB, data1);
+        tt.put(t2, p);
+        tm.commit(t2);
+        Delete d = new Delete(modrow);
+        d.addFamily(famA);
+        tt.delete(t3, d);
+        try {
+            tm.commit(t3);
+            fail("The family deletion should conflict with the concurrent write");
+        } catch (RollbackException e) {
+            // Expected
+        }
+
+        // ...but not with a concurrent write to another family
+        Transaction t4 = tm.begin();
+        Transaction t5 = tm.begin();
+        p = new Put(modrow);
+        p.addColumn(famB, colA, data1);
+        tt.put(t4, p);
+        tm.commit(t4);
+        d = new Delete(modrow);
+        d.addFamily(famA);
+        tt.delete(t5, d);
+        tm.commit(t5);
+
+        // The row deletion conflicts with a concurrent write to any of the families of the table
+        Transaction t6 = tm.begin();
+        Transaction t7 = tm.begin();
+        p = new Put(modrow);
+        p.addColumn(famB, colB, data1);
+        tt.put(t6, p);
+        tm.commit(t6);
+        tt.delete(t7, new Delete(modrow));
+        try {
+            tm.commit(t7);
+            fail("The row deletion should conflict with the concurrent write");
+        } catch (RollbackException e) {
+            // Expected
+        }
+
+        Transaction tscan = tm.begin();
+        ResultScanner rs = tt.getScanner(tscan, new Scan());
+        Map<FamCol, Integer> count = countColsInRows(rs, famColA, famColB);
+        assertEquals((int) count.get(famColA), rowsWritten - 1, "ColA count should be equal to rowsWritten - 1");
+        assertEquals((int) count.get(famColB), rowsWritten, "ColB count should be equal to rowsWritten");
+
+        ((HBaseTransactionManager) tm).setConflictDetectionLevel(ConflictDetectionLevel.CELL);
+    }
+
     @Test(timeOut = 10_000)
     public void runTestDeleteColumn(ITestContext context) throws Exception {
 
@@ -0,0 +1,271 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.omid.transaction;
+
+import static org.apache.hadoop.hbase.HConstants.HBASE_CLIENT_RETRIES_NUMBER;
+import static org.apache.omid.timestamp.storage.HBaseTimestampStorageConfig.DEFAULT_TIMESTAMP_STORAGE_CF_NAME;
+import static org.apache.omid.timestamp.storage.HBaseTimestampStorageConfig.DEFAULT_TIMESTAMP_STORAGE_TABLE_NAME;
+import static org.apache.omid.tso.client.OmidClientConfiguration.ConnType.HA;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.curator.RetryPolicy;
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.CuratorFrameworkFactory;
+import org.apache.curator.retry.ExponentialBackoffRetry;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.Get;
+import org.apache.hadoop.hbase.client.HBaseAdmin;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.omid.TestUtils;
+import org.apache.omid.tso.HALeaseManagementModule;
+import org.apache.omid.tso.TSOServer;
+import org.apache.omid.tso.TSOServerConfig;
+import org.apache.zookeeper.data.Stat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import org.apache.phoenix.thirdparty.com.google.common.base.Charsets;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+
+/**
+ * Failover between two TSOs replicating the conflict detection state, so the transactions started with the previous
+ * master can still commit in the new one
+ */
+@Test(groups = "sharedHBase")
+public class TestEndToEndScenariosWithWarmStandby extends OmidTestBase {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TestEndToEndScenariosWithWarmStandby.class);
+
+    private static final int TEST_LEASE_PERIOD_MS = 5_000;
+    private static final String CURRENT_TSO_PATH = "/CURRENT_TSO_PATH";
+    private static final String TSO_LEASE_PATH = "/TSO_LEASE_PATH";
+    private static final String REPLICA_SYNC_PATH = "/TSO_REPLICA_PATH";
+    private static final String NAMESPACE = "omid";
+
+    private static final byte[] qualifier = Bytes.toBytes("test-q");
+    private static final byte[] row1 = Bytes.toBytes("row1");
+    private static final byte[] row2 = Bytes.toBytes("row2");
+    private static final byte[] initialData = Bytes.toBytes("testWrite-0");
+    private static final byte[] data1 = Bytes.toBytes("testWrite-1");
+    private static final byte[] data2 = Bytes.toBytes("testWrite-2");
+    private static final byte[] data3 = Bytes.toBytes("testWrite-3");
+
+    private CuratorFramework zkClient;
+
+    private int tso1Port;
+    private int tso2Port;
+    private TSOServer tso1;
+    private TSOServer tso2;
+
+    private TransactionManager tm;
+
+    @BeforeMethod(alwaysRun = true, timeOut = 30_000)
+    public void setup() throws Exception {
+        String zkConnection = "localhost:" + hBaseUtils.getZkCluster().getClientPort();
+
+        zkClient = provideInitializedZookeeperClient(zkConnection);
+
+        tso1Port = TestUtils.getFreeLocalPort();
+        tso2Port = TestUtils.getFreeLocalPort();
+        int replicationPort = TestUtils.getFreeLocalPort();
+
+        LOG.info("===================== Starting TSO 1 =====================");
+        tso1 = startTSO(tso1Port, replicationPort, zkConnection);
+        waitForCurrentTSO(tso1Port);
+        LOG.info("================ Finished loading TSO 1 ==================");
+
+        LOG.info("===================== Starting TSO 2 =====================");
+        tso2 = startTSO(tso2Port, replicationPort, zkConnection);
+        waitForReplicaInSync();
+        LOG.info("============ TSO 2 is in sync with TSO 1 =================");
+
+        HBaseOmidClientConfiguration hbaseOmidClientConf = new HBaseOmidClientConfiguration();
+        hbaseOmidClientConf.setConnectionType(HA);
+        hbaseOmidClientConf.setConnectionString(zkConnection);
+        hbaseOmidClientConf.getOmidClientConfiguration().setZkCurrentTsoPath(CURRENT_TSO_PATH);
+        hbaseOmidClientConf.getOmidClientConfiguration().setZkNamespace(NAMESPACE);
+        hbaseOmidClientConf.setHBaseConfiguration(hbaseConf);
+        hbaseConf.setInt(HBASE_CLIENT_RETRIES_NUMBER, 3);
+        tm = HBaseTransactionManager.builder(hbaseOmidClientConf).build();
+    }
+
+    @AfterMethod(alwaysRun = true, timeOut = 60_000)
+    public void cleanup() throws Exception {
+        tm.close();
+        HBaseAdmin admin = hBaseUtils.getHBaseAdmin();
+        deleteTable(admin, TableName.valueOf(DEFAULT_TIMESTAMP_STORAGE_TABLE_NAME));
+        hBaseUtils.createTable(TableName.valueOf((DEFAULT_TIMESTAMP_STORAGE_TABLE_NAME)),
+                               new byte[][]{DEFAULT_TIMESTAMP_STORAGE_CF_NAME.getBytes()},
+                               Integer.MAX_VALUE);
+        tso1.stopAsync();
+        tso1.awaitTerminated();
+        tso2.stopAsync();
+        tso2.awaitTerminated();
+        TestUtils.waitForSocketNotListening("localhost", tso1Port, 100);
+        TestUtils.waitForSocketNotListening("localhost", tso2Port, 100);
+
+        zkClient.delete().forPath(TSO_LEASE_PATH);
+        zkClient.delete().forPath(CURRENT_TSO_PATH);
+        zkClient.delete().forPath(REPLICA_SYNC_PATH);
+        zkClient.close();
+    }
+
+    //
+    // TSO 1 is MASTER & TSO 2 is a STANDBY IN SYNC
+    // Setup: TX 0 -> Add initial data to cells R1C & R2C (v0)
+    // TX 1, TX 2 & TX 3 start (TSO 1)
+    // TX 1 modifies R1C (v1) and commits (TSO 1)
+    // TX 2 modifies R1C (v2) & TX 3 modifies R2C (v3)
+    // TSO 1 is KILLED -> TSO 2 becomes MASTER with the replicated state
+    // TX 2 tries to commit -> should abort because of the conflict with TX 1 replicated to TSO 2
+    // TX 3 tries to commit -> should commit although it was started in TSO 1
+    // End of Test state: R1C (v1) & R2C (v3)
+    @Test(timeOut = 90_000)
+    public void testTransactionsStartedInPreviousMasterCommitOrAbortWithTheReplicatedState() throws Exception {
+        try (TTable txTable = new TTable(connection, TEST_TABLE)) {
+
+            HBaseTransaction tx0 = (HBaseTransaction) tm.begin();
+            long initialEpoch = tx0.getEpoch();
+            txTable.put(tx0, new Put(row1).addColumn(TEST_FAMILY.getBytes(), qualifier, initialData));
+            txTable.put(tx0, new Put(row2).addColumn(TEST_FAMILY.getBytes(), qualifier, initialData));
+            tm.commit(tx0);
+
+            HBaseTransaction tx1 = (HBaseTransaction) tm.begin();
+            HBaseTransaction tx2 = (HBaseTransaction) tm.begin();
+            HBaseTransaction tx3 = (HBaseTransaction) tm.begin();
+
+            txTable.put(tx1, new Put(row1).addColumn(TEST_FAMILY.getBytes(), qualifier, data1));
+            tm.commit(tx1);
+
+            txTable.put(tx2, new Put(row1).addColumn(TEST_FAMILY.getBytes(), qualifier, data2));
+            txTable.put(tx3, new Put(row2).addColumn(TEST_FAMILY.getBytes(), qualifier, data3));
+
+            LOG.info("++++++++++++++++++++ KILLING TSO 1 +++++++++++++++++++");
+            tso1.stopAsync();
+            tso1.awaitTerminated();
+            TestUtils.waitForSocketNotListening("localhost", tso1Port, 100);
+
+            waitForCurrentTSO(tso2Port);
+            waitForClientToConnectToNewMaster(initialEpoch);
+
+            try {
+                tm.commit(tx2);
+                fail(tx2 + " should not commit, as it conflicts with " + tx1);
+            } catch (RollbackException e) {
+                // Expected
+                assertEquals(tx2.getStatus(), Transaction.Status.ROLLEDBACK);
+            }
+
+            tm.commit(tx3);
+            assertEquals(tx3.getStatus(), Transaction.Status.COMMITTED);
+            assertEquals(tx3.getEpoch(), initialEpoch);
+            assertTrue(tx3.getCommitTimestamp() > tx1.getCommitTimestamp());
+
+            Transaction readTx = tm.begin();
+            Result r = txTable.get(readTx, new Get(row1).addColumn(TEST_FAMILY.getBytes(), qualifier));
+            assertEquals(r.getValue(TEST_FAMILY.getBytes(), qualifier), data1);
+            r = txTable.get(readTx, new Get(row2).addColumn(TEST_FAMILY.getBytes(), qualifier));
+            assertEquals(r.getValue(TEST_FAMILY.getBytes(), qualifier), data3);
+            tm.commit(readTx);
+        }
+
+    }
+
+    // ----------------------------------------------------------------------------------------------------------------
+    // Helpers
+    // ----------------------------------------------------------------------------------------------------------------
+
+    private TSOServer startTSO(int port, int replicationPort, String zkConnection) throws Exception {
+        HALeaseManagementModule leaseModule = new HALeaseManagementModule(TEST_LEASE_PERIOD_MS, TSO_LEASE_PATH,
+                                                                          CURRENT_TSO_PATH, zkConnection, NAMESPACE);
+        leaseModule.setReplicationPort(replicationPort);
+        leaseModule.setReplicaSyncPath(REPLICA_SYNC_PATH);
+        leaseModule.setReplicationTimeoutInMs(10_000);
+        TSOServerConfig config = new TSOServerConfig();
+        config.setPort(port);
+        config.setConflictMapSize(1000);
+        config.setLeaseModule(leaseModule);
+        Injector injector = Guice.createInjector(new TestTSOModule(hbaseConf, config));
+        TSOServer tso = injector.getInstance(TSOServer.class);
+        tso.startAsync();
+        tso.awaitRunning();
+        return tso;
+    }
+
+    private void waitForCurrentTSO(int port) throws Exception {
+        while (true) {
+            if (zkClient.checkExists().forPath(CURRENT_TSO_PATH) != null) {
+                String currentTSO = new String(zkClient.getData().forPath(CURRENT_TSO_PATH), Charsets.UTF_8);
+                if (currentTSO.contains(":" + port + "#")) {
+                    return;
+                }
+            }
+            TimeUnit.MILLISECONDS.sleep(100);
+        }
+    }
+
+    private void waitForReplicaInSync() throws Exception {
+        // The master publishes the standby session in sync in the replica sync path
+        while (true) {
+            Stat stat = zkClient.checkExists().forPath(REPLICA_SYNC_PATH);
+            if (stat != null && stat.getDataLength() > 0) {
+                return;
+            }
+            TimeUnit.MILLISECONDS.sleep(100);
+        }
+    }
+
+    private void waitForClientToConnectToNewMaster(long previousEpoch) throws Exception {
+        while (true) {
+            try {
+                Transaction tx = tm.begin();
+                tm.rollback(tx);
+                if (tx.getEpoch() > previousEpoch) {
+                    return;
+                }
+            } catch (TransactionException e) {
+                LOG.info("Client not connected to the new master yet", e);
+            }
+            TimeUnit.MILLISECONDS.sleep(100);
+        }
+    }
+
+    private static CuratorFramework provideInitializedZookeeperClient(String zkConnection) throws Exception {
+
+        RetryPolicy retryPolicy = new ExponentialBackoffRetry(1000, 3);
+        CuratorFramework zkClient = CuratorFrameworkFactory
+                .builder()
+                .namespace(NAMESPACE)
+                .connectString(zkConnection)
+                .retryPolicy(retryPolicy).build();
+        zkClient.start();
+        zkClient.blockUntilConnected();
+        return zkClient;
+    }
+
+}
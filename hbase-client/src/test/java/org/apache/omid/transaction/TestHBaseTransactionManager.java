@@ -25,7 +25,9 @@ import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotEquals;
 import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
 
 import org.apache.hadoop.hbase.client.Get;
 import org.apache.hadoop.hbase.client.Put;
@@ -100,4 +102,73 @@ public class TestHBaseTransactionManager extends OmidTestBase {
 
     }
 
+    @Test(timeOut = 20_000)
+    public void testStaleSnapshotReusesLastTimestampFromTSO(ITestContext context) throws Exception {
+
+        TSOClient tsoClient = spy(getClient(context));
+        AbstractTransactionManager tm = (AbstractTransactionManager) newTransactionManager(context, tsoClient);
+        tm.setStaleSnapshotMaxAgeInMs(60_000);
+
+        try (TTable txTable = new TTable(connection, TEST_TABLE)) {
+
+            Transaction tx1 = tm.begin();
+            Put put = new Put(row1);
+            put.addColumn(testFamily, qualifier, data1);
+            txTable.put(tx1, put);
+            tm.commit(tx1);
+
+            Transaction tx2 = tm.begin();
+            verify(tsoClient, times(2)).getNewStartTimestamp();
+
+            // The read-only tx reuses the timestamp of tx2 without contacting the TSO...
+            AbstractTransaction readOnlyTx = (AbstractTransaction) tm.beginStaleSnapshot();
+            verify(tsoClient, times(2)).getNewStartTimestamp();
+            assertEquals(readOnlyTx.getTransactionId(), tx2.getTransactionId());
+            assertEquals(readOnlyTx.getReadTimestamp(), tx2.getTransactionId() - 1);
+            assertTrue(readOnlyTx.isReadOnly());
+
+            // ...but still sees the data committed before tx2 started
+            Result r = txTable.get(readOnlyTx, new Get(row1));
+            assertTrue(Bytes.equals(r.getValue(testFamily, qualifier), data1), "Wrong value for RO-TX " + readOnlyTx);
+
+            try {
+                txTable.put(readOnlyTx, put);
+                fail("Read-only transactions should not be allowed to write");
+            } catch (IllegalStateException e) {
+                // Expected
+            }
+
+            try {
+                readOnlyTx.setVisibilityLevel(AbstractTransaction.VisibilityLevel.SNAPSHOT_ALL);
+                fail("Read-only transactions should not be allowed to change their snapshot");
+            } catch (IllegalStateException e) {
+                // Expected
+            }
+            assertEquals(readOnlyTx.getVisibilityLevel(), AbstractTransaction.VisibilityLevel.SNAPSHOT_EXCLUDE_CURRENT);
+            assertEquals(readOnlyTx.getReadTimestamp(), tx2.getTransactionId() - 1);
+
+            tm.commit(readOnlyTx);
+            assertEquals(readOnlyTx.getStatus(), Transaction.Status.COMMITTED_RO);
+            tm.rollback(tx2);
+        }
+
+    }
+
+    @Test(timeOut = 20_000)
+    public void testStaleSnapshotGetsNewTimestampWhenDisabled(ITestContext context) throws Exception {
+
+        TSOClient tsoClient = spy(getClient(context));
+        AbstractTransactionManager tm = (AbstractTransactionManager) newTransactionManager(context, tsoClient);
+        tm.setStaleSnapshotMaxAgeInMs(0);
+
+        Transaction tx1 = tm.begin();
+        AbstractTransaction readOnlyTx = (AbstractTransaction) tm.beginStaleSnapshot();
+        verify(tsoClient, times(2)).getNewStartTimestamp();
+        assertNotEquals(readOnlyTx.getTransactionId(), tx1.getTransactionId());
+        assertTrue(readOnlyTx.isReadOnly());
+        tm.commit(readOnlyTx);
+        tm.rollback(tx1);
+
+    }
+
 }
@@ -0,0 +1,210 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.omid.transaction;
+
+import static org.apache.omid.transaction.CellUtils.hasShadowCell;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.apache.hadoop.hbase.client.Delete;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.ResultScanner;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.client.Table;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.omid.committable.CommitTable;
+import org.apache.omid.metrics.NullMetricsProvider;
+import org.mockito.ArgumentCaptor;
+import org.testng.ITestContext;
+import org.testng.annotations.Test;
+
+@Test(groups = "sharedHBase")
+public class TestPrefetchingScanner extends OmidTestBase {
+
+    private static final int NUM_ROWS = 20;
+    private static final int PREFETCH_ROWS = 3;
+
+    private static final byte[] family = Bytes.toBytes(TEST_FAMILY);
+    private static final byte[] qualifier = Bytes.toBytes("col");
+
+    @Test(timeOut = 60_000)
+    public void testPrefetchingScannerReturnsSameRowsAsRegularScanner(ITestContext context) throws Exception {
+
+        TransactionManager tm = newTransactionManager(context);
+
+        try (TTable table = new TTable(connection, TEST_TABLE)) {
+
+            // Committed values for all rows
+            Transaction tx1 = tm.begin();
+            for (int i = 0; i < NUM_ROWS; i++) {
+                Put put = new Put(Bytes.toBytes("row-" + i));
+                put.addColumn(family, qualifier, Bytes.toBytes("committed-" + i));
+                table.put(tx1, put);
+            }
+            tm.commit(tx1);
+
+            // Some rows deleted
+            Transaction tx2 = tm.begin();
+            for (int i = 0; i < NUM_ROWS; i += 4) {
+                table.delete(tx2, new Delete(Bytes.toBytes("row-" + i)));
+            }
+            tm.commit(tx2);
+
+            // Newer values not committed, so the older versions have to be retrieved
+            Transaction tx3 = tm.begin();
+            for (int i = 1; i < NUM_ROWS; i += 2) {
+                Put put = new Put(Bytes.toBytes("row-" + i));
+                put.addColumn(family, qualifier, Bytes.toBytes("pending-" + i));
+                table.put(tx3, put);
+            }
+
+            Transaction readTx = tm.begin();
+            List<Result> expected = scan(table, readTx);
+
+            Table htable = table.getHTable();
+            SnapshotFilterImpl snapshotFilter = new SnapshotFilterImpl(new HTableAccessWrapper(htable, htable));
+            snapshotFilter.setScannerPrefetchRows(PREFETCH_ROWS);
+            try (TTable prefetchingTable = new TTable(htable, snapshotFilter)) {
+                List<Result> actual = scan(prefetchingTable, readTx);
+                assertEquals(actual.size(), expected.size());
+                for (int i = 0; i < expected.size(); i++) {
+                    assertEquals(actual.get(i).getRow(), expected.get(i).getRow());
+                    assertEquals(actual.get(i).getValue(family, qualifier), expected.get(i).getValue(family, qualifier));
+                }
+            }
+
+            assertEquals(expected.size(), NUM_ROWS - NUM_ROWS / 4);
+            for (Result result : expected) {
+                assertEquals(Bytes.toString(result.getValue(family, qualifier)),
+                             "committed-" + Bytes.toString(result.getRow()).substring("row-".length()));
+            }
+
+            tm.rollback(tx3);
+            tm.commit(readTx);
+        }
+
+    }
+
+    @Test(timeOut = 60_000)
+    public void testPrefetchingScannerOnEmptyTable(ITestContext context) throws Exception {
+
+        TransactionManager tm = newTransactionManager(context);
+
+        try (TTable table = new TTable(connection, TEST_TABLE)) {
+            Table htable = table.getHTable();
+            SnapshotFilterImpl snapshotFilter = new SnapshotFilterImpl(new HTableAccessWrapper(htable, htable));
+            snapshotFilter.setScannerPrefetchRows(PREFETCH_ROWS);
+            try (TTable prefetchingTable = new TTable(htable, snapshotFilter)) {
+                Transaction tx = tm.begin();
+                ResultScanner scanner = prefetchingTable.getScanner(tx, new Scan());
+                assertNull(scanner.next());
+                scanner.close();
+                tm.commit(tx);
+            }
+        }
+
+    }
+
+    @Test(timeOut = 60_000)
+    public void testCommitTableIsLookedUpOncePerWindow(ITestContext context) throws Exception {
+
+        CommitTable.Client commitTableClient = spy(getCommitTable(context).getClient());
+
+        HBaseOmidClientConfiguration hbaseOmidClientConf = new HBaseOmidClientConfiguration();
+        hbaseOmidClientConf.setConnectionString(TSO_SERVER_HOST + ":" + port);
+        hbaseOmidClientConf.setHBaseConfiguration(hbaseConf);
+        PostCommitActions syncPostCommitter = spy(
+                new HBaseSyncPostCommitter(new NullMetricsProvider(), commitTableClient, connection));
+        TransactionManager tm = HBaseTransactionManager.builder(hbaseOmidClientConf)
+                .postCommitter(syncPostCommitter)
+                .commitTableClient(commitTableClient)
+                .commitTableWriter(getCommitTable(context).getWriter())
+                .build();
+
+        // Emulate a crash after each commit, so none of the rows gets its shadow cell
+        doThrow(new RuntimeException()).when(syncPostCommitter).updateShadowCells(any(HBaseTransaction.class));
+
+        try (TTable table = new TTable(connection, TEST_TABLE)) {
+
+            long[] startTimestamps = new long[PREFETCH_ROWS];
+            for (int i = 0; i < PREFETCH_ROWS; i++) {
+                Transaction tx = tm.begin();
+                startTimestamps[i] = tx.getTransactionId();
+                Put put = new Put(Bytes.toBytes("row-" + i));
+                put.addColumn(family, qualifier, Bytes.toBytes("committed-" + i));
+                table.put(tx, put);
+                try {
+                    tm.commit(tx);
+                } catch (Exception e) {
+                    // Expected, as the shadow cells can't be written
+                }
+            }
+            assertFalse(hasShadowCell(Bytes.toBytes("row-0"), family, qualifier, startTimestamps[0],
+                                      new TTableCellGetterAdapter(table)));
+
+            Table htable = table.getHTable();
+            SnapshotFilterImpl snapshotFilter = new SnapshotFilterImpl(new HTableAccessWrapper(htable, htable));
+            snapshotFilter.setScannerPrefetchRows(PREFETCH_ROWS);
+            try (TTable prefetchingTable = new TTable(htable, snapshotFilter)) {
+                Transaction readTx = tm.begin();
+                List<Result> results = scan(prefetchingTable, readTx);
+                assertEquals(results.size(), PREFETCH_ROWS);
+                tm.commit(readTx);
+            }
+
+            // The commit data of the whole window is retrieved with a single multi-get
+            ArgumentCaptor<Collection> lookedUp = ArgumentCaptor.forClass(Collection.class);
+            verify(commitTableClient, times(1)).getCommitTimestamps(lookedUp.capture());
+            assertEquals(lookedUp.getValue().size(), PREFETCH_ROWS);
+            verify(commitTableClient, never()).getCommitTimestamp(anyLong());
+
+            // And the shadow cells are healed
+            for (int i = 0; i < PREFETCH_ROWS; i++) {
+                assertTrue(hasShadowCell(Bytes.toBytes("row-" + i), family, qualifier, startTimestamps[i],
+                                         new TTableCellGetterAdapter(table)));
+            }
+        }
+
+    }
+
+    private List<Result> scan(TTable table, Transaction tx) throws Exception {
+        List<Result> results = new ArrayList<>();
+        ResultScanner scanner = table.getScanner(tx, new Scan());
+        Result result;
+        while ((result = scanner.next()) != null) {
+            results.add(result);
+        }
+        scanner.close();
+        return results;
+    }
+
+}
@@ -17,6 +17,12 @@
  */
 package org.apache.omid.transaction;
 
+import static org.apache.omid.metrics.MetricsUtils.name;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.RETURNS_MOCKS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertNotNull;
 import static org.testng.Assert.assertTrue;
@@ -27,10 +33,14 @@ import java.util.List;
 
 import org.apache.hadoop.hbase.Cell;
 import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.TableName;
 import org.apache.hadoop.hbase.client.Get;
 import org.apache.hadoop.hbase.client.Put;
 import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.Table;
 import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.omid.metrics.Histogram;
+import org.apache.omid.metrics.MetricsRegistry;
 import org.testng.ITestContext;
 import org.testng.annotations.Test;
 
@@ -102,4 +112,83 @@ public class TestReadPath extends OmidTestBase {
 
     }
 
+    @Test(timeOut = 10_000)
+    public void testReadFetchesOlderVersionsInBoundedRoundTrips(ITestContext context) throws Exception {
+        TransactionManager tm = newTransactionManager(context);
+        Table htable = connection.getTable(TableName.valueOf(TEST_TABLE));
+        SnapshotFilterImpl snapshotFilter = new SnapshotFilterImpl(new HTableAccessWrapper(htable, htable));
+        snapshotFilter.setMaxVersionsPerFetch(2);
+        MetricsRegistry metrics = mock(MetricsRegistry.class);
+        Histogram extraRoundTrips = mock(Histogram.class);
+        when(metrics.histogram(anyString())).thenReturn(extraRoundTrips);
+        snapshotFilter.setMetrics(metrics);
+        TTable table = new TTable(htable, snapshotFilter);
+
+        Transaction t = tm.begin();
+        Put put = new Put(row);
+        put.addColumn(family, col, data);
+        table.put(t, put);
+        tm.commit(t);
+        List<Transaction> running = new ArrayList<>();
+
+        // Shade the data with uncommitted data
+        for (int i = 0; i < 10; ++i) {
+            t = tm.begin();
+            put = new Put(row);
+            put.addColumn(family, col, uncommitted);
+            table.put(t, put);
+            running.add(t);
+        }
+
+        // The initial get returns the newest uncommitted version. The remaining 9 uncommitted versions and the
+        // committed one are fetched 2 by 2
+        t = tm.begin();
+        Result result = table.get(t, new Get(row).addColumn(family, col));
+        Cell cell = result.getColumnLatestCell(family, col);
+        assertNotNull(cell, "KeyValue is null");
+        assertTrue(Arrays.equals(data, CellUtil.cloneValue(cell)), "Read data doesn't match");
+        verify(extraRoundTrips).update(5);
+        tm.commit(t);
+
+        table.close();
+
+        for (Transaction r : running) {
+            tm.rollback(r);
+        }
+
+    }
+
+    @Test(timeOut = 10_000)
+    public void testClientSideReadsUseTheMetricsOfTheTransactionManager(ITestContext context) throws Exception {
+        MetricsRegistry metrics = mock(MetricsRegistry.class, RETURNS_MOCKS);
+        Histogram extraRoundTrips = mock(Histogram.class);
+        when(metrics.histogram(name("omid", "snapshotFilter", "client", "extraRoundTrips")))
+                .thenReturn(extraRoundTrips);
+        HBaseOmidClientConfiguration clientConf = new HBaseOmidClientConfiguration();
+        clientConf.setConnectionString("localhost:" + port);
+        clientConf.setHBaseConfiguration(hbaseConf);
+        clientConf.setMetrics(metrics);
+        TransactionManager tm = HBaseTransactionManager.builder(clientConf)
+                .commitTableClient(getCommitTable(context).getClient())
+                .commitTableWriter(getCommitTable(context).getWriter())
+                .tsoClient(getClient(context)).build();
+        TTable table = new TTable(connection, TEST_TABLE);
+        byte[] row = Bytes.toBytes("row-metrics");
+
+        Transaction t = tm.begin();
+        Put put = new Put(row);
+        put.addColumn(family, col, data);
+        table.put(t, put);
+        tm.commit(t);
+
+        t = tm.begin();
+        Result result = table.get(t, new Get(row).addColumn(family, col));
+        assertTrue(Arrays.equals(data, CellUtil.cloneValue(result.getColumnLatestCell(family, col))));
+        verify(extraRoundTrips).update(0);
+        tm.commit(t);
+
+        table.close();
+
+    }
+
 }
@@ -35,12 +35,15 @@ import org.apache.hadoop.hbase.client.ResultScanner;
 import org.apache.hadoop.hbase.client.Scan;
 import org.apache.hadoop.hbase.client.Table;
 import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.omid.tso.client.OmidClientConfiguration.IsolationLevel;
+import org.apache.omid.tso.client.TSOClient;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.testng.ITestContext;
 import org.testng.annotations.Test;
 
 import java.io.IOException;
+import java.util.Arrays;
 
 @Test(groups = "sharedHBase")
 public class TestTransactionConflict extends OmidTestBase {
@@ -608,4 +611,53 @@ public class TestTransactionConflict extends OmidTestBase {
         r = tt1.getHTable().get(g1);
         assertEquals(r.size(), 0, "Unexpected size for read.");
     }
+
+    @Test(timeOut = 10_000)
+    public void testSerializableReadSetIsReplacedByTheTablesReadWhenFull(ITestContext context) throws Exception {
+        HBaseTransactionManager tm = (HBaseTransactionManager) newTransactionManager(context);
+        tm.setIsolationLevel(IsolationLevel.SERIALIZABLE);
+        tm.setMaxReadSetSize(2);
+        TTable tt = new TTable(connection, TEST_TABLE);
+
+        byte[] fam = Bytes.toBytes(TEST_FAMILY);
+        byte[] col = Bytes.toBytes("testdata");
+
+        HBaseTransaction tx = (HBaseTransaction) tm.begin();
+        tt.get(tx, new Get(Bytes.toBytes("test-row1")).addColumn(fam, col));
+        tt.get(tx, new Get(Bytes.toBytes("test-row2")).addColumn(fam, col));
+        assertEquals(tx.getReadSet().length, 2, "Each cell read should be in the read set");
+
+        tt.get(tx, new Get(Bytes.toBytes("test-row3")).addColumn(fam, col));
+        long tableKey = TSOClient.getTableIntentionId(tm.getHashForTable(tt.getTableName()));
+        assertTrue(Arrays.equals(tx.getReadSet(), new long[]{tableKey}), "Read set should only contain the table read");
+    }
+
+    @Test(timeOut = 10_000)
+    public void testSerializableFamilyReadDetectsNewCells(ITestContext context) throws Exception {
+        HBaseTransactionManager tm = (HBaseTransactionManager) newTransactionManager(context);
+        tm.setIsolationLevel(IsolationLevel.SERIALIZABLE);
+        TTable tt = new TTable(connection, TEST_TABLE);
+
+        byte[] fam = Bytes.toBytes(TEST_FAMILY);
+        byte[] row = Bytes.toBytes("test-phantom-row");
+        byte[] value = Bytes.toBytes("testWrite-1");
+
+        Transaction tx1 = tm.begin();
+        Transaction tx2 = tm.begin();
+
+        assertTrue(tt.get(tx1, new Get(row).addFamily(fam)).isEmpty());
+
+        // A cell of the family read by tx1 that didn't exist when tx1 read it
+        tt.put(tx2, new Put(row).addColumn(fam, Bytes.toBytes("new-col"), value));
+        tm.commit(tx2);
+
+        tt.put(tx1, new Put(Bytes.toBytes("test-other-row")).addColumn(fam, Bytes.toBytes("testdata"), value));
+        try {
+            tm.commit(tx1);
+            fail("Transaction should not commit successfully, as it read the family written by tx2");
+        } catch (RollbackException e) {
+            // Expected
+        }
+    }
+
 }
@@ -22,8 +22,15 @@ import static org.apache.omid.committable.hbase.HBaseCommitTableConfig.INVALID_T
 import static org.apache.omid.committable.hbase.HBaseCommitTableConfig.LOW_WATERMARK_QUALIFIER;
 import static org.apache.omid.committable.hbase.HBaseCommitTableConfig.LOW_WATERMARK_ROW;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReentrantLock;
 
 
 import javax.inject.Inject;
@@ -44,6 +51,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import org.apache.phoenix.thirdparty.com.google.common.base.Optional;
+import org.apache.phoenix.thirdparty.com.google.common.base.Preconditions;
 import org.apache.phoenix.thirdparty.com.google.common.util.concurrent.AbstractFuture;
 import org.apache.phoenix.thirdparty.com.google.common.util.concurrent.ListenableFuture;
 import org.apache.phoenix.thirdparty.com.google.common.util.concurrent.SettableFuture;
@@ -160,6 +168,130 @@ public class HBaseCommitTable implements CommitTable {
 
     }
 
+    /**
+     * Writer to be shared by the threads of a client that commit their own transactions (low latency mode).
+     *
+     * The concurrent calls to {@link #atomicAddCommittedTransaction(long, long)} are coalesced, so while a batch is
+     * being written, the transactions arriving are queued and written together in the next one. The calling thread
+     * that acquires the batch lock writes the pending transactions on behalf of the others, so no extra threads are
+     * required. A batch with a single transaction uses a checkAndPut as the regular writer. Bigger batches write the
+     * commit timestamps unconditionally in a single multi-put and then read back the invalidation markers of their
+     * rows in a single multi-get. As the invalidation is a checkAndPut on the absence of the commit timestamp, and the
+     * readers give precedence to the invalidation marker, each transaction gets the same outcome it would get with a
+     * checkAndPut: it's committed if and only if its row was not invalidated.
+     */
+    private class HBaseGroupCommitWriter extends HBaseWriter {
+
+        private final int maxBatchSize;
+        private final Queue<AtomicAddRequest> pendingRequests = new ConcurrentLinkedQueue<>();
+        private final ReentrantLock batchLock = new ReentrantLock();
+
+        HBaseGroupCommitWriter(int maxBatchSize) {
+            this.maxBatchSize = maxBatchSize;
+        }
+
+        @Override
+        public boolean atomicAddCommittedTransaction(long startTimestamp, long commitTimestamp) throws IOException {
+            assert (startTimestamp < commitTimestamp);
+            AtomicAddRequest request = new AtomicAddRequest(startTimestamp, commitTimestamp);
+            pendingRequests.add(request);
+            // Requests are written in arrival order, so it may take more than one batch if many are queued before us
+            while (!request.done) {
+                batchLock.lock();
+                try {
+                    if (!request.done) {
+                        writePendingRequests();
+                    }
+                } finally {
+                    batchLock.unlock();
+                }
+            }
+            if (request.error != null) {
+                throw request.error;
+            }
+            return request.committed;
+        }
+
+        private void writePendingRequests() {
+            List<AtomicAddRequest> batch = new ArrayList<>();
+            AtomicAddRequest request;
+            while (batch.size() < maxBatchSize && (request = pendingRequests.poll()) != null) {
+                batch.add(request);
+            }
+            if (batch.isEmpty()) {
+                return;
+            }
+
+            if (batch.size() == 1) {
+                request = batch.get(0);
+                try {
+                    boolean committed =
+                            super.atomicAddCommittedTransaction(request.startTimestamp, request.commitTimestamp);
+                    request.complete(committed);
+                } catch (IOException e) {
+                    request.fail(e);
+                }
+                return;
+            }
+
+            try (Table table = hbaseConnection.getTable(TableName.valueOf(tableName))) {
+                List<Put> puts = new ArrayList<>(batch.size());
+                List<Get> gets = new ArrayList<>(batch.size());
+                for (AtomicAddRequest r : batch) {
+                    byte[] transactionRow = startTimestampToKey(r.startTimestamp);
+                    Put put = new Put(transactionRow, r.startTimestamp);
+                    put.addColumn(commitTableFamily, COMMIT_TABLE_QUALIFIER,
+                                  encodeCommitTimestamp(r.startTimestamp, r.commitTimestamp));
+                    puts.add(put);
+                    Get get = new Get(transactionRow);
+                    get.addColumn(commitTableFamily, INVALID_TX_QUALIFIER);
+                    gets.add(get);
+                }
+                table.put(puts);
+                Result[] results = table.get(gets);
+                for (int i = 0; i < batch.size(); i++) {
+                    Result result = results[i];
+                    boolean invalidated =
+                            result != null && result.containsColumn(commitTableFamily, INVALID_TX_QUALIFIER);
+                    batch.get(i).complete(!invalidated);
+                }
+            } catch (IOException e) {
+                LOG.error("Error adding a batch of {} committed transactions", batch.size(), e);
+                for (AtomicAddRequest r : batch) {
+                    r.fail(e);
+                }
+            }
+        }
+
+    }
+
+    private static class AtomicAddRequest {
+
+        final long startTimestamp;
+        final long commitTimestamp;
+
+        // The outcome is written before done, so it's visible to the requester once it sees the request done
+        volatile boolean done = false;
+        boolean committed;
+        IOException error;
+
+        AtomicAddRequest(long startTimestamp, long commitTimestamp) {
+            this.startTimestamp = startTimestamp;
+            this.commitTimestamp = commitTimestamp;
+        }
+
+        void complete(boolean committed) {
+            this.committed = committed;
+            this.done = true;
+        }
+
+        void fail(IOException error) {
+            this.error = error;
+            this.done = true;
+        }
+
+    }
+
     class HBaseClient implements Client{
 
         HBaseClient(){
@@ -171,34 +303,62 @@ public class HBaseCommitTable implements CommitTable {
             startTimestamp = removeCheckpointBits(startTimestamp);
             SettableFuture<Optional<CommitTimestamp>> f = SettableFuture.create();
             try(Table table = hbaseConnection.getTable(TableName.valueOf(tableName))) {
-                Get get = new Get(startTimestampToKey(startTimestamp));
-                get.addColumn(commitTableFamily, COMMIT_TABLE_QUALIFIER);
-                get.addColumn(commitTableFamily, INVALID_TX_QUALIFIER);
-
-                Result result = table.get(get);
+                Result result = table.get(commitTimestampGet(startTimestamp));
+                f.set(toCommitTimestamp(startTimestamp, result));
+            } catch (IOException e) {
+                LOG.error("Error getting commit timestamp for TX {}", startTimestamp, e);
+                f.setException(e);
+            }
+            return f;
+        }
 
-                if (containsInvalidTransaction(result)) {
-                    CommitTimestamp invalidCT =
-                            new CommitTimestamp(Location.COMMIT_TABLE, INVALID_TRANSACTION_MARKER, false);
-                    f.set(Optional.of(invalidCT));
-                    return f;
+        @Override
+        public ListenableFuture<Map<Long, Optional<CommitTimestamp>>> getCommitTimestamps(
+                Collection<Long> startTimestamps) {
+            SettableFuture<Map<Long, Optional<CommitTimestamp>>> f = SettableFuture.create();
+            List<Long> requestedTimestamps = new ArrayList<>(startTimestamps);
+            try(Table table = hbaseConnection.getTable(TableName.valueOf(tableName))) {
+                List<Get> gets = new ArrayList<>(requestedTimestamps.size());
+                for (Long startTimestamp : requestedTimestamps) {
+                    gets.add(commitTimestampGet(removeCheckpointBits(startTimestamp)));
                 }
 
-                if (containsATimestamp(result)) {
-                    long commitTSValue =
-                            decodeCommitTimestamp(startTimestamp, result.getValue(commitTableFamily, COMMIT_TABLE_QUALIFIER));
-                    CommitTimestamp validCT = new CommitTimestamp(Location.COMMIT_TABLE, commitTSValue, true);
-                    f.set(Optional.of(validCT));
-                } else {
-                    f.set(Optional.<CommitTimestamp>absent());
+                // A single multi-get, grouped by region server by the HBase client
+                Result[] results = table.get(gets);
+
+                Map<Long, Optional<CommitTimestamp>> commitTimestamps = new HashMap<>(requestedTimestamps.size());
+                for (int i = 0; i < results.length; i++) {
+                    long startTimestamp = requestedTimestamps.get(i);
+                    commitTimestamps.put(startTimestamp,
+                                         toCommitTimestamp(removeCheckpointBits(startTimestamp), results[i]));
                 }
+                f.set(commitTimestamps);
             } catch (IOException e) {
-                LOG.error("Error getting commit timestamp for TX {}", startTimestamp, e);
+                LOG.error("Error getting commit timestamps for {} TXs", requestedTimestamps.size(), e);
                 f.setException(e);
             }
             return f;
         }
 
+        private Get commitTimestampGet(long startTimestamp) throws IOException {
+            Get get = new Get(startTimestampToKey(startTimestamp));
+            get.addColumn(commitTableFamily, COMMIT_TABLE_QUALIFIER);
+            get.addColumn(commitTableFamily, INVALID_TX_QUALIFIER);
+            return get;
+        }
+
+        private Optional<CommitTimestamp> toCommitTimestamp(long startTimestamp, Result result) throws IOException {
+            if (containsInvalidTransaction(result)) {
+                return Optional.of(new CommitTimestamp(Location.COMMIT_TABLE, INVALID_TRANSACTION_MARKER, false));
+            }
+            if (containsATimestamp(result)) {
+                byte[] encodedCommitTimestamp = result.getValue(commitTableFamily, COMMIT_TABLE_QUALIFIER);
+                long commitTSValue = decodeCommitTimestamp(startTimestamp, encodedCommitTimestamp);
+                return Optional.of(new CommitTimestamp(Location.COMMIT_TABLE, commitTSValue, true));
+            }
+            return Optional.absent();
+        }
+
         @Override
         public ListenableFuture<Long> readLowWatermark() {
             SettableFuture<Long> f = SettableFuture.create();
@@ -317,6 +477,16 @@ public class HBaseCommitTable implements CommitTable {
         return new HBaseClient();
     }
 
+    /**
+     * Returns a writer that coalesces the concurrent calls to
+     * {@link Writer#atomicAddCommittedTransaction(long, long)} in batches of up to {@code maxBatchSize} transactions.
+     * It's meant to be shared by all the threads of a client in low latency mode.
+     */
+    public Writer getGroupCommitWriter(int maxBatchSize) {
+        Preconditions.checkArgument(maxBatchSize > 0, "maxBatchSize must be positive");
+        return new HBaseGroupCommitWriter(maxBatchSize);
+    }
+
     // ----------------------------------------------------------------------------------------------------------------
     // Helper methods
     // ----------------------------------------------------------------------------------------------------------------
@@ -21,6 +21,13 @@ import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertTrue;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 
 import org.apache.hadoop.conf.Configuration;
@@ -305,6 +312,93 @@ public class TestHBaseCommitTable {
 
     }
 
+    @Test(timeOut = 30_000)
+    public void testMultiGetOfCommitTimestamps() throws Throwable {
+
+        final long COMMITTED_ST = 0;
+        final long COMMITTED_CT = COMMITTED_ST + 1;
+        final long INVALIDATED_ST = CommitTable.MAX_CHECKPOINTS_PER_TXN;
+        final long NOT_PRESENT_ST = 2 * CommitTable.MAX_CHECKPOINTS_PER_TXN;
+
+        HBaseCommitTableConfig config = new HBaseCommitTableConfig();
+        config.setTableName(TEST_TABLE);
+        HBaseCommitTable commitTable = new HBaseCommitTable(connection, config);
+
+        Writer writer = commitTable.getWriter();
+        Client client = commitTable.getClient();
+
+        writer.addCommittedTransaction(COMMITTED_ST, COMMITTED_CT);
+        writer.flush();
+        assertTrue(client.tryInvalidateTransaction(INVALIDATED_ST).get());
+
+        // The checkpoint of the committed transaction is looked up too, and reported under its own start timestamp
+        Map<Long, Optional<CommitTimestamp>> commitTimestamps = client.getCommitTimestamps(
+                Arrays.asList(COMMITTED_ST, COMMITTED_ST + 1, INVALIDATED_ST, NOT_PRESENT_ST)).get();
+        assertEquals(commitTimestamps.size(), 4);
+        for (long st : new long[]{COMMITTED_ST, COMMITTED_ST + 1}) {
+            assertTrue(commitTimestamps.get(st).isPresent());
+            assertTrue(commitTimestamps.get(st).get().isValid());
+            assertEquals(commitTimestamps.get(st).get().getValue(), COMMITTED_CT);
+        }
+        assertTrue(commitTimestamps.get(INVALIDATED_ST).isPresent());
+        assertFalse(commitTimestamps.get(INVALIDATED_ST).get().isValid());
+        assertEquals(commitTimestamps.get(INVALIDATED_ST).get().getValue(), CommitTable.INVALID_TRANSACTION_MARKER);
+        assertFalse(commitTimestamps.get(NOT_PRESENT_ST).isPresent());
+
+    }
+
+    @Test(timeOut = 60_000)
+    public void testGroupCommitWriter() throws Throwable {
+
+        final int NUM_THREADS = 8;
+        final int TXS_PER_THREAD = 50;
+
+        HBaseCommitTableConfig config = new HBaseCommitTableConfig();
+        config.setTableName(TEST_TABLE);
+        HBaseCommitTable commitTable = new HBaseCommitTable(connection, config);
+
+        // Components under test
+        final Writer writer = commitTable.getGroupCommitWriter(16);
+        Client client = commitTable.getClient();
+
+        // Invalidate every third transaction before it tries to commit
+        for (int i = 0; i < NUM_THREADS * TXS_PER_THREAD; i += 3) {
+            assertTrue(client.tryInvalidateTransaction(startTimestampOf(i)).get());
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(NUM_THREADS);
+        List<Future<Boolean>> results = new ArrayList<>();
+        for (int i = 0; i < NUM_THREADS * TXS_PER_THREAD; i++) {
+            final long st = startTimestampOf(i);
+            results.add(executor.submit(new Callable<Boolean>() {
+                @Override
+                public Boolean call() throws Exception {
+                    return writer.atomicAddCommittedTransaction(st, st + 1);
+                }
+            }));
+        }
+        executor.shutdown();
+
+        for (int i = 0; i < NUM_THREADS * TXS_PER_THREAD; i++) {
+            long st = startTimestampOf(i);
+            boolean invalidated = i % 3 == 0;
+            assertEquals(results.get(i).get().booleanValue(), !invalidated, "Wrong outcome for tx " + st);
+            Optional<CommitTimestamp> commitTimestamp = client.getCommitTimestamp(st).get();
+            assertTrue(commitTimestamp.isPresent());
+            assertEquals(commitTimestamp.get().isValid(), !invalidated);
+            long expectedCommitTimestamp = invalidated ? CommitTable.INVALID_TRANSACTION_MARKER : st + 1;
+            assertEquals(commitTimestamp.get().getValue(), expectedCommitTimestamp);
+        }
+
+        // Transactions already committed can't be invalidated afterwards
+        assertFalse(client.tryInvalidateTransaction(startTimestampOf(1)).get());
+
+    }
+
+    private static long startTimestampOf(int tx) {
+        return (tx + 1) * CommitTable.MAX_CHECKPOINTS_PER_TXN;
+    }
+
     private static long rowCount(TableName tableName, byte[] family) throws Throwable {
         Scan scan = new Scan();
         scan.addFamily(family);
@@ -28,6 +28,7 @@ import org.apache.omid.committable.CommitTable.Client;
 import org.apache.omid.committable.CommitTable.CommitTimestamp;
 import org.apache.omid.transaction.CellUtils;
 import org.apache.omid.transaction.CellInfo;
+import org.apache.omid.transaction.StoreFileOmidInfo;
 import org.apache.hadoop.hbase.Cell;
 import org.apache.hadoop.hbase.CellUtil;
 import org.apache.hadoop.hbase.KeyValue;
@@ -66,16 +67,34 @@ public class CompactorScanner implements InternalScanner {
     private List<Cell> currentRowWorthValues = new ArrayList<Cell>();
     private final LRUMap<Long ,Optional<CommitTimestamp>> commitCache;
 
+    // Omid metadata of the cells retained, that is, of the store file written by the compaction
+    private long maxRetainedStartTimestamp = -1L;
+    private long unresolvedRetainedCells = 0L;
+
     public CompactorScanner(ObserverContext<RegionCoprocessorEnvironment> e,
                             InternalScanner internalScanner,
                             Client commitTableClient,
                             boolean isMajorCompaction,
                             boolean preserveNonTransactionallyDeletedCells) throws IOException {
+        this(e, internalScanner, commitTableClient, isMajorCompaction, preserveNonTransactionallyDeletedCells,
+             Optional.<Long>absent());
+    }
+
+    /**
+     * @param knownLowWatermark low watermark to use instead of reading it from the commit table. Any low watermark
+     *                          read previously is valid, as it only grows
+     */
+    public CompactorScanner(ObserverContext<RegionCoprocessorEnvironment> e,
+                            InternalScanner internalScanner,
+                            Client commitTableClient,
+                            boolean isMajorCompaction,
+                            boolean preserveNonTransactionallyDeletedCells,
+                            Optional<Long> knownLowWatermark) throws IOException {
         this.internalScanner = internalScanner;
         this.commitTableClient = commitTableClient;
         this.isMajorCompaction = isMajorCompaction;
         this.retainNonTransactionallyDeletedCells = preserveNonTransactionallyDeletedCells;
-        this.lowWatermark = getLowWatermarkFromCommitTable();
+        this.lowWatermark = knownLowWatermark.isPresent() ? knownLowWatermark.get() : getLowWatermarkFromCommitTable();
         // Obtain the table in which the scanner is going to operate
         this.hRegion = HBaseShims.getRegionCoprocessorRegion(e.getEnvironment());
         commitCache = new LRUMap<>(1000);
@@ -190,6 +209,18 @@ public class CompactorScanner implements InternalScanner {
     // Helper methods
     // ----------------------------------------------------------------------------------------------------------------
 
+    public long getLowWatermark() {
+        return lowWatermark;
+    }
+
+    /**
+     * @return the Omid metadata of the cells returned so far by the scanner. Once the compaction is done, it
+     *         describes the store file written
+     */
+    public StoreFileOmidInfo getRetainedCellsInfo() {
+        return new StoreFileOmidInfo(maxRetainedStartTimestamp, unresolvedRetainedCells);
+    }
+
     @VisibleForTesting
     public boolean shouldRetainNonTransactionallyDeletedCell(Cell cell) {
         return (CellUtil.isDelete(cell) || CellUtil.isDeleteFamily(cell))
@@ -316,11 +347,13 @@ public class CompactorScanner implements InternalScanner {
     private void retain(List<Cell> result, Cell cell, Optional<Cell> shadowCell) {
         LOG.trace("Retaining cell {}", cell);
         result.add(cell);
+        trackRetainedCell(cell);
         if (shadowCell.isPresent()) {
             LOG.trace("...with shadow cell {}", cell, shadowCell.get());
             result.add(shadowCell.get());
         } else {
             LOG.trace("...without shadow cell! (TS is above Low Watermark)");
+            unresolvedRetainedCells++;
         }
     }
 
@@ -329,9 +362,14 @@ public class CompactorScanner implements InternalScanner {
             LOG.trace("Retaining last cell {} with shadow cell {}", cellInfo.getCell(), cellInfo.getShadowCell());
             result.add(cellInfo.getCell());
             result.add(cellInfo.getShadowCell());
+            trackRetainedCell(cellInfo.getCell());
         }
     }
 
+    private void trackRetainedCell(Cell cell) {
+        maxRetainedStartTimestamp = Math.max(maxRetainedStartTimestamp, cell.getTimestamp());
+    }
+
     private void skipToNextColumn(Cell cell, PeekingIterator<Map.Entry<Cell, Optional<Cell>>> iter) {
         boolean isFamilyDelete = CellUtils.isFamilyDeleteCell(cell);
         while (iter.hasNext()
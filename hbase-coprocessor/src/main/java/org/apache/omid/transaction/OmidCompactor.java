@@ -18,6 +18,8 @@
 package org.apache.omid.transaction;
 
 import org.apache.phoenix.thirdparty.com.google.common.annotations.VisibleForTesting;
+import org.apache.phoenix.thirdparty.com.google.common.base.Optional;
+import org.apache.phoenix.thirdparty.com.google.common.collect.MapMaker;
 
 
 import org.apache.hadoop.hbase.client.Connection;
@@ -27,6 +29,8 @@ import org.apache.omid.committable.hbase.HBaseCommitTableConfig;
 import org.apache.hadoop.hbase.CoprocessorEnvironment;
 import org.apache.hadoop.hbase.DoNotRetryIOException;
 import org.apache.omid.HBaseShims;
+import org.apache.omid.metrics.Counter;
+import org.apache.omid.metrics.MetricsRegistry;
 import org.apache.hadoop.hbase.coprocessor.BaseRegionObserver;
 import org.apache.hadoop.hbase.coprocessor.ObserverContext;
 import org.apache.hadoop.hbase.coprocessor.RegionCoprocessorEnvironment;
@@ -35,21 +39,38 @@ import org.apache.hadoop.hbase.regionserver.InternalScanner;
 import org.apache.hadoop.hbase.regionserver.RegionConnectionFactory;
 import org.apache.hadoop.hbase.regionserver.ScanType;
 import org.apache.hadoop.hbase.regionserver.Store;
+import org.apache.hadoop.hbase.regionserver.StoreFile;
 import org.apache.hadoop.hbase.regionserver.compactions.CompactionRequest;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.Map;
 import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static org.apache.omid.committable.hbase.HBaseCommitTableConfig.COMMIT_TABLE_NAME_KEY;
+import static org.apache.omid.metrics.MetricsUtils.name;
 
 /**
  * Garbage collector for stale data: triggered upon HBase
  * compactions, it removes data from uncommitted transactions
  * older than the low watermark using a special scanner
+ *
+ * The compactor keeps the Omid metadata of the store files it writes
+ * (see {@link StoreFileOmidInfo}). When all the files of a compaction
+ * have their cells resolved with shadow cells below the last low
+ * watermark seen, the compaction doesn't access the commit table at all.
+ * The metadata is kept in memory, so the files written before the
+ * region was opened take the regular path until they are compacted.
+ * It's dropped when the region is closed (e.g. when it's split or
+ * moved to another region server).
+ *
+ * The metrics are published through the metric registry of the region
+ * server, where available (HBase 2), and aggregate all its regions.
  */
 public class OmidCompactor extends BaseRegionObserver {
 
@@ -59,6 +80,11 @@ public class OmidCompactor extends BaseRegionObserver {
             = "omid.hbase.compactor.retain.tombstones";
     private static final boolean HBASE_RETAIN_NON_TRANSACTIONALLY_DELETED_CELLS_DEFAULT = true;
 
+    private static final String HBASE_COMPACTOR_FAST_PATH_ENABLED_KEY = "omid.hbase.compactor.fastpath.enabled";
+    private static final boolean HBASE_COMPACTOR_FAST_PATH_ENABLED_DEFAULT = true;
+
+    private static final long NO_LOW_WATERMARK = -1L;
+
     final static String OMID_COMPACTABLE_CF_FLAG = "OMID_ENABLED";
 
     private boolean enableCompactorForAllFamilies = false;
@@ -78,6 +104,24 @@ public class OmidCompactor extends BaseRegionObserver {
 
     private Connection connection;
 
+    private boolean fastPathEnabled;
+
+    // Omid metadata of the store files written by this compactor, by path
+    private final Map<String, StoreFileOmidInfo> storeFileInfos = new ConcurrentHashMap<>();
+    // Scanners of the compactions in progress, to collect the metadata of their output files. HBase doesn't notify
+    // the failed compactions, so their requests are weakly referenced to let their entries be collected
+    private final Map<CompactionRequest, CompactorScanner> compactionsInProgress =
+            new MapMaker().weakKeys().makeMap();
+    // Highest low watermark read from the commit table. It only grows, so it's valid for later compactions
+    private final AtomicLong lastLowWatermark = new AtomicLong(NO_LOW_WATERMARK);
+
+    private MetricsRegistry metrics;
+    private Counter fastPathCompactionsCounter;
+    private Counter compactedStoreFilesCounter;
+    private Counter fastPathEligibleStoreFilesCounter;
+    private final AtomicLong compactedStoreFiles = new AtomicLong();
+    private final AtomicLong fastPathEligibleStoreFiles = new AtomicLong();
+
     public OmidCompactor() {
         this(false);
     }
@@ -102,12 +146,23 @@ public class OmidCompactor extends BaseRegionObserver {
         retainNonTransactionallyDeletedCells =
                 env.getConfiguration().getBoolean(HBASE_RETAIN_NON_TRANSACTIONALLY_DELETED_CELLS_KEY,
                         HBASE_RETAIN_NON_TRANSACTIONALLY_DELETED_CELLS_DEFAULT);
+        fastPathEnabled = env.getConfiguration().getBoolean(HBASE_COMPACTOR_FAST_PATH_ENABLED_KEY,
+                                                            HBASE_COMPACTOR_FAST_PATH_ENABLED_DEFAULT);
+        metrics = HBaseShims.getRegionServerMetrics((RegionCoprocessorEnvironment) env);
+        fastPathCompactionsCounter = metrics.counter(name("omid", "compactor", "fastPath", "compactions"));
+        // Counters rather than a ratio gauge, as the registry is shared by all the regions of the region server
+        compactedStoreFilesCounter = metrics.counter(name("omid", "compactor", "compactedStoreFiles"));
+        fastPathEligibleStoreFilesCounter =
+                metrics.counter(name("omid", "compactor", "fastPath", "eligibleStoreFiles"));
         LOG.info("Compactor coprocessor started");
     }
 
     @Override
     public void stop(CoprocessorEnvironment e) throws IOException {
         LOG.info("Stopping compactor coprocessor");
+        // The region is closing, so the store files it tracked may be moved, split or compacted elsewhere
+        storeFileInfos.clear();
+        compactionsInProgress.clear();
         LOG.info("Compactor coprocessor stopped");
     }
 
@@ -134,11 +189,21 @@ public class OmidCompactor extends BaseRegionObserver {
                 return scanner;
             } else {
                 boolean isMajorCompaction = request.isMajor();
-                return new CompactorScanner(env,
+                Optional<Long> knownLowWatermark = lowWatermarkForFastPath(request);
+                if (knownLowWatermark.isPresent()) {
+                    LOG.info("All the {} store files to compact are resolved below LW [{}]. Skipping commit table",
+                             request.getFiles().size(), knownLowWatermark.get());
+                    fastPathCompactionsCounter.inc();
+                }
+                CompactorScanner compactorScanner = new CompactorScanner(env,
                         scanner,
                         commitTableClient,
                         isMajorCompaction,
-                        retainNonTransactionallyDeletedCells);
+                        retainNonTransactionallyDeletedCells,
+                        knownLowWatermark);
+                updateLastLowWatermark(compactorScanner.getLowWatermark());
+                compactionsInProgress.put(request, compactorScanner);
+                return compactorScanner;
             }
         } catch (IOException e) {
             throw e;
@@ -146,4 +211,67 @@ public class OmidCompactor extends BaseRegionObserver {
             throw new DoNotRetryIOException(e);
         }
     }
+
+    @Override
+    public void postCompact(ObserverContext<RegionCoprocessorEnvironment> env,
+                            Store store,
+                            StoreFile resultFile,
+                            CompactionRequest request) throws IOException {
+        CompactorScanner compactorScanner = compactionsInProgress.remove(request);
+        if (compactorScanner == null) {
+            return; // Not an Omid compaction
+        }
+        for (StoreFile compactedFile : request.getFiles()) {
+            storeFileInfos.remove(compactedFile.getPath().toString());
+        }
+        if (resultFile != null) {
+            StoreFileOmidInfo info = compactorScanner.getRetainedCellsInfo();
+            LOG.debug("Omid info of store file {}: {}", resultFile.getPath(), info);
+            storeFileInfos.put(resultFile.getPath().toString(), info);
+        }
+    }
+
+    // ----------------------------------------------------------------------------------------------------------------
+    // Helper methods
+    // ----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the last low watermark seen when all the store files to compact are known to be resolved below it, so
+     * the commit table doesn't need to be accessed. Otherwise, returns absent.
+     */
+    private Optional<Long> lowWatermarkForFastPath(CompactionRequest request) {
+        long lowWatermark = lastLowWatermark.get();
+        boolean eligible = fastPathEnabled && lowWatermark != NO_LOW_WATERMARK && !request.getFiles().isEmpty();
+        for (StoreFile storeFile : request.getFiles()) {
+            StoreFileOmidInfo info = storeFileInfos.get(storeFile.getPath().toString());
+            compactedStoreFiles.incrementAndGet();
+            compactedStoreFilesCounter.inc();
+            if (info != null && info.isResolvedBelow(lowWatermark)) {
+                fastPathEligibleStoreFiles.incrementAndGet();
+                fastPathEligibleStoreFilesCounter.inc();
+            } else {
+                eligible = false;
+            }
+        }
+        return eligible ? Optional.of(lowWatermark) : Optional.<Long>absent();
+    }
+
+    private void updateLastLowWatermark(long lowWatermark) {
+        long current = lastLowWatermark.get();
+        while (lowWatermark > current && !lastLowWatermark.compareAndSet(current, lowWatermark)) {
+            current = lastLowWatermark.get();
+        }
+    }
+
+    @VisibleForTesting
+    double getFastPathEligibleStoreFilesRatio() {
+        long compacted = compactedStoreFiles.get();
+        return compacted == 0 ? 0.0 : (double) fastPathEligibleStoreFiles.get() / compacted;
+    }
+
+    @VisibleForTesting
+    Optional<StoreFileOmidInfo> getStoreFileInfo(String storeFilePath) {
+        return Optional.fromNullable(storeFileInfos.get(storeFilePath));
+    }
+
 }
@@ -21,6 +21,7 @@ import com.google.protobuf.InvalidProtocolBufferException;
 
 import org.apache.hadoop.hbase.client.Connection;
 import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.io.TimeRange;
 
 import org.apache.hadoop.hbase.coprocessor.BaseRegionObserver;
 import org.apache.hadoop.hbase.filter.Filter;
@@ -31,6 +32,7 @@ import org.apache.hadoop.hbase.util.Bytes;
 import org.apache.omid.committable.CommitTable;
 import org.apache.omid.committable.hbase.HBaseCommitTable;
 import org.apache.omid.committable.hbase.HBaseCommitTableConfig;
+import org.apache.omid.metrics.MetricsRegistry;
 import org.apache.omid.proto.TSOProto;
 import org.apache.omid.transaction.AbstractTransaction.VisibilityLevel;
 import org.apache.omid.HBaseShims;
@@ -57,11 +59,21 @@ import static org.apache.omid.committable.hbase.HBaseCommitTableConfig.COMMIT_TA
 
 /**
  * Server side filtering to identify the transaction snapshot.
+ *
+ * The read amplification counters of the visibility filters (see {@link VisibilityFilterMetrics}) are registered in
+ * the metric registry of the region server, so they aggregate all its regions. HBase 1.3 doesn't expose that
+ * registry to the coprocessors, so they are discarded there.
  */
 public class OmidSnapshotFilter extends BaseRegionObserver {
 
     private static final Logger LOG = LoggerFactory.getLogger(OmidSnapshotFilter.class);
 
+    // When enabled, the upper bound of the time range set by TTable is removed so that the visibility filter, and
+    // not the region scanner, gets the versions newer than the snapshot and can seek over them instead of having
+    // them skipped one by one
+    static final String SEEK_ENABLED_KEY = "omid.hbase.snapshot.filter.seek.enabled";
+    static final boolean SEEK_ENABLED_DEFAULT = true;
+
     private HBaseCommitTableConfig commitTableConf = null;
     private RegionCoprocessorEnvironment env = null;
     private Queue<SnapshotFilterImpl> snapshotFilterQueue = new ConcurrentLinkedQueue<>();
@@ -69,6 +81,10 @@ public class OmidSnapshotFilter extends BaseRegionObserver {
     private CommitTable.Client inMemoryCommitTable = null;
     private CommitTable.Client commitTableClient;
     private Connection connection;
+    private boolean seekEnabled = SEEK_ENABLED_DEFAULT;
+
+    private MetricsRegistry metrics;
+    private VisibilityFilterMetrics filterMetrics = VisibilityFilterMetrics.NULL_METRICS;
 
     public OmidSnapshotFilter(CommitTable.Client commitTableClient) {
         LOG.info("Compactor coprocessor initialized");
@@ -91,7 +107,12 @@ public class OmidSnapshotFilter extends BaseRegionObserver {
         connection = RegionConnectionFactory
                 .getConnection(RegionConnectionFactory.ConnectionType.READ_CONNECTION, (RegionCoprocessorEnvironment) env);
         commitTableClient = new HBaseCommitTable(connection, commitTableConf).getClient();
-        LOG.info("Snapshot filter started");
+        seekEnabled = env.getConfiguration().getBoolean(SEEK_ENABLED_KEY, SEEK_ENABLED_DEFAULT);
+        // Published along with the metrics of the region server, where HBase allows it
+        metrics = HBaseShims.getRegionServerMetrics(this.env);
+        filterMetrics = new VisibilityFilterMetrics(metrics);
+        LOG.info("Snapshot filter started (seek over versions newer than the snapshot {})",
+                 seekEnabled ? "enabled" : "disabled");
     }
 
     @Override
@@ -122,8 +143,11 @@ public class OmidSnapshotFilter extends BaseRegionObserver {
         snapshotFilterMap.put(get, snapshotFilter);
 
         get.setMaxVersions();
+        if (seekEnabled && isBoundedBySnapshot(get.getTimeRange(), hbaseTransaction)) {
+            get.setTimeRange(get.getTimeRange().getMin(), Long.MAX_VALUE);
+        }
         Filter newFilter = TransactionFilters.getVisibilityFilter(get.getFilter(),
-                snapshotFilter, hbaseTransaction);
+                snapshotFilter, hbaseTransaction, filterMetrics);
         get.setFilter(newFilter);
     }
 
@@ -161,12 +185,21 @@ public class OmidSnapshotFilter extends BaseRegionObserver {
         SnapshotFilterImpl snapshotFilter = getSnapshotFilter(e);
 
         scan.setMaxVersions();
+        if (seekEnabled && isBoundedBySnapshot(scan.getTimeRange(), hbaseTransaction)) {
+            scan.setTimeRange(scan.getTimeRange().getMin(), Long.MAX_VALUE);
+        }
         Filter newFilter = TransactionFilters.getVisibilityFilter(scan.getFilter(),
-                snapshotFilter, hbaseTransaction);
+                snapshotFilter, hbaseTransaction, filterMetrics);
         scan.setFilter(newFilter);
         return;
     }
 
+    // True when the upper bound of the time range is the one set by TTable for the snapshot of the transaction, which
+    // the visibility filter enforces by itself. A narrower range requested by the user is kept
+    private static boolean isBoundedBySnapshot(TimeRange timeRange, HBaseTransaction hbaseTransaction) {
+        return timeRange.getMax() == hbaseTransaction.getReadTimestamp() + 1;
+    }
+
     private HBaseTransaction getHBaseTransaction(byte[] byteTransaction, boolean isLowLatency)
             throws InvalidProtocolBufferException {
         TSOProto.Transaction transaction = TSOProto.Transaction.parseFrom(byteTransaction);
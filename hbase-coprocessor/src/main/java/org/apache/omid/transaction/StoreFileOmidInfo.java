@@ -0,0 +1,69 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.omid.transaction;
+
+import org.apache.phoenix.thirdparty.com.google.common.base.MoreObjects;
+
+/**
+ * Omid related metadata of a store file written by the Omid compactor
+ */
+public class StoreFileOmidInfo {
+
+    private final long maxStartTimestamp;
+    private final long unresolvedCells;
+
+    public StoreFileOmidInfo(long maxStartTimestamp, long unresolvedCells) {
+        this.maxStartTimestamp = maxStartTimestamp;
+        this.unresolvedCells = unresolvedCells;
+    }
+
+    /**
+     * @return the max start timestamp of the transactional cells in the file, or -1 if there is none
+     */
+    public long getMaxStartTimestamp() {
+        return maxStartTimestamp;
+    }
+
+    /**
+     * @return the number of cells in the file written without their shadow cell
+     */
+    public long getUnresolvedCells() {
+        return unresolvedCells;
+    }
+
+    public boolean isFullyShadowCelled() {
+        return unresolvedCells == 0;
+    }
+
+    /**
+     * A file can be compacted without accessing the commit table when all its cells have their shadow cell and
+     * were written by transactions started below the low watermark
+     */
+    public boolean isResolvedBelow(long lowWatermark) {
+        return isFullyShadowCelled() && maxStartTimestamp <= lowWatermark;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("maxStartTimestamp", maxStartTimestamp)
+                .add("unresolvedCells", unresolvedCells)
+                .toString();
+    }
+
+}
@@ -26,6 +26,15 @@ public class TransactionFilters {
     public static Filter getVisibilityFilter(Filter cellFilter,
                                              SnapshotFilterImpl regionAccessWrapper,
                                              HBaseTransaction hbaseTransaction) {
-        return new CellSkipFilterBase(new TransactionVisibilityFilterBase(cellFilter, regionAccessWrapper, hbaseTransaction));
+        return getVisibilityFilter(cellFilter, regionAccessWrapper, hbaseTransaction,
+                VisibilityFilterMetrics.NULL_METRICS);
+    }
+
+    public static Filter getVisibilityFilter(Filter cellFilter,
+                                             SnapshotFilterImpl regionAccessWrapper,
+                                             HBaseTransaction hbaseTransaction,
+                                             VisibilityFilterMetrics metrics) {
+        return new CellSkipFilterBase(new TransactionVisibilityFilterBase(cellFilter, regionAccessWrapper,
+                hbaseTransaction, metrics));
     }
 }
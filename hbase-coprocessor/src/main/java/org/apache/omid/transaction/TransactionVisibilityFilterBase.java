@@ -23,6 +23,8 @@ import org.apache.phoenix.thirdparty.com.google.common.base.Optional;
 import org.apache.commons.collections4.map.LRUMap;
 import org.apache.hadoop.hbase.Cell;
 import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.KeyValue;
 import org.apache.hadoop.hbase.client.Get;
 import org.apache.hadoop.hbase.client.Result;
 import org.apache.hadoop.hbase.filter.Filter;
@@ -51,19 +53,58 @@ public class TransactionVisibilityFilterBase extends OmidFilterBase {
     // So no need to keep row name
     private final Map<ImmutableBytesWritable, Long> familyDeletionCache;
 
+    // Versions written after the read timestamp can never be part of the snapshot, so the filter seeks over them
+    private final long maxVisibleTimestamp;
+    // Set when the last cell returned SEEK_NEXT_USING_HINT. Points to the newest version that may be visible
+    private Cell nextCellHint;
+
+    private final VisibilityFilterMetrics metrics;
+    private long cellsRead;
+    private long cellsReturned;
+    private long seeks;
+
     public TransactionVisibilityFilterBase(Filter cellFilter,
                                            SnapshotFilterImpl snapshotFilter,
                                            HBaseTransaction hbaseTransaction) {
+        this(cellFilter, snapshotFilter, hbaseTransaction, VisibilityFilterMetrics.NULL_METRICS);
+    }
+
+    public TransactionVisibilityFilterBase(Filter cellFilter,
+                                           SnapshotFilterImpl snapshotFilter,
+                                           HBaseTransaction hbaseTransaction,
+                                           VisibilityFilterMetrics metrics) {
         this.userFilter = cellFilter;
         this.snapshotFilter = snapshotFilter;
         commitCache = new LRUMap<>(1000);
         this.hbaseTransaction = hbaseTransaction;
         familyDeletionCache = new HashMap<>();
-
+        this.maxVisibleTimestamp = hbaseTransaction.getReadTimestamp();
+        this.metrics = metrics;
     }
 
     @Override
     public ReturnCode filterKeyValue(Cell v) throws IOException {
+        cellsRead++;
+        nextCellHint = null;
+        if (v.getTimestamp() > maxVisibleTimestamp) {
+            // Neither data nor shadow cells written after the snapshot are needed. Instead of being handed every
+            // newer version one by one, ask the scanner to jump to the newest version that may be visible
+            nextCellHint = new KeyValue(v.getRowArray(), v.getRowOffset(), v.getRowLength(),
+                                        v.getFamilyArray(), v.getFamilyOffset(), v.getFamilyLength(),
+                                        v.getQualifierArray(), v.getQualifierOffset(), v.getQualifierLength(),
+                                        maxVisibleTimestamp, KeyValue.Type.Maximum,
+                                        HConstants.EMPTY_BYTE_ARRAY, 0, 0);
+            seeks++;
+            return ReturnCode.SEEK_NEXT_USING_HINT;
+        }
+        ReturnCode code = filterVisibleKeyValue(v);
+        if (code == ReturnCode.INCLUDE || code == ReturnCode.INCLUDE_AND_NEXT_COL) {
+            cellsReturned++;
+        }
+        return code;
+    }
+
+    private ReturnCode filterVisibleKeyValue(Cell v) throws IOException {
         if (CellUtils.isShadowCell(v)) {
             Long commitTs =  Bytes.toLong(CellUtil.cloneValue(v));
             commitCache.put(v.getTimestamp(), commitTs);
@@ -179,6 +220,8 @@ public class TransactionVisibilityFilterBase extends OmidFilterBase {
 
     @Override
     public void reset() throws IOException {
+        metrics.update(cellsRead, cellsReturned, seeks);
+        cellsRead = cellsReturned = seeks = 0;
         familyDeletionCache.clear();
         if (userFilter != null) {
             userFilter.reset();
@@ -229,6 +272,9 @@ public class TransactionVisibilityFilterBase extends OmidFilterBase {
 
     @Override
     public Cell getNextCellHint(Cell currentKV) throws IOException {
+        if (nextCellHint != null) {
+            return nextCellHint;
+        }
         if (userFilter != null) {
             return userFilter.getNextCellHint(currentKV);
         }
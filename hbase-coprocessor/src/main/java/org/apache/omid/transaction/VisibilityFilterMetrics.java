@@ -0,0 +1,57 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.omid.transaction;
+
+import org.apache.omid.metrics.Counter;
+import org.apache.omid.metrics.MetricsRegistry;
+import org.apache.omid.metrics.NullMetricsProvider;
+
+import static org.apache.omid.metrics.MetricsUtils.name;
+
+/**
+ * Counters shared by all the {@link TransactionVisibilityFilterBase} instances of a region server. Comparing the cells
+ * the region scanners handed to the filter with the cells the filter returned gives the read amplification caused by
+ * old versions and shadow cells. Filters accumulate their counts locally and flush them once per row.
+ */
+public class VisibilityFilterMetrics {
+
+    static final VisibilityFilterMetrics NULL_METRICS = new VisibilityFilterMetrics(new NullMetricsProvider());
+
+    private final Counter cellsReadCounter;
+    private final Counter cellsReturnedCounter;
+    private final Counter seeksCounter;
+
+    public VisibilityFilterMetrics(MetricsRegistry metrics) {
+        this.cellsReadCounter = metrics.counter(name("omid", "snapshotFilter", "cellsRead"));
+        this.cellsReturnedCounter = metrics.counter(name("omid", "snapshotFilter", "cellsReturned"));
+        this.seeksCounter = metrics.counter(name("omid", "snapshotFilter", "seeks"));
+    }
+
+    void update(long cellsRead, long cellsReturned, long seeks) {
+        if (cellsRead > 0) {
+            cellsReadCounter.inc(cellsRead);
+        }
+        if (cellsReturned > 0) {
+            cellsReturnedCounter.inc(cellsReturned);
+        }
+        if (seeks > 0) {
+            seeksCounter.inc(seeks);
+        }
+    }
+
+}
@@ -18,10 +18,13 @@
 package org.apache.omid.transaction;
 
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertNull;
@@ -1491,6 +1494,45 @@ public class TestCompaction {
     }
 
 
+    @Test(timeOut = 60_000)
+    public void testCompactionOfResolvedStoreFilesSkipsCommitTable() throws Throwable {
+        String TEST_TABLE = "testCompactionOfResolvedStoreFilesSkipsCommitTable";
+        createTableIfNotExists(TEST_TABLE, Bytes.toBytes(TEST_FAMILY));
+        TTable txTable = new TTable(connection, TEST_TABLE);
+
+        final int ROWS_TO_ADD = 5;
+        for (int i = 0; i < ROWS_TO_ADD; ++i) {
+            Transaction tx = tm.begin();
+            Put put = new Put(Bytes.toBytes("row-" + i));
+            put.addColumn(fam, qual, data);
+            txTable.put(tx, put);
+            tm.commit(tx);
+        }
+
+        // The first compaction reads the store file flushed, so it has to read the LWM from the commit table
+        HBaseTransaction lwmTx = (HBaseTransaction) tm.begin();
+        compactWithLWM(lwmTx.getStartTimestamp(), TEST_TABLE);
+
+        OmidCompactor omidCompactor = (OmidCompactor) hbaseCluster.getRegions(Bytes.toBytes(TEST_TABLE)).get(0)
+                .getCoprocessorHost().findCoprocessor(OmidCompactor.class.getName());
+        assertEquals(omidCompactor.getFastPathEligibleStoreFilesRatio(), 0.0);
+
+        // The store file written by the first compaction has all its cells shadow-celled below the LWM...
+        setCompactorLWM(lwmTx.getStartTimestamp(), TEST_TABLE);
+        CommitTable.Client commitTableClient = omidCompactor.commitTableClient;
+        LOG.info("Compacting table {}", TEST_TABLE);
+        admin.majorCompact(TableName.valueOf(TEST_TABLE));
+        LOG.info("Sleeping for 3 secs");
+        Thread.sleep(3000);
+        LOG.info("Waking up after 3 secs");
+
+        // ...so compacting it again doesn't access the commit table
+        verify(commitTableClient, never()).readLowWatermark();
+        verify(commitTableClient, never()).getCommitTimestamp(anyLong());
+        assertTrue(omidCompactor.getFastPathEligibleStoreFilesRatio() > 0.0);
+        assertEquals(rowCount(TEST_TABLE, fam), ROWS_TO_ADD, "Rows in table after compacting should be " + ROWS_TO_ADD);
+    }
+
     private void setCompactorLWM(long lwm, String tableName) throws Exception {
         OmidCompactor omidCompactor = (OmidCompactor) hbaseCluster.getRegions(Bytes.toBytes(tableName)).get(0)
                 .getCoprocessorHost().findCoprocessor(OmidCompactor.class.getName());
@@ -19,19 +19,24 @@ package org.apache.omid.transaction;
 
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertTrue;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
 import org.apache.hadoop.hbase.Coprocessor;
 import org.apache.hadoop.hbase.HBaseTestingUtility;
 import org.apache.hadoop.hbase.HColumnDescriptor;
@@ -48,6 +53,8 @@ import org.apache.hadoop.hbase.client.Result;
 import org.apache.hadoop.hbase.client.ResultScanner;
 import org.apache.hadoop.hbase.client.Scan;
 import org.apache.hadoop.hbase.client.Table;
+import org.apache.hadoop.hbase.coprocessor.ObserverContext;
+import org.apache.hadoop.hbase.coprocessor.RegionCoprocessorEnvironment;
 import org.apache.hadoop.hbase.filter.BinaryComparator;
 import org.apache.hadoop.hbase.filter.CompareFilter;
 import org.apache.hadoop.hbase.filter.FamilyFilter;
@@ -55,6 +62,8 @@ import org.apache.hadoop.hbase.filter.Filter;
 import org.apache.hadoop.hbase.filter.FilterList;
 import org.apache.hadoop.hbase.filter.SingleColumnValueFilter;
 import org.apache.hadoop.hbase.filter.SubstringComparator;
+import org.apache.hadoop.hbase.regionserver.HRegion;
+import org.apache.hadoop.hbase.regionserver.RegionScanner;
 import org.apache.hadoop.hbase.util.Bytes;
 import org.apache.omid.TestUtils;
 import org.apache.omid.committable.CommitTable;
@@ -63,6 +72,7 @@ import org.apache.omid.metrics.NullMetricsProvider;
 import org.apache.omid.timestamp.storage.HBaseTimestampStorageConfig;
 import org.apache.omid.tso.TSOServer;
 import org.apache.omid.tso.TSOServerConfig;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
@@ -977,5 +987,129 @@ public class TestSnapshotFilter {
         tt.close();
     }
 
+    @Test (timeOut = 60_000)
+    public void testFilterSeeksOverVersionsNewerThanSnapshot() throws Throwable {
+        String TEST_TABLE = "testFilterSeeksOverVersionsNewerThanSnapshot";
+        byte[] rowName = Bytes.toBytes("row1");
+        byte[] famName = Bytes.toBytes(TEST_FAMILY);
+        byte[] colName = Bytes.toBytes("col1");
+        byte[] dataValue1 = Bytes.toBytes("testWrite-1");
+        byte[] dataValue2 = Bytes.toBytes("testWrite-2");
+
+        createTableIfNotExists(TEST_TABLE, famName);
+        TTable tt = new TTable(connection, TEST_TABLE);
+
+        Transaction tx1 = tm.begin();
+        tt.put(tx1, new Put(rowName).addColumn(famName, colName, dataValue1));
+        tm.commit(tx1);
+
+        Transaction snapshotTx = tm.begin();
+
+        // Newer committed versions that the snapshot must not see
+        for (int i = 0; i < 2; i++) {
+            Transaction tx = tm.begin();
+            tt.put(tx, new Put(rowName).addColumn(famName, colName, dataValue2));
+            tm.commit(tx);
+        }
+
+        Result result = tt.get(snapshotTx, new Get(rowName).addColumn(famName, colName));
+        assertTrue(Bytes.equals(result.getValue(famName, colName), dataValue1), "Unexpected value for SI read");
+
+        Table htable = connection.getTable(TableName.valueOf(TEST_TABLE));
+        SnapshotFilterImpl snapshotFilter = new SnapshotFilterImpl(new HTableAccessWrapper(htable, htable),
+                tm.getCommitTableClient());
+        Filter newFilter = TransactionFilters.getVisibilityFilter(null,
+                snapshotFilter, (HBaseTransaction) snapshotTx);
+
+        Scan scan = new Scan().setMaxVersions();
+        ResultScanner scanner = htable.getScanner(scan);
+        int seeks = 0;
+        for (Result row : scanner) {
+            for (Cell cell : row.rawCells()) {
+                if (cell.getTimestamp() > snapshotTx.getReadTimestamp()) {
+                    assertEquals(newFilter.filterKeyValue(cell), Filter.ReturnCode.SEEK_NEXT_USING_HINT);
+                    Cell hint = newFilter.getNextCellHint(cell);
+                    assertEquals(hint.getTimestamp(), snapshotTx.getReadTimestamp());
+                    assertTrue(CellUtil.matchingColumn(hint, cell));
+                    seeks++;
+                }
+            }
+        }
+        // Two newer data cells plus their shadow cells
+        assertEquals(seeks, 4);
+        tm.commit(snapshotTx);
+        tt.close();
+    }
+
+    @Test (timeOut = 60_000)
+    @SuppressWarnings("unchecked")
+    public void testScanBoundedBySnapshotIsLiftedByTheCoprocessor() throws Throwable {
+        String TEST_TABLE = "testScanBoundedBySnapshotIsLiftedByTheCoprocessor";
+        byte[] rowName = Bytes.toBytes("row1");
+        byte[] famName = Bytes.toBytes(TEST_FAMILY);
+        byte[] colName = Bytes.toBytes("col1");
+        byte[] dataValue1 = Bytes.toBytes("testWrite-1");
+        byte[] dataValue2 = Bytes.toBytes("testWrite-2");
+
+        createTableIfNotExists(TEST_TABLE, famName);
+        Table htable = connection.getTable(TableName.valueOf(TEST_TABLE));
+        AttributeSetSnapshotFilter attributeSetFilter = spy(new AttributeSetSnapshotFilter(htable));
+        TTable tt = new TTable(htable, attributeSetFilter);
+
+        Transaction tx1 = tm.begin();
+        tt.put(tx1, new Put(rowName).addColumn(famName, colName, dataValue1));
+        tm.commit(tx1);
+        // Once its shadow cells are written, the commit of tx1 is only known through them
+        assertFalse(commitTable.getClient().getCommitTimestamp(tx1.getStartTimestamp()).get().isPresent());
+
+        Transaction snapshotTx = tm.begin();
+
+        // Newer committed versions that the snapshot must not see
+        for (int i = 0; i < 2; i++) {
+            Transaction tx = tm.begin();
+            tt.put(tx, new Put(rowName).addColumn(famName, colName, dataValue2));
+            tm.commit(tx);
+        }
+
+        ResultScanner resultScanner = tt.getScanner(snapshotTx, new Scan());
+        Result result = resultScanner.next();
+        assertTrue(Bytes.equals(result.getValue(famName, colName), dataValue1), "Unexpected value for SI scan");
+        resultScanner.close();
+
+        // The scan sent by TTable, bounded by the snapshot of the transaction
+        ArgumentCaptor<Scan> scanCaptor = ArgumentCaptor.forClass(Scan.class);
+        verify(attributeSetFilter).getScanner(scanCaptor.capture(), any(HBaseTransaction.class));
+        Scan scan = new Scan(scanCaptor.getValue());
+        assertEquals(scan.getTimeRange().getMax(), snapshotTx.getReadTimestamp() + 1);
+
+        HRegion region = hbaseCluster.getRegions(Bytes.toBytes(TEST_TABLE)).get(0);
+        OmidSnapshotFilter coprocessor = (OmidSnapshotFilter) region.getCoprocessorHost()
+                .findCoprocessor(OmidSnapshotFilter.class.getName());
+        ObserverContext<RegionCoprocessorEnvironment> context = mock(ObserverContext.class);
+        when(context.getEnvironment()).thenReturn((RegionCoprocessorEnvironment) region.getCoprocessorHost()
+                .findCoprocessorEnvironment(OmidSnapshotFilter.class.getName()));
+
+        coprocessor.preScannerOpen(context, scan);
+        assertEquals(scan.getTimeRange().getMax(), Long.MAX_VALUE, "The snapshot bound should be lifted");
+
+        // The region scanner now hands the newer versions and all the shadow cells to the visibility filter, which
+        // seeks over the former and finds the commit of tx1 in its shadow cell
+        List<Cell> cells = new ArrayList<>();
+        RegionScanner regionScanner = region.getScanner(scan);
+        regionScanner.next(cells);
+        regionScanner.close();
+        assertEquals(cells.size(), 1);
+        assertEquals(cells.get(0).getTimestamp(), tx1.getStartTimestamp());
+        assertTrue(Bytes.equals(CellUtil.cloneValue(cells.get(0)), dataValue1), "Unexpected value for SI scan");
+
+        // A narrower range than the snapshot is the user's, and it's kept
+        Scan narrowerScan = new Scan(scanCaptor.getValue());
+        narrowerScan.setTimeRange(0, tx1.getStartTimestamp());
+        coprocessor.preScannerOpen(context, narrowerScan);
+        assertEquals(narrowerScan.getTimeRange().getMax(), tx1.getStartTimestamp());
+
+        tm.commit(snapshotTx);
+        tt.close();
+    }
 
 }
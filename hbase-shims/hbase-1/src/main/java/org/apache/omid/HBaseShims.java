@@ -32,6 +32,8 @@ import org.apache.hadoop.hbase.regionserver.HRegionServer;
 import org.apache.hadoop.hbase.regionserver.Region;
 import org.apache.hadoop.hbase.regionserver.Store;
 import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.omid.metrics.MetricsRegistry;
+import org.apache.omid.metrics.NullMetricsProvider;
 
 import java.io.IOException;
 
@@ -103,4 +105,12 @@ public class HBaseShims {
         return new CoprocessorHConnection(config, (HRegionServer)env.getRegionServerServices());
     }
 
+    /**
+     * HBase 1.3 doesn't expose the metrics of the region server to the coprocessors, so the metrics of the Omid
+     * coprocessors are discarded
+     */
+    public static MetricsRegistry getRegionServerMetrics(RegionCoprocessorEnvironment env) {
+        return new NullMetricsProvider();
+    }
+
 }
\ No newline at end of file
@@ -20,6 +20,7 @@ package org.apache.hadoop.hbase.coprocessor;
 import org.apache.hadoop.hbase.regionserver.InternalScanner;
 import org.apache.hadoop.hbase.regionserver.ScanType;
 import org.apache.hadoop.hbase.regionserver.Store;
+import org.apache.hadoop.hbase.regionserver.StoreFile;
 import org.apache.hadoop.hbase.regionserver.compactions.CompactionLifeCycleTracker;
 import org.apache.hadoop.hbase.regionserver.compactions.CompactionRequest;
 import java.io.IOException;
@@ -44,6 +45,20 @@ public abstract class BaseRegionObserver implements RegionObserver, RegionCoproc
         return scanner;
     }
 
+    public void postCompact(ObserverContext<RegionCoprocessorEnvironment> c,
+                            Store store,
+                            StoreFile resultFile,
+                            CompactionLifeCycleTracker tracker,
+                            CompactionRequest request) throws IOException {
+        postCompact(c, store, resultFile, request);
+    }
+
+    public void postCompact(ObserverContext<RegionCoprocessorEnvironment> c,
+                            Store store,
+                            StoreFile resultFile,
+                            CompactionRequest request) throws IOException {
+    }
+
     @Override
     public Optional getRegionObserver() {
         return Optional.of(this);
@@ -37,6 +37,7 @@ import org.apache.hadoop.hbase.regionserver.HRegionServer;
 import org.apache.hadoop.hbase.regionserver.Region;
 import org.apache.hadoop.hbase.regionserver.Store;
 import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.omid.metrics.MetricsRegistry;
 
 import java.io.IOException;
 
@@ -107,4 +108,12 @@ public class HBaseShims {
     public static Connection newServerConnection(Configuration config, RegionCoprocessorEnvironment env) throws IOException {
         return env.createConnection(config);
     }
+
+    /**
+     * Returns the metrics registry shared by the coprocessors of the region server, so the metrics of the Omid
+     * coprocessors are published along with the ones of the region server
+     */
+    public static MetricsRegistry getRegionServerMetrics(RegionCoprocessorEnvironment env) {
+        return new RegionServerMetricsRegistry(env.getMetricRegistryForRegionServer());
+    }
 }
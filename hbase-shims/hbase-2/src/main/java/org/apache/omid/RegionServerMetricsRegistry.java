@@ -0,0 +1,140 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.omid;
+
+import org.apache.omid.metrics.Counter;
+import org.apache.omid.metrics.Gauge;
+import org.apache.omid.metrics.Histogram;
+import org.apache.omid.metrics.Meter;
+import org.apache.omid.metrics.MetricsRegistry;
+import org.apache.omid.metrics.Timer;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Omid {@link MetricsRegistry} backed by the metric registry that HBase shares among the coprocessors of a region
+ * server. Metrics registered under the same name by several regions are shared by all of them.
+ */
+class RegionServerMetricsRegistry implements MetricsRegistry {
+
+    private final org.apache.hadoop.hbase.metrics.MetricRegistry registry;
+
+    RegionServerMetricsRegistry(org.apache.hadoop.hbase.metrics.MetricRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public <T extends Number> void gauge(String name, final Gauge<T> gauge) {
+        registry.register(name, new org.apache.hadoop.hbase.metrics.Gauge<T>() {
+            @Override
+            public T getValue() {
+                return gauge.getValue();
+            }
+        });
+    }
+
+    @Override
+    public Counter counter(String name) {
+        final org.apache.hadoop.hbase.metrics.Counter counter = registry.counter(name);
+        return new Counter() {
+            @Override
+            public void inc() {
+                counter.increment();
+            }
+
+            @Override
+            public void inc(long n) {
+                counter.increment(n);
+            }
+
+            @Override
+            public void dec() {
+                counter.decrement();
+            }
+
+            @Override
+            public void dec(long n) {
+                counter.decrement(n);
+            }
+        };
+    }
+
+    @Override
+    public Timer timer(String name) {
+        final org.apache.hadoop.hbase.metrics.Timer timer = registry.timer(name);
+        return new Timer() {
+
+            private long startTimeInNs;
+
+            @Override
+            public void start() {
+                startTimeInNs = System.nanoTime();
+            }
+
+            @Override
+            public void stop() {
+                update(System.nanoTime() - startTimeInNs);
+            }
+
+            @Override
+            public void update(long durationInNs) {
+                timer.update(durationInNs, TimeUnit.NANOSECONDS);
+            }
+
+            @Override
+            public void update(long durationInNs, long count) {
+                for (long i = 0; i < count; i++) {
+                    timer.update(durationInNs, TimeUnit.NANOSECONDS);
+                }
+            }
+        };
+    }
+
+    @Override
+    public Meter meter(String name) {
+        final org.apache.hadoop.hbase.metrics.Meter meter = registry.meter(name);
+        return new Meter() {
+            @Override
+            public void mark() {
+                meter.mark();
+            }
+
+            @Override
+            public void mark(long n) {
+                meter.mark(n);
+            }
+        };
+    }
+
+    @Override
+    public Histogram histogram(String name) {
+        final org.apache.hadoop.hbase.metrics.Histogram histogram = registry.histogram(name);
+        return new Histogram() {
+            @Override
+            public void update(int value) {
+                histogram.update(value);
+            }
+
+            @Override
+            public void update(long value) {
+                histogram.update(value);
+            }
+        };
+    }
+
+}
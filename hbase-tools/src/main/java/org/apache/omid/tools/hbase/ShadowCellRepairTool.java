@@ -0,0 +1,550 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.omid.tools.hbase;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.HBaseConfiguration;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.Connection;
+import org.apache.hadoop.hbase.client.ConnectionFactory;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.RegionLocator;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.ResultScanner;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.client.Table;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.omid.committable.CommitTable;
+import org.apache.omid.committable.CommitTable.CommitTimestamp;
+import org.apache.omid.committable.hbase.HBaseCommitTable;
+import org.apache.omid.committable.hbase.HBaseCommitTableConfig;
+import org.apache.omid.transaction.CellUtils;
+import org.apache.phoenix.thirdparty.com.google.common.annotations.VisibleForTesting;
+import org.apache.phoenix.thirdparty.com.google.common.base.Optional;
+import org.apache.phoenix.thirdparty.com.google.common.util.concurrent.RateLimiter;
+import org.apache.phoenix.thirdparty.com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.beust.jcommander.JCommander;
+import com.beust.jcommander.Parameter;
+import com.beust.jcommander.ParameterException;
+import com.beust.jcommander.ParametersDelegate;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Background job that writes the shadow cells that committed transactions didn't manage to write (e.g. because the
+ * client crashed before the post-commit phase finished), so readers don't have to check the commit table for them.
+ *
+ * Each pass scans the regions of the given tables in parallel, resolves the commit timestamps of the cells without
+ * shadow cell in batches and writes the missing shadow cells. Only the transactions started before the low
+ * watermark read at the beginning of the pass are considered. As the TSO aborts the transactions that try to commit
+ * after the low watermark has passed their start timestamp, all the cells of the transactions considered were
+ * written before the pass started, so they are found by the pass.
+ *
+ * Optionally, the commit table entries of the transactions whose cells were all healed are deleted at the end of a
+ * complete pass. This is only safe if the pass covers all the tables written transactionally; otherwise, the cells of
+ * the tables not scanned would become invisible.
+ *
+ * The regions completed are recorded in a checkpoint file, so a pass interrupted is resumed where it was left. Regions
+ * are identified by their start and end keys, so the regions split or merged meanwhile are scanned again. The
+ * transactions healed are not recorded, so a resumed pass doesn't delete any commit table entries; the next complete
+ * pass will.
+ */
+public class ShadowCellRepairTool {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ShadowCellRepairTool.class);
+
+    private static final String CHECKPOINT_LWM_PREFIX = "lowWatermark=";
+
+    private final JCommander commandLine;
+    private final Config config = new Config();
+
+    public ShadowCellRepairTool(String... args) {
+        commandLine = new JCommander(config);
+        try {
+            commandLine.parse(args);
+        } catch (ParameterException ex) {
+            commandLine.usage();
+            throw new IllegalArgumentException(ex.getMessage());
+        }
+    }
+
+    public static void main(String... args) throws Exception {
+
+        ShadowCellRepairTool repairTool = new ShadowCellRepairTool(args);
+        repairTool.run(HBaseConfiguration.create());
+
+    }
+
+    public void run(Configuration hbaseConf) throws IOException, InterruptedException {
+        config.loginFlags.setPrincipal(hbaseConf.get(SecureHBaseConfig.HBASE_CLIENT_PRINCIPAL_KEY));
+        config.loginFlags.setKeytab(hbaseConf.get(SecureHBaseConfig.HBASE_CLIENT_KEYTAB_KEY));
+        HBaseLogin.loginIfNeeded(config.loginFlags, hbaseConf);
+
+        try (Connection conn = ConnectionFactory.createConnection(hbaseConf)) {
+            HBaseCommitTableConfig commitTableConf = new HBaseCommitTableConfig();
+            commitTableConf.setTableName(config.commitTableName);
+            CommitTable.Client commitTableClient = new HBaseCommitTable(conn, commitTableConf).getClient();
+            while (true) {
+                PassStats stats = runPass(conn, commitTableClient);
+                LOG.info("Repair pass finished: {}", stats);
+                if (!config.continuous) {
+                    return;
+                }
+                TimeUnit.SECONDS.sleep(config.pauseBetweenPassesInSecs);
+            }
+        }
+    }
+
+    // ----------------------------------------------------------------------------------------------------------------
+    // Repair pass
+    // ----------------------------------------------------------------------------------------------------------------
+
+    @VisibleForTesting
+    PassStats runPass(Connection conn, CommitTable.Client commitTableClient)
+            throws IOException, InterruptedException {
+
+        Checkpoint checkpoint = Checkpoint.load(config.checkpointFile);
+        long lowWatermark;
+        if (checkpoint.lowWatermark.isPresent()) {
+            // Resuming a pass. The regions already repaired only considered the transactions below its low watermark
+            lowWatermark = checkpoint.lowWatermark.get();
+            LOG.info("Resuming repair pass below LW [{}]. {} regions already repaired",
+                     lowWatermark, checkpoint.completedRegions.size());
+        } else {
+            lowWatermark = readLowWatermark(commitTableClient);
+            checkpoint.start(lowWatermark);
+            LOG.info("Starting repair pass below LW [{}]", lowWatermark);
+        }
+
+        final PassStats stats = new PassStats();
+        final RepairContext context = new RepairContext(conn, commitTableClient, lowWatermark, checkpoint, stats);
+        ExecutorService executor = Executors.newFixedThreadPool(config.numThreads,
+                new ThreadFactoryBuilder().setNameFormat("shadow-cell-repair-%d").setDaemon(true).build());
+        try {
+            List<Future<?>> regionRepairs = new ArrayList<>();
+            for (String tableName : config.tableNames) {
+                try (RegionLocator locator = conn.getRegionLocator(TableName.valueOf(tableName))) {
+                    byte[][] startKeys = locator.getStartKeys();
+                    byte[][] endKeys = locator.getEndKeys();
+                    for (int i = 0; i < startKeys.length; i++) {
+                        final RegionSplit split = new RegionSplit(tableName, startKeys[i], endKeys[i]);
+                        if (checkpoint.isCompleted(split)) {
+                            stats.skippedRegions.incrementAndGet();
+                            continue;
+                        }
+                        regionRepairs.add(executor.submit(new Runnable() {
+                            @Override
+                            public void run() {
+                                repairRegion(split, context);
+                            }
+                        }));
+                    }
+                }
+            }
+            for (Future<?> regionRepair : regionRepairs) {
+                try {
+                    regionRepair.get();
+                } catch (ExecutionException e) {
+                    LOG.error("Unexpected error repairing region", e.getCause());
+                    stats.failedRegions.incrementAndGet();
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        if (stats.failedRegions.get() > 0) {
+            LOG.warn("{} regions could not be repaired. The pass will be resumed from the checkpoint",
+                     stats.failedRegions.get());
+            return stats;
+        }
+
+        if (config.deleteHealedCommitTableEntries) {
+            if (stats.skippedRegions.get() > 0) {
+                // The cells healed, or left unhealed, in the regions repaired before resuming are unknown
+                LOG.warn("Not deleting commit table entries in a resumed pass. The next complete pass will do it");
+            } else {
+                deleteHealedCommitTableEntries(context);
+            }
+        }
+        checkpoint.clear();
+        return stats;
+
+    }
+
+    private void repairRegion(RegionSplit split, RepairContext context) {
+        LOG.debug("Repairing region {}", split);
+        try (Table table = context.connection.getTable(TableName.valueOf(split.tableName))) {
+            Scan scan = new Scan(split.startKey, split.endKey);
+            scan.setMaxVersions();
+            scan.setTimeRange(0, context.lowWatermark);
+            scan.setCaching(config.scanCaching);
+            scan.setCacheBlocks(false);
+
+            RegionRepair regionRepair = new RegionRepair(table, context);
+            try (ResultScanner scanner = table.getScanner(scan)) {
+                for (Result row = scanner.next(); row != null; row = scanner.next()) {
+                    if (context.rateLimiter.isPresent()) {
+                        context.rateLimiter.get().acquire();
+                    }
+                    context.stats.scannedRows.incrementAndGet();
+                    regionRepair.addRow(row);
+                }
+            }
+            regionRepair.flush();
+            context.checkpoint.complete(split);
+        } catch (IOException e) {
+            LOG.error("Error repairing region {}", split, e);
+            context.stats.failedRegions.incrementAndGet();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOG.warn("Interrupted repairing region {}", split);
+            context.stats.failedRegions.incrementAndGet();
+        }
+    }
+
+    private void deleteHealedCommitTableEntries(RepairContext context) throws IOException, InterruptedException {
+        for (Map.Entry<Long, Boolean> tx : context.healedTxs.entrySet()) {
+            if (!tx.getValue()) {
+                continue;
+            }
+            try {
+                context.commitTableClient.deleteCommitEntry(tx.getKey()).get();
+                context.stats.deletedCommitTableEntries.incrementAndGet();
+            } catch (ExecutionException e) {
+                LOG.warn("Error deleting commit table entry of healed tx {}", tx.getKey(), e.getCause());
+            }
+        }
+    }
+
+    private static long readLowWatermark(CommitTable.Client commitTableClient)
+            throws IOException, InterruptedException {
+        try {
+            return commitTableClient.readLowWatermark().get();
+        } catch (ExecutionException e) {
+            throw new IOException("Error reading the low watermark from the commit table", e.getCause());
+        }
+    }
+
+    /**
+     * Collects the cells without shadow cell of a region and writes the missing shadow cells in batches
+     */
+    private class RegionRepair {
+
+        private final Table table;
+        private final RepairContext context;
+        private final List<Cell> pendingCells = new ArrayList<>();
+        private final Map<Long, Optional<CommitTimestamp>> commitTimestamps = new HashMap<>();
+
+        RegionRepair(Table table, RepairContext context) {
+            this.table = table;
+            this.context = context;
+        }
+
+        void addRow(Result row) throws IOException, InterruptedException {
+            List<Cell> cells = row.listCells();
+            if (cells == null) {
+                return;
+            }
+            context.stats.scannedCells.addAndGet(cells.size());
+            SortedMap<Cell, Optional<Cell>> cellToShadowCell = CellUtils.mapCellsToShadowCells(cells);
+            for (Map.Entry<Cell, Optional<Cell>> entry : cellToShadowCell.entrySet()) {
+                if (!entry.getValue().isPresent()) {
+                    pendingCells.add(entry.getKey());
+                }
+            }
+            if (pendingCells.size() >= config.batchSize) {
+                flush();
+            }
+        }
+
+        void flush() throws IOException, InterruptedException {
+            if (pendingCells.isEmpty()) {
+                return;
+            }
+            resolveCommitTimestamps();
+
+            List<Put> shadowCells = new ArrayList<>(pendingCells.size());
+            Set<Long> healedTxs = new HashSet<>();
+            for (Cell cell : pendingCells) {
+                long startTimestamp = cell.getTimestamp();
+                Optional<CommitTimestamp> commitTimestamp = commitTimestamps.get(startTimestamp);
+                if (commitTimestamp.isPresent() && commitTimestamp.get().isValid()) {
+                    Put put = new Put(CellUtil.cloneRow(cell));
+                    put.addColumn(CellUtil.cloneFamily(cell),
+                                  CellUtils.addShadowCellSuffixPrefix(cell.getQualifierArray(),
+                                                                      cell.getQualifierOffset(),
+                                                                      cell.getQualifierLength()),
+                                  startTimestamp,
+                                  Bytes.toBytes(commitTimestamp.get().getValue()));
+                    shadowCells.add(put);
+                    healedTxs.add(startTimestamp);
+                } else {
+                    // Not committed or aborted. The compactor will get rid of it
+                    context.stats.unresolvedCells.incrementAndGet();
+                    context.healedTxs.put(startTimestamp, false);
+                }
+            }
+            table.put(shadowCells);
+            context.stats.repairedShadowCells.addAndGet(shadowCells.size());
+            for (Long startTimestamp : healedTxs) {
+                // Don't override a previous failure to heal another cell of the transaction
+                context.healedTxs.putIfAbsent(startTimestamp, true);
+            }
+
+            pendingCells.clear();
+            if (commitTimestamps.size() > config.batchSize) {
+                commitTimestamps.clear();
+            }
+        }
+
+        private void resolveCommitTimestamps() throws IOException, InterruptedException {
+            Set<Long> startTimestamps = new HashSet<>();
+            for (Cell cell : pendingCells) {
+                long startTimestamp = cell.getTimestamp();
+                if (!commitTimestamps.containsKey(startTimestamp)) {
+                    startTimestamps.add(startTimestamp);
+                }
+            }
+            if (startTimestamps.isEmpty()) {
+                return;
+            }
+            // A single commit table multi-get for the whole batch
+            try {
+                commitTimestamps.putAll(context.commitTableClient.getCommitTimestamps(startTimestamps).get());
+            } catch (ExecutionException e) {
+                throw new IOException("Error getting commit timestamps from commit table", e.getCause());
+            }
+        }
+
+    }
+
+    // ----------------------------------------------------------------------------------------------------------------
+    // Helper classes
+    // ----------------------------------------------------------------------------------------------------------------
+
+    private class RepairContext {
+
+        final Connection connection;
+        final CommitTable.Client commitTableClient;
+        final long lowWatermark;
+        final Checkpoint checkpoint;
+        final PassStats stats;
+        final Optional<RateLimiter> rateLimiter;
+        // Start timestamp -> whether all the cells without shadow cell found for the transaction were healed
+        final ConcurrentMap<Long, Boolean> healedTxs = new ConcurrentHashMap<>();
+
+        RepairContext(Connection connection, CommitTable.Client commitTableClient, long lowWatermark,
+                      Checkpoint checkpoint, PassStats stats) {
+            this.connection = connection;
+            this.commitTableClient = commitTableClient;
+            this.lowWatermark = lowWatermark;
+            this.checkpoint = checkpoint;
+            this.stats = stats;
+            this.rateLimiter = config.maxRowsPerSec > 0
+                    ? Optional.of(RateLimiter.create(config.maxRowsPerSec))
+                    : Optional.<RateLimiter>absent();
+        }
+
+    }
+
+    @VisibleForTesting
+    static class RegionSplit {
+
+        final String tableName;
+        final byte[] startKey;
+        final byte[] endKey;
+
+        RegionSplit(String tableName, byte[] startKey, byte[] endKey) {
+            this.tableName = tableName;
+            this.startKey = startKey;
+            this.endKey = endKey;
+        }
+
+        // Both keys, as a region merged after repairing one of its parts must be repaired again
+        String id() {
+            return tableName + "," + Bytes.toHex(startKey) + "," + Bytes.toHex(endKey);
+        }
+
+        @Override
+        public String toString() {
+            return tableName + "[" + Bytes.toStringBinary(startKey) + ", " + Bytes.toStringBinary(endKey) + ")";
+        }
+
+    }
+
+    /**
+     * Progress of a pass, stored in a local file if configured. The first line holds the low watermark of the pass
+     * and the following ones the regions already repaired
+     */
+    private static class Checkpoint {
+
+        private final Optional<File> file;
+        private final Optional<Long> lowWatermark;
+        private final Set<String> completedRegions;
+
+        private Checkpoint(Optional<File> file, Optional<Long> lowWatermark, Set<String> completedRegions) {
+            this.file = file;
+            this.lowWatermark = lowWatermark;
+            this.completedRegions = completedRegions;
+        }
+
+        static Checkpoint load(String fileName) throws IOException {
+            Set<String> completedRegions = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+            if (fileName == null) {
+                return new Checkpoint(Optional.<File>absent(), Optional.<Long>absent(), completedRegions);
+            }
+            File file = new File(fileName);
+            if (!file.exists()) {
+                return new Checkpoint(Optional.of(file), Optional.<Long>absent(), completedRegions);
+            }
+            List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+            if (lines.isEmpty() || !lines.get(0).startsWith(CHECKPOINT_LWM_PREFIX)) {
+                throw new IOException("Invalid checkpoint file " + file);
+            }
+            long lowWatermark = Long.parseLong(lines.get(0).substring(CHECKPOINT_LWM_PREFIX.length()));
+            completedRegions.addAll(lines.subList(1, lines.size()));
+            return new Checkpoint(Optional.of(file), Optional.of(lowWatermark), completedRegions);
+        }
+
+        void start(long lowWatermark) throws IOException {
+            append(CHECKPOINT_LWM_PREFIX + lowWatermark, StandardOpenOption.TRUNCATE_EXISTING);
+        }
+
+        boolean isCompleted(RegionSplit split) {
+            return completedRegions.contains(split.id());
+        }
+
+        void complete(RegionSplit split) throws IOException {
+            completedRegions.add(split.id());
+            append(split.id(), StandardOpenOption.APPEND);
+        }
+
+        void clear() throws IOException {
+            completedRegions.clear();
+            if (file.isPresent()) {
+                Files.deleteIfExists(file.get().toPath());
+            }
+        }
+
+        private synchronized void append(String line, StandardOpenOption mode) throws IOException {
+            if (!file.isPresent()) {
+                return;
+            }
+            try (BufferedWriter writer = Files.newBufferedWriter(file.get().toPath(), StandardCharsets.UTF_8,
+                                                                 StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                                                 mode)) {
+                writer.write(line);
+                writer.newLine();
+            }
+        }
+
+    }
+
+    static class PassStats {
+
+        final AtomicLong scannedRows = new AtomicLong();
+        final AtomicLong scannedCells = new AtomicLong();
+        final AtomicLong repairedShadowCells = new AtomicLong();
+        final AtomicLong unresolvedCells = new AtomicLong();
+        final AtomicLong deletedCommitTableEntries = new AtomicLong();
+        final AtomicLong skippedRegions = new AtomicLong();
+        final AtomicLong failedRegions = new AtomicLong();
+
+        @Override
+        public String toString() {
+            return "scannedRows=" + scannedRows + ", scannedCells=" + scannedCells
+                    + ", repairedShadowCells=" + repairedShadowCells + ", unresolvedCells=" + unresolvedCells
+                    + ", deletedCommitTableEntries=" + deletedCommitTableEntries
+                    + ", skippedRegions=" + skippedRegions + ", failedRegions=" + failedRegions;
+        }
+
+    }
+
+    // Configuration-related classes
+
+    static class Config {
+
+        @ParametersDelegate
+        SecureHBaseConfig loginFlags = new SecureHBaseConfig();
+
+        @Parameter(names = "-tables", description = "Comma separated list of the tables to repair", required = true)
+        List<String> tableNames = new ArrayList<>();
+
+        @Parameter(names = "-commitTableName", description = "Name of the commit table")
+        String commitTableName = HBaseCommitTableConfig.DEFAULT_COMMIT_TABLE_NAME;
+
+        @Parameter(names = "-numThreads", description = "Number of regions repaired in parallel",
+                   validateWith = OmidTableManager.IntegerGreaterThanZero.class)
+        int numThreads = 4;
+
+        @Parameter(names = "-batchSize", description = "Number of cells whose commit timestamps are resolved together",
+                   validateWith = OmidTableManager.IntegerGreaterThanZero.class)
+        int batchSize = 1000;
+
+        @Parameter(names = "-scanCaching", description = "Number of rows fetched per scanner RPC",
+                   validateWith = OmidTableManager.IntegerGreaterThanZero.class)
+        int scanCaching = 1000;
+
+        @Parameter(names = "-maxRowsPerSec",
+                   description = "Max rows scanned per second among all the threads (0 means no limit)")
+        int maxRowsPerSec = 0;
+
+        @Parameter(names = "-checkpointFile", description = "Local file to record the progress of the passes")
+        String checkpointFile = null;
+
+        @Parameter(names = "-deleteHealedCommitTableEntries",
+                   description = "Delete the commit table entries of the transactions healed. "
+                           + "Only safe if all the tables written transactionally are repaired")
+        boolean deleteHealedCommitTableEntries = false;
+
+        @Parameter(names = "-continuous", description = "Start a new pass when the previous one finishes")
+        boolean continuous = false;
+
+        @Parameter(names = "-pauseBetweenPassesInSecs", description = "Pause between passes in continuous mode")
+        int pauseBetweenPassesInSecs = 600;
+
+    }
+
+}
@@ -0,0 +1,198 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.omid.tools.hbase;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.HBaseConfiguration;
+import org.apache.hadoop.hbase.HBaseTestingUtility;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.Connection;
+import org.apache.hadoop.hbase.client.ConnectionFactory;
+import org.apache.hadoop.hbase.client.Get;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.Table;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.omid.committable.CommitTable;
+import org.apache.omid.committable.hbase.HBaseCommitTable;
+import org.apache.omid.committable.hbase.HBaseCommitTableConfig;
+import org.apache.omid.transaction.CellUtils;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import static org.apache.omid.tools.hbase.OmidTableManager.COMMIT_TABLE_COMMAND_NAME;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class TestShadowCellRepairTool {
+
+    private static final String TEST_TABLE = "test-repair-table";
+    private static final String SPLIT_TEST_TABLE = "test-repair-split-table";
+    private static final byte[] SPLIT_KEY = Bytes.toBytes("m");
+    private static final byte[] FAMILY = Bytes.toBytes("f");
+    private static final byte[] QUALIFIER = Bytes.toBytes("q");
+    private static final byte[] SHADOW_CELL_QUALIFIER = CellUtils.addShadowCellSuffixPrefix(QUALIFIER);
+
+    private static final long LOW_WATERMARK = 1000L;
+    private static final long COMMITTED_TX = 100L;
+    private static final long NOT_COMMITTED_TX = 200L;
+    private static final long ABOVE_LWM_TX = 2000L;
+    private static final long RESUMED_TX = 300L;
+
+    private HBaseTestingUtility hBaseTestUtil;
+    private Configuration hbaseConf;
+    private Connection connection;
+
+    @BeforeClass
+    public void setUpClass() throws Exception {
+        // HBase setup
+        hbaseConf = HBaseConfiguration.create();
+        hbaseConf.setBoolean("hbase.localcluster.assign.random.ports", true);
+        hBaseTestUtil = new HBaseTestingUtility(hbaseConf);
+        hBaseTestUtil.startMiniCluster(1);
+
+        new OmidTableManager(COMMIT_TABLE_COMMAND_NAME, "-numRegions", "1").executeActionsOnHBase(hbaseConf);
+        hBaseTestUtil.createTable(TableName.valueOf(TEST_TABLE), new byte[][]{FAMILY});
+        hBaseTestUtil.createTable(TableName.valueOf(SPLIT_TEST_TABLE), new byte[][]{FAMILY}, new byte[][]{SPLIT_KEY});
+        connection = ConnectionFactory.createConnection(hbaseConf);
+    }
+
+    @AfterClass
+    public void tearDownClass() throws Exception {
+
+        connection.close();
+
+        hBaseTestUtil.shutdownMiniCluster();
+
+    }
+
+    @Test(timeOut = 60_000)
+    public void testMissingShadowCellsOfCommittedTransactionsAreRepaired() throws Throwable {
+
+        HBaseCommitTable commitTable = new HBaseCommitTable(connection, new HBaseCommitTableConfig());
+        CommitTable.Writer writer = commitTable.getWriter();
+        CommitTable.Client client = commitTable.getClient();
+        writer.addCommittedTransaction(COMMITTED_TX, COMMITTED_TX + 1);
+        writer.addCommittedTransaction(ABOVE_LWM_TX, ABOVE_LWM_TX + 1);
+        writer.updateLowWatermark(LOW_WATERMARK);
+        writer.flush();
+
+        // Cells whose transactions didn't write their shadow cells
+        try (Table table = connection.getTable(TableName.valueOf(TEST_TABLE))) {
+            for (long startTimestamp : new long[]{COMMITTED_TX, NOT_COMMITTED_TX, ABOVE_LWM_TX}) {
+                Put put = new Put(Bytes.toBytes("row-" + startTimestamp));
+                put.addColumn(FAMILY, QUALIFIER, startTimestamp, Bytes.toBytes("value"));
+                table.put(put);
+            }
+        }
+
+        File checkpointFile = File.createTempFile("repair", ".checkpoint");
+        assertTrue(checkpointFile.delete());
+        ShadowCellRepairTool repairTool = new ShadowCellRepairTool("-tables", TEST_TABLE,
+                                                                   "-checkpointFile", checkpointFile.getPath(),
+                                                                   "-deleteHealedCommitTableEntries");
+        repairTool.run(hbaseConf);
+
+        // The shadow cell of the committed transaction has been written and its commit table entry removed...
+        Result committed = getShadowCell(COMMITTED_TX);
+        assertTrue(committed.containsColumn(FAMILY, SHADOW_CELL_QUALIFIER));
+        assertEquals(Bytes.toLong(committed.getValue(FAMILY, SHADOW_CELL_QUALIFIER)), COMMITTED_TX + 1);
+        assertFalse(client.getCommitTimestamp(COMMITTED_TX).get().isPresent());
+
+        // ...the cell of the transaction not committed is left to the compactor...
+        assertFalse(getShadowCell(NOT_COMMITTED_TX).containsColumn(FAMILY, SHADOW_CELL_QUALIFIER));
+
+        // ...and the transactions above the low watermark may be still in their post-commit phase
+        assertFalse(getShadowCell(ABOVE_LWM_TX).containsColumn(FAMILY, SHADOW_CELL_QUALIFIER));
+        assertTrue(client.getCommitTimestamp(ABOVE_LWM_TX).get().isPresent());
+
+        // The checkpoint is removed when the pass completes
+        assertFalse(checkpointFile.exists());
+
+    }
+
+    @Test(timeOut = 60_000)
+    public void testResumedPassSkipsCompletedRegionsAndKeepsCommitTableEntries() throws Throwable {
+
+        HBaseCommitTable commitTable = new HBaseCommitTable(connection, new HBaseCommitTableConfig());
+        CommitTable.Writer writer = commitTable.getWriter();
+        CommitTable.Client client = commitTable.getClient();
+        writer.addCommittedTransaction(RESUMED_TX, RESUMED_TX + 1);
+        writer.updateLowWatermark(LOW_WATERMARK);
+        writer.flush();
+
+        // A transaction that wrote a cell in each region of the table, without writing its shadow cells
+        byte[] rowInFirstRegion = Bytes.toBytes("a-" + RESUMED_TX);
+        byte[] rowInSecondRegion = Bytes.toBytes("z-" + RESUMED_TX);
+        try (Table table = connection.getTable(TableName.valueOf(SPLIT_TEST_TABLE))) {
+            for (byte[] row : Arrays.asList(rowInFirstRegion, rowInSecondRegion)) {
+                Put put = new Put(row);
+                put.addColumn(FAMILY, QUALIFIER, RESUMED_TX, Bytes.toBytes("value"));
+                table.put(put);
+            }
+        }
+
+        // An interrupted pass that completed the first region
+        File checkpointFile = File.createTempFile("repair", ".checkpoint");
+        String firstRegion = new ShadowCellRepairTool.RegionSplit(SPLIT_TEST_TABLE, new byte[0], SPLIT_KEY).id();
+        Files.write(checkpointFile.toPath(), Arrays.asList("lowWatermark=" + LOW_WATERMARK, firstRegion),
+                    StandardCharsets.UTF_8);
+
+        ShadowCellRepairTool repairTool = new ShadowCellRepairTool("-tables", SPLIT_TEST_TABLE,
+                                                                   "-checkpointFile", checkpointFile.getPath(),
+                                                                   "-deleteHealedCommitTableEntries");
+        repairTool.run(hbaseConf);
+
+        // The resumed pass only repairs the region not completed...
+        assertFalse(getShadowCell(SPLIT_TEST_TABLE, rowInFirstRegion, RESUMED_TX)
+                            .containsColumn(FAMILY, SHADOW_CELL_QUALIFIER));
+        assertTrue(getShadowCell(SPLIT_TEST_TABLE, rowInSecondRegion, RESUMED_TX)
+                           .containsColumn(FAMILY, SHADOW_CELL_QUALIFIER));
+        // ...and can't tell if the transaction was healed in the completed one, so its entry is kept
+        assertTrue(client.getCommitTimestamp(RESUMED_TX).get().isPresent());
+        assertFalse(checkpointFile.exists());
+
+        // The next complete pass deletes it
+        repairTool.run(hbaseConf);
+        assertTrue(getShadowCell(SPLIT_TEST_TABLE, rowInFirstRegion, RESUMED_TX)
+                           .containsColumn(FAMILY, SHADOW_CELL_QUALIFIER));
+        assertFalse(client.getCommitTimestamp(RESUMED_TX).get().isPresent());
+
+    }
+
+    private Result getShadowCell(long startTimestamp) throws Exception {
+        return getShadowCell(TEST_TABLE, Bytes.toBytes("row-" + startTimestamp), startTimestamp);
+    }
+
+    private Result getShadowCell(String tableName, byte[] row, long startTimestamp) throws Exception {
+        try (Table table = connection.getTable(TableName.valueOf(tableName))) {
+            Get get = new Get(row);
+            get.addColumn(FAMILY, SHADOW_CELL_QUALIFIER);
+            get.setTimeStamp(startTimestamp);
+            return table.get(get);
+        }
+    }
+
+}
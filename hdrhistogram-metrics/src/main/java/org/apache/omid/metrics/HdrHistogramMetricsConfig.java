@@ -0,0 +1,99 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.omid.metrics;
+
+import com.google.inject.Inject;
+
+import javax.inject.Named;
+import javax.inject.Singleton;
+import java.util.concurrent.TimeUnit;
+
+@Singleton
+public class HdrHistogramMetricsConfig extends AbstractMetricsConfig {
+
+    private static final String DEFAULT_PREFIX = "omid";
+    private static final int DEFAULT_HTTP_PORT = 0;
+    private static final String DEFAULT_HTTP_HOST = "0.0.0.0";
+    private static final long DEFAULT_HIGHEST_TRACKABLE_VALUE = TimeUnit.MINUTES.toNanos(1);
+    private static final int DEFAULT_SIGNIFICANT_DIGITS = 3;
+
+    private static final String METRICS_HDRHISTOGRAM_PREFIX_KEY = "metrics.hdrhistogram.prefix";
+    private static final String METRICS_HDRHISTOGRAM_HTTP_PORT_KEY = "metrics.hdrhistogram.http.port";
+    private static final String METRICS_HDRHISTOGRAM_HTTP_HOST_KEY = "metrics.hdrhistogram.http.host";
+    private static final String METRICS_HDRHISTOGRAM_HIGHEST_TRACKABLE_VALUE_KEY =
+            "metrics.hdrhistogram.highest.trackable.value";
+    private static final String METRICS_HDRHISTOGRAM_SIGNIFICANT_DIGITS_KEY = "metrics.hdrhistogram.significant.digits";
+
+    private String prefix = DEFAULT_PREFIX;
+    private int httpPort = DEFAULT_HTTP_PORT;
+    private String httpHost = DEFAULT_HTTP_HOST;
+    private long highestTrackableValue = DEFAULT_HIGHEST_TRACKABLE_VALUE;
+    private int significantDigits = DEFAULT_SIGNIFICANT_DIGITS;
+
+    public String getPrefix() {
+        return prefix;
+    }
+
+    @Inject(optional = true)
+    public void setPrefix(@Named(METRICS_HDRHISTOGRAM_PREFIX_KEY) String prefix) {
+        this.prefix = prefix;
+    }
+
+    /**
+     * @return port of the HTTP endpoint exporting the metrics. The endpoint is disabled when it is not positive
+     */
+    public int getHttpPort() {
+        return httpPort;
+    }
+
+    @Inject(optional = true)
+    public void setHttpPort(@Named(METRICS_HDRHISTOGRAM_HTTP_PORT_KEY) int httpPort) {
+        this.httpPort = httpPort;
+    }
+
+    public String getHttpHost() {
+        return httpHost;
+    }
+
+    @Inject(optional = true)
+    public void setHttpHost(@Named(METRICS_HDRHISTOGRAM_HTTP_HOST_KEY) String httpHost) {
+        this.httpHost = httpHost;
+    }
+
+    /**
+     * @return highest value the timers (in nanoseconds) and histograms can record. Bigger values are clamped
+     */
+    public long getHighestTrackableValue() {
+        return highestTrackableValue;
+    }
+
+    @Inject(optional = true)
+    public void setHighestTrackableValue(@Named(METRICS_HDRHISTOGRAM_HIGHEST_TRACKABLE_VALUE_KEY) long value) {
+        this.highestTrackableValue = value;
+    }
+
+    public int getSignificantDigits() {
+        return significantDigits;
+    }
+
+    @Inject(optional = true)
+    public void setSignificantDigits(@Named(METRICS_HDRHISTOGRAM_SIGNIFICANT_DIGITS_KEY) int significantDigits) {
+        this.significantDigits = significantDigits;
+    }
+
+}
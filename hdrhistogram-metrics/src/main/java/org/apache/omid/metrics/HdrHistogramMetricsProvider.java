@@ -0,0 +1,438 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.omid.metrics;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.HdrHistogram.Recorder;
+import org.apache.phoenix.thirdparty.com.google.common.annotations.VisibleForTesting;
+import org.apache.phoenix.thirdparty.com.google.common.base.Charsets;
+import org.apache.phoenix.thirdparty.com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Metrics provider whose timers and histograms are backed by HdrHistogram {@link Recorder}s.
+ *
+ * Recording a value is wait-free and does not allocate, so it can be used in hot paths under heavy contention. Every
+ * {@link AbstractMetricsConfig#getOutputFreqInSecs()} seconds a background thread takes an interval snapshot of each
+ * recorder, from which the p50/p99/p999/max values of the last interval are computed. The snapshots are exported in
+ * the Prometheus text exposition format through an embedded HTTP endpoint (/metrics) when
+ * {@link HdrHistogramMetricsConfig#getHttpPort()} is configured. Timers are exported in seconds.
+ */
+public class HdrHistogramMetricsProvider implements MetricsProvider, MetricsRegistry {
+
+    private static final Logger LOG = LoggerFactory.getLogger(HdrHistogramMetricsProvider.class);
+
+    static final String METRICS_HTTP_PATH = "/metrics";
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+    private static final double NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final ConcurrentMap<String, Metric> metrics = new ConcurrentSkipListMap<>();
+
+    private final String prefix;
+    private final long highestTrackableValue;
+    private final int significantDigits;
+    private final int metricsOutputFrequencyInSecs;
+
+    private final HttpServer httpServer;
+    private ExecutorService httpExecutor;
+    private ScheduledExecutorService snapshotter;
+
+    public HdrHistogramMetricsProvider(HdrHistogramMetricsConfig conf) throws IOException {
+        this.prefix = conf.getPrefix();
+        this.highestTrackableValue = conf.getHighestTrackableValue();
+        this.significantDigits = conf.getSignificantDigits();
+        this.metricsOutputFrequencyInSecs = conf.getOutputFreqInSecs();
+        if (conf.getHttpPort() > 0) {
+            httpServer = HttpServer.create(new InetSocketAddress(conf.getHttpHost(), conf.getHttpPort()), 0);
+            httpServer.createContext(METRICS_HTTP_PATH, new ExpositionHandler());
+        } else {
+            LOG.warn("No HTTP port configured, so metrics won't be exported");
+            httpServer = null;
+        }
+        startMetrics();
+    }
+
+    @Override
+    public synchronized void startMetrics() {
+        if (snapshotter != null) {
+            return;
+        }
+        snapshotter = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("hdrhistogram-metrics-snapshotter").setDaemon(true).build());
+        snapshotter.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    takeSnapshots();
+                } catch (Throwable t) {
+                    LOG.error("Error taking the interval snapshot of the metrics", t);
+                }
+            }
+        }, metricsOutputFrequencyInSecs, metricsOutputFrequencyInSecs, TimeUnit.SECONDS);
+        LOG.info("Taking metrics snapshots every {} Secs", metricsOutputFrequencyInSecs);
+        if (httpServer != null) {
+            httpExecutor = Executors.newSingleThreadExecutor(
+                    new ThreadFactoryBuilder().setNameFormat("hdrhistogram-metrics-http").setDaemon(true).build());
+            httpServer.setExecutor(httpExecutor);
+            httpServer.start();
+            LOG.info("Exporting metrics at http://{}{}", httpServer.getAddress(), METRICS_HTTP_PATH);
+        }
+    }
+
+    @Override
+    public synchronized void stopMetrics() {
+        if (snapshotter == null) {
+            return;
+        }
+        snapshotter.shutdownNow();
+        snapshotter = null;
+        takeSnapshots();
+        if (httpServer != null) {
+            LOG.info("Stopping metrics HTTP endpoint at {}", httpServer.getAddress());
+            httpServer.stop(0);
+            httpExecutor.shutdownNow();
+        }
+    }
+
+    @Override
+    public <T extends Number> void gauge(String name, Gauge<T> gauge) {
+        register(name, gauge);
+    }
+
+    @Override
+    public Counter counter(String name) {
+        HdrCounter counter = lookup(name, HdrCounter.class);
+        return counter != null ? counter : getOrRegister(name, new HdrCounter(), HdrCounter.class);
+    }
+
+    @Override
+    public Timer timer(String name) {
+        HdrTimer timer = lookup(name, HdrTimer.class);
+        return timer != null
+                ? timer
+                : getOrRegister(name, new HdrTimer(highestTrackableValue, significantDigits), HdrTimer.class);
+    }
+
+    @Override
+    public Meter meter(String name) {
+        HdrMeter meter = lookup(name, HdrMeter.class);
+        return meter != null ? meter : getOrRegister(name, new HdrMeter(), HdrMeter.class);
+    }
+
+    @Override
+    public Histogram histogram(String name) {
+        HdrHistogramWrapper histogram = lookup(name, HdrHistogramWrapper.class);
+        return histogram != null
+                ? histogram
+                : getOrRegister(name, new HdrHistogramWrapper(highestTrackableValue, significantDigits),
+                                HdrHistogramWrapper.class);
+    }
+
+    /**
+     * Takes the interval snapshot of all the timers and histograms
+     */
+    @VisibleForTesting
+    synchronized void takeSnapshots() {
+        for (Metric metric : metrics.values()) {
+            if (metric instanceof RecorderMetric) {
+                ((RecorderMetric) metric).takeSnapshot();
+            }
+        }
+    }
+
+    /**
+     * @return the metrics in the Prometheus text exposition format, as of the last interval snapshot
+     */
+    @VisibleForTesting
+    String getTextExposition() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, Metric> entry : metrics.entrySet()) {
+            String name = sanitize(prefix, entry.getKey());
+            Metric metric = entry.getValue();
+            if (metric instanceof HdrTimer) {
+                appendSummary(sb, name + "_seconds", ((HdrTimer) metric).snapshot, NANOS_PER_SECOND);
+            } else if (metric instanceof HdrHistogramWrapper) {
+                appendSummary(sb, name, ((HdrHistogramWrapper) metric).snapshot, 1);
+            } else if (metric instanceof HdrMeter) {
+                appendSample(sb, name + "_total", "counter", ((HdrMeter) metric).count.get());
+            } else if (metric instanceof HdrCounter) {
+                // Omid counters can be decremented, so they are gauges for Prometheus
+                appendSample(sb, name, "gauge", ((HdrCounter) metric).count.get());
+            } else if (metric instanceof Gauge) {
+                Number value = ((Gauge<?>) metric).getValue();
+                if (value != null) {
+                    appendSample(sb, name, "gauge", value.doubleValue());
+                }
+            }
+        }
+        return sb.toString();
+    }
+
+    // ----------------------------------------------------------------------------------------------------------------
+    // Helper methods
+    // ----------------------------------------------------------------------------------------------------------------
+
+    private void register(String name, Metric metric) {
+        Metric existing = metrics.putIfAbsent(name, metric);
+        if (existing != null) {
+            throw new IllegalArgumentException("A metric named " + name + " already exists");
+        }
+    }
+
+    // Avoids allocating the recorder of a metric that is already registered
+    private <T extends Metric> T lookup(String name, Class<T> type) {
+        Metric existing = metrics.get(name);
+        return type.isInstance(existing) ? type.cast(existing) : null;
+    }
+
+    private <T extends Metric> T getOrRegister(String name, T metric, Class<T> type) {
+        Metric existing = metrics.putIfAbsent(name, metric);
+        if (existing == null) {
+            return metric;
+        }
+        if (!type.isInstance(existing)) {
+            throw new IllegalArgumentException(
+                    "A metric named " + name + " of class " + existing.getClass().getCanonicalName() + " already exists");
+        }
+        return type.cast(existing);
+    }
+
+    @VisibleForTesting
+    static String sanitize(String prefix, String name) {
+        String fullName = (prefix == null || prefix.isEmpty()) ? name : prefix + "_" + name;
+        StringBuilder sb = new StringBuilder(fullName.length());
+        for (int i = 0; i < fullName.length(); i++) {
+            char c = fullName.charAt(i);
+            boolean valid = (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_' || c == ':'
+                    || (c >= '0' && c <= '9' && i > 0);
+            sb.append(valid ? c : '_');
+        }
+        return sb.toString();
+    }
+
+    private static void appendSummary(StringBuilder sb, String name, Snapshot snapshot, double scale) {
+        sb.append("# TYPE ").append(name).append(" summary\n");
+        appendQuantile(sb, name, "0.5", snapshot.p50 / scale);
+        appendQuantile(sb, name, "0.99", snapshot.p99 / scale);
+        appendQuantile(sb, name, "0.999", snapshot.p999 / scale);
+        sb.append(name).append("_sum ").append(snapshot.totalSum / scale).append('\n');
+        sb.append(name).append("_count ").append(snapshot.totalCount).append('\n');
+        appendSample(sb, name + "_max", "gauge", snapshot.max / scale);
+    }
+
+    private static void appendQuantile(StringBuilder sb, String name, String quantile, double value) {
+        sb.append(name).append("{quantile=\"").append(quantile).append("\"} ").append(value).append('\n');
+    }
+
+    private static void appendSample(StringBuilder sb, String name, String type, double value) {
+        sb.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+        sb.append(name).append(' ').append(value).append('\n');
+    }
+
+    private class ExpositionHandler implements HttpHandler {
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            try {
+                byte[] body = getTextExposition().getBytes(Charsets.UTF_8);
+                exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+                exchange.sendResponseHeaders(200, body.length);
+                OutputStream os = exchange.getResponseBody();
+                os.write(body);
+                os.close();
+            } finally {
+                exchange.close();
+            }
+        }
+
+    }
+
+    // ----------------------------------------------------------------------------------------------------------------
+    // Metrics implementations
+    // ----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Percentiles of the last interval, plus the cumulative count and sum required by the Prometheus summaries
+     */
+    static class Snapshot {
+
+        static final Snapshot EMPTY = new Snapshot(0, 0, 0, 0, 0, 0);
+
+        final long p50;
+        final long p99;
+        final long p999;
+        final long max;
+        final long totalCount;
+        final double totalSum;
+
+        Snapshot(long p50, long p99, long p999, long max, long totalCount, double totalSum) {
+            this.p50 = p50;
+            this.p99 = p99;
+            this.p999 = p999;
+            this.max = max;
+            this.totalCount = totalCount;
+            this.totalSum = totalSum;
+        }
+
+    }
+
+    /**
+     * Base of the metrics that record values into a {@link Recorder}. Only the snapshotter thread reads the recorder
+     */
+    abstract static class RecorderMetric implements Metric {
+
+        private final Recorder recorder;
+        private final long highestTrackableValue;
+        private org.HdrHistogram.Histogram interval;
+
+        volatile Snapshot snapshot = Snapshot.EMPTY;
+
+        RecorderMetric(long highestTrackableValue, int significantDigits) {
+            this.recorder = new Recorder(highestTrackableValue, significantDigits);
+            this.highestTrackableValue = highestTrackableValue;
+        }
+
+        void record(long value) {
+            recorder.recordValue(Math.max(0, Math.min(value, highestTrackableValue)));
+        }
+
+        void record(long value, long count) {
+            recorder.recordValueWithCount(Math.max(0, Math.min(value, highestTrackableValue)), count);
+        }
+
+        void takeSnapshot() {
+            interval = recorder.getIntervalHistogram(interval);
+            Snapshot previous = snapshot;
+            long count = interval.getTotalCount();
+            snapshot = new Snapshot(interval.getValueAtPercentile(50.0),
+                                    interval.getValueAtPercentile(99.0),
+                                    interval.getValueAtPercentile(99.9),
+                                    interval.getMaxValue(),
+                                    previous.totalCount + count,
+                                    previous.totalSum + interval.getMean() * count);
+        }
+
+    }
+
+    static class HdrTimer extends RecorderMetric implements Timer {
+
+        // Like in the Codahale timers, start()/stop() are meant to be used by a single thread
+        private long startInNs;
+
+        HdrTimer(long highestTrackableValue, int significantDigits) {
+            super(highestTrackableValue, significantDigits);
+        }
+
+        @Override
+        public void start() {
+            startInNs = System.nanoTime();
+        }
+
+        @Override
+        public void stop() {
+            update(System.nanoTime() - startInNs);
+        }
+
+        @Override
+        public void update(long durationInNs) {
+            record(durationInNs);
+        }
+
+        @Override
+        public void update(long durationInNs, long count) {
+            record(durationInNs, count);
+        }
+
+    }
+
+    static class HdrHistogramWrapper extends RecorderMetric implements Histogram {
+
+        HdrHistogramWrapper(long highestTrackableValue, int significantDigits) {
+            super(highestTrackableValue, significantDigits);
+        }
+
+        @Override
+        public void update(int value) {
+            record(value);
+        }
+
+        @Override
+        public void update(long value) {
+            record(value);
+        }
+
+    }
+
+    static class HdrCounter implements Counter {
+
+        final AtomicLong count = new AtomicLong();
+
+        @Override
+        public void inc() {
+            count.incrementAndGet();
+        }
+
+        @Override
+        public void inc(long n) {
+            count.addAndGet(n);
+        }
+
+        @Override
+        public void dec() {
+            count.decrementAndGet();
+        }
+
+        @Override
+        public void dec(long n) {
+            count.addAndGet(-n);
+        }
+
+    }
+
+    static class HdrMeter implements Meter {
+
+        final AtomicLong count = new AtomicLong();
+
+        @Override
+        public void mark() {
+            count.incrementAndGet();
+        }
+
+        @Override
+        public void mark(long n) {
+            count.addAndGet(n);
+        }
+
+    }
+
+}
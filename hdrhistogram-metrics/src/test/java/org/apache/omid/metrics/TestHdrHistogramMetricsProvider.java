@@ -0,0 +1,127 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.omid.metrics;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+public class TestHdrHistogramMetricsProvider {
+
+    private HdrHistogramMetricsProvider provider;
+
+    @BeforeMethod
+    void setup() throws Exception {
+        provider = new HdrHistogramMetricsProvider(new HdrHistogramMetricsConfig());
+    }
+
+    @AfterMethod
+    void tearDown() {
+        provider.stopMetrics();
+    }
+
+    @Test(timeOut = 10_000)
+    public void testTimerPercentilesAreExportedPerInterval() {
+
+        Timer timer = provider.timer("tso.commit.latency");
+        assertSame(provider.timer("tso.commit.latency"), timer);
+        for (int i = 1; i <= 1000; i++) {
+            timer.update(i * 1000L); // 1us to 1ms
+        }
+
+        // Nothing is exported until the first interval snapshot
+        assertTrue(provider.getTextExposition().contains("omid_tso_commit_latency_seconds_count 0\n"));
+
+        provider.takeSnapshots();
+        String exposition = provider.getTextExposition();
+        assertTrue(exposition.contains("# TYPE omid_tso_commit_latency_seconds summary\n"), exposition);
+        assertTrue(exposition.contains("omid_tso_commit_latency_seconds_count 1000\n"), exposition);
+        assertEquals(quantile(exposition, "omid_tso_commit_latency_seconds", "0.5"), 0.0005, 0.000001);
+        assertEquals(quantile(exposition, "omid_tso_commit_latency_seconds", "0.99"), 0.00099, 0.000001);
+        assertTrue(exposition.contains("omid_tso_commit_latency_seconds_max 0.001"), exposition);
+
+        // Percentiles refer to the last interval only, but counts are cumulative
+        timer.update(5000L);
+        provider.takeSnapshots();
+        exposition = provider.getTextExposition();
+        assertEquals(quantile(exposition, "omid_tso_commit_latency_seconds", "0.99"), 0.000005, 0.00000001);
+        assertTrue(exposition.contains("omid_tso_commit_latency_seconds_count 1001\n"), exposition);
+
+    }
+
+    @Test(timeOut = 10_000)
+    public void testOtherMetricsAreExported() {
+
+        provider.counter("counter").inc(5);
+        provider.counter("counter").dec();
+        provider.meter("meter").mark(3);
+        provider.histogram("batch.size").update(10);
+        provider.gauge("gauge", new Gauge<Integer>() {
+            @Override
+            public Integer getValue() {
+                return 42;
+            }
+        });
+        provider.takeSnapshots();
+
+        String exposition = provider.getTextExposition();
+        assertTrue(exposition.contains("omid_counter 4.0\n"), exposition);
+        assertTrue(exposition.contains("# TYPE omid_meter_total counter\nomid_meter_total 3.0\n"), exposition);
+        assertTrue(exposition.contains("omid_batch_size_max 10.0\n"), exposition);
+        assertTrue(exposition.contains("# TYPE omid_gauge gauge\nomid_gauge 42.0\n"), exposition);
+
+    }
+
+    @Test(timeOut = 10_000)
+    public void testMetricNamesCanNotBeReusedWithDifferentTypes() {
+
+        provider.timer("metric");
+        try {
+            provider.histogram("metric");
+            fail();
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+
+    }
+
+    @Test(timeOut = 10_000)
+    public void testNamesAreSanitized() {
+
+        assertEquals(HdrHistogramMetricsProvider.sanitize("omid", "tso.persistence.processor.commit-retry"),
+                     "omid_tso_persistence_processor_commit_retry");
+        assertEquals(HdrHistogramMetricsProvider.sanitize("", "1st.metric"), "_st_metric");
+
+    }
+
+    private static double quantile(String exposition, String name, String quantile) {
+        String prefix = name + "{quantile=\"" + quantile + "\"} ";
+        for (String line : exposition.split("\n")) {
+            if (line.startsWith(prefix)) {
+                return Double.parseDouble(line.substring(prefix.length()));
+            }
+        }
+        throw new AssertionError("No quantile " + quantile + " for " + name + " in:\n" + exposition);
+    }
+
+}
@@ -0,0 +1,534 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.omid.committable.log;
+
+import org.apache.omid.committable.CommitTable;
+import org.apache.omid.committable.CommitTable.CommitTimestamp.Location;
+import org.apache.omid.committable.LongLongHashMap;
+import org.apache.phoenix.thirdparty.com.google.common.annotations.VisibleForTesting;
+import org.apache.phoenix.thirdparty.com.google.common.base.Optional;
+import org.apache.phoenix.thirdparty.com.google.common.util.concurrent.ListenableFuture;
+import org.apache.phoenix.thirdparty.com.google.common.util.concurrent.SettableFuture;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import static org.apache.omid.committable.LongLongHashMap.NO_VALUE;
+
+/**
+ * Commit table stored in an append-only log in the local filesystem, so the TSO can persist its commits durably
+ * without an HBase cluster.
+ *
+ * The log is a sequence of memory-mapped segment files of fixed size, made of fixed size records with the start and
+ * commit timestamps of a transaction (or the low watermark) and a checksum. All the commit table entries are kept in
+ * a primitive hash map indexed by start timestamp, which is rebuilt from the segments when the table is opened.
+ *
+ * Writers buffer their commits and append them all at once when flushed. The flushed records are made durable with a
+ * single {@link MappedByteBuffer#force()}, which also covers the records appended concurrently by other writers, so
+ * the cost of syncing the log is shared by all the commits waiting for it (group commit).
+ *
+ * Deleting a commit table entry removes it from the index and appends a tombstone record, which removes it again when
+ * the index is rebuilt. Tombstones are not synced, so the last deletions may be lost in a crash, which is harmless as
+ * the entries that show up again hold the right commit timestamps. Once the low watermark moves beyond all the start
+ * timestamps of a sealed segment, no more commits or invalidations can happen for them, so the entries of the segment
+ * still in the index are appended again to the head of the log and the segment file is removed. This keeps the size
+ * of the log proportional to the entries not deleted yet. The tombstones of the removed segment can be dropped, as the
+ * records they delete are always in the same or in a previous segment.
+ *
+ * The table is only reachable from the process that owns it, so the transaction managers of the clients can not
+ * check the commit timestamps of the transactions whose shadow cells were not written. It is intended for single
+ * node deployments and performance testing.
+ */
+public class LogCommitTable implements CommitTable, Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(LogCommitTable.class);
+
+    static final String SEGMENT_FILE_SUFFIX = ".log";
+
+    // Record layout: start timestamp (8 bytes), commit timestamp (8), record type (4), CRC32 of the previous (4)
+    static final int RECORD_SIZE = 24;
+    private static final int CHECKSUMMED_BYTES = 20;
+    // Non zero, so the preallocated zeroed space at the end of a segment does not look like a record
+    private static final int COMMIT_RECORD = 0x0C0FFEE1;
+    private static final int LOW_WATERMARK_RECORD = 0x0C0FFEE2;
+    private static final int DELETE_RECORD = 0x0C0FFEE3;
+
+    private final File directory;
+    private final int segmentSizeInBytes;
+    private final boolean syncOnFlush;
+
+    // The following attributes are guarded by this
+    private final LongLongHashMap index = new LongLongHashMap();
+    private final Deque<Segment> sealedSegments = new ArrayDeque<>();
+    private Segment activeSegment;
+    private long lowWatermark = 0;
+    private final byte[] recordScratch = new byte[CHECKSUMMED_BYTES];
+    private final CRC32 crc = new CRC32();
+
+    // Position up to which the log has been synced, guarded by syncLock
+    private final Object syncLock = new Object();
+    private long syncedPosition = -1;
+
+    @Inject
+    public LogCommitTable(LogCommitTableConfig config) throws IOException {
+        this(new File(config.getDirectory()), config.getSegmentSizeInMB() * 1024 * 1024, config.getSyncOnFlush());
+    }
+
+    @VisibleForTesting
+    LogCommitTable(File directory, int segmentSizeInBytes, boolean syncOnFlush) throws IOException {
+
+        if (segmentSizeInBytes < 2 * RECORD_SIZE) {
+            throw new IllegalArgumentException("Segment size too small: " + segmentSizeInBytes + " bytes");
+        }
+        this.directory = directory;
+        this.segmentSizeInBytes = segmentSizeInBytes - segmentSizeInBytes % RECORD_SIZE;
+        this.syncOnFlush = syncOnFlush;
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Can't create commit table directory " + directory);
+        }
+        recover();
+
+    }
+
+    @Override
+    public CommitTable.Writer getWriter() {
+        return new LogWriter();
+    }
+
+    @Override
+    public CommitTable.Client getClient() {
+        return new LogClient();
+    }
+
+    @Override
+    public void close() {
+        synchronized (this) {
+            activeSegment.buffer.force();
+        }
+    }
+
+    // ----------------------------------------------------------------------------------------------------------------
+    // Reader and Writer
+    // ----------------------------------------------------------------------------------------------------------------
+
+    private class LogWriter implements Writer {
+
+        private static final long NO_LOW_WATERMARK = -1L;
+
+        // Pairs of start and commit timestamps
+        private long[] writeBuffer = new long[128];
+        private int writeBufferSize = 0;
+        private long lowWatermarkToStore = NO_LOW_WATERMARK;
+
+        @Override
+        public void addCommittedTransaction(long startTimestamp, long commitTimestamp) throws IOException {
+            assert (startTimestamp < commitTimestamp);
+            if (writeBufferSize + 2 > writeBuffer.length) {
+                writeBuffer = Arrays.copyOf(writeBuffer, writeBuffer.length << 1);
+            }
+            writeBuffer[writeBufferSize++] = startTimestamp;
+            writeBuffer[writeBufferSize++] = commitTimestamp;
+        }
+
+        @Override
+        public void updateLowWatermark(long lowWatermark) throws IOException {
+            lowWatermarkToStore = lowWatermark;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            long position = append(writeBuffer, writeBufferSize, lowWatermarkToStore);
+            writeBufferSize = 0;
+            boolean lowWatermarkUpdated = lowWatermarkToStore != NO_LOW_WATERMARK;
+            lowWatermarkToStore = NO_LOW_WATERMARK;
+            sync(position);
+            if (lowWatermarkUpdated) {
+                truncateSegmentsBelowLowWatermark();
+            }
+        }
+
+        @Override
+        public void clearWriteBuffer() {
+            writeBufferSize = 0;
+        }
+
+        @Override
+        public boolean atomicAddCommittedTransaction(long startTimestamp, long commitTimestamp) throws IOException {
+            long position;
+            synchronized (LogCommitTable.this) {
+                if (index.putIfAbsent(removeCheckpointBits(startTimestamp), commitTimestamp) != NO_VALUE) {
+                    return false;
+                }
+                position = appendRecord(removeCheckpointBits(startTimestamp), commitTimestamp, COMMIT_RECORD);
+            }
+            sync(position);
+            return true;
+        }
+
+    }
+
+    private class LogClient implements Client {
+
+        @Override
+        public ListenableFuture<Optional<CommitTimestamp>> getCommitTimestamp(long startTimestamp) {
+            SettableFuture<Optional<CommitTimestamp>> f = SettableFuture.create();
+            long commitTimestamp;
+            synchronized (LogCommitTable.this) {
+                commitTimestamp = index.get(removeCheckpointBits(startTimestamp));
+            }
+            f.set(toCommitTimestamp(commitTimestamp));
+            return f;
+        }
+
+        @Override
+        public ListenableFuture<Map<Long, Optional<CommitTimestamp>>> getCommitTimestamps(
+                Collection<Long> startTimestamps) {
+            SettableFuture<Map<Long, Optional<CommitTimestamp>>> f = SettableFuture.create();
+            Map<Long, Optional<CommitTimestamp>> commitTimestamps = new HashMap<>(startTimestamps.size());
+            synchronized (LogCommitTable.this) {
+                for (Long startTimestamp : startTimestamps) {
+                    long commitTimestamp = index.get(removeCheckpointBits(startTimestamp));
+                    commitTimestamps.put(startTimestamp, toCommitTimestamp(commitTimestamp));
+                }
+            }
+            f.set(commitTimestamps);
+            return f;
+        }
+
+        private Optional<CommitTimestamp> toCommitTimestamp(long commitTimestamp) {
+            if (commitTimestamp == NO_VALUE) {
+                return Optional.absent();
+            } else if (commitTimestamp == INVALID_TRANSACTION_MARKER) {
+                return Optional.of(new CommitTimestamp(Location.COMMIT_TABLE, INVALID_TRANSACTION_MARKER, false));
+            } else {
+                return Optional.of(new CommitTimestamp(Location.COMMIT_TABLE, commitTimestamp, true));
+            }
+        }
+
+        @Override
+        public ListenableFuture<Long> readLowWatermark() {
+            SettableFuture<Long> f = SettableFuture.create();
+            synchronized (LogCommitTable.this) {
+                f.set(lowWatermark);
+            }
+            return f;
+        }
+
+        @Override
+        public ListenableFuture<Void> deleteCommitEntry(long startTimestamp) {
+            SettableFuture<Void> f = SettableFuture.create();
+            startTimestamp = removeCheckpointBits(startTimestamp);
+            try {
+                synchronized (LogCommitTable.this) {
+                    if (index.remove(startTimestamp) != NO_VALUE) {
+                        appendRecord(startTimestamp, 0, DELETE_RECORD);
+                    }
+                }
+                f.set(null);
+            } catch (IOException e) {
+                LOG.error("Error logging deletion of transaction {}", startTimestamp, e);
+                f.setException(e);
+            }
+            return f;
+        }
+
+        @Override
+        public ListenableFuture<Boolean> tryInvalidateTransaction(long startTimestamp) {
+            SettableFuture<Boolean> f = SettableFuture.create();
+            startTimestamp = removeCheckpointBits(startTimestamp);
+            try {
+                long position;
+                synchronized (LogCommitTable.this) {
+                    long commitTimestamp = index.putIfAbsent(startTimestamp, INVALID_TRANSACTION_MARKER);
+                    if (commitTimestamp != NO_VALUE) {
+                        // Already committed or invalidated
+                        f.set(commitTimestamp == INVALID_TRANSACTION_MARKER);
+                        return f;
+                    }
+                    position = appendRecord(startTimestamp, INVALID_TRANSACTION_MARKER, COMMIT_RECORD);
+                }
+                sync(position);
+                f.set(true);
+            } catch (IOException e) {
+                LOG.error("Error syncing invalidation of transaction {}", startTimestamp, e);
+                f.setException(e);
+            }
+            return f;
+        }
+
+    }
+
+    // ----------------------------------------------------------------------------------------------------------------
+    // Log management
+    // ----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Appends the commits not invalidated yet and the low watermark, when set, to the log
+     *
+     * @return the position of the log that must be synced to make the appended records durable
+     */
+    private synchronized long append(long[] commits, int length, long newLowWatermark) throws IOException {
+        for (int i = 0; i < length; i += 2) {
+            long startTimestamp = removeCheckpointBits(commits[i]);
+            // The transaction may have been invalidated by a client in the meantime
+            if (index.putIfAbsent(startTimestamp, commits[i + 1]) == NO_VALUE) {
+                appendRecord(startTimestamp, commits[i + 1], COMMIT_RECORD);
+            }
+        }
+        if (newLowWatermark > lowWatermark) {
+            lowWatermark = newLowWatermark;
+            appendRecord(0, newLowWatermark, LOW_WATERMARK_RECORD);
+        }
+        return activeSegment.position();
+    }
+
+    // Must be called holding the lock of the table
+    private long appendRecord(long startTimestamp, long commitTimestamp, int type) throws IOException {
+        if (!activeSegment.hasRoom()) {
+            rollSegment();
+        }
+        writeRecord(activeSegment, startTimestamp, commitTimestamp, type);
+        return activeSegment.position();
+    }
+
+    private void writeRecord(Segment segment, long startTimestamp, long commitTimestamp, int type) {
+        int offset = segment.writeOffset;
+        segment.buffer.putLong(offset, startTimestamp);
+        segment.buffer.putLong(offset + 8, commitTimestamp);
+        segment.buffer.putInt(offset + 16, type);
+        segment.buffer.putInt(offset + 20, checksum(startTimestamp, commitTimestamp, type));
+        segment.writeOffset += RECORD_SIZE;
+        if (type == COMMIT_RECORD) {
+            segment.maxStartTimestamp = Math.max(segment.maxStartTimestamp, startTimestamp);
+        }
+    }
+
+    // Must be called holding the lock of the table
+    private void rollSegment() throws IOException {
+        // The records in the previous segments are not covered by the syncs of the new one
+        if (syncOnFlush) {
+            activeSegment.buffer.force();
+        }
+        sealedSegments.addLast(activeSegment);
+        activeSegment = Segment.create(directory, activeSegment.id + 1, segmentSizeInBytes);
+        // Every segment starts with the low watermark, so it survives the removal of the previous segments
+        writeRecord(activeSegment, 0, lowWatermark, LOW_WATERMARK_RECORD);
+        LOG.info("Rolled commit table log to segment {}", activeSegment.file);
+    }
+
+    /**
+     * Makes durable the log up to the position passed. The first caller syncs all the records appended so far, so
+     * the ones waiting for it just need to check the position synced when they get the lock.
+     */
+    private void sync(long position) throws IOException {
+        if (!syncOnFlush) {
+            return;
+        }
+        synchronized (syncLock) {
+            if (syncedPosition >= position) {
+                return;
+            }
+            Segment segment;
+            long positionToSync;
+            synchronized (this) {
+                segment = activeSegment;
+                positionToSync = segment.position();
+            }
+            segment.buffer.force();
+            syncedPosition = Math.max(syncedPosition, positionToSync);
+        }
+    }
+
+    private synchronized void truncateSegmentsBelowLowWatermark() throws IOException {
+        // Only the segments sealed before starting, as carrying entries over may seal new ones
+        int segmentsToCheck = sealedSegments.size();
+        for (int i = 0; i < segmentsToCheck; i++) {
+            Segment segment = sealedSegments.peekFirst();
+            if (segment.maxStartTimestamp >= lowWatermark) {
+                break;
+            }
+            int carriedOver = 0;
+            for (int offset = 0; offset < segment.writeOffset; offset += RECORD_SIZE) {
+                long startTimestamp = segment.buffer.getLong(offset);
+                long commitTimestamp = segment.buffer.getLong(offset + 8);
+                if (segment.buffer.getInt(offset + 16) == COMMIT_RECORD && index.get(startTimestamp) == commitTimestamp) {
+                    appendRecord(startTimestamp, commitTimestamp, COMMIT_RECORD);
+                    carriedOver++;
+                }
+            }
+            // The entries carried over must be durable before removing the segment. Rolling syncs the sealed ones
+            if (syncOnFlush) {
+                activeSegment.buffer.force();
+            }
+            sealedSegments.removeFirst();
+            if (!segment.file.delete()) {
+                throw new IOException("Can't remove commit table segment " + segment.file);
+            }
+            LOG.info("Removed commit table segment {} below low watermark {}. {} entries carried over",
+                     segment.file, lowWatermark, carriedOver);
+        }
+    }
+
+    private synchronized void recover() throws IOException {
+
+        File[] files = directory.listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.endsWith(SEGMENT_FILE_SUFFIX);
+            }
+        });
+        long[] segmentIds = new long[files == null ? 0 : files.length];
+        for (int i = 0; i < segmentIds.length; i++) {
+            String name = files[i].getName();
+            segmentIds[i] = Long.parseLong(name.substring(0, name.length() - SEGMENT_FILE_SUFFIX.length()));
+        }
+        Arrays.sort(segmentIds);
+
+        for (long segmentId : segmentIds) {
+            Segment segment = Segment.open(directory, segmentId);
+            readRecords(segment);
+            if (activeSegment != null) {
+                sealedSegments.addLast(activeSegment);
+            }
+            activeSegment = segment;
+        }
+        if (activeSegment == null) {
+            activeSegment = Segment.create(directory, 0, segmentSizeInBytes);
+            writeRecord(activeSegment, 0, lowWatermark, LOW_WATERMARK_RECORD);
+        }
+        LOG.info("Commit table recovered from {} segments in {}. {} entries, low watermark {}",
+                 segmentIds.length, directory, index.size(), lowWatermark);
+
+    }
+
+    // Rebuilds the index from the records of the segment, stopping at the first one not fully written
+    private void readRecords(Segment segment) {
+        int offset = 0;
+        while (offset + RECORD_SIZE <= segment.buffer.capacity()) {
+            long startTimestamp = segment.buffer.getLong(offset);
+            long commitTimestamp = segment.buffer.getLong(offset + 8);
+            int type = segment.buffer.getInt(offset + 16);
+            if ((type != COMMIT_RECORD && type != LOW_WATERMARK_RECORD && type != DELETE_RECORD)
+                    || segment.buffer.getInt(offset + 20) != checksum(startTimestamp, commitTimestamp, type)) {
+                break;
+            }
+            if (type == COMMIT_RECORD) {
+                index.putIfAbsent(startTimestamp, commitTimestamp);
+                segment.maxStartTimestamp = Math.max(segment.maxStartTimestamp, startTimestamp);
+            } else if (type == DELETE_RECORD) {
+                index.remove(startTimestamp);
+            } else {
+                lowWatermark = Math.max(lowWatermark, commitTimestamp);
+            }
+            offset += RECORD_SIZE;
+        }
+        segment.writeOffset = offset;
+    }
+
+    private int checksum(long startTimestamp, long commitTimestamp, int type) {
+        for (int i = 0; i < 8; i++) {
+            recordScratch[i] = (byte) (startTimestamp >>> (56 - 8 * i));
+            recordScratch[8 + i] = (byte) (commitTimestamp >>> (56 - 8 * i));
+        }
+        for (int i = 0; i < 4; i++) {
+            recordScratch[16 + i] = (byte) (type >>> (24 - 8 * i));
+        }
+        crc.reset();
+        crc.update(recordScratch, 0, CHECKSUMMED_BYTES);
+        return (int) crc.getValue();
+    }
+
+    static long removeCheckpointBits(long startTimestamp) {
+        return startTimestamp - (startTimestamp % CommitTable.MAX_CHECKPOINTS_PER_TXN);
+    }
+
+    @VisibleForTesting
+    synchronized int getNumberOfSegments() {
+        return sealedSegments.size() + 1;
+    }
+
+    // ----------------------------------------------------------------------------------------------------------------
+    // Helper classes
+    // ----------------------------------------------------------------------------------------------------------------
+
+    private static class Segment {
+
+        final long id;
+        final File file;
+        final MappedByteBuffer buffer;
+        int writeOffset = 0;
+        long maxStartTimestamp = Long.MIN_VALUE;
+
+        private Segment(long id, File file, MappedByteBuffer buffer) {
+            this.id = id;
+            this.file = file;
+            this.buffer = buffer;
+        }
+
+        static Segment create(File directory, long id, int sizeInBytes) throws IOException {
+            File file = segmentFile(directory, id);
+            if (file.exists()) {
+                throw new IOException("Commit table segment " + file + " already exists");
+            }
+            return new Segment(id, file, map(file, sizeInBytes));
+        }
+
+        static Segment open(File directory, long id) throws IOException {
+            File file = segmentFile(directory, id);
+            return new Segment(id, file, map(file, file.length()));
+        }
+
+        private static MappedByteBuffer map(File file, long sizeInBytes) throws IOException {
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                raf.setLength(sizeInBytes);
+                // The mapping remains valid after closing the file
+                return raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, sizeInBytes);
+            }
+        }
+
+        private static File segmentFile(File directory, long id) {
+            return new File(directory, String.format("%020d%s", id, SEGMENT_FILE_SUFFIX));
+        }
+
+        boolean hasRoom() {
+            return writeOffset + RECORD_SIZE <= buffer.capacity();
+        }
+
+        // Position of the next record in the log, growing across segments
+        long position() {
+            return (id << 32) | writeOffset;
+        }
+
+    }
+
+}
@@ -0,0 +1,72 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.omid.committable.log;
+
+import com.google.inject.Inject;
+import com.google.inject.name.Named;
+
+public class LogCommitTableConfig {
+
+    public static final String COMMIT_TABLE_DIRECTORY_KEY = "omid.committable.log.directory";
+    public static final String COMMIT_TABLE_SEGMENT_SIZE_KEY = "omid.committable.log.segmentSizeInMB";
+    public static final String COMMIT_TABLE_SYNC_ON_FLUSH_KEY = "omid.committable.log.syncOnFlush";
+
+    public static final String DEFAULT_DIRECTORY = "omid-commit-table";
+    public static final int DEFAULT_SEGMENT_SIZE_IN_MB = 64;
+    public static final boolean DEFAULT_SYNC_ON_FLUSH = true;
+
+    // ----------------------------------------------------------------------------------------------------------------
+    // Configuration parameters
+    // ----------------------------------------------------------------------------------------------------------------
+
+    private String directory = DEFAULT_DIRECTORY;
+    private int segmentSizeInMB = DEFAULT_SEGMENT_SIZE_IN_MB;
+    private boolean syncOnFlush = DEFAULT_SYNC_ON_FLUSH;
+
+    // ----------------------------------------------------------------------------------------------------------------
+    // Getters and setters
+    // ----------------------------------------------------------------------------------------------------------------
+
+    public String getDirectory() {
+        return directory;
+    }
+
+    @Inject(optional = true)
+    public void setDirectory(@Named(COMMIT_TABLE_DIRECTORY_KEY) String directory) {
+        this.directory = directory;
+    }
+
+    public int getSegmentSizeInMB() {
+        return segmentSizeInMB;
+    }
+
+    @Inject(optional = true)
+    public void setSegmentSizeInMB(@Named(COMMIT_TABLE_SEGMENT_SIZE_KEY) int segmentSizeInMB) {
+        this.segmentSizeInMB = segmentSizeInMB;
+    }
+
+    public boolean getSyncOnFlush() {
+        return syncOnFlush;
+    }
+
+    @Inject(optional = true)
+    public void setSyncOnFlush(@Named(COMMIT_TABLE_SYNC_ON_FLUSH_KEY) boolean syncOnFlush) {
+        this.syncOnFlush = syncOnFlush;
+    }
+
+}
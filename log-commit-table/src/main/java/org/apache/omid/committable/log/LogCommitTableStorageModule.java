@@ -0,0 +1,74 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.omid.committable.log;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.name.Names;
+import org.apache.omid.committable.CommitTable;
+
+import javax.inject.Singleton;
+
+/**
+ * Stores the commit table in an append-only log in the local filesystem of the TSO. See {@link LogCommitTable}.
+ *
+ * This class is instantiated by the yaml parser.
+ * Snake_yaml needs a public POJO style class to work properly with all the setters and getters.
+ */
+public class LogCommitTableStorageModule extends AbstractModule {
+
+    private String directory = LogCommitTableConfig.DEFAULT_DIRECTORY;
+    private int segmentSizeInMB = LogCommitTableConfig.DEFAULT_SEGMENT_SIZE_IN_MB;
+    private boolean syncOnFlush = LogCommitTableConfig.DEFAULT_SYNC_ON_FLUSH;
+
+    @Override
+    protected void configure() {
+        bindConstant().annotatedWith(Names.named(LogCommitTableConfig.COMMIT_TABLE_DIRECTORY_KEY)).to(directory);
+        bindConstant().annotatedWith(Names.named(LogCommitTableConfig.COMMIT_TABLE_SEGMENT_SIZE_KEY)).to(segmentSizeInMB);
+        bindConstant().annotatedWith(Names.named(LogCommitTableConfig.COMMIT_TABLE_SYNC_ON_FLUSH_KEY)).to(syncOnFlush);
+        bind(CommitTable.class).to(LogCommitTable.class).in(Singleton.class);
+    }
+
+    // ----------------------------------------------------------------------------------------------------------------
+    // WARNING: Do not remove getters/setters, needed by snake_yaml!
+    // ----------------------------------------------------------------------------------------------------------------
+
+    public String getDirectory() {
+        return directory;
+    }
+
+    public void setDirectory(String directory) {
+        this.directory = directory;
+    }
+
+    public int getSegmentSizeInMB() {
+        return segmentSizeInMB;
+    }
+
+    public void setSegmentSizeInMB(int segmentSizeInMB) {
+        this.segmentSizeInMB = segmentSizeInMB;
+    }
+
+    public boolean getSyncOnFlush() {
+        return syncOnFlush;
+    }
+
+    public void setSyncOnFlush(boolean syncOnFlush) {
+        this.syncOnFlush = syncOnFlush;
+    }
+
+}
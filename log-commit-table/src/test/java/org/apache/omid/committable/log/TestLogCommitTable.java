@@ -0,0 +1,273 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.omid.committable.log;
+
+import org.apache.omid.committable.CommitTable;
+import org.apache.omid.committable.CommitTable.Client;
+import org.apache.omid.committable.CommitTable.CommitTimestamp;
+import org.apache.omid.committable.CommitTable.Writer;
+import org.apache.phoenix.thirdparty.com.google.common.base.Optional;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class TestLogCommitTable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TestLogCommitTable.class);
+
+    private static final int TX_STEP = CommitTable.MAX_CHECKPOINTS_PER_TXN;
+    // Room for the low watermark record plus 9 commits per segment
+    private static final int SEGMENT_SIZE_IN_BYTES = 10 * LogCommitTable.RECORD_SIZE;
+
+    private File directory;
+    private LogCommitTable commitTable;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("omid-log-commit-table").toFile();
+        commitTable = new LogCommitTable(directory, SEGMENT_SIZE_IN_BYTES, true);
+    }
+
+    @AfterMethod
+    public void tearDown() throws Exception {
+        commitTable.close();
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    @Test(timeOut = 30_000)
+    public void testBasicBehaviour() throws Exception {
+
+        Writer writer = commitTable.getWriter();
+        Client client = commitTable.getClient();
+
+        writer.addCommittedTransaction(TX_STEP, 2 * TX_STEP);
+        assertFalse(client.getCommitTimestamp(TX_STEP).get().isPresent(), "Commits must be visible after the flush");
+        writer.flush();
+        assertCommitted(client, TX_STEP, 2 * TX_STEP);
+        // Checkpoints of the transaction share its entry
+        assertCommitted(client, TX_STEP + 1, 2 * TX_STEP);
+
+        client.deleteCommitEntry(TX_STEP).get();
+        assertFalse(client.getCommitTimestamp(TX_STEP).get().isPresent());
+
+        writer.addCommittedTransaction(3 * TX_STEP, 4 * TX_STEP);
+        writer.clearWriteBuffer();
+        writer.flush();
+        assertFalse(client.getCommitTimestamp(3 * TX_STEP).get().isPresent(), "Cleared commits must be discarded");
+
+        writer.updateLowWatermark(5 * TX_STEP);
+        writer.flush();
+        assertEquals(client.readLowWatermark().get().longValue(), 5 * TX_STEP);
+
+    }
+
+    @Test(timeOut = 30_000)
+    public void testInvalidation() throws Exception {
+
+        Writer writer = commitTable.getWriter();
+        Client client = commitTable.getClient();
+
+        writer.addCommittedTransaction(TX_STEP, 2 * TX_STEP);
+        writer.flush();
+        assertFalse(client.tryInvalidateTransaction(TX_STEP).get(), "Committed transactions can't be invalidated");
+        assertCommitted(client, TX_STEP, 2 * TX_STEP);
+
+        assertTrue(client.tryInvalidateTransaction(3 * TX_STEP).get());
+        assertTrue(client.tryInvalidateTransaction(3 * TX_STEP).get(), "Invalidating again must succeed");
+        assertFalse(writer.atomicAddCommittedTransaction(3 * TX_STEP, 4 * TX_STEP));
+        writer.addCommittedTransaction(3 * TX_STEP, 4 * TX_STEP);
+        writer.flush();
+        assertInvalidated(client, 3 * TX_STEP);
+
+        assertTrue(writer.atomicAddCommittedTransaction(5 * TX_STEP, 6 * TX_STEP));
+        assertCommitted(client, 5 * TX_STEP, 6 * TX_STEP);
+
+    }
+
+    @Test(timeOut = 30_000)
+    public void testEntriesAndLowWatermarkAreRecoveredAfterRestart() throws Exception {
+
+        Writer writer = commitTable.getWriter();
+        Client client = commitTable.getClient();
+
+        // Spread the commits among several segments
+        for (long st = TX_STEP; st <= 30 * TX_STEP; st += TX_STEP) {
+            writer.addCommittedTransaction(st, st + 1);
+        }
+        writer.updateLowWatermark(TX_STEP);
+        writer.flush();
+        client.tryInvalidateTransaction(31 * TX_STEP).get();
+        assertTrue(commitTable.getNumberOfSegments() > 1);
+
+        commitTable.close();
+        commitTable = new LogCommitTable(directory, SEGMENT_SIZE_IN_BYTES, true);
+        client = commitTable.getClient();
+
+        for (long st = TX_STEP; st <= 30 * TX_STEP; st += TX_STEP) {
+            assertCommitted(client, st, st + 1);
+        }
+        assertInvalidated(client, 31 * TX_STEP);
+        assertEquals(client.readLowWatermark().get().longValue(), TX_STEP);
+
+        // The recovered table keeps appending after the last record
+        writer = commitTable.getWriter();
+        writer.addCommittedTransaction(32 * TX_STEP, 33 * TX_STEP);
+        writer.flush();
+        commitTable.close();
+        commitTable = new LogCommitTable(directory, SEGMENT_SIZE_IN_BYTES, true);
+        assertCommitted(commitTable.getClient(), 32 * TX_STEP, 33 * TX_STEP);
+        assertCommitted(commitTable.getClient(), 30 * TX_STEP, 30 * TX_STEP + 1);
+
+    }
+
+    @Test(timeOut = 30_000)
+    public void testDeletionsAreRecoveredAfterRestart() throws Exception {
+
+        Writer writer = commitTable.getWriter();
+        Client client = commitTable.getClient();
+
+        for (long st = TX_STEP; st <= 20 * TX_STEP; st += TX_STEP) {
+            writer.addCommittedTransaction(st, st + 1);
+        }
+        writer.flush();
+        client.tryInvalidateTransaction(21 * TX_STEP).get();
+        for (long st = TX_STEP; st <= 10 * TX_STEP; st += TX_STEP) {
+            client.deleteCommitEntry(st).get();
+        }
+        client.deleteCommitEntry(21 * TX_STEP).get();
+        // Deleting an entry not in the table is a no-op
+        client.deleteCommitEntry(22 * TX_STEP).get();
+
+        commitTable.close();
+        commitTable = new LogCommitTable(directory, SEGMENT_SIZE_IN_BYTES, true);
+        client = commitTable.getClient();
+
+        for (long st = TX_STEP; st <= 10 * TX_STEP; st += TX_STEP) {
+            assertFalse(client.getCommitTimestamp(st).get().isPresent(), "Deleted entries must not show up again");
+        }
+        for (long st = 11 * TX_STEP; st <= 20 * TX_STEP; st += TX_STEP) {
+            assertCommitted(client, st, st + 1);
+        }
+        assertFalse(client.getCommitTimestamp(21 * TX_STEP).get().isPresent());
+
+        // A transaction deleted can still be invalidated afterwards, and the invalidation survives restarts
+        assertTrue(client.tryInvalidateTransaction(TX_STEP).get());
+        commitTable.close();
+        commitTable = new LogCommitTable(directory, SEGMENT_SIZE_IN_BYTES, true);
+        assertInvalidated(commitTable.getClient(), TX_STEP);
+
+    }
+
+    @Test(timeOut = 30_000)
+    public void testSegmentsBelowLowWatermarkAreRemoved() throws Exception {
+
+        Writer writer = commitTable.getWriter();
+        Client client = commitTable.getClient();
+
+        for (long st = TX_STEP; st <= 50 * TX_STEP; st += TX_STEP) {
+            writer.addCommittedTransaction(st, st + 1);
+        }
+        writer.flush();
+        int segmentsBefore = commitTable.getNumberOfSegments();
+        LOG.info("{} segments before deleting the entries", segmentsBefore);
+
+        // Delete all the entries but one
+        for (long st = TX_STEP; st <= 50 * TX_STEP; st += TX_STEP) {
+            if (st != 7 * TX_STEP) {
+                client.deleteCommitEntry(st).get();
+            }
+        }
+        writer.updateLowWatermark(51 * TX_STEP);
+        writer.flush();
+
+        assertEquals(commitTable.getNumberOfSegments(), 1, "Only the active segment must remain");
+        assertEquals(directory.listFiles().length, 1);
+
+        // The entry not deleted yet must have been carried over
+        commitTable.close();
+        commitTable = new LogCommitTable(directory, SEGMENT_SIZE_IN_BYTES, true);
+        client = commitTable.getClient();
+        assertCommitted(client, 7 * TX_STEP, 7 * TX_STEP + 1);
+        assertFalse(client.getCommitTimestamp(8 * TX_STEP).get().isPresent());
+        assertEquals(client.readLowWatermark().get().longValue(), 51 * TX_STEP);
+
+    }
+
+    @Test(timeOut = 30_000)
+    public void testRecoveryStopsAtTornRecord() throws Exception {
+
+        Writer writer = commitTable.getWriter();
+        writer.addCommittedTransaction(TX_STEP, TX_STEP + 1);
+        writer.addCommittedTransaction(2 * TX_STEP, 2 * TX_STEP + 1);
+        writer.flush();
+        commitTable.close();
+
+        // Corrupt the last commit record, which comes after the low watermark and first commit records
+        File segment = directory.listFiles()[0];
+        try (RandomAccessFile raf = new RandomAccessFile(segment, "rw")) {
+            raf.seek(2 * LogCommitTable.RECORD_SIZE + 8);
+            raf.writeLong(12345L);
+        }
+
+        commitTable = new LogCommitTable(directory, SEGMENT_SIZE_IN_BYTES, true);
+        Client client = commitTable.getClient();
+        assertCommitted(client, TX_STEP, TX_STEP + 1);
+        assertFalse(client.getCommitTimestamp(2 * TX_STEP).get().isPresent());
+
+        // New records overwrite the torn one
+        writer = commitTable.getWriter();
+        writer.addCommittedTransaction(3 * TX_STEP, 3 * TX_STEP + 1);
+        writer.flush();
+        commitTable.close();
+        commitTable = new LogCommitTable(directory, SEGMENT_SIZE_IN_BYTES, true);
+        assertCommitted(commitTable.getClient(), 3 * TX_STEP, 3 * TX_STEP + 1);
+
+    }
+
+    private void assertCommitted(Client client, long startTimestamp, long commitTimestamp) throws Exception {
+        Optional<CommitTimestamp> ct = client.getCommitTimestamp(startTimestamp).get();
+        assertTrue(ct.isPresent(), "Transaction " + startTimestamp + " must be in the commit table");
+        assertTrue(ct.get().isValid());
+        assertEquals(ct.get().getValue(), commitTimestamp);
+    }
+
+    private void assertInvalidated(Client client, long startTimestamp) throws Exception {
+        Optional<CommitTimestamp> ct = client.getCommitTimestamp(startTimestamp).get();
+        assertTrue(ct.isPresent(), "Transaction " + startTimestamp + " must be in the commit table");
+        assertFalse(ct.get().isValid());
+        assertEquals(ct.get().getValue(), CommitTable.INVALID_TRANSACTION_MARKER);
+    }
+
+}
@@ -91,6 +91,11 @@ public class NullMetricsProvider implements MetricsProvider, MetricsRegistry {
             public void update(long duration) {
                 // Do nothing
             }
+
+            @Override
+            public void update(long duration, long count) {
+                // Do nothing
+            }
         };
 
     }
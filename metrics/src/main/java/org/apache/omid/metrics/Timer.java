@@ -25,4 +25,12 @@ public interface Timer extends Metric {
 
     void update(long durationInNs);
 
+    /**
+     * Adds the same duration several times, e.g. when draining the values already aggregated in a histogram.
+     *
+     * @param durationInNs the duration to add
+     * @param count the number of times it was measured
+     */
+    void update(long durationInNs, long count);
+
 }
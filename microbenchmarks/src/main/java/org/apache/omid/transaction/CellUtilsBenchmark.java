@@ -0,0 +1,88 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.omid.transaction;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.phoenix.thirdparty.com.google.common.base.Optional;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link CellUtils#mapCellsToShadowCells} on a row with a version per column, with or without the shadow
+ * cells already written.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CellUtilsBenchmark {
+
+    private static final byte[] ROW = Bytes.toBytes("row");
+    private static final byte[] FAMILY = Bytes.toBytes("f");
+    private static final byte[] VALUE = Bytes.toBytes("value");
+
+    private static final long START_TIMESTAMP = 10L;
+    private static final long COMMIT_TIMESTAMP = 11L;
+
+    @Param({"10", "100", "1000"})
+    public int columns;
+
+    @Param({"false", "true"})
+    public boolean shadowCells;
+
+    private List<Cell> rawCells;
+
+    @Setup
+    public void setup() {
+        rawCells = new ArrayList<>();
+        for (int i = 0; i < columns; i++) {
+            byte[] qualifier = Bytes.toBytes(String.format("col-%06d", i));
+            rawCells.add(new KeyValue(ROW, FAMILY, qualifier, START_TIMESTAMP, VALUE));
+            if (shadowCells) {
+                rawCells.add(new KeyValue(ROW, FAMILY, CellUtils.addShadowCellSuffixPrefix(qualifier),
+                                          START_TIMESTAMP, Bytes.toBytes(COMMIT_TIMESTAMP)));
+            }
+        }
+        Collections.sort(rawCells, KeyValue.COMPARATOR);
+    }
+
+    @Benchmark
+    public SortedMap<Cell, Optional<Cell>> mapCellsToShadowCells() {
+        return CellUtils.mapCellsToShadowCells(rawCells);
+    }
+
+}
@@ -0,0 +1,94 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.omid.transaction;
+
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.Table;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the hashing of the cells written by a transaction, done for each cell of the write set when committing.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HBaseCellIdBenchmark {
+
+    private static final byte[] FAMILY = Bytes.toBytes("f");
+
+    @Param({"16", "128"})
+    public int rowLength;
+
+    private HBaseCellId cellId;
+
+    @Setup
+    public void setup() throws IOException {
+        // Hashing only needs the name of the table, so there's no need to connect to HBase
+        final TableName tableName = TableName.valueOf("usertable");
+        Table table = (Table) Proxy.newProxyInstance(Table.class.getClassLoader(), new Class<?>[] { Table.class },
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        if (method.getName().equals("getName")) {
+                            return tableName;
+                        }
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+        TTable tTable = new TTable(table, (SnapshotFilter) null, false);
+        byte[] row = new byte[rowLength];
+        Bytes.random(row);
+        cellId = new HBaseCellId(tTable, row, FAMILY, Bytes.toBytes("qualifier"), 1L);
+    }
+
+    @Benchmark
+    public long getCellId() {
+        return cellId.getCellId();
+    }
+
+    @Benchmark
+    public long getRowId() {
+        return cellId.getRowId();
+    }
+
+    @Benchmark
+    public long getTableId() {
+        return cellId.getTableId();
+    }
+
+}
@@ -0,0 +1,177 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.omid.transaction;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.omid.committable.NullCommitTable;
+import org.apache.phoenix.thirdparty.com.google.common.base.Function;
+import org.apache.phoenix.thirdparty.com.google.common.base.Predicate;
+import org.apache.phoenix.thirdparty.com.google.common.collect.ImmutableList;
+import org.apache.phoenix.thirdparty.com.google.common.collect.Iterables;
+import org.apache.phoenix.thirdparty.com.google.common.collect.Multimaps;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the single pass snapshot filtering of {@link SnapshotFilterImpl#filterCellsForSnapshot} with the previous
+ * implementation, which grouped the cells by column with Guava multimaps and sorted the result, on wide rows. The
+ * previous implementation is no longer in the snapshot filter, so a copy of it is kept here as the baseline.
+ *
+ * Each column of the row has a committed version with its shadow cell and, optionally, a newer version written by a
+ * transaction that committed after the snapshot, so all the commit timestamps are found in the row itself.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SnapshotFilterBenchmark {
+
+    private static final byte[] ROW = Bytes.toBytes("row");
+    private static final byte[] FAMILY = Bytes.toBytes("f");
+    private static final byte[] VALUE = Bytes.toBytes("value");
+
+    private static final long COMMITTED_ST = 10L;
+    private static final long COMMITTED_CT = 11L;
+    private static final long SNAPSHOT_ST = 20L;
+    private static final long NEWER_ST = 15L;
+    private static final long NEWER_CT = 30L;
+
+    @Param({"10", "100", "1000"})
+    public int columns;
+
+    @Param({"false", "true"})
+    public boolean newerVersions;
+
+    private List<Cell> rawCells;
+    private HBaseTransaction transaction;
+    private SnapshotFilterImpl snapshotFilter;
+    private Map<String, byte[]> attributeMap;
+
+    @Setup
+    public void setup() throws IOException {
+        rawCells = new ArrayList<>();
+        for (int i = 0; i < columns; i++) {
+            byte[] qualifier = Bytes.toBytes(String.format("col-%06d", i));
+            byte[] shadowCellQualifier = CellUtils.addShadowCellSuffixPrefix(qualifier);
+            if (newerVersions) {
+                rawCells.add(new KeyValue(ROW, FAMILY, qualifier, NEWER_ST, VALUE));
+            }
+            rawCells.add(new KeyValue(ROW, FAMILY, qualifier, COMMITTED_ST, VALUE));
+            if (newerVersions) {
+                rawCells.add(new KeyValue(ROW, FAMILY, shadowCellQualifier, NEWER_ST, Bytes.toBytes(NEWER_CT)));
+            }
+            rawCells.add(new KeyValue(ROW, FAMILY, shadowCellQualifier, COMMITTED_ST, Bytes.toBytes(COMMITTED_CT)));
+        }
+        Collections.sort(rawCells, KeyValue.COMPARATOR);
+
+        transaction = new HBaseTransaction(SNAPSHOT_ST, 0L, new HashSet<HBaseCellId>(), new HashSet<HBaseCellId>(),
+                                           null, false);
+        snapshotFilter = new SnapshotFilterImpl(new NullCommitTable().getClient());
+        attributeMap = new HashMap<>();
+    }
+
+    @Benchmark
+    public List<Cell> singlePassFiltering() throws IOException {
+        return snapshotFilter.filterCellsForSnapshot(rawCells, transaction, 1, new HashMap<String, Long>(), attributeMap);
+    }
+
+    @Benchmark
+    public List<Cell> multimapGroupingFiltering() throws IOException {
+        Map<Long, Long> commitCache = new HashMap<>();
+        for (Cell cell : rawCells) {
+            if (CellUtils.isShadowCell(cell)) {
+                commitCache.put(cell.getTimestamp(), Bytes.toLong(CellUtil.cloneValue(cell)));
+            }
+        }
+        Map<String, Long> familyDeletionCache = new HashMap<>();
+        List<Cell> keyValuesInSnapshot = new ArrayList<>();
+        ImmutableList<Collection<Cell>> filteredCells =
+                groupCellsByColumnFilteringShadowCellsAndFamilyDeletion(rawCells);
+        for (Collection<Cell> columnCells : filteredCells) {
+            for (Cell cell : columnCells) {
+                if (snapshotFilter.getTSIfInTransaction(cell, transaction).isPresent() ||
+                        snapshotFilter.getTSIfInSnapshot(cell, transaction, commitCache).isPresent()) {
+                    String key = Bytes.toString(CellUtil.cloneRow(cell)) + ":"
+                            + Bytes.toString(CellUtil.cloneFamily(cell));
+                    Long familyDeletionCommitTimestamp = familyDeletionCache.get(key);
+                    if ((familyDeletionCommitTimestamp == null || familyDeletionCommitTimestamp < cell.getTimestamp())
+                            && !CellUtils.isTombstone(cell)) {
+                        keyValuesInSnapshot.add(cell);
+                    }
+                    break;
+                }
+            }
+        }
+        Collections.sort(keyValuesInSnapshot, KeyValue.COMPARATOR);
+        return keyValuesInSnapshot;
+    }
+
+    // Column grouping of the previous SnapshotFilterImpl implementation
+    private static ImmutableList<Collection<Cell>> groupCellsByColumnFilteringShadowCellsAndFamilyDeletion(
+            List<Cell> rawCells) {
+
+        Predicate<Cell> shadowCellAndFamilyDeletionFilter = new Predicate<Cell>() {
+
+            @Override
+            public boolean apply(Cell cell) {
+                boolean familyDeletionMarkerCondition = CellUtils.isFamilyDeleteCell(cell);
+
+                return cell != null && !CellUtils.isShadowCell(cell) && !familyDeletionMarkerCondition;
+            }
+
+        };
+
+        Function<Cell, ColumnWrapper> cellToColumnWrapper = new Function<Cell, ColumnWrapper>() {
+
+            @Override
+            public ColumnWrapper apply(Cell cell) {
+                return new ColumnWrapper(CellUtil.cloneFamily(cell), CellUtil.cloneQualifier(cell));
+            }
+
+        };
+
+        return Multimaps.index(Iterables.filter(rawCells, shadowCellAndFamilyDeletionFilter), cellToColumnWrapper)
+                .asMap().values()
+                .asList();
+    }
+
+}
@@ -0,0 +1,166 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.omid.tso;
+
+import org.apache.phoenix.thirdparty.com.google.common.base.Optional;
+import org.apache.omid.committable.NullCommitTable;
+import org.apache.omid.metrics.NullMetricsProvider;
+import org.apache.omid.tso.PersistenceProcessorImpl.PersistBatchEvent;
+import io.netty.channel.Channel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the time to fill a batch of the persistence processor with commits and to flush it through the
+ * {@link PersistenceProcessorHandler}, with a commit table that drops the writes and no replies sent. This is the
+ * overhead the TSO adds to each batch on top of the commit table latency.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BatchBenchmark {
+
+    @Param({"100", "1000", "10000"})
+    public int batchSize;
+
+    private Batch batch;
+    private PersistenceProcessorHandler handler;
+    private final PersistBatchEvent batchEvent = new PersistBatchEvent();
+    private final MonitoringContext monCtx = new MonitoringContextNullImpl();
+    private final Optional<Long> noNewLowWatermark = Optional.absent();
+    private long nextTimestamp = 0;
+
+    @Setup
+    public void setup() throws Exception {
+        batch = new Batch(0, batchSize);
+        handler = new PersistenceProcessorHandler(new NullMetricsProvider(),
+                                                  "localhost:54758",
+                                                  new AlwaysLeaderLeaseManagement(),
+                                                  new NullCommitTable(),
+                                                  new NoReplyProcessor(),
+                                                  new NoRetryProcessor(),
+                                                  new RuntimeExceptionPanicker(),
+                                                  new VoidStateReplicator());
+    }
+
+    @Benchmark
+    public Batch addCommits() {
+        batch.clear();
+        for (int i = 0; i < batchSize; i++) {
+            batch.addCommit(nextTimestamp++, nextTimestamp++, null, monCtx, noNewLowWatermark);
+        }
+        return batch;
+    }
+
+    @Benchmark
+    public Batch addCommitsAndFlush() throws Exception {
+        batch.clear();
+        for (int i = 0; i < batchSize; i++) {
+            batch.addCommit(nextTimestamp++, nextTimestamp++, null, monCtx, noNewLowWatermark);
+        }
+        PersistBatchEvent.makePersistBatch(batchEvent, 0, batch);
+        handler.onEvent(batchEvent);
+        return batch;
+    }
+
+    private static class AlwaysLeaderLeaseManagement implements LeaseManagement {
+
+        @Override
+        public void startService() {
+        }
+
+        @Override
+        public void stopService() {
+        }
+
+        @Override
+        public boolean stillInLeasePeriod() {
+            return true;
+        }
+
+    }
+
+    private static class NoReplyProcessor implements ReplyProcessor {
+
+        @Override
+        public void manageResponsesBatch(long batchSequence, Batch batch) {
+        }
+
+        @Override
+        public void sendCommitResponse(long startTimestamp, long commitTimestamp, Channel channel,
+                                       MonitoringContext monCtx, Optional<Long> newLowWatermark) {
+        }
+
+        @Override
+        public void sendAbortResponse(long startTimestamp, Channel channel, MonitoringContext monCtx) {
+        }
+
+        @Override
+        public void sendTimestampResponse(long startTimestamp, Channel channel, MonitoringContext monCtx) {
+        }
+
+        @Override
+        public void sendTimestampResponseWhenPersisted(long batchSequence, long startTimestamp, Channel channel,
+                                                       MonitoringContext monCtx) {
+        }
+
+        @Override
+        public void sendFenceResponse(long tableID, long fenceTimestamp, Channel channel, MonitoringContext monCtx) {
+        }
+
+        @Override
+        public void sendOverloadedTimestampResponse(long requestId, Channel channel) {
+        }
+
+        @Override
+        public void sendOverloadedCommitResponse(long startTimestamp, Channel channel) {
+        }
+
+        @Override
+        public void close() {
+        }
+
+    }
+
+    private static class NoRetryProcessor implements RetryProcessor {
+
+        @Override
+        public void disambiguateRetryRequestHeuristically(long startTimestamp, Channel c, MonitoringContext monCtx) {
+        }
+
+        @Override
+        public void close() {
+        }
+
+    }
+
+}
@@ -0,0 +1,85 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.omid.tso;
+
+import org.apache.omid.benchmarks.utils.ScrambledZipfianGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the conflict map of the TSO when the cells written follow the Zipfian distribution used by the TSO server
+ * benchmark, so a few hot cells are updated much more often than the rest. The keys are generated up front, as the
+ * generator is far slower than the map itself.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CommitHashMapBenchmark {
+
+    private static final int KEYS = 1 << 20;
+    private static final int KEYS_MASK = KEYS - 1;
+
+    @Param({"1000000", "10000000"})
+    public int conflictMapSize;
+
+    @Param({"100000000"})
+    public long cells;
+
+    private CommitHashMap hashMap;
+    private long[] keys;
+    private int nextKey = 0;
+    private long nextCommitTimestamp = 0;
+
+    @Setup
+    public void setup() {
+        hashMap = new CommitHashMap(conflictMapSize);
+        ScrambledZipfianGenerator generator = new ScrambledZipfianGenerator(cells);
+        keys = new long[KEYS];
+        for (int i = 0; i < KEYS; i++) {
+            keys[i] = generator.nextLong();
+        }
+        for (int i = 0; i < KEYS; i++) {
+            hashMap.putLatestWriteForCell(keys[i], ++nextCommitTimestamp);
+        }
+    }
+
+    @Benchmark
+    public long putLatestWriteForCell() {
+        return hashMap.putLatestWriteForCell(keys[nextKey++ & KEYS_MASK], ++nextCommitTimestamp);
+    }
+
+    @Benchmark
+    public long getLatestWriteForCell() {
+        return hashMap.getLatestWriteForCell(keys[nextKey++ & KEYS_MASK]);
+    }
+
+}
@@ -0,0 +1,84 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.omid.tso;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the operations per second of the {@link LongCache} backing the conflict map of the TSO with uniformly
+ * distributed keys. The cache is filled before measuring, so the sets evict entries as in a long running TSO.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LongCacheBenchmark {
+
+    private static final int KEYS = 1 << 20;
+    private static final int KEYS_MASK = KEYS - 1;
+
+    @Param({"1000000", "10000000"})
+    public int size;
+
+    @Param({"32"})
+    public int associativity;
+
+    private LongCache cache;
+    private long[] keys;
+    private int nextKey = 0;
+    private long nextValue = 0;
+
+    @Setup
+    public void setup() {
+        cache = new LongCache(size, associativity);
+        Random random = new Random(42);
+        keys = new long[KEYS];
+        for (int i = 0; i < KEYS; i++) {
+            keys[i] = random.nextLong();
+        }
+        for (long i = 0; i < size; i++) {
+            cache.set(random.nextLong(), ++nextValue);
+        }
+    }
+
+    @Benchmark
+    public long set() {
+        return cache.set(keys[nextKey++ & KEYS_MASK], ++nextValue);
+    }
+
+    @Benchmark
+    public long get() {
+        return cache.get(keys[nextKey++ & KEYS_MASK]);
+    }
+
+}
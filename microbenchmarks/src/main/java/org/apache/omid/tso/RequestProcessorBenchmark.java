@@ -0,0 +1,179 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.omid.tso;
+
+import org.apache.phoenix.thirdparty.com.google.common.base.Optional;
+import org.apache.omid.benchmarks.utils.ScrambledZipfianGenerator;
+import org.apache.omid.metrics.MetricsRegistry;
+import org.apache.omid.metrics.NullMetricsProvider;
+import org.apache.omid.tso.AbstractRequestProcessor.RequestEvent;
+import io.netty.channel.Channel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the conflict detection of the commit requests in the request processor, taking the timestamps from an
+ * in-memory timestamp oracle. The events are handled in the benchmark thread, without going through the disruptor,
+ * and the decisions are not forwarded anywhere.
+ *
+ * The write sets are drawn from a Zipfian distribution, so some of the transactions abort because of conflicts on the
+ * hot cells, as in the TSO server benchmark.
+ *
+ * The read sets of the serializable transactions are drawn from the same distribution and only checked against the
+ * conflict map, which gives the cost of the serializable isolation per read set size. A read set size of zero
+ * corresponds to snapshot isolation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RequestProcessorBenchmark {
+
+    private static final int WRITE_SETS = 1 << 12;
+    private static final int WRITE_SETS_MASK = WRITE_SETS - 1;
+
+    // Write sets up to 40 cells are inlined in the request event
+    @Param({"1", "10", "40", "100"})
+    public int writeSetSize;
+
+    @Param({"0", "10", "100", "1000"})
+    public int readSetSize;
+
+    @Param({"1000000"})
+    public int conflictMapSize;
+
+    private TimestampOracleImpl timestampOracle;
+    private NoForwardRequestProcessor requestProcessor;
+    private final RequestEvent event = new RequestEvent();
+    private final MonitoringContext monCtx = new MonitoringContextNullImpl();
+    private final List<List<Long>> writeSets = new ArrayList<>(WRITE_SETS);
+    private final List<List<Long>> readSets = new ArrayList<>(WRITE_SETS);
+    private int nextWriteSet = 0;
+
+    @Setup
+    public void setup() throws IOException {
+        MetricsRegistry metrics = new NullMetricsProvider();
+        Panicker panicker = new RuntimeExceptionPanicker();
+        TSOServerConfig config = new TSOServerConfig();
+        config.setConflictMapSize(conflictMapSize);
+
+        timestampOracle = new TimestampOracleImpl(metrics, new TimestampOracleImpl.InMemoryTimestampStorage(), panicker);
+        timestampOracle.initialize();
+        requestProcessor = new NoForwardRequestProcessor(metrics, timestampOracle, panicker, config);
+
+        ScrambledZipfianGenerator generator = new ScrambledZipfianGenerator(100_000_000L);
+        for (int i = 0; i < WRITE_SETS; i++) {
+            List<Long> writeSet = new ArrayList<>(writeSetSize);
+            for (int j = 0; j < writeSetSize; j++) {
+                writeSet.add(generator.nextLong());
+            }
+            writeSets.add(writeSet);
+            List<Long> readSet = new ArrayList<>(readSetSize);
+            for (int j = 0; j < readSetSize; j++) {
+                readSet.add(generator.nextLong());
+            }
+            readSets.add(readSet);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        requestProcessor.close();
+    }
+
+    @Benchmark
+    public void handleCommit() throws Exception {
+        // The start timestamp is taken right before committing, so only the concurrent writes of the previous
+        // commits on the same cells can make the transaction abort
+        long startTimestamp = timestampOracle.next();
+        int index = nextWriteSet++ & WRITE_SETS_MASK;
+        RequestEvent.makeCommitRequest(event, startTimestamp, monCtx, writeSets.get(index), readSets.get(index),
+                                       Collections.<Long>emptyList(), Collections.<Long>emptyList(), false, null);
+        requestProcessor.onEvent(event, 0, true);
+    }
+
+    /**
+     * Request processor that drops the commit decisions instead of passing them to the persistence step
+     */
+    private static class NoForwardRequestProcessor extends AbstractRequestProcessor {
+
+        NoForwardRequestProcessor(MetricsRegistry metrics,
+                                  TimestampOracle timestampOracle,
+                                  Panicker panicker,
+                                  TSOServerConfig config) throws IOException {
+            super(metrics, timestampOracle, panicker, config, new NoLowWatermarkWriter(), null,
+                  new VoidStateReplicator());
+        }
+
+        @Override
+        protected void forwardCommit(long startTimestamp, long commitTimestamp, Channel c, MonitoringContext monCtx,
+                                     Optional<Long> lowWatermark) {
+        }
+
+        @Override
+        protected void forwardPreviousEpochCommit(long startTimestamp, long commitTimestamp, Channel c,
+                                                  MonitoringContext monCtx, Optional<Long> lowWatermark) {
+        }
+
+        @Override
+        protected void forwardCommitRetry(long startTimestamp, Channel c, MonitoringContext monCtx) {
+        }
+
+        @Override
+        protected void forwardAbort(long startTimestamp, Channel c, MonitoringContext monCtx) {
+        }
+
+        @Override
+        protected void forwardTimestamp(long startTimestamp, Channel c, MonitoringContext monCtx) {
+        }
+
+        @Override
+        protected void onTimeout() {
+        }
+
+    }
+
+    private static class NoLowWatermarkWriter implements LowWatermarkWriter {
+
+        @Override
+        public Future<Void> persistLowWatermark(long lowWatermark) {
+            return null;
+        }
+
+    }
+
+}
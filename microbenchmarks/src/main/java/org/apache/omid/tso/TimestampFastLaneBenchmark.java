@@ -0,0 +1,258 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.omid.tso;
+
+import com.lmax.disruptor.BlockingWaitStrategy;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.apache.commons.pool2.ObjectPool;
+import org.apache.omid.committable.CommitTable;
+import org.apache.omid.committable.NullCommitTable;
+import org.apache.omid.metrics.MetricsRegistry;
+import org.apache.omid.metrics.NullMetricsProvider;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Measures the latency of the timestamp requests going through the request, persistence and reply processors while
+ * a background thread keeps a number of commits in flight. The commit table drops the writes, but its flushes take
+ * the configured time, so each batch of commits takes at least that long to be persisted.
+ *
+ * Without the timestamp fast lane, a timestamp request waits for the batch it's added to, which is only flushed
+ * when it fills up or times out. With it, the request only waits for the batches holding commits already in flight.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TimestampFastLaneBenchmark {
+
+    @Param({"false", "true"})
+    public boolean timestampFastLane;
+
+    @Param({"0", "1000"})
+    public int commitTableFlushLatencyInMicros;
+
+    @Param({"0", "100"})
+    public int commitsInFlight;
+
+    private TimestampOracleImpl timestampOracle;
+    private ReplyProcessorImpl replyProcessor;
+    private RetryProcessorImpl retryProcessor;
+    private PersistenceProcessorImpl persistenceProcessor;
+    private RequestProcessorPersistCT requestProcessor;
+    private Channel channel;
+
+    private final Semaphore timestampReplies = new Semaphore(0);
+    private final MonitoringContext timestampMonCtx = new ReplyListener(timestampReplies);
+    private Thread commitLoadThread;
+    private volatile boolean stopped = false;
+
+    @Setup
+    public void setup() throws Exception {
+        MetricsRegistry metrics = new NullMetricsProvider();
+        Panicker panicker = new RuntimeExceptionPanicker();
+        TSOServerConfig config = new TSOServerConfig();
+        config.setTimestampFastLane(timestampFastLane);
+
+        CommitTable commitTable = new SlowFlushCommitTable(commitTableFlushLatencyInMicros);
+        ObjectPool<Batch> batchPool = new BatchPoolModule(config).getBatchPool();
+        LowWatermarkWriter lowWatermarkWriter = new LowWatermarkWriterImpl(config, commitTable, metrics);
+
+        replyProcessor = new ReplyProcessorImpl(new BlockingWaitStrategy(), metrics, panicker, batchPool,
+                                                lowWatermarkWriter);
+        retryProcessor = new RetryProcessorImpl(new BlockingWaitStrategy(), metrics, commitTable, replyProcessor,
+                                                panicker, batchPool);
+        PersistenceProcessorHandler[] handlers = new PersistenceProcessorHandler[config.getNumConcurrentCTWriters()];
+        for (int i = 0; i < handlers.length; i++) {
+            handlers[i] = new PersistenceProcessorHandler(metrics,
+                                                          "localhost:54758",
+                                                          new AlwaysLeaderLeaseManagement(),
+                                                          commitTable,
+                                                          replyProcessor,
+                                                          retryProcessor,
+                                                          panicker,
+                                                          new VoidStateReplicator());
+        }
+        persistenceProcessor = new PersistenceProcessorImpl(config, new BlockingWaitStrategy(), commitTable,
+                                                            batchPool, panicker, handlers, replyProcessor, metrics);
+
+        timestampOracle = new TimestampOracleImpl(metrics, new TimestampOracleImpl.InMemoryTimestampStorage(),
+                                                  panicker);
+        timestampOracle.initialize();
+        requestProcessor = new RequestProcessorPersistCT(metrics, timestampOracle, persistenceProcessor, panicker,
+                                                         config, lowWatermarkWriter, replyProcessor,
+                                                         new VoidStateReplicator());
+
+        // The responses are dropped before reaching the network
+        channel = new EmbeddedChannel(new ChannelOutboundHandlerAdapter() {
+            @Override
+            public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) {
+                promise.setSuccess();
+            }
+        });
+
+        if (commitsInFlight > 0) {
+            commitLoadThread = new Thread(new CommitLoad(), "commit-load");
+            commitLoadThread.setDaemon(true);
+            commitLoadThread.start();
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        stopped = true;
+        if (commitLoadThread != null) {
+            commitLoadThread.interrupt();
+            commitLoadThread.join();
+        }
+        requestProcessor.close();
+        persistenceProcessor.close();
+        retryProcessor.close();
+        replyProcessor.close();
+    }
+
+    @Benchmark
+    public void timestampRequest() throws InterruptedException {
+        requestProcessor.timestampRequest(channel, timestampMonCtx);
+        timestampReplies.acquire();
+    }
+
+    /**
+     * Keeps the configured number of commits in flight, each one writing a different cell so none of them aborts
+     */
+    private class CommitLoad implements Runnable {
+
+        private final Semaphore commitSlots = new Semaphore(commitsInFlight);
+        private final MonitoringContext commitMonCtx = new ReplyListener(commitSlots);
+
+        @Override
+        public void run() {
+            long nextCellId = 0;
+            try {
+                while (!stopped) {
+                    commitSlots.acquire();
+                    requestProcessor.commitRequest(timestampOracle.getLast(),
+                                                   Collections.singletonList(nextCellId++),
+                                                   Collections.<Long>emptyList(),
+                                                   false,
+                                                   channel,
+                                                   commitMonCtx);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+    }
+
+    /**
+     * Releases a permit each time a response is sent for a request monitored with this context
+     */
+    private static class ReplyListener implements MonitoringContext {
+
+        private final Semaphore replies;
+
+        ReplyListener(Semaphore replies) {
+            this.replies = replies;
+        }
+
+        @Override
+        public void timerStart(MonitoredStage stage) {
+        }
+
+        @Override
+        public void timerStop(MonitoredStage stage) {
+            switch (stage) {
+                case REPLY_TIMESTAMP:
+                case REPLY_COMMIT:
+                case REPLY_ABORT:
+                    replies.release();
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        @Override
+        public void publish() {
+        }
+
+    }
+
+    private static class SlowFlushCommitTable extends NullCommitTable {
+
+        private final long flushLatencyInNs;
+
+        SlowFlushCommitTable(int flushLatencyInMicros) {
+            this.flushLatencyInNs = TimeUnit.MICROSECONDS.toNanos(flushLatencyInMicros);
+        }
+
+        @Override
+        public CommitTable.Writer getWriter() {
+            return new NullCommitTable.Writer() {
+                @Override
+                public void flush() throws IOException {
+                    if (flushLatencyInNs > 0) {
+                        LockSupport.parkNanos(flushLatencyInNs);
+                    }
+                }
+            };
+        }
+
+    }
+
+    private static class AlwaysLeaderLeaseManagement implements LeaseManagement {
+
+        @Override
+        public void startService() {
+        }
+
+        @Override
+        public void stopService() {
+        }
+
+        @Override
+        public boolean stillInLeasePeriod() {
+            return true;
+        }
+
+    }
+
+}
@@ -0,0 +1,172 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.statemachine;
+
+import org.apache.statemachine.StateMachine.Fsm;
+import org.apache.statemachine.StateMachine.FsmImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the events per second handled by {@link FsmImpl} when the handlers are found by reflection and when the
+ * events dispatch themselves through {@link StateMachine.DispatchableEvent}.
+ *
+ * The direct benchmarks call the event processing of the FSM in the benchmark thread, so they only measure the
+ * dispatch itself. The executor ones send a burst of events through the FSM executor, as the TSO client does.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StateMachineBenchmark {
+
+    private static final int BURST_SIZE = 1000;
+
+    static class ReflectiveEvent implements StateMachine.Event {
+    }
+
+    static class LatchEvent implements StateMachine.DispatchableEvent<CountingState> {
+
+        final CountDownLatch latch;
+
+        LatchEvent(CountDownLatch latch) {
+            this.latch = latch;
+        }
+
+        @Override
+        public StateMachine.State dispatchTo(CountingState state) {
+            return state.handleEvent(this);
+        }
+    }
+
+    static class SelfDispatchingEvent implements StateMachine.DispatchableEvent<CountingState> {
+
+        @Override
+        public StateMachine.State dispatchTo(CountingState state) {
+            return state.handleEvent(this);
+        }
+    }
+
+    static class ReflectiveLatchEvent implements StateMachine.Event {
+
+        final CountDownLatch latch;
+
+        ReflectiveLatchEvent(CountDownLatch latch) {
+            this.latch = latch;
+        }
+    }
+
+    static class CountingState extends StateMachine.State {
+
+        long count = 0;
+
+        CountingState(Fsm fsm) {
+            super(fsm);
+        }
+
+        public StateMachine.State handleEvent(ReflectiveEvent e) {
+            count++;
+            return this;
+        }
+
+        public StateMachine.State handleEvent(ReflectiveLatchEvent e) {
+            e.latch.countDown();
+            return this;
+        }
+
+        public StateMachine.State handleEvent(SelfDispatchingEvent e) {
+            count++;
+            return this;
+        }
+
+        public StateMachine.State handleEvent(LatchEvent e) {
+            e.latch.countDown();
+            return this;
+        }
+    }
+
+    private ScheduledExecutorService executor;
+    private FsmImpl fsm;
+    private CountingState state;
+
+    private final ReflectiveEvent reflectiveEvent = new ReflectiveEvent();
+    private final SelfDispatchingEvent dispatchableEvent = new SelfDispatchingEvent();
+
+    @Setup
+    public void setup() {
+        executor = Executors.newSingleThreadScheduledExecutor();
+        fsm = new FsmImpl(executor);
+        state = new CountingState(fsm);
+        fsm.setInitState(state);
+    }
+
+    @TearDown
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Benchmark
+    public boolean reflectiveDirect() {
+        return fsm.processEvent(reflectiveEvent);
+    }
+
+    @Benchmark
+    public boolean dispatchableDirect() {
+        return fsm.processEvent(dispatchableEvent);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BURST_SIZE)
+    public void reflectiveExecutor() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(BURST_SIZE);
+        ReflectiveLatchEvent e = new ReflectiveLatchEvent(latch);
+        for (int i = 0; i < BURST_SIZE; i++) {
+            fsm.sendEvent(e);
+        }
+        latch.await();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BURST_SIZE)
+    public void dispatchableExecutor() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(BURST_SIZE);
+        LatchEvent e = new LatchEvent(latch);
+        for (int i = 0; i < BURST_SIZE; i++) {
+            fsm.sendEvent(e);
+        }
+        latch.await();
+    }
+
+}
@@ -103,7 +103,11 @@ public class StateMachine {
             return m;
         }
 
+        @SuppressWarnings("unchecked")
         State dispatch(Event e) throws NoSuchMethodException, IllegalAccessException, InvocationTargetException {
+            if (e instanceof DispatchableEvent) {
+                return ((DispatchableEvent<State>) e).dispatchTo(this);
+            }
             return (State) findHandler(e.getClass()).invoke(this, e);
         }
 
@@ -112,6 +116,24 @@ public class StateMachine {
     public interface Event {
     }
 
+    /**
+     * Event that calls the handler of the state itself, so it's dispatched with a plain virtual call instead of
+     * looking up and invoking the handler by reflection. It's usually implemented as a visitor, where the base state
+     * of the state machine declares a handleEvent overload for each event type and each event calls the overload of
+     * its own type:
+     *
+     * <pre>
+     * public State dispatchTo(BaseState state) {
+     *     return state.handleEvent(this);
+     * }
+     * </pre>
+     *
+     * @param <S> base type of the states able to handle the event
+     */
+    public interface DispatchableEvent<S extends State> extends Event {
+        State dispatchTo(S state);
+    }
+
     public interface Fsm {
         Fsm newChildFsm();
 
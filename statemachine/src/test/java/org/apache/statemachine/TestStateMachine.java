@@ -86,6 +86,28 @@ public class TestStateMachine {
         }
     }
 
+    static class DispatchedEvent extends TestEvent implements StateMachine.DispatchableEvent<DispatchingState> {
+
+        @Override
+        public State dispatchTo(DispatchingState state) {
+            return state.handleDispatchedEvent(this);
+        }
+    }
+
+    static class DispatchingState extends State {
+        int dispatched = 0;
+
+        DispatchingState(Fsm fsm) {
+            super(fsm);
+        }
+
+        // Not named handleEvent, so the event can only reach it through its own dispatch
+        State handleDispatchedEvent(DispatchedEvent e) {
+            e.success(dispatched++);
+            return this;
+        }
+    }
+
     @Test(timeOut = 60_000)
     public void testOrdering() throws Throwable {
         Fsm fsm = new FsmImpl(Executors.newSingleThreadScheduledExecutor());
@@ -97,4 +119,16 @@ public class TestStateMachine {
         fsm.sendEvent(te);
         Assert.assertEquals(10, te.get());
     }
+
+    @Test(timeOut = 60_000)
+    public void testDispatchableEventsSkipReflection() throws Throwable {
+        Fsm fsm = new FsmImpl(Executors.newSingleThreadScheduledExecutor());
+        fsm.setInitState(new DispatchingState(fsm));
+        for (int i = 0; i < 10; i++) {
+            fsm.sendEvent(new DispatchedEvent());
+        }
+        DispatchedEvent de = new DispatchedEvent();
+        fsm.sendEvent(de);
+        Assert.assertEquals(10, de.get());
+    }
 }
@@ -80,9 +80,14 @@ public abstract class AbstractTransaction<T extends CellId> implements Transacti
     private boolean isRollbackOnly;
     private final Set<T> writeSet;
     private final Set<T> conflictFreeWriteSet;
+    // Conflict keys of what the transaction read, only recorded by serializable transactions
+    private final ReadSet readSet = new ReadSet();
+    private final ReadSet readTableKeys = new ReadSet();
+    private boolean isReadSetCoarsened;
     private Status status = Status.RUNNING;
     private VisibilityLevel visibilityLevel;
     private final boolean isLowLatency;
+    private boolean isReadOnly;
 
     /**
      * Base constructor
@@ -179,6 +184,10 @@ public abstract class AbstractTransaction<T extends CellId> implements Transacti
      */
     public void checkpoint() throws TransactionException {
 
+        if (isReadOnly) {
+            throw new TransactionException("Error: checkpoints are not allowed in read-only transactions");
+        }
+
         setVisibilityLevel(VisibilityLevel.SNAPSHOT_EXCLUDE_CURRENT);
         this.readTimestamp = this.writeTimestamp++;
 
@@ -295,8 +304,15 @@ public abstract class AbstractTransaction<T extends CellId> implements Transacti
      * Sets the visibility level for this transaction.
      * @param visibilityLevel
      *            the {@link VisibilityLevel} to set
+     * @throws IllegalStateException
+     *            if the transaction is read-only, as it must keep the snapshot it was created with
      */
     public void setVisibilityLevel(VisibilityLevel visibilityLevel) {
+        if (isReadOnly) {
+            throw new IllegalStateException(
+                "Visibility level cannot be changed in read-only transaction " + getTransactionId());
+        }
+
         this.visibilityLevel = visibilityLevel;
 
         // If we are setting visibility level to either SNAPSHOT or SNAPSHOT_ALL
@@ -350,6 +366,47 @@ public abstract class AbstractTransaction<T extends CellId> implements Transacti
         conflictFreeWriteSet.add(element);
     }
 
+    /**
+     * Returns the conflict keys of what this transaction read. The array is built on each call.
+     * @return read set, sorted and without duplicates
+     */
+    public long[] getReadSet() {
+        return readSet.toArray();
+    }
+
+    /**
+     * Adds the conflict key of something read by the transaction to its read set. When the read set grows beyond the
+     * maximum size allowed by the transaction manager, it is replaced by the keys of the tables read.
+     * @param tableKey
+     *            conflict key of the table read
+     * @param key
+     *            conflict key of what was read
+     */
+    public void addReadSetElement(long tableKey, long key) {
+        readTableKeys.add(tableKey);
+        if (isReadSetCoarsened) {
+            readSet.add(tableKey);
+            return;
+        }
+        readSet.add(key);
+        if (readSet.sizeUpperBound() > transactionManager.getMaxReadSetSize()
+                && readSet.size() > transactionManager.getMaxReadSetSize()) {
+            readSet.clear();
+            readSet.addAll(readTableKeys);
+            isReadSetCoarsened = true;
+        }
+    }
+
+    /**
+     * Adds the conflict key of a table the transaction read as a whole, e.g. with a scan, to its read set.
+     * @param tableKey
+     *            conflict key of the table read
+     */
+    public void addTableReadSetElement(long tableKey) {
+        readTableKeys.add(tableKey);
+        readSet.add(tableKey);
+    }
+
     @Override
     public String toString() {
         return String.format("Tx-%s [%s] (ST=%d, RT=%d, WT=%d, CT=%d, Epoch=%d) WriteSet %s ConflictFreeWriteSet %s",
@@ -395,4 +452,23 @@ public abstract class AbstractTransaction<T extends CellId> implements Transacti
     public boolean isLowLatency() {
         return isLowLatency;
     }
+
+    /**
+     * Returns whether this transaction was started as a read-only transaction.
+     * @return true if the transaction is not allowed to write
+     */
+    public boolean isReadOnly() {
+        return isReadOnly;
+    }
+
+    /**
+     * Turns this transaction into a read-only transaction. The snapshot is set to exclude any data written with the
+     * start timestamp of the transaction, so the timestamp can be shared with the transaction it was originally
+     * handed out to by the TSO.
+     */
+    void markAsReadOnly() {
+        this.visibilityLevel = VisibilityLevel.SNAPSHOT_EXCLUDE_CURRENT;
+        this.readTimestamp = startTimestamp - 1;
+        this.isReadOnly = true;
+    }
 }
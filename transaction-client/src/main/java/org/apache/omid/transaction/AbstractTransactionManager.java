@@ -25,19 +25,24 @@ import org.apache.phoenix.thirdparty.com.google.common.util.concurrent.MoreExecu
 import org.apache.omid.committable.CommitTable;
 import org.apache.omid.committable.CommitTable.CommitTimestamp;
 import org.apache.omid.metrics.Counter;
+import org.apache.omid.metrics.Histogram;
 import org.apache.omid.metrics.MetricsRegistry;
 import org.apache.omid.metrics.Timer;
 import org.apache.omid.transaction.Transaction.Status;
 import org.apache.omid.tso.client.AbortException;
 import org.apache.omid.tso.client.CellId;
 import org.apache.omid.tso.client.ConnectionException;
+import org.apache.omid.tso.client.OmidClientConfiguration.IsolationLevel;
 import org.apache.omid.tso.client.ServiceUnavailableException;
+import org.apache.omid.tso.client.TSOFuture;
 import org.apache.omid.tso.client.TSOProtocol;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 
 import static org.apache.omid.metrics.MetricsUtils.name;
@@ -67,6 +72,13 @@ public abstract class AbstractTransactionManager implements TransactionManager {
     private final CommitTable.Writer commitTableWriter;
     private final TransactionFactory<? extends CellId> transactionFactory;
 
+    // Last start timestamp handed out by the TSO. The TSO replies to timestamp requests only after all the commits
+    // with a smaller timestamp have been persisted, so it is a safe read point for read-only transactions
+    private final AtomicReference<SafeReadPoint> lastSafeReadPoint = new AtomicReference<>();
+    private volatile long staleSnapshotMaxAgeInMs = 0; // Disabled by default
+    private volatile IsolationLevel isolationLevel = IsolationLevel.SNAPSHOT;
+    private volatile int maxReadSetSize = Integer.MAX_VALUE;
+
     // Metrics
     private final Timer startTimestampTimer;
     private final Timer commitTimer;
@@ -75,6 +87,9 @@ public abstract class AbstractTransactionManager implements TransactionManager {
     private final Counter rolledbackTxsCounter;
     private final Counter errorTxsCounter;
     private final Counter invalidatedTxsCounter;
+    private final Counter staleSnapshotHitsCounter;
+    private final Counter staleSnapshotMissesCounter;
+    private final Histogram staleSnapshotAgeHistogram;
 
     /**
      * Base constructor
@@ -112,6 +127,9 @@ public abstract class AbstractTransactionManager implements TransactionManager {
         this.rolledbackTxsCounter = metrics.counter(name("omid", "tm", "hbase", "rolledbackTxs"));
         this.errorTxsCounter = metrics.counter(name("omid", "tm", "hbase", "erroredTxs"));
         this.invalidatedTxsCounter = metrics.counter(name("omid", "tm", "hbase", "invalidatedTxs"));
+        this.staleSnapshotHitsCounter = metrics.counter(name("omid", "tm", "hbase", "staleSnapshot", "hits"));
+        this.staleSnapshotMissesCounter = metrics.counter(name("omid", "tm", "hbase", "staleSnapshot", "misses"));
+        this.staleSnapshotAgeHistogram = metrics.histogram(name("omid", "tm", "hbase", "staleSnapshot", "ageInMs"));
 
     }
 
@@ -121,6 +139,48 @@ public abstract class AbstractTransactionManager implements TransactionManager {
      */
     public void preBegin() throws TransactionManagerException {}
 
+    /**
+     * Sets the maximum age of the cached read point that {@link #beginStaleSnapshot()} is allowed to reuse.
+     * @param staleSnapshotMaxAgeInMs
+     *            maximum staleness in milliseconds. Zero disables stale snapshots.
+     */
+    public void setStaleSnapshotMaxAgeInMs(long staleSnapshotMaxAgeInMs) {
+        this.staleSnapshotMaxAgeInMs = staleSnapshotMaxAgeInMs;
+    }
+
+    public long getStaleSnapshotMaxAgeInMs() {
+        return staleSnapshotMaxAgeInMs;
+    }
+
+    /**
+     * Sets the isolation level of the transactions committed from now on. With
+     * {@link IsolationLevel#SERIALIZABLE}, the read sets of the transactions are sent to the TSO, which aborts them
+     * when something they read was written by a transaction committed after they started.
+     * @param isolationLevel
+     *            the isolation level
+     */
+    public void setIsolationLevel(IsolationLevel isolationLevel) {
+        this.isolationLevel = isolationLevel;
+    }
+
+    public IsolationLevel getIsolationLevel() {
+        return isolationLevel;
+    }
+
+    /**
+     * Sets the maximum number of keys in the read set of a serializable transaction, beyond which the read set is
+     * replaced by the keys of the tables read.
+     * @param maxReadSetSize
+     *            maximum number of keys. Zero or less means unbounded.
+     */
+    public void setMaxReadSetSize(int maxReadSetSize) {
+        this.maxReadSetSize = (maxReadSetSize > 0) ? maxReadSetSize : Integer.MAX_VALUE;
+    }
+
+    public int getMaxReadSetSize() {
+        return maxReadSetSize;
+    }
+
     /**
      * @see org.apache.omid.transaction.TransactionManager#begin()
      */
@@ -130,36 +190,53 @@ public abstract class AbstractTransactionManager implements TransactionManager {
         try {
             preBegin();
 
-            long startTimestamp, epoch;
+            AbstractTransaction<? extends CellId> tx = beginWithNewStartTimestamp();
 
-            // The loop is required for HA scenarios where we get the timestamp
-            // but when getting the epoch, the client is connected to a new TSOServer
-            // When this happen, the epoch will be larger than the startTimestamp,
-            // so we need to start the transaction again. We use the fact that epoch
-            // is always smaller or equal to a timestamp, and therefore, we first need
-            // to get the timestamp and then the epoch.
-            startTimestampTimer.start();
-            try {
-                do {
-                    startTimestamp = tsoClient.getNewStartTimestamp().get();
-                    epoch = tsoClient.getEpoch();
-                } while (epoch > startTimestamp);
-            } finally {
-                startTimestampTimer.stop();
+            postBegin(tx);
+
+            return tx;
+        } catch (TransactionManagerException e) {
+            throw new TransactionException("An error has occured during PreBegin/PostBegin", e);
+        }
+    }
+
+    /**
+     * @see org.apache.omid.transaction.TransactionManager#beginStaleSnapshot()
+     */
+    @Override
+    public final Transaction beginStaleSnapshot() throws TransactionException {
+
+        try {
+            preBegin();
+
+            AbstractTransaction<? extends CellId> tx = null;
+
+            // In low latency mode the commits are written to the commit table by the clients, so the timestamps
+            // returned by the TSO do not guarantee that previous commits are already visible
+            SafeReadPoint readPoint = lastSafeReadPoint.get();
+            if (readPoint != null && staleSnapshotMaxAgeInMs > 0 && !tsoClient.isLowLatency()) {
+                long ageInMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - readPoint.receptionTimeInNanos);
+                long epoch = tsoClient.getEpoch();
+                // A read point from a previous TSO epoch is discarded as begin() does
+                if (ageInMs <= staleSnapshotMaxAgeInMs && epoch <= readPoint.timestamp) {
+                    tx = transactionFactory.createTransaction(readPoint.timestamp, epoch, this);
+                    staleSnapshotHitsCounter.inc();
+                    staleSnapshotAgeHistogram.update(ageInMs);
+                }
+            }
+
+            if (tx == null) {
+                staleSnapshotMissesCounter.inc();
+                tx = beginWithNewStartTimestamp();
             }
 
-            AbstractTransaction<? extends CellId> tx = transactionFactory.createTransaction(startTimestamp, epoch, this);
+            tx.markAsReadOnly();
 
             postBegin(tx);
 
             return tx;
         } catch (TransactionManagerException e) {
             throw new TransactionException("An error has occured during PreBegin/PostBegin", e);
-        } catch (ExecutionException e) {
-            throw new TransactionException("Could not get new timestamp", e);
-        } catch (InterruptedException ie) {
-            Thread.currentThread().interrupt();
-            throw new TransactionException("Interrupted getting timestamp", ie);
         }
     }
 
@@ -328,6 +405,51 @@ public abstract class AbstractTransactionManager implements TransactionManager {
     // Helper methods
     // ----------------------------------------------------------------------------------------------------------------
 
+    private AbstractTransaction<? extends CellId> beginWithNewStartTimestamp() throws TransactionException {
+
+        try {
+            long startTimestamp, epoch;
+
+            // The loop is required for HA scenarios where we get the timestamp
+            // but when getting the epoch, the client is connected to a new TSOServer
+            // When this happen, the epoch will be larger than the startTimestamp,
+            // so we need to start the transaction again. We use the fact that epoch
+            // is always smaller or equal to a timestamp, and therefore, we first need
+            // to get the timestamp and then the epoch.
+            startTimestampTimer.start();
+            try {
+                do {
+                    startTimestamp = tsoClient.getNewStartTimestamp().get();
+                    epoch = tsoClient.getEpoch();
+                } while (epoch > startTimestamp);
+            } finally {
+                startTimestampTimer.stop();
+            }
+
+            updateSafeReadPoint(startTimestamp);
+
+            return transactionFactory.createTransaction(startTimestamp, epoch, this);
+        } catch (ExecutionException e) {
+            throw new TransactionException("Could not get new timestamp", e);
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new TransactionException("Interrupted getting timestamp", ie);
+        }
+    }
+
+    private void updateSafeReadPoint(long timestamp) {
+
+        SafeReadPoint newReadPoint = new SafeReadPoint(timestamp, System.nanoTime());
+        SafeReadPoint current;
+        do {
+            current = lastSafeReadPoint.get();
+            if (current != null && current.timestamp >= timestamp) {
+                return; // A more recent read point was already published by a concurrent begin
+            }
+        } while (!lastSafeReadPoint.compareAndSet(current, newReadPoint));
+
+    }
+
     private void enforceTransactionIsInRunningState(Transaction transaction) {
 
         if (transaction.getStatus() != Status.RUNNING) {
@@ -359,7 +481,7 @@ public abstract class AbstractTransactionManager implements TransactionManager {
             throws RollbackException, TransactionException {
         try {
 
-            long commitTs = tsoClient.commit(tx.getStartTimestamp(), tx.getWriteSet(), tx.getConflictFreeWriteSet()).get();
+            long commitTs = commitToTSO(tx).get();
             boolean committed = commitTableWriter.atomicAddCommittedTransaction(tx.getStartTimestamp(),commitTs);
             if (!committed) {
                 // Transaction has been invalidated by other client
@@ -392,13 +514,23 @@ public abstract class AbstractTransactionManager implements TransactionManager {
         }
     }
 
+    private TSOFuture<Long> commitToTSO(AbstractTransaction<? extends CellId> tx) {
+
+        if (isolationLevel == IsolationLevel.SERIALIZABLE) {
+            return tsoClient.commit(tx.getStartTimestamp(), tx.getWriteSet(), tx.getConflictFreeWriteSet(),
+                                    tx.getReadSet());
+        }
+        return tsoClient.commit(tx.getStartTimestamp(), tx.getWriteSet(), tx.getConflictFreeWriteSet());
+
+    }
+
     private void commitRegularTransaction(AbstractTransaction<? extends CellId> tx)
             throws RollbackException, TransactionException
     {
 
         try {
 
-            long commitTs = tsoClient.commit(tx.getStartTimestamp(), tx.getWriteSet(), tx.getConflictFreeWriteSet()).get();
+            long commitTs = commitToTSO(tx).get();
             certifyCommitForTx(tx, commitTs);
             updateShadowCellsAndRemoveCommitTableEntry(tx, postCommitter);
 
@@ -491,4 +623,16 @@ public abstract class AbstractTransactionManager implements TransactionManager {
     public boolean isLowLatency() {
         return tsoClient.isLowLatency();
     }
+
+    private static final class SafeReadPoint {
+
+        final long timestamp;
+        final long receptionTimeInNanos;
+
+        SafeReadPoint(long timestamp, long receptionTimeInNanos) {
+            this.timestamp = timestamp;
+            this.receptionTimeInNanos = receptionTimeInNanos;
+        }
+
+    }
 }
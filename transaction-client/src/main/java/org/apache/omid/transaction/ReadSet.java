@@ -0,0 +1,105 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.omid.transaction;
+
+import java.util.Arrays;
+
+/**
+ * Set of the conflict keys read by a serializable transaction, kept in a primitive array so recording a read neither
+ * boxes the key nor allocates an entry for it.
+ *
+ * The keys are appended to the end of the array and merged into its sorted, duplicate-free prefix when the array
+ * fills up, so a key already merged is found with a binary search and the sorted keys are ready when the transaction
+ * commits.
+ *
+ * Not thread safe.
+ */
+class ReadSet {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private long[] keys = new long[INITIAL_CAPACITY];
+    // keys[0, sortedSize) are sorted and distinct. keys[sortedSize, size) were added since the last merge
+    private int sortedSize = 0;
+    private int size = 0;
+
+    void add(long key) {
+        if (Arrays.binarySearch(keys, 0, sortedSize, key) >= 0) {
+            return;
+        }
+        if (size == keys.length) {
+            merge();
+            // Keep room for as many keys as already merged, so the cost of the merges is amortized
+            if (size > keys.length / 2) {
+                keys = Arrays.copyOf(keys, keys.length * 2);
+            }
+        }
+        keys[size++] = key;
+    }
+
+    void addAll(ReadSet other) {
+        for (int i = 0; i < other.size; i++) {
+            add(other.keys[i]);
+        }
+    }
+
+    /**
+     * @return the number of distinct keys in the set
+     */
+    int size() {
+        merge();
+        return size;
+    }
+
+    /**
+     * @return an upper bound of the number of keys in the set, as the keys added since the last merge may repeat
+     */
+    int sizeUpperBound() {
+        return size;
+    }
+
+    void clear() {
+        keys = new long[INITIAL_CAPACITY];
+        sortedSize = 0;
+        size = 0;
+    }
+
+    /**
+     * @return the distinct keys of the set, sorted
+     */
+    long[] toArray() {
+        merge();
+        return Arrays.copyOf(keys, size);
+    }
+
+    private void merge() {
+        if (sortedSize == size) {
+            return;
+        }
+        Arrays.sort(keys, 0, size);
+        int distinct = 1;
+        for (int i = 1; i < size; i++) {
+            if (keys[i] != keys[distinct - 1]) {
+                keys[distinct++] = keys[i];
+            }
+        }
+        sortedSize = distinct;
+        size = distinct;
+    }
+
+}
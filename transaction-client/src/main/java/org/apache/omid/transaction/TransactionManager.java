@@ -35,6 +35,18 @@ public interface TransactionManager extends Closeable {
      */
     Transaction begin() throws TransactionException;
 
+    /**
+     * Starts a new read-only transaction on a possibly stale snapshot.
+     *
+     * Reuses the last start timestamp received from the TSO as the read point of the transaction when it is younger
+     * than the configured maximum staleness, avoiding the round trip to the TSO. Otherwise, a new timestamp is
+     * requested as in {@link #begin()}. The returned transaction can not be used to write.
+     *
+     * @return transaction representation of the created read-only transaction
+     * @throws TransactionException in case of any issues
+     */
+    Transaction beginStaleSnapshot() throws TransactionException;
+
     /**
      * Commits a transaction.
      *
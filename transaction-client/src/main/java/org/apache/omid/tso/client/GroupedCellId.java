@@ -0,0 +1,35 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.omid.tso.client;
+
+/**
+ * Cell that belongs to a coarser group of cells, e.g. the cells of a column family in a row. With the
+ * {@link OmidClientConfiguration.ConflictDetectionLevel#HIERARCHICAL} conflict detection level, a write to the whole
+ * group is registered in the TSO with the id of the group only, and it conflicts with the concurrent writes to any of
+ * the cells of the group.
+ */
+public interface GroupedCellId extends CellId {
+
+    long getGroupId();
+
+    /**
+     * @return whether the write represented by this cell affects the whole group it belongs to
+     */
+    boolean isGroupWrite();
+
+}
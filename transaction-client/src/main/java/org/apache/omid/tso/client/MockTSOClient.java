@@ -22,6 +22,7 @@ import org.apache.phoenix.thirdparty.com.google.common.util.concurrent.SettableF
 import org.apache.omid.committable.CommitTable;
 
 import java.io.IOException;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
 import java.util.Map;
@@ -32,6 +33,7 @@ import java.util.concurrent.atomic.AtomicLong;
 public class MockTSOClient implements TSOProtocol {
 
     private static final int CONFLICT_MAP_SIZE = 1_000_000;
+    private static final long[] NO_KEYS = new long[0];
 
     private final AtomicLong timestampGenerator = new AtomicLong();
     private final long[] conflictMap = new long[CONFLICT_MAP_SIZE];
@@ -105,13 +107,51 @@ public class MockTSOClient implements TSOProtocol {
         return false;
     }
 
+    // Same as above for the keys that are checked without being written, as the reads of serializable transactions
+    private boolean hasConflictsWithCommittedKeys(long transactionId, long[] keys) {
+        for (long key : keys) {
+            int index = Math.abs((int) (key % CONFLICT_MAP_SIZE));
+            if (conflictMap[index] >= transactionId) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
     @Override
     public TSOFuture<Long> commit(long transactionId, Set<? extends CellId> cells, Set<? extends CellId> conflictFreeWriteSet) {
         return commit(transactionId, cells);
     }
 
+    /**
+     * Registers the same intention keys as {@link TSOClient} for serializable transactions with cell level conflict
+     * detection: the ones of the tables written, checked by scans, and the ones of the families written, checked by
+     * the reads of whole families
+     */
+    @Override
+    public TSOFuture<Long> commit(long transactionId, Set<? extends CellId> cells,
+                                  Set<? extends CellId> conflictFreeWriteSet, long[] readSet) {
+        Set<Long> intentionKeys = new HashSet<>();
+        for (CellId c : cells) {
+            intentionKeys.add(TSOClient.getTableIntentionId(c.getTableId()));
+            if (c instanceof GroupedCellId && !((GroupedCellId) c).isGroupWrite()) {
+                intentionKeys.add(TSOClient.getGroupIntentionId(((GroupedCellId) c).getGroupId()));
+            }
+        }
+        for (CellId c : conflictFreeWriteSet) {
+            intentionKeys.add(TSOClient.getTableIntentionId(c.getTableId()));
+        }
+        return commit(transactionId, cells, readSet, intentionKeys);
+    }
+
     @Override
     public TSOFuture<Long> commit(long transactionId, Set<? extends CellId> cells) {
+        return commit(transactionId, cells, NO_KEYS, Collections.<Long>emptySet());
+    }
+
+    private TSOFuture<Long> commit(long transactionId, Set<? extends CellId> cells, long[] checkOnlyKeys,
+                                   Set<Long> registerOnlyKeys) {
         synchronized (conflictMap) {
             SettableFuture<Long> f = SettableFuture.create();
             if (transactionId < lwm.get()) {
@@ -120,20 +160,15 @@ public class MockTSOClient implements TSOProtocol {
             }
 
             if (!hasConflictsWithFences(transactionId, cells) &&
-                !hasConflictsWithCommittedTransactions(transactionId, cells)) {
+                !hasConflictsWithCommittedTransactions(transactionId, cells) &&
+                !hasConflictsWithCommittedKeys(transactionId, checkOnlyKeys)) {
 
                 long commitTimestamp = timestampGenerator.incrementAndGet();
                 for (CellId c : cells) {
-                    int index = Math.abs((int) (c.getCellId() % CONFLICT_MAP_SIZE));
-                    long oldVal = conflictMap[index];
-                    conflictMap[index] = commitTimestamp;
-                    long curLwm = lwm.get();
-                    while (oldVal > curLwm) {
-                        if (lwm.compareAndSet(curLwm, oldVal)) {
-                            break;
-                        }
-                        curLwm = lwm.get();
-                    }
+                    registerWrite(c.getCellId(), commitTimestamp);
+                }
+                for (long key : registerOnlyKeys) {
+                    registerWrite(key, commitTimestamp);
                 }
 
                 f.set(commitTimestamp);
@@ -151,6 +186,19 @@ public class MockTSOClient implements TSOProtocol {
         }
     }
 
+    private void registerWrite(long key, long commitTimestamp) {
+        int index = Math.abs((int) (key % CONFLICT_MAP_SIZE));
+        long oldVal = conflictMap[index];
+        conflictMap[index] = commitTimestamp;
+        long curLwm = lwm.get();
+        while (oldVal > curLwm) {
+            if (lwm.compareAndSet(curLwm, oldVal)) {
+                break;
+            }
+            curLwm = lwm.get();
+        }
+    }
+
     @Override
     public TSOFuture<Void> close() {
         SettableFuture<Void> f = SettableFuture.create();
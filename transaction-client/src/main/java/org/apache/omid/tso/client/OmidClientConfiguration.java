@@ -32,7 +32,11 @@ public class OmidClientConfiguration {
 
     public enum PostCommitMode {SYNC, ASYNC}
 
-    public enum ConflictDetectionLevel {CELL, ROW}
+    public enum ConflictDetectionLevel {CELL, ROW, HIERARCHICAL}
+
+    public enum IsolationLevel {SNAPSHOT, SERIALIZABLE}
+
+    public enum ConnSelectionPolicy {ROUND_ROBIN, THREAD_AFFINITY}
 
     // Basic connection related params
 
@@ -41,6 +45,8 @@ public class OmidClientConfiguration {
     private String zkCurrentTsoPath;
     private String zkNamespace;
     private int zkConnectionTimeoutInSecs;
+    private int connectionPoolSize;
+    private ConnSelectionPolicy connectionSelectionPolicy = ConnSelectionPolicy.ROUND_ROBIN;
 
     // Communication protocol related params
 
@@ -49,11 +55,17 @@ public class OmidClientConfiguration {
     private int reconnectionDelayInSecs;
     private int retryDelayInMs;
     private int executorThreads;
+    private boolean nativeTransport;
+    private int busyPollInMicros;
+    private String tenantId;
 
     // Transaction Manager related params
 
     private PostCommitMode postCommitMode = PostCommitMode.SYNC;
     private ConflictDetectionLevel conflictAnalysisLevel = ConflictDetectionLevel.CELL;
+    private long staleSnapshotMaxAgeInMs;
+    private IsolationLevel isolationLevel = IsolationLevel.SNAPSHOT;
+    private int maxReadSetSize;
 
     // ----------------------------------------------------------------------------------------------------------------
     // Instantiation
@@ -97,6 +109,26 @@ public class OmidClientConfiguration {
         this.zkConnectionTimeoutInSecs = zkConnectionTimeoutInSecs;
     }
 
+    public int getConnectionPoolSize() {
+        return connectionPoolSize;
+    }
+
+    @Inject(optional = true)
+    @Named("omid.client.connectionPoolSize")
+    public void setConnectionPoolSize(int connectionPoolSize) {
+        this.connectionPoolSize = connectionPoolSize;
+    }
+
+    public ConnSelectionPolicy getConnectionSelectionPolicy() {
+        return connectionSelectionPolicy;
+    }
+
+    @Inject(optional = true)
+    @Named("omid.client.connectionSelectionPolicy")
+    public void setConnectionSelectionPolicy(ConnSelectionPolicy connectionSelectionPolicy) {
+        this.connectionSelectionPolicy = connectionSelectionPolicy;
+    }
+
     public int getRequestMaxRetries() {
         return requestMaxRetries;
     }
@@ -147,6 +179,36 @@ public class OmidClientConfiguration {
         this.executorThreads = executorThreads;
     }
 
+    public boolean getNativeTransport() {
+        return nativeTransport;
+    }
+
+    @Inject(optional = true)
+    @Named("omid.client.nativeTransport")
+    public void setNativeTransport(boolean nativeTransport) {
+        this.nativeTransport = nativeTransport;
+    }
+
+    public int getBusyPollInMicros() {
+        return busyPollInMicros;
+    }
+
+    @Inject(optional = true)
+    @Named("omid.client.busyPollInMicros")
+    public void setBusyPollInMicros(int busyPollInMicros) {
+        this.busyPollInMicros = busyPollInMicros;
+    }
+
+    public String getTenantId() {
+        return tenantId;
+    }
+
+    @Inject(optional = true)
+    @Named("omid.client.tenantId")
+    public void setTenantId(String tenantId) {
+        this.tenantId = tenantId;
+    }
+
     public String getZkCurrentTsoPath() {
         return zkCurrentTsoPath;
     }
@@ -186,4 +248,34 @@ public class OmidClientConfiguration {
     public void setConflictAnalysisLevel(ConflictDetectionLevel conflictAnalysisLevel) {
         this.conflictAnalysisLevel = conflictAnalysisLevel;
     }
+
+    public long getStaleSnapshotMaxAgeInMs() {
+        return staleSnapshotMaxAgeInMs;
+    }
+
+    @Inject(optional = true)
+    @Named("omid.tm.staleSnapshotMaxAgeInMs")
+    public void setStaleSnapshotMaxAgeInMs(long staleSnapshotMaxAgeInMs) {
+        this.staleSnapshotMaxAgeInMs = staleSnapshotMaxAgeInMs;
+    }
+
+    public IsolationLevel getIsolationLevel() {
+        return isolationLevel;
+    }
+
+    @Inject(optional = true)
+    @Named("omid.tm.isolationLevel")
+    public void setIsolationLevel(IsolationLevel isolationLevel) {
+        this.isolationLevel = isolationLevel;
+    }
+
+    public int getMaxReadSetSize() {
+        return maxReadSetSize;
+    }
+
+    @Inject(optional = true)
+    @Named("omid.tm.maxReadSetSize")
+    public void setMaxReadSetSize(int maxReadSetSize) {
+        this.maxReadSetSize = maxReadSetSize;
+    }
 }
@@ -24,6 +24,7 @@ import org.apache.phoenix.thirdparty.com.google.common.util.concurrent.ThreadFac
 
 import org.apache.omid.proto.TSOProto;
 import org.apache.omid.tso.client.OmidClientConfiguration.ConflictDetectionLevel;
+import org.apache.omid.tso.util.NettyTransport;
 import org.apache.omid.zk.ZKUtils;
 import org.apache.statemachine.StateMachine;
 import org.apache.curator.framework.CuratorFramework;
@@ -40,9 +41,7 @@ import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelOption;
 import io.netty.channel.ChannelPipeline;
 import io.netty.channel.EventLoopGroup;
-import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.SocketChannel;
-import io.netty.channel.socket.nio.NioSocketChannel;
 import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
 import io.netty.handler.codec.LengthFieldPrepender;
 import io.netty.handler.codec.protobuf.ProtobufDecoder;
@@ -67,6 +66,7 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 
 /**
@@ -80,6 +80,11 @@ public class TSOClient implements TSOProtocol, NodeCacheListener {
     public static final String DEFAULT_ZK_CLUSTER = "localhost:2181";
 
     private static final long DEFAULT_EPOCH = -1L;
+
+    // Distinguishes the intention key of a group of cells from the key of the group itself
+    private static final long GROUP_INTENTION_MASK = 0x5bd1e9955bd1e995L;
+    // Distinguishes the intention key of a table from the id of the table
+    private static final long TABLE_INTENTION_MASK = 0x9e3779b97f4a7c15L;
     private volatile long epoch = DEFAULT_EPOCH;
 
     // Attributes
@@ -87,18 +92,25 @@ public class TSOClient implements TSOProtocol, NodeCacheListener {
     private NodeCache currentTSOZNode;
 
     private Bootstrap bootstrap;
+    // Whether the worker group of the bootstrap is released when closing this client or by its pool
+    private final boolean ownsWorkerGroup;
     private Channel currentChannel;
     private final ScheduledExecutorService fsmExecutor;
     StateMachine.Fsm fsm;
 
     private final int requestTimeoutInMs;
     private final int requestMaxRetries;
+    private final int retryDelayInMs;
+    private final String tenantId;
     private final int tsoReconnectionDelayInSecs;
     private InetSocketAddress tsoAddr;
     private String zkCurrentTsoPath;
 
     private boolean lowLatency;
 
+    // Ids of the timestamp requests, echoed by the TSO when it rejects them because it's overloaded
+    private final AtomicLong timestampRequestIds = new AtomicLong();
+
     // Use to extract unique table identifiers from the modified cells list.
 
     // Conflict detection level of the entire system. Can either be Row or Cell level.
@@ -116,9 +128,7 @@ public class TSOClient implements TSOProtocol, NodeCacheListener {
     // Avoid instantiation
     private TSOClient(OmidClientConfiguration omidConf) throws IOException {
 
-        requestTimeoutInMs = omidConf.getRequestTimeoutInMs();
-        requestMaxRetries = omidConf.getRequestMaxRetries();
-        tsoReconnectionDelayInSecs = omidConf.getReconnectionDelayInSecs();
+        this(omidConf, newWorkerGroup(omidConf), true);
 
         LOG.info("Connecting to TSO...");
         HostAndPort hp;
@@ -128,8 +138,8 @@ public class TSOClient implements TSOProtocol, NodeCacheListener {
                                                 omidConf.getZkNamespace(),
                                                 omidConf.getZkConnectionTimeoutInSecs());
                 zkCurrentTsoPath = omidConf.getZkCurrentTsoPath();
-                configureCurrentTSOServerZNodeCache(zkCurrentTsoPath);
-                String tsoInfo = getCurrentTSOInfoFoundInZK(zkCurrentTsoPath);
+                currentTSOZNode = newCurrentTSOServerZNodeCache(zkClient, zkCurrentTsoPath, this);
+                String tsoInfo = getCurrentTSOInfoFoundInZK(currentTSOZNode, zkCurrentTsoPath);
                 // TSO info includes the new TSO host:port address and epoch
                 String[] currentTSOAndEpochArray = tsoInfo.split("#");
                 hp = HostAndPort.fromString(currentTSOAndEpochArray[0]);
@@ -145,19 +155,30 @@ public class TSOClient implements TSOProtocol, NodeCacheListener {
                 break;
         }
 
+    }
+
+    // Used by TSOClientPool, which shares the worker group among its clients and tells them the TSO to connect to
+    TSOClient(OmidClientConfiguration omidConf, EventLoopGroup workerGroup) {
+        this(omidConf, workerGroup, false);
+    }
+
+    private TSOClient(OmidClientConfiguration omidConf, EventLoopGroup workerGroup, boolean ownsWorkerGroup) {
+
+        requestTimeoutInMs = omidConf.getRequestTimeoutInMs();
+        requestMaxRetries = omidConf.getRequestMaxRetries();
+        retryDelayInMs = omidConf.getRetryDelayInMs();
+        tenantId = omidConf.getTenantId();
+        tsoReconnectionDelayInSecs = omidConf.getReconnectionDelayInSecs();
+
         fsmExecutor = Executors.newSingleThreadScheduledExecutor(
                 new ThreadFactoryBuilder().setNameFormat("tsofsm-%d").build());
         fsm = new StateMachine.FsmImpl(fsmExecutor);
         fsm.setInitState(new DisconnectedState(fsm));
 
-        // Start client with the configured thread count
-        int tsoExecutorThreads = omidConf.getExecutorThreads();
-        ThreadFactory workerThreadFactory = new ThreadFactoryBuilder().setNameFormat("tsoclient-worker-%d").build();
-        EventLoopGroup workerGroup = new NioEventLoopGroup(tsoExecutorThreads, workerThreadFactory);
-
+        this.ownsWorkerGroup = ownsWorkerGroup;
         bootstrap = new Bootstrap();
         bootstrap.group(workerGroup);
-        bootstrap.channel(NioSocketChannel.class);
+        bootstrap.channel(NettyTransport.socketChannelClass(workerGroup));
         bootstrap.handler(new ChannelInitializer<SocketChannel>() {
             @Override
             public void initChannel(SocketChannel channel) throws Exception {
@@ -169,7 +190,7 @@ public class TSOClient implements TSOProtocol, NodeCacheListener {
                 pipeline.addLast("inboundHandler", new Handler(fsm));
             }
         });
-        bootstrap.option(ChannelOption.TCP_NODELAY, true);
+        NettyTransport.configureLowLatencyOptions(bootstrap, omidConf.getBusyPollInMicros());
         bootstrap.option(ChannelOption.SO_KEEPALIVE, true);
         bootstrap.option(ChannelOption.SO_REUSEADDR, true);
         bootstrap.option(ChannelOption.CONNECT_TIMEOUT_MILLIS, 100);
@@ -179,6 +200,13 @@ public class TSOClient implements TSOProtocol, NodeCacheListener {
 
     }
 
+    // Start client with the configured thread count
+    static EventLoopGroup newWorkerGroup(OmidClientConfiguration omidConf) {
+        int tsoExecutorThreads = omidConf.getExecutorThreads();
+        ThreadFactory workerThreadFactory = new ThreadFactoryBuilder().setNameFormat("tsoclient-worker-%d").build();
+        return NettyTransport.newEventLoopGroup(omidConf.getNativeTransport(), tsoExecutorThreads, workerThreadFactory);
+    }
+
     // ----------------------------------------------------------------------------------------------------------------
     // TSOProtocol interface
     // ----------------------------------------------------------------------------------------------------------------
@@ -190,6 +218,7 @@ public class TSOClient implements TSOProtocol, NodeCacheListener {
     public TSOFuture<Long> getNewStartTimestamp() {
         TSOProto.Request.Builder builder = TSOProto.Request.newBuilder();
         TSOProto.TimestampRequest.Builder tsreqBuilder = TSOProto.TimestampRequest.newBuilder();
+        tsreqBuilder.setRequestId(timestampRequestIds.incrementAndGet());
         builder.setTimestampRequest(tsreqBuilder.build());
         RequestEvent request = new RequestEvent(builder.build(), requestMaxRetries);
         fsm.sendEvent(request);
@@ -209,11 +238,26 @@ public class TSOClient implements TSOProtocol, NodeCacheListener {
      */
     @Override
     public TSOFuture<Long> commit(long transactionId, Set<? extends CellId> cells, Set<? extends CellId> conflictFreeWriteSet) {
+        return commit(transactionId, cells, conflictFreeWriteSet, null);
+    }
+
+    /**
+     * Serializable transactions also register the intention key of the tables they write, which is checked by the
+     * scans of other serializable transactions. With cell level conflict detection, they also register the intention
+     * key of the groups of the cells written, which is checked by the reads of whole groups
+     * @see TSOProtocol#commit(long, Set, Set, long[])
+     */
+    @Override
+    public TSOFuture<Long> commit(long transactionId, Set<? extends CellId> cells,
+                                  Set<? extends CellId> conflictFreeWriteSet, long[] readSet) {
         TSOProto.Request.Builder builder = TSOProto.Request.newBuilder();
         TSOProto.CommitRequest.Builder commitbuilder = TSOProto.CommitRequest.newBuilder();
         commitbuilder.setStartTimestamp(transactionId);
         HashSet<Long> rowLevelWriteSet = new HashSet<Long>();
+        HashSet<Long> groupLevelWriteSet = new HashSet<Long>();
         HashSet<Long> tableIDs = new HashSet<Long>();
+        HashSet<Long> checkOnlySet = new HashSet<Long>();
+        HashSet<Long> registerOnlySet = new HashSet<Long>();
         rowLevelWriteSet.clear();
         for (CellId cell : cells) {
             long id;
@@ -229,6 +273,32 @@ public class TSOClient implements TSOProtocol, NodeCacheListener {
                 break;
             case CELL:
                 id = cell.getCellId();
+                if (readSet != null && cell instanceof GroupedCellId && !((GroupedCellId) cell).isGroupWrite()) {
+                    // Serializable reads of the whole group check its intention key to detect the new cells
+                    registerOnlySet.add(getGroupIntentionId(((GroupedCellId) cell).getGroupId()));
+                }
+                break;
+            case HIERARCHICAL:
+                if (!(cell instanceof GroupedCellId)) {
+                    id = cell.getCellId();
+                    break;
+                }
+                // A write to a cell conflicts with the writes to its whole group and announces itself to them
+                // through the intention key of the group. A write to the whole group takes the key of the group
+                // and conflicts with the writes to any of its cells through that intention key
+                GroupedCellId groupedCell = (GroupedCellId) cell;
+                long groupId = groupedCell.getGroupId();
+                if (groupedCell.isGroupWrite()) {
+                    id = groupId;
+                    if (!groupLevelWriteSet.add(id)) {
+                        continue;
+                    }
+                    checkOnlySet.add(getGroupIntentionId(groupId));
+                } else {
+                    id = cell.getCellId();
+                    checkOnlySet.add(groupId);
+                    registerOnlySet.add(getGroupIntentionId(groupId));
+                }
                 break;
             default:
                 id = 0;
@@ -244,6 +314,19 @@ public class TSOClient implements TSOProtocol, NodeCacheListener {
         }
 
         commitbuilder.addAllTableId(tableIDs);
+        if (readSet != null) {
+            for (long tableID : tableIDs) {
+                registerOnlySet.add(getTableIntentionId(tableID));
+            }
+        }
+        commitbuilder.addAllCheckOnlyCellId(checkOnlySet);
+        if (readSet != null) {
+            // Already distinct. A key also in the check only set is just checked twice
+            for (long key : readSet) {
+                commitbuilder.addCheckOnlyCellId(key);
+            }
+        }
+        commitbuilder.addAllRegisterOnlyCellId(registerOnlySet);
         tableIDs.clear();
         builder.setCommitRequest(commitbuilder.build());
         RequestEvent request = new RequestEvent(builder.build(), requestMaxRetries);
@@ -330,6 +413,22 @@ public class TSOClient implements TSOProtocol, NodeCacheListener {
         this.conflictDetectionLevel = conflictDetectionLevel;
     }
 
+    /**
+     * Returns the key registered in the TSO by the writes to the cells of a group, so that a concurrent write to the
+     * whole group can detect them without knowing the cells written
+     */
+    public static long getGroupIntentionId(long groupId) {
+        return groupId ^ GROUP_INTENTION_MASK;
+    }
+
+    /**
+     * Returns the key registered in the TSO by the serializable transactions writing to a table, so that the scans of
+     * the table can detect them
+     */
+    public static long getTableIntentionId(long tableId) {
+        return tableId ^ TABLE_INTENTION_MASK;
+    }
+
     // ----------------------------------------------------------------------------------------------------------------
     // NodeCacheListener interface
     // ----------------------------------------------------------------------------------------------------------------
@@ -337,18 +436,25 @@ public class TSOClient implements TSOProtocol, NodeCacheListener {
     @Override
     public void nodeChanged() throws Exception {
 
-        String tsoInfo = getCurrentTSOInfoFoundInZK(zkCurrentTsoPath);
+        String tsoInfo = getCurrentTSOInfoFoundInZK(currentTSOZNode, zkCurrentTsoPath);
         // TSO info includes the new TSO host:port address and epoch
         String[] currentTSOAndEpochArray = tsoInfo.split("#");
         HostAndPort hp = HostAndPort.fromString(currentTSOAndEpochArray[0]);
+        LOG.info("CurrentTSO ZNode changed. New TSO Host & Port {}/Epoch {}", hp, currentTSOAndEpochArray[1]);
+        setCurrentTSO(hp, Long.parseLong(currentTSOAndEpochArray[1]));
+
+    }
+
+    /**
+     * Points the client to a new TSO, closing the channel with the previous one, if any
+     */
+    void setCurrentTSO(HostAndPort hp, long epoch) {
         setTSOAddress(hp.getHost(), hp.getPort());
-        epoch = Long.parseLong(currentTSOAndEpochArray[1]);
-        LOG.info("CurrentTSO ZNode changed. New TSO Host & Port {}/Epoch {}", hp, getEpoch());
+        this.epoch = epoch;
         if (currentChannel != null && currentChannel.isActive()) {
             LOG.info("\tClosing channel with previous TSO {}", currentChannel);
             currentChannel.close();
         }
-
     }
 
     @Override
@@ -362,7 +468,10 @@ public class TSOClient implements TSOProtocol, NodeCacheListener {
     // FSM: Events
     // ----------------------------------------------------------------------------------------------------------------
 
-    private static class ParamEvent<T> implements StateMachine.Event {
+    // All the events call the BaseState handler overload of their own type, so the FSM doesn't need reflection to
+    // dispatch them
+
+    private static abstract class ParamEvent<T> implements StateMachine.DispatchableEvent<BaseState> {
 
         final T param;
 
@@ -380,6 +489,11 @@ public class TSOClient implements TSOProtocol, NodeCacheListener {
         ErrorEvent(Throwable t) {
             super(t);
         }
+
+        @Override
+        public StateMachine.State dispatchTo(BaseState state) {
+            return state.handleEvent(this);
+        }
     }
 
     private static class ConnectedEvent extends ParamEvent<Channel> {
@@ -387,10 +501,15 @@ public class TSOClient implements TSOProtocol, NodeCacheListener {
         ConnectedEvent(Channel c) {
             super(c);
         }
+
+        @Override
+        public StateMachine.State dispatchTo(BaseState state) {
+            return state.handleEvent(this);
+        }
     }
 
     private static class UserEvent<T> extends AbstractFuture<T>
-            implements StateMachine.DeferrableEvent {
+            implements StateMachine.DeferrableEvent, StateMachine.DispatchableEvent<BaseState> {
 
         void success(T value) {
             set(value);
@@ -400,10 +519,19 @@ public class TSOClient implements TSOProtocol, NodeCacheListener {
         public void error(Throwable t) {
             setException(t);
         }
+
+        @Override
+        public StateMachine.State dispatchTo(BaseState state) {
+            return state.handleEvent(this);
+        }
     }
 
     private static class CloseEvent extends UserEvent<Void> {
 
+        @Override
+        public StateMachine.State dispatchTo(BaseState state) {
+            return state.handleEvent(this);
+        }
     }
 
     private static class ChannelClosedEvent extends ParamEvent<Throwable> {
@@ -411,21 +539,38 @@ public class TSOClient implements TSOProtocol, NodeCacheListener {
         ChannelClosedEvent(Throwable t) {
             super(t);
         }
+
+        @Override
+        public StateMachine.State dispatchTo(BaseState state) {
+            return state.handleEvent(this);
+        }
     }
 
-    private static class ReconnectEvent implements StateMachine.Event {
+    private static class ReconnectEvent implements StateMachine.DispatchableEvent<BaseState> {
 
+        @Override
+        public StateMachine.State dispatchTo(BaseState state) {
+            return state.handleEvent(this);
+        }
     }
 
-    private static class HandshakeTimeoutEvent implements StateMachine.Event {
+    private static class HandshakeTimeoutEvent implements StateMachine.DispatchableEvent<BaseState> {
 
+        @Override
+        public StateMachine.State dispatchTo(BaseState state) {
+            return state.handleEvent(this);
+        }
     }
 
-    private static class TimestampRequestTimeoutEvent implements StateMachine.Event {
+    private static class TimestampRequestTimeoutEvent implements StateMachine.DispatchableEvent<BaseState> {
 
+        @Override
+        public StateMachine.State dispatchTo(BaseState state) {
+            return state.handleEvent(this);
+        }
     }
 
-    private static class CommitRequestTimeoutEvent implements StateMachine.Event {
+    private static class CommitRequestTimeoutEvent implements StateMachine.DispatchableEvent<BaseState> {
 
         final long startTimestamp;
 
@@ -436,9 +581,14 @@ public class TSOClient implements TSOProtocol, NodeCacheListener {
         public long getStartTimestamp() {
             return startTimestamp;
         }
+
+        @Override
+        public StateMachine.State dispatchTo(BaseState state) {
+            return state.handleEvent(this);
+        }
     }
 
-    private static class FenceRequestTimeoutEvent implements StateMachine.Event {
+    private static class FenceRequestTimeoutEvent implements StateMachine.DispatchableEvent<BaseState> {
 
         final long tableID;
 
@@ -449,6 +599,11 @@ public class TSOClient implements TSOProtocol, NodeCacheListener {
         public long getTableID() {
             return tableID;
         }
+
+        @Override
+        public StateMachine.State dispatchTo(BaseState state) {
+            return state.handleEvent(this);
+        }
     }
 
     private static class RequestEvent extends UserEvent<Long> {
@@ -477,6 +632,11 @@ public class TSOClient implements TSOProtocol, NodeCacheListener {
             retriesLeft--;
         }
 
+        @Override
+        public StateMachine.State dispatchTo(BaseState state) {
+            return state.handleEvent(this);
+        }
+
     }
 
     private static class ResponseEvent extends ParamEvent<TSOProto.Response> {
@@ -484,6 +644,11 @@ public class TSOClient implements TSOProtocol, NodeCacheListener {
         ResponseEvent(TSOProto.Response r) {
             super(r);
         }
+
+        @Override
+        public StateMachine.State dispatchTo(BaseState state) {
+            return state.handleEvent(this);
+        }
     }
 
     // ----------------------------------------------------------------------------------------------------------------
@@ -500,6 +665,57 @@ public class TSOClient implements TSOProtocol, NodeCacheListener {
             LOG.error("Unhandled event {} while in state {}", e, this.getClass().getName());
             return this;
         }
+
+        // Handler for each event type, overridden by the states handling it. By default, they fall back to the
+        // handler of the parent event type, which is the handler the reflective dispatch would find
+
+        StateMachine.State handleEvent(ErrorEvent e) {
+            return handleEvent((StateMachine.Event) e);
+        }
+
+        StateMachine.State handleEvent(ConnectedEvent e) {
+            return handleEvent((StateMachine.Event) e);
+        }
+
+        StateMachine.State handleEvent(ChannelClosedEvent e) {
+            return handleEvent((StateMachine.Event) e);
+        }
+
+        StateMachine.State handleEvent(ResponseEvent e) {
+            return handleEvent((StateMachine.Event) e);
+        }
+
+        StateMachine.State handleEvent(UserEvent e) {
+            return handleEvent((StateMachine.Event) e);
+        }
+
+        StateMachine.State handleEvent(CloseEvent e) {
+            return handleEvent((UserEvent) e);
+        }
+
+        StateMachine.State handleEvent(RequestEvent e) {
+            return handleEvent((UserEvent) e);
+        }
+
+        StateMachine.State handleEvent(ReconnectEvent e) {
+            return handleEvent((StateMachine.Event) e);
+        }
+
+        StateMachine.State handleEvent(HandshakeTimeoutEvent e) {
+            return handleEvent((StateMachine.Event) e);
+        }
+
+        StateMachine.State handleEvent(TimestampRequestTimeoutEvent e) {
+            return handleEvent((StateMachine.Event) e);
+        }
+
+        StateMachine.State handleEvent(CommitRequestTimeoutEvent e) {
+            return handleEvent((StateMachine.Event) e);
+        }
+
+        StateMachine.State handleEvent(FenceRequestTimeoutEvent e) {
+            return handleEvent((StateMachine.Event) e);
+        }
     }
 
     class DisconnectedState extends BaseState {
@@ -515,7 +731,9 @@ public class TSOClient implements TSOProtocol, NodeCacheListener {
         }
 
         public StateMachine.State handleEvent(CloseEvent e) {
-            bootstrap.config().group().shutdownGracefully();
+            if (ownsWorkerGroup) {
+                bootstrap.config().group().shutdownGracefully();
+            }
             e.success(null);
             return this;
         }
@@ -599,6 +817,27 @@ public class TSOClient implements TSOProtocol, NodeCacheListener {
         }
     }
 
+    // Sends again to the state machine a request the TSO refused to process because it was overloaded
+    private static class DelayedRetry implements TimerTask {
+
+        final StateMachine.Fsm fsm;
+        final RequestEvent event;
+
+        DelayedRetry(StateMachine.Fsm fsm, RequestEvent event) {
+            this.fsm = fsm;
+            this.event = event;
+        }
+
+        RequestEvent getRequest() {
+            return event;
+        }
+
+        @Override
+        public void run(Timeout timeout) {
+            fsm.sendEvent(event);
+        }
+    }
+
     private class HandshakingState extends BaseState {
 
         final Channel channel;
@@ -614,6 +853,9 @@ public class TSOClient implements TSOProtocol, NodeCacheListener {
             TSOProto.HandshakeRequest.Builder handshake = TSOProto.HandshakeRequest.newBuilder();
             // Add the required handshake capabilities when necessary
             handshake.setClientCapabilities(TSOProto.Capabilities.newBuilder().build());
+            if (tenantId != null && !tenantId.isEmpty()) {
+                handshake.setTenantId(tenantId);
+            }
             channel.writeAndFlush(TSOProto.Request.newBuilder().setHandshakeRequest(handshake.build()).build());
             timeout = newTimeout();
         }
@@ -783,15 +1025,26 @@ public class TSOClient implements TSOProtocol, NodeCacheListener {
         private void handleResponse(ResponseEvent response) {
             TSOProto.Response resp = response.getParam();
             if (resp.hasTimestampResponse()) {
-                if (timestampRequests.size() == 0) {
-                    LOG.debug("Received timestamp response when no requests outstanding");
+                RequestAndTimeout e;
+                if (resp.getTimestampResponse().getOverloaded() && resp.getTimestampResponse().hasRequestId()) {
+                    // The TSO replies right away to the requests it rejects, so the response may have overtaken
+                    // the responses to the requests sent before
+                    e = removeTimestampRequest(resp.getTimestampResponse().getRequestId());
+                } else {
+                    e = timestampRequests.poll();
+                }
+                if (e == null) {
+                    LOG.debug("Received timestamp response when no matching request outstanding");
                     return;
                 }
-                RequestAndTimeout e = timestampRequests.remove();
-                e.getRequest().success(resp.getTimestampResponse().getStartTimestamp());
                 if (e.getTimeout() != null) {
                     e.getTimeout().cancel();
                 }
+                if (resp.getTimestampResponse().getOverloaded()) {
+                    retryLaterOrError(e.getRequest());
+                } else {
+                    e.getRequest().success(resp.getTimestampResponse().getStartTimestamp());
+                }
             } else if (resp.hasCommitResponse()) {
                 long startTimestamp = resp.getCommitResponse().getStartTimestamp();
                 RequestAndTimeout e = commitRequests.remove(startTimestamp);
@@ -802,7 +1055,9 @@ public class TSOClient implements TSOProtocol, NodeCacheListener {
                 if (e.getTimeout() != null) {
                     e.getTimeout().cancel();
                 }
-                if (resp.getCommitResponse().getAborted()) {
+                if (resp.getCommitResponse().getOverloaded()) {
+                    retryLaterOrError(e.getRequest());
+                } else if (resp.getCommitResponse().getAborted()) {
                     e.getRequest().error(new AbortException());
                 } else {
                     e.getRequest().success(resp.getCommitResponse().getCommitTimestamp());
@@ -822,6 +1077,18 @@ public class TSOClient implements TSOProtocol, NodeCacheListener {
             }
         }
 
+        private RequestAndTimeout removeTimestampRequest(long requestId) {
+            Iterator<RequestAndTimeout> iter = timestampRequests.iterator();
+            while (iter.hasNext()) {
+                RequestAndTimeout r = iter.next();
+                if (r.getRequest().getRequest().getTimestampRequest().getRequestId() == requestId) {
+                    iter.remove();
+                    return r;
+                }
+            }
+            return null;
+        }
+
         public StateMachine.State handleEvent(TimestampRequestTimeoutEvent e) {
             if (!timestampRequests.isEmpty()) {
                 RequestAndTimeout r = timestampRequests.remove();
@@ -859,7 +1126,11 @@ public class TSOClient implements TSOProtocol, NodeCacheListener {
 
         public StateMachine.State handleEvent(CloseEvent e) {
             LOG.debug("CONNECTED STATE: CloseEvent");
-            timeoutExecutor.stop();
+            for (Timeout timeout : timeoutExecutor.stop()) {
+                if (timeout.task() instanceof DelayedRetry) {
+                    ((DelayedRetry) timeout.task()).getRequest().error(new ClosingException());
+                }
+            }
             closeChannelAndErrorRequests();
             fsm.deferEvent(e);
             return new ClosingState(fsm);
@@ -877,7 +1148,12 @@ public class TSOClient implements TSOProtocol, NodeCacheListener {
 
         public StateMachine.State handleEvent(ErrorEvent e) {
             LOG.debug("CONNECTED STATE: ErrorEvent");
-            timeoutExecutor.stop();
+            for (Timeout timeout : timeoutExecutor.stop()) {
+                if (timeout.task() instanceof DelayedRetry) {
+                    // Sent right away, the request will be handled by the next state
+                    fsm.sendEvent(((DelayedRetry) timeout.task()).getRequest());
+                }
+            }
             handleError(fsm);
             return new ClosingState(fsm);
         }
@@ -933,6 +1209,18 @@ public class TSOClient implements TSOProtocol, NodeCacheListener {
             }
         }
 
+        // The TSO did not process the request because it was overloaded, so it can be safely sent again as is
+        // after backing off for a while
+        private void retryLaterOrError(RequestEvent e) {
+            if (e.getRetriesLeft() > 0) {
+                e.decrementRetries();
+                timeoutExecutor.newTimeout(new DelayedRetry(fsm, e), retryDelayInMs, TimeUnit.MILLISECONDS);
+            } else {
+                e.error(new ServiceUnavailableException("TSO overloaded and number of retries exceeded. "
+                                                                + "This API request failed permanently"));
+            }
+        }
+
         private void closeChannelAndErrorRequests() {
             channel.close();
             for (RequestAndTimeout r : timestampRequests) {
@@ -1055,17 +1343,20 @@ public class TSOClient implements TSOProtocol, NodeCacheListener {
         return tsoAddr;
     }
 
-    private void configureCurrentTSOServerZNodeCache(String currentTsoPath) {
+    static NodeCache newCurrentTSOServerZNodeCache(CuratorFramework zkClient,
+                                                   String currentTsoPath,
+                                                   NodeCacheListener listener) {
         try {
-            currentTSOZNode = new NodeCache(zkClient, currentTsoPath);
-            currentTSOZNode.getListenable().addListener(this);
+            NodeCache currentTSOZNode = new NodeCache(zkClient, currentTsoPath);
+            currentTSOZNode.getListenable().addListener(listener);
             currentTSOZNode.start(true);
+            return currentTSOZNode;
         } catch (Exception e) {
             throw new IllegalStateException("Cannot start watcher on current TSO Server ZNode: " + e.getMessage());
         }
     }
 
-    private String getCurrentTSOInfoFoundInZK(String currentTsoPath) {
+    static String getCurrentTSOInfoFoundInZK(NodeCache currentTSOZNode, String currentTsoPath) {
         ChildData currentTSOData = currentTSOZNode.getCurrentData();
         if (currentTSOData == null) {
             throw new IllegalStateException("No data found in ZKNode " + currentTsoPath);
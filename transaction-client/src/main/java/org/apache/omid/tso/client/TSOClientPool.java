@@ -0,0 +1,307 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.omid.tso.client;
+
+import org.apache.phoenix.thirdparty.com.google.common.base.Preconditions;
+import org.apache.phoenix.thirdparty.com.google.common.net.HostAndPort;
+import org.apache.phoenix.thirdparty.com.google.common.util.concurrent.AbstractFuture;
+import org.apache.phoenix.thirdparty.com.google.common.util.concurrent.MoreExecutors;
+
+import org.apache.omid.tso.client.OmidClientConfiguration.ConflictDetectionLevel;
+import org.apache.omid.tso.client.OmidClientConfiguration.ConnSelectionPolicy;
+import org.apache.omid.zk.ZKUtils;
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.recipes.cache.NodeCache;
+import org.apache.curator.framework.recipes.cache.NodeCacheListener;
+import io.netty.channel.EventLoopGroup;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Spreads the requests to the TSO server among several {@link TSOClient}s, each one with its own channel and state
+ * machine, so a single client is not limited by the throughput of one TCP connection and one FSM thread.
+ *
+ * The clients share the Netty worker group and, in HA mode, the watcher of the current TSO ZNode, so all of them are
+ * pointed to the new TSO and reconnect when a failover happens.
+ */
+public class TSOClientPool implements TSOProtocol, NodeCacheListener {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TSOClientPool.class);
+
+    private static final long DEFAULT_EPOCH = -1L;
+    private volatile long epoch = DEFAULT_EPOCH;
+
+    private final TSOClient[] clients;
+    private final ConnSelectionPolicy selectionPolicy;
+    private final AtomicInteger nextClient = new AtomicInteger();
+    private final EventLoopGroup workerGroup;
+
+    // HA related attributes
+    private CuratorFramework zkClient;
+    private NodeCache currentTSOZNode;
+    private String zkCurrentTsoPath;
+
+    // ----------------------------------------------------------------------------------------------------------------
+    // Construction
+    // ----------------------------------------------------------------------------------------------------------------
+
+    public static TSOClientPool newInstance(OmidClientConfiguration tsoClientConf) throws IOException {
+        return new TSOClientPool(tsoClientConf);
+    }
+
+    // Avoid instantiation
+    private TSOClientPool(OmidClientConfiguration omidConf) throws IOException {
+
+        int poolSize = omidConf.getConnectionPoolSize();
+        Preconditions.checkArgument(poolSize > 0, "The connection pool size must be positive");
+        selectionPolicy = omidConf.getConnectionSelectionPolicy();
+
+        workerGroup = TSOClient.newWorkerGroup(omidConf);
+        clients = new TSOClient[poolSize];
+        for (int i = 0; i < poolSize; i++) {
+            clients[i] = new TSOClient(omidConf, workerGroup);
+        }
+
+        LOG.info("Connecting to TSO through {} connections selected by {}...", poolSize, selectionPolicy);
+        HostAndPort hp;
+        switch (omidConf.getConnectionType()) {
+            case HA:
+                zkClient = ZKUtils.initZKClient(omidConf.getConnectionString(),
+                                                omidConf.getZkNamespace(),
+                                                omidConf.getZkConnectionTimeoutInSecs());
+                zkCurrentTsoPath = omidConf.getZkCurrentTsoPath();
+                currentTSOZNode = TSOClient.newCurrentTSOServerZNodeCache(zkClient, zkCurrentTsoPath, this);
+                String tsoInfo = TSOClient.getCurrentTSOInfoFoundInZK(currentTSOZNode, zkCurrentTsoPath);
+                // TSO info includes the new TSO host:port address and epoch
+                String[] currentTSOAndEpochArray = tsoInfo.split("#");
+                hp = HostAndPort.fromString(currentTSOAndEpochArray[0]);
+                setCurrentTSO(hp, Long.parseLong(currentTSOAndEpochArray[1]));
+                LOG.info("\t* Current TSO host:port found in ZK: {} Epoch {}", hp, getEpoch());
+                break;
+            case DIRECT:
+            default:
+                hp = HostAndPort.fromString(omidConf.getConnectionString());
+                setCurrentTSO(hp, DEFAULT_EPOCH);
+                LOG.info("\t* TSO host:port {} will be connected directly", hp);
+                break;
+        }
+
+    }
+
+    private void setCurrentTSO(HostAndPort hp, long epoch) {
+        for (TSOClient client : clients) {
+            client.setCurrentTSO(hp, epoch);
+        }
+        this.epoch = epoch;
+    }
+
+    private TSOClient selectClient() {
+        int index;
+        switch (selectionPolicy) {
+            case THREAD_AFFINITY:
+                index = (int) (Thread.currentThread().getId() % clients.length);
+                break;
+            case ROUND_ROBIN:
+            default:
+                index = (nextClient.getAndIncrement() & Integer.MAX_VALUE) % clients.length;
+                break;
+        }
+        return clients[index];
+    }
+
+    // ----------------------------------------------------------------------------------------------------------------
+    // TSOProtocol interface
+    // ----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * @see TSOProtocol#getNewStartTimestamp()
+     */
+    @Override
+    public TSOFuture<Long> getNewStartTimestamp() {
+        return selectClient().getNewStartTimestamp();
+    }
+
+    /**
+     * @see TSOProtocol#commit(long, Set)
+     */
+    @Override
+    public TSOFuture<Long> commit(long transactionId, Set<? extends CellId> writeSet) {
+        return selectClient().commit(transactionId, writeSet);
+    }
+
+    /**
+     * @see TSOProtocol#commit(long, Set, Set)
+     */
+    @Override
+    public TSOFuture<Long> commit(long transactionId,
+                                  Set<? extends CellId> writeSet,
+                                  Set<? extends CellId> conflictFreeWriteSet) {
+        return selectClient().commit(transactionId, writeSet, conflictFreeWriteSet);
+    }
+
+    /**
+     * @see TSOProtocol#commit(long, Set, Set, long[])
+     */
+    @Override
+    public TSOFuture<Long> commit(long transactionId,
+                                  Set<? extends CellId> writeSet,
+                                  Set<? extends CellId> conflictFreeWriteSet,
+                                  long[] readSet) {
+        return selectClient().commit(transactionId, writeSet, conflictFreeWriteSet, readSet);
+    }
+
+    /**
+     * @see TSOProtocol#getFence(long)
+     */
+    @Override
+    public TSOFuture<Long> getFence(long tableId) {
+        return selectClient().getFence(tableId);
+    }
+
+    /**
+     * Closes all the clients of the pool. The returned future completes when all of them are closed
+     * @see TSOProtocol#close()
+     */
+    @Override
+    public TSOFuture<Void> close() {
+        final PoolCloseFuture closeFuture = new PoolCloseFuture(clients.length);
+        for (TSOClient client : clients) {
+            final TSOFuture<Void> clientCloseFuture = client.close();
+            clientCloseFuture.addListener(new Runnable() {
+                @Override
+                public void run() {
+                    closeFuture.clientClosed(clientCloseFuture);
+                }
+            }, MoreExecutors.directExecutor());
+        }
+        return new ForwardingTSOFuture<>(closeFuture);
+    }
+
+    // ----------------------------------------------------------------------------------------------------------------
+    // High availability related interface
+    // ----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * @see TSOProtocol#getEpoch()
+     */
+    @Override
+    public long getEpoch() {
+        return epoch;
+    }
+
+    /**
+     * The low latency mode is reported by the TSO in the handshake, so the pool is in low latency mode as soon as any
+     * of its clients has completed it
+     * @see TSOProtocol#isLowLatency()
+     */
+    @Override
+    public boolean isLowLatency() {
+        for (TSOClient client : clients) {
+            if (client.isLowLatency()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public ConflictDetectionLevel getConflictDetectionLevel() {
+        return clients[0].getConflictDetectionLevel();
+    }
+
+    @Override
+    public void setConflictDetectionLevel(ConflictDetectionLevel conflictDetectionLevel) {
+        for (TSOClient client : clients) {
+            client.setConflictDetectionLevel(conflictDetectionLevel);
+        }
+    }
+
+    // ----------------------------------------------------------------------------------------------------------------
+    // NodeCacheListener interface
+    // ----------------------------------------------------------------------------------------------------------------
+
+    @Override
+    public void nodeChanged() throws Exception {
+
+        String tsoInfo = TSOClient.getCurrentTSOInfoFoundInZK(currentTSOZNode, zkCurrentTsoPath);
+        // TSO info includes the new TSO host:port address and epoch
+        String[] currentTSOAndEpochArray = tsoInfo.split("#");
+        HostAndPort hp = HostAndPort.fromString(currentTSOAndEpochArray[0]);
+        LOG.info("CurrentTSO ZNode changed. New TSO Host & Port {}/Epoch {}", hp, currentTSOAndEpochArray[1]);
+        setCurrentTSO(hp, Long.parseLong(currentTSOAndEpochArray[1]));
+
+    }
+
+    // ----------------------------------------------------------------------------------------------------------------
+    // Helper classes
+    // ----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Completes when all the clients of the pool are closed, releasing the resources shared among them
+     */
+    private class PoolCloseFuture extends AbstractFuture<Void> {
+
+        private final AtomicInteger clientsLeft;
+        private volatile Throwable firstError = null;
+
+        PoolCloseFuture(int clients) {
+            this.clientsLeft = new AtomicInteger(clients);
+        }
+
+        void clientClosed(TSOFuture<Void> clientCloseFuture) {
+            try {
+                clientCloseFuture.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                firstError = firstError == null ? e : firstError;
+            } catch (ExecutionException e) {
+                LOG.warn("Error closing TSO client", e.getCause());
+                firstError = firstError == null ? e.getCause() : firstError;
+            }
+            if (clientsLeft.decrementAndGet() == 0) {
+                releaseSharedResources();
+                if (firstError == null) {
+                    set(null);
+                } else {
+                    setException(firstError);
+                }
+            }
+        }
+
+        private void releaseSharedResources() {
+            workerGroup.shutdownGracefully();
+            if (currentTSOZNode != null) {
+                try {
+                    currentTSOZNode.close();
+                } catch (IOException e) {
+                    LOG.warn("Error closing current TSO ZNode watcher", e);
+                }
+            }
+            if (zkClient != null) {
+                zkClient.close();
+            }
+        }
+
+    }
+
+}
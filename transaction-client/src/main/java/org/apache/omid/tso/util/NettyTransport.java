@@ -0,0 +1,123 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.omid.tso.util;
+
+import io.netty.bootstrap.AbstractBootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollChannelOption;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.ServerSocketChannel;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import org.apache.phoenix.thirdparty.com.google.common.annotations.VisibleForTesting;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Selects the Netty transport used by the TSO server and its clients.
+ *
+ * The native epoll transport is used when requested and available in the platform. Otherwise, the generic NIO
+ * transport is used as fallback.
+ */
+public final class NettyTransport {
+
+    private static final Logger LOG = LoggerFactory.getLogger(NettyTransport.class);
+
+    private NettyTransport() {
+    }
+
+    public static boolean isNativeTransportAvailable() {
+        return Epoll.isAvailable();
+    }
+
+    /**
+     * Creates the event loop group for the transport requested.
+     *
+     * @param useNativeTransport whether the native transport is preferred
+     * @param threads number of event loops. Zero means the Netty default
+     * @param threadFactory factory for the event loop threads
+     * @return an epoll event loop group when the native transport is requested and available. A NIO one otherwise
+     */
+    public static EventLoopGroup newEventLoopGroup(boolean useNativeTransport, int threads, ThreadFactory threadFactory) {
+        return newEventLoopGroup(useNativeTransport, isNativeTransportAvailable(), threads, threadFactory);
+    }
+
+    @VisibleForTesting
+    static EventLoopGroup newEventLoopGroup(boolean useNativeTransport,
+                                            boolean nativeTransportAvailable,
+                                            int threads,
+                                            ThreadFactory threadFactory) {
+        if (useNativeTransport) {
+            if (nativeTransportAvailable) {
+                return new EpollEventLoopGroup(threads, threadFactory);
+            }
+            LOG.warn("Native transport requested but not available. Falling back to NIO", Epoll.unavailabilityCause());
+        }
+        return new NioEventLoopGroup(threads, threadFactory);
+    }
+
+    public static Class<? extends SocketChannel> socketChannelClass(EventLoopGroup group) {
+        if (group instanceof EpollEventLoopGroup) {
+            return EpollSocketChannel.class;
+        }
+        return NioSocketChannel.class;
+    }
+
+    public static Class<? extends ServerSocketChannel> serverSocketChannelClass(EventLoopGroup group) {
+        if (group instanceof EpollEventLoopGroup) {
+            return EpollServerSocketChannel.class;
+        }
+        return NioServerSocketChannel.class;
+    }
+
+    /**
+     * Applies the low latency options to the connections created through the bootstrap: no Nagle's algorithm,
+     * pooled direct buffers and, with the native transport, busy polling of the socket for the time specified.
+     *
+     * @param bootstrap the client or server bootstrap to configure
+     * @param busyPollInMicros busy poll time for the native transport. Zero disables busy polling
+     */
+    public static void configureLowLatencyOptions(AbstractBootstrap<?, ?> bootstrap, int busyPollInMicros) {
+        boolean nativeTransport = bootstrap.config().group() instanceof EpollEventLoopGroup;
+        bootstrap.option(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT);
+        if (bootstrap instanceof ServerBootstrap) {
+            ServerBootstrap serverBootstrap = (ServerBootstrap) bootstrap;
+            serverBootstrap.childOption(ChannelOption.TCP_NODELAY, true);
+            serverBootstrap.childOption(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT);
+            if (nativeTransport && busyPollInMicros > 0) {
+                serverBootstrap.childOption(EpollChannelOption.SO_BUSY_POLL, busyPollInMicros);
+            }
+        } else {
+            bootstrap.option(ChannelOption.TCP_NODELAY, true);
+            if (nativeTransport && busyPollInMicros > 0) {
+                bootstrap.option(EpollChannelOption.SO_BUSY_POLL, busyPollInMicros);
+            }
+        }
+    }
+
+}
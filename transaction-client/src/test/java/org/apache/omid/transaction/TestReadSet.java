@@ -0,0 +1,88 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.omid.transaction;
+
+import org.testng.annotations.Test;
+
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class TestReadSet {
+
+    @Test(timeOut = 10_000)
+    public void testBasicBehaviour() {
+
+        ReadSet readSet = new ReadSet();
+        assertEquals(readSet.size(), 0);
+        assertEquals(readSet.toArray(), new long[0]);
+
+        readSet.add(3);
+        readSet.add(Long.MIN_VALUE);
+        readSet.add(3);
+        readSet.add(-1);
+        assertEquals(readSet.sizeUpperBound(), 4);
+        assertEquals(readSet.size(), 3);
+        assertEquals(readSet.toArray(), new long[]{Long.MIN_VALUE, -1, 3});
+
+        // Already merged keys are not appended again
+        readSet.add(-1);
+        assertEquals(readSet.sizeUpperBound(), 3);
+
+        ReadSet other = new ReadSet();
+        other.add(3);
+        other.add(Long.MAX_VALUE);
+        readSet.addAll(other);
+        assertEquals(readSet.toArray(), new long[]{Long.MIN_VALUE, -1, 3, Long.MAX_VALUE});
+
+        readSet.clear();
+        assertEquals(readSet.size(), 0);
+        assertEquals(readSet.toArray(), new long[0]);
+
+    }
+
+    @Test(timeOut = 30_000)
+    public void testRandomKeysMatchTreeSet() {
+
+        Random random = new Random(0xC0FFEE);
+        ReadSet readSet = new ReadSet();
+        TreeSet<Long> expected = new TreeSet<>();
+
+        // Few distinct keys, so most of the additions repeat a key, before or after it has been merged
+        for (int i = 0; i < 100_000; i++) {
+            long key = random.nextInt(4096) - 2048;
+            readSet.add(key);
+            expected.add(key);
+            assertTrue(readSet.sizeUpperBound() >= expected.size());
+            if (i % 1000 == 0) {
+                assertEquals(readSet.size(), expected.size());
+            }
+        }
+
+        long[] keys = readSet.toArray();
+        assertEquals(keys.length, expected.size());
+        int i = 0;
+        for (long key : expected) {
+            assertEquals(keys[i++], key);
+        }
+
+    }
+
+}
@@ -0,0 +1,79 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.omid.tso.util;
+
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import org.apache.phoenix.thirdparty.com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.testng.SkipException;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.ThreadFactory;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class TestNettyTransport {
+
+    private final ThreadFactory threadFactory = new ThreadFactoryBuilder().setNameFormat("test-transport-%d").build();
+
+    @Test(timeOut = 10_000)
+    public void testNioTransportIsUsedWhenNativeIsNotRequested() throws Exception {
+        EventLoopGroup group = NettyTransport.newEventLoopGroup(false, 1, threadFactory);
+        try {
+            assertTrue(group instanceof NioEventLoopGroup);
+            assertEquals(NettyTransport.socketChannelClass(group), NioSocketChannel.class);
+            assertEquals(NettyTransport.serverSocketChannelClass(group), NioServerSocketChannel.class);
+        } finally {
+            group.shutdownGracefully().sync();
+        }
+    }
+
+    @Test(timeOut = 10_000)
+    public void testNativeTransportFallsBackToNioWhenNotAvailable() throws Exception {
+        EventLoopGroup group = NettyTransport.newEventLoopGroup(true, false, 1, threadFactory);
+        try {
+            assertTrue(group instanceof NioEventLoopGroup);
+            assertEquals(NettyTransport.socketChannelClass(group), NioSocketChannel.class);
+            assertEquals(NettyTransport.serverSocketChannelClass(group), NioServerSocketChannel.class);
+        } finally {
+            group.shutdownGracefully().sync();
+        }
+    }
+
+    @Test(timeOut = 10_000)
+    public void testNativeTransportIsUsedWhenAvailable() throws Exception {
+        if (!NettyTransport.isNativeTransportAvailable()) {
+            throw new SkipException("The native transport is not available in this platform");
+        }
+        EventLoopGroup group = NettyTransport.newEventLoopGroup(true, 1, threadFactory);
+        try {
+            assertTrue(group instanceof EpollEventLoopGroup);
+            assertEquals(NettyTransport.socketChannelClass(group), EpollSocketChannel.class);
+            assertEquals(NettyTransport.serverSocketChannelClass(group), EpollServerSocketChannel.class);
+        } finally {
+            group.shutdownGracefully().sync();
+        }
+    }
+
+}
@@ -58,6 +58,10 @@ createHBaseTimestampTable() {
     exec java $OMID_OPTS -cp $CLASSPATH org.apache.omid.tools.hbase.OmidTableManager timestamp-table $@
 }
 
+repairShadowCells() {
+    exec java $OMID_OPTS -cp $CLASSPATH org.apache.omid.tools.hbase.ShadowCellRepairTool $@
+}
+
 usage() {
     echo "Usage: omid.sh <command> <options>"
     echo "where <command> is one of:"
@@ -65,6 +69,7 @@ usage() {
     echo "  tso-relauncher                Starts The Status Oracle server (TSO) re-launching it if the process exits"
     echo "  create-hbase-commit-table     Creates the hbase commit table."
     echo "  create-hbase-timestamp-table  Creates the hbase timestamp table."
+    echo "  repair-shadow-cells           Writes the missing shadow cells of committed transactions."
 }
 
 # if no args specified, show usage
@@ -84,6 +89,8 @@ elif [ "$COMMAND" = "create-hbase-commit-table" ]; then
     createHBaseCommitTable $@;
 elif [ "$COMMAND" = "create-hbase-timestamp-table" ]; then
     createHBaseTimestampTable $@;
+elif [ "$COMMAND" = "repair-shadow-cells" ]; then
+    repairShadowCells $@;
 else
     exec java -cp $CLASSPATH $COMMAND $@
 fi
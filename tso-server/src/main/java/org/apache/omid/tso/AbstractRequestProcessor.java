@@ -18,6 +18,8 @@
 package org.apache.omid.tso;
 
 import org.apache.phoenix.thirdparty.com.google.common.base.Optional;
+import org.apache.phoenix.thirdparty.com.google.common.collect.Iterables;
+import org.apache.phoenix.thirdparty.com.google.common.util.concurrent.SettableFuture;
 import org.apache.phoenix.thirdparty.com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.lmax.disruptor.EventFactory;
 import com.lmax.disruptor.EventHandler;
@@ -26,7 +28,9 @@ import com.lmax.disruptor.TimeoutBlockingWaitStrategy;
 import com.lmax.disruptor.TimeoutHandler;
 import com.lmax.disruptor.dsl.Disruptor;
 
+import org.apache.omid.metrics.Meter;
 import org.apache.omid.metrics.MetricsRegistry;
+import org.apache.omid.tso.TSOServerConfig.ADMISSION_CONTROL_POLICY;
 import org.apache.omid.tso.TSOStateManager.TSOState;
 import io.netty.channel.Channel;
 import org.slf4j.Logger;
@@ -34,10 +38,12 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadFactory;
@@ -45,6 +51,7 @@ import java.util.concurrent.ThreadFactory;
 import static com.lmax.disruptor.dsl.ProducerType.MULTI;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.apache.omid.metrics.MetricsUtils.name;
 import static org.apache.omid.tso.AbstractRequestProcessor.RequestEvent.EVENT_FACTORY;
 
 abstract class AbstractRequestProcessor implements EventHandler<AbstractRequestProcessor.RequestEvent>, RequestProcessor, TimeoutHandler {
@@ -55,13 +62,21 @@ abstract class AbstractRequestProcessor implements EventHandler<AbstractRequestP
     private final ExecutorService disruptorExec;
     protected final Disruptor<RequestEvent> disruptor;
     protected RingBuffer<RequestEvent> requestRing;
+    private final RingBufferMonitor requestRingMonitor;
+
+    // Admission control
+    private final ADMISSION_CONTROL_POLICY admissionControlPolicy;
+    private final long admissionControlMaxOccupancy;
+    private final Meter overloadedRequestsMeter;
 
     private final TimestampOracle timestampOracle;
     private final CommitHashMap hashmap;
     private final Map<Long, Long> tableFences;
     private final MetricsRegistry metrics;
     private final LowWatermarkWriter lowWatermarkWriter;
+    private final StateReplicator stateReplicator;
     private long lowWatermark = -1L;
+    private long epoch = -1L;
 
     //Used to forward fence
     private final ReplyProcessor replyProcessor;
@@ -70,7 +85,8 @@ abstract class AbstractRequestProcessor implements EventHandler<AbstractRequestP
                              TimestampOracle timestampOracle,
                              Panicker panicker,
                              TSOServerConfig config,
-                             LowWatermarkWriter lowWatermarkWriter, ReplyProcessor replyProcessor)
+                             LowWatermarkWriter lowWatermarkWriter, ReplyProcessor replyProcessor,
+                             StateReplicator stateReplicator)
             throws IOException {
 
 
@@ -86,6 +102,26 @@ abstract class AbstractRequestProcessor implements EventHandler<AbstractRequestP
         this.disruptor = new Disruptor<>(EVENT_FACTORY, 1 << 12, disruptorExec, MULTI, timeoutStrategy);
         disruptor.handleExceptionsWith(new FatalExceptionHandler(panicker)); // This must be before handleEventsWith()
         disruptor.handleEventsWith(this);
+        RingBufferMonitor.registerRemainingCapacityGauge(metrics, "request", disruptor.getRingBuffer());
+        this.requestRingMonitor = new RingBufferMonitor(metrics, "request");
+
+        // ------------------------------------------------------------------------------------------------------------
+        // Admission control
+        // ------------------------------------------------------------------------------------------------------------
+
+        this.admissionControlPolicy = config.getAdmissionControlPolicy() == null
+                ? ADMISSION_CONTROL_POLICY.BLOCK
+                : config.getAdmissionControlPolicyEnum();
+        if (admissionControlPolicy != ADMISSION_CONTROL_POLICY.BLOCK
+                && (config.getAdmissionControlThreshold() <= 0 || config.getAdmissionControlThreshold() > 1)) {
+            throw new IllegalArgumentException(
+                    "Admission control threshold must be in (0, 1]: " + config.getAdmissionControlThreshold());
+        }
+        this.admissionControlMaxOccupancy =
+                (long) (disruptor.getRingBuffer().getBufferSize() * config.getAdmissionControlThreshold());
+        this.overloadedRequestsMeter = metrics.meter(name("tso", "requests", "overloaded"));
+        LOG.info("Admission control policy {} with a max occupancy of {} requests",
+                 admissionControlPolicy, admissionControlMaxOccupancy);
 
 
         // ------------------------------------------------------------------------------------------------------------
@@ -97,6 +133,7 @@ abstract class AbstractRequestProcessor implements EventHandler<AbstractRequestP
         this.hashmap = new CommitHashMap(config.getConflictMapSize());
         this.tableFences = new HashMap<Long, Long>();
         this.lowWatermarkWriter = lowWatermarkWriter;
+        this.stateReplicator = stateReplicator;
 
         this.replyProcessor = replyProcessor;
 
@@ -110,14 +147,31 @@ abstract class AbstractRequestProcessor implements EventHandler<AbstractRequestP
     @Override
     public void update(TSOState state) throws Exception {
         LOG.info("Initializing RequestProcessor state...");
-        this.lowWatermark = state.getLowWatermark();
+        // Apply the state replicated from the previous master that may still be queued before taking over
+        awaitQueuedRequests();
+        // When taking over from a replicated state, the conflict map may have already raised the low watermark
+        this.lowWatermark = Math.max(state.getLowWatermark(), lowWatermark);
+        this.epoch = state.getEpoch();
         lowWatermarkWriter.persistLowWatermark(lowWatermark).get(); // Sync persist
         LOG.info("RequestProcessor state initialized with LWMs {} and Epoch {}", lowWatermark, state.getEpoch());
     }
 
+    /**
+     * Blocks until the requests published so far are handled, by queueing a barrier behind them
+     */
+    private void awaitQueuedRequests() throws InterruptedException, ExecutionException {
+        SettableFuture<Void> requestsHandled = SettableFuture.create();
+        long seq = requestRing.next();
+        RequestEvent e = requestRing.get(seq);
+        RequestEvent.makeBarrier(e, requestsHandled);
+        publish(seq, e);
+        requestsHandled.get();
+    }
+
     @Override
     public void onEvent(RequestEvent event, long sequence, boolean endOfBatch) throws Exception {
 
+        requestRingMonitor.eventDequeued(event.getEnqueuedAtInNs());
         switch (event.getType()) {
             case TIMESTAMP:
                 handleTimestamp(event);
@@ -128,6 +182,18 @@ abstract class AbstractRequestProcessor implements EventHandler<AbstractRequestP
             case FENCE:
                 handleFence(event);
                 break;
+            case REPLICATED_COMMIT:
+                handleReplicatedCommit(event);
+                break;
+            case REPLICATED_FENCE:
+                handleReplicatedFence(event);
+                break;
+            case REPLICATED_LOW_WATERMARK:
+                handleReplicatedLowWatermark(event);
+                break;
+            case BARRIER:
+                event.getBarrier().set(null);
+                break;
             default:
                 throw new IllegalStateException("Event not allowed in Request Processor: " + event);
         }
@@ -149,41 +215,127 @@ abstract class AbstractRequestProcessor implements EventHandler<AbstractRequestP
     @Override
     public void timestampRequest(Channel c, MonitoringContext monCtx) {
 
-        monCtx.timerStart("request.processor.timestamp.latency");
+        // The client matches the timestamp responses with its requests in order. An overloaded response sent right
+        // away could overtake the responses to the requests already queued, so untagged requests are never rejected
+        if (admissionControlPolicy == ADMISSION_CONTROL_POLICY.SHED && isOverloaded()) {
+            overloadedRequestsMeter.mark();
+            return;
+        }
+        publishTimestampRequest(c, monCtx);
+
+    }
+
+    @Override
+    public void timestampRequest(long requestId, Channel c, MonitoringContext monCtx) {
+
+        if (isOverloaded()) {
+            overloadedRequestsMeter.mark();
+            if (admissionControlPolicy == ADMISSION_CONTROL_POLICY.REJECT) {
+                replyProcessor.sendOverloadedTimestampResponse(requestId, c);
+            }
+            return;
+        }
+        publishTimestampRequest(c, monCtx);
+
+    }
+
+    private void publishTimestampRequest(Channel c, MonitoringContext monCtx) {
+
+        monCtx.timerStart(MonitoredStage.REQUEST_TIMESTAMP);
         long seq = requestRing.next();
         RequestEvent e = requestRing.get(seq);
         RequestEvent.makeTimestampRequest(e, c, monCtx);
-        requestRing.publish(seq);
+        publish(seq, e);
 
     }
 
     @Override
     public void commitRequest(long startTimestamp, Collection<Long> writeSet, Collection<Long> tableIdSet, boolean isRetry, Channel c,
                               MonitoringContext monCtx) {
+        commitRequest(startTimestamp, writeSet, Collections.<Long>emptyList(), Collections.<Long>emptyList(), tableIdSet,
+                      isRetry, c, monCtx);
+    }
 
-        monCtx.timerStart("request.processor.commit.latency");
+    @Override
+    public void commitRequest(long startTimestamp, Collection<Long> writeSet, Collection<Long> checkOnlySet,
+                              Collection<Long> registerOnlySet, Collection<Long> tableIdSet, boolean isRetry, Channel c,
+                              MonitoringContext monCtx) {
+
+        if (isOverloaded()) {
+            overloadedRequestsMeter.mark();
+            if (admissionControlPolicy == ADMISSION_CONTROL_POLICY.REJECT) {
+                replyProcessor.sendOverloadedCommitResponse(startTimestamp, c);
+            }
+            return;
+        }
+        monCtx.timerStart(MonitoredStage.REQUEST_COMMIT);
         long seq = requestRing.next();
         RequestEvent e = requestRing.get(seq);
-        RequestEvent.makeCommitRequest(e, startTimestamp, monCtx, writeSet, tableIdSet, isRetry, c);
-        requestRing.publish(seq);
+        RequestEvent.makeCommitRequest(e, startTimestamp, monCtx, writeSet, checkOnlySet, registerOnlySet, tableIdSet,
+                                       isRetry, c);
+        publish(seq, e);
 
     }
 
     @Override
     public void fenceRequest(long tableID, Channel c, MonitoringContext monCtx) {
 
-        monCtx.timerStart("request.processor.fence.latency");
+        monCtx.timerStart(MonitoredStage.REQUEST_FENCE);
         long seq = requestRing.next();
         RequestEvent e = requestRing.get(seq);
         RequestEvent.makeFenceRequest(e, tableID, c, monCtx);
+        publish(seq, e);
+
+    }
+
+    @Override
+    public void replicatedCommit(long commitTimestamp, Collection<Long> writeSet) {
+
+        long seq = requestRing.next();
+        RequestEvent e = requestRing.get(seq);
+        RequestEvent.makeReplicatedCommit(e, commitTimestamp, writeSet);
+        publish(seq, e);
+
+    }
+
+    @Override
+    public void replicatedFence(long tableID, long fenceTimestamp) {
+
+        long seq = requestRing.next();
+        RequestEvent e = requestRing.get(seq);
+        RequestEvent.makeReplicatedFence(e, tableID, fenceTimestamp);
+        publish(seq, e);
+
+    }
+
+    @Override
+    public void replicatedLowWatermark(long lowWatermark) {
+
+        long seq = requestRing.next();
+        RequestEvent e = requestRing.get(seq);
+        RequestEvent.makeReplicatedLowWatermark(e, lowWatermark);
+        publish(seq, e);
+
+    }
+
+    private void publish(long seq, RequestEvent e) {
+        e.enqueuedAtInNs = System.nanoTime();
         requestRing.publish(seq);
+    }
 
+    /**
+     * Admission control of new timestamp and commit requests. Fences and the state replicated to a standby are always
+     * admitted. Called from the network threads, so the decision is based on the occupancy of the request ring.
+     */
+    private boolean isOverloaded() {
+        return admissionControlPolicy != ADMISSION_CONTROL_POLICY.BLOCK
+                && requestRing.getBufferSize() - requestRing.remainingCapacity() >= admissionControlMaxOccupancy;
     }
 
     private void handleTimestamp(RequestEvent requestEvent) throws Exception {
 
         long timestamp = timestampOracle.next();
-        requestEvent.getMonCtx().timerStop("request.processor.timestamp.latency");
+        requestEvent.getMonCtx().timerStop(MonitoredStage.REQUEST_TIMESTAMP);
         forwardTimestamp(timestamp, requestEvent.getChannel(), requestEvent.getMonCtx());
     }
 
@@ -220,11 +372,13 @@ abstract class AbstractRequestProcessor implements EventHandler<AbstractRequestP
 
         long startTimestamp = event.getStartTimestamp();
         Iterable<Long> writeSet = event.writeSet();
+        Collection<Long> checkOnlySet = event.getCheckOnlySet();
+        Collection<Long> registerOnlySet = event.getRegisterOnlySet();
         Collection<Long> tableIdSet = event.getTableIdSet();
         boolean isCommitRetry = event.isCommitRetry();
         Channel c = event.getChannel();
 
-        boolean nonEmptyWriteSet = writeSet.iterator().hasNext();
+        boolean nonEmptyWriteSet = writeSet.iterator().hasNext() || !registerOnlySet.isEmpty();
 
         // If the transaction started before the low watermark, or
         // it started before a fence and modified the table the fence created for, or
@@ -232,7 +386,8 @@ abstract class AbstractRequestProcessor implements EventHandler<AbstractRequestP
         // Then it should abort. Otherwise, it can commit.
         if (startTimestamp > lowWatermark &&
             !hasConflictsWithFences(startTimestamp, tableIdSet) &&
-            !hasConflictsWithCommittedTransactions(startTimestamp, writeSet)) {
+            !hasConflictsWithCommittedTransactions(startTimestamp, writeSet) &&
+            !hasConflictsWithCommittedTransactions(startTimestamp, checkOnlySet)) {
 
             long commitTimestamp = timestampOracle.next();
             Optional<Long> forwardNewWaterMark = Optional.absent();
@@ -243,6 +398,10 @@ abstract class AbstractRequestProcessor implements EventHandler<AbstractRequestP
                     long removed = hashmap.putLatestWriteForCell(r, commitTimestamp);
                     newLowWatermark = Math.max(removed, newLowWatermark);
                 }
+                for (long r : registerOnlySet) {
+                    long removed = hashmap.putLatestWriteForCell(r, commitTimestamp);
+                    newLowWatermark = Math.max(removed, newLowWatermark);
+                }
 
                 if (newLowWatermark != lowWatermark) {
                     LOG.trace("Setting new low Watermark to {}", newLowWatermark);
@@ -250,12 +409,26 @@ abstract class AbstractRequestProcessor implements EventHandler<AbstractRequestP
                     forwardNewWaterMark = Optional.of(lowWatermark);
                 }
             }
-            event.getMonCtx().timerStop("request.processor.commit.latency");
-            forwardCommit(startTimestamp, commitTimestamp, c, event.getMonCtx(), forwardNewWaterMark);
+            // Replicate before forwarding, so the commit is sent before waiting for it in the persistence step
+            if (registerOnlySet.isEmpty()) {
+                stateReplicator.replicateCommit(commitTimestamp, writeSet);
+            } else {
+                stateReplicator.replicateCommit(commitTimestamp, Iterables.concat(writeSet, registerOnlySet));
+            }
+            if (forwardNewWaterMark.isPresent()) {
+                stateReplicator.replicateLowWatermark(forwardNewWaterMark.get());
+            }
+            event.getMonCtx().timerStop(MonitoredStage.REQUEST_COMMIT);
+            if (startTimestamp < epoch) {
+                // Transaction started with the previous master and survived a warm take over
+                forwardPreviousEpochCommit(startTimestamp, commitTimestamp, c, event.getMonCtx(), forwardNewWaterMark);
+            } else {
+                forwardCommit(startTimestamp, commitTimestamp, c, event.getMonCtx(), forwardNewWaterMark);
+            }
 
         } else {
 
-            event.getMonCtx().timerStop("request.processor.commit.latency");
+            event.getMonCtx().timerStop(MonitoredStage.REQUEST_COMMIT);
             if (isCommitRetry) { // Re-check if it was already committed but the client retried due to a lag replying
                 forwardCommitRetry(startTimestamp, c, event.getMonCtx());
             } else {
@@ -273,11 +446,38 @@ abstract class AbstractRequestProcessor implements EventHandler<AbstractRequestP
         long fenceTimestamp = timestampOracle.next();
 
         tableFences.put(tableID, fenceTimestamp);
+        // Fences are not persisted, so they need to reach the standby replica before replying
+        stateReplicator.replicateFence(tableID, fenceTimestamp);
+        stateReplicator.waitForReplicas(fenceTimestamp);
 
-        event.monCtx.timerStart("reply.processor.fence.latency");
+        event.monCtx.timerStart(MonitoredStage.REPLY_FENCE);
         replyProcessor.sendFenceResponse(tableID, fenceTimestamp, c, event.monCtx);
     }
 
+    // The next handlers are only used in a standby replica to keep the conflict state warm
+
+    private void handleReplicatedCommit(RequestEvent event) {
+
+        long commitTimestamp = event.getReplicatedTimestamp();
+        for (long r : event.writeSet()) {
+            long removed = hashmap.putLatestWriteForCell(r, commitTimestamp);
+            lowWatermark = Math.max(removed, lowWatermark);
+        }
+
+    }
+
+    private void handleReplicatedFence(RequestEvent event) {
+
+        tableFences.put(event.getTableId(), event.getReplicatedTimestamp());
+
+    }
+
+    private void handleReplicatedLowWatermark(RequestEvent event) {
+
+        lowWatermark = Math.max(event.getReplicatedTimestamp(), lowWatermark);
+
+    }
+
     @Override
     public void close() throws IOException {
 
@@ -298,6 +498,7 @@ abstract class AbstractRequestProcessor implements EventHandler<AbstractRequestP
     }
 
     protected abstract void forwardCommit(long startTimestamp, long commitTimestamp, Channel c, MonitoringContext monCtx, Optional<Long> lowWatermark) throws Exception;
+    protected abstract void forwardPreviousEpochCommit(long startTimestamp, long commitTimestamp, Channel c, MonitoringContext monCtx, Optional<Long> lowWatermark) throws Exception;
     protected abstract void forwardCommitRetry(long startTimestamp, Channel c, MonitoringContext monCtx) throws Exception;
     protected abstract void forwardAbort(long startTimestamp, Channel c, MonitoringContext monCtx) throws Exception;
     protected abstract void forwardTimestamp(long startTimestamp, Channel c, MonitoringContext monCtx) throws Exception;
@@ -308,7 +509,7 @@ abstract class AbstractRequestProcessor implements EventHandler<AbstractRequestP
     final static class RequestEvent implements Iterable<Long> {
 
         enum Type {
-            TIMESTAMP, COMMIT, FENCE
+            TIMESTAMP, COMMIT, FENCE, REPLICATED_COMMIT, REPLICATED_FENCE, REPLICATED_LOW_WATERMARK, BARRIER
         }
 
         private Type type = null;
@@ -323,9 +524,17 @@ abstract class AbstractRequestProcessor implements EventHandler<AbstractRequestP
         private Long writeSet[] = new Long[MAX_INLINE];
         private Collection<Long> writeSetAsCollection = null; // for the case where there's more than MAX_INLINE
 
+        private Collection<Long> checkOnlySet = Collections.emptyList();
+        private Collection<Long> registerOnlySet = Collections.emptyList();
         private Collection<Long> tableIdSet = null;
         private long tableID = 0;
 
+        private long replicatedTimestamp = 0;
+
+        private SettableFuture<Void> barrier = null;
+
+        private long enqueuedAtInNs = 0;
+
         static void makeTimestampRequest(RequestEvent e, Channel c, MonitoringContext monCtx) {
             e.type = Type.TIMESTAMP;
             e.channel = c;
@@ -336,6 +545,8 @@ abstract class AbstractRequestProcessor implements EventHandler<AbstractRequestP
                                       long startTimestamp,
                                       MonitoringContext monCtx,
                                       Collection<Long> writeSet,
+                                      Collection<Long> checkOnlySet,
+                                      Collection<Long> registerOnlySet,
                                       Collection<Long> TableIdSet,
                                       boolean isRetry,
                                       Channel c) {
@@ -344,6 +555,43 @@ abstract class AbstractRequestProcessor implements EventHandler<AbstractRequestP
             e.channel = c;
             e.startTimestamp = startTimestamp;
             e.isCommitRetry = isRetry;
+            setWriteSet(e, writeSet);
+            e.checkOnlySet = checkOnlySet;
+            e.registerOnlySet = registerOnlySet;
+            e.tableIdSet = TableIdSet;
+        }
+
+        static void makeReplicatedCommit(RequestEvent e, long commitTimestamp, Collection<Long> writeSet) {
+            e.type = Type.REPLICATED_COMMIT;
+            e.channel = null;
+            e.monCtx = null;
+            e.replicatedTimestamp = commitTimestamp;
+            setWriteSet(e, writeSet);
+        }
+
+        static void makeReplicatedFence(RequestEvent e, long tableID, long fenceTimestamp) {
+            e.type = Type.REPLICATED_FENCE;
+            e.channel = null;
+            e.monCtx = null;
+            e.tableID = tableID;
+            e.replicatedTimestamp = fenceTimestamp;
+        }
+
+        static void makeReplicatedLowWatermark(RequestEvent e, long lowWatermark) {
+            e.type = Type.REPLICATED_LOW_WATERMARK;
+            e.channel = null;
+            e.monCtx = null;
+            e.replicatedTimestamp = lowWatermark;
+        }
+
+        static void makeBarrier(RequestEvent e, SettableFuture<Void> barrier) {
+            e.type = Type.BARRIER;
+            e.channel = null;
+            e.monCtx = null;
+            e.barrier = barrier;
+        }
+
+        private static void setWriteSet(RequestEvent e, Collection<Long> writeSet) {
             if (writeSet.size() > MAX_INLINE) {
                 e.numCells = writeSet.size();
                 e.writeSetAsCollection = writeSet;
@@ -356,7 +604,6 @@ abstract class AbstractRequestProcessor implements EventHandler<AbstractRequestP
                     ++i;
                 }
             }
-            e.tableIdSet = TableIdSet;
         }
 
         static void makeFenceRequest(RequestEvent e,
@@ -385,6 +632,14 @@ abstract class AbstractRequestProcessor implements EventHandler<AbstractRequestP
             return channel;
         }
 
+        Collection<Long> getCheckOnlySet() {
+            return checkOnlySet;
+        }
+
+        Collection<Long> getRegisterOnlySet() {
+            return registerOnlySet;
+        }
+
         Collection<Long> getTableIdSet() {
             return tableIdSet;
         }
@@ -393,6 +648,18 @@ abstract class AbstractRequestProcessor implements EventHandler<AbstractRequestP
             return tableID;
         }
 
+        long getReplicatedTimestamp() {
+            return replicatedTimestamp;
+        }
+
+        SettableFuture<Void> getBarrier() {
+            return barrier;
+        }
+
+        long getEnqueuedAtInNs() {
+            return enqueuedAtInNs;
+        }
+
         @Override
         public Iterator<Long> iterator() {
 
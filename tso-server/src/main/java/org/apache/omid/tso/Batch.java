@@ -99,7 +99,7 @@ public class Batch {
         Preconditions.checkState(!isFull(), "batch is full");
         int index = numEvents++;
         PersistEvent e = events[index];
-        context.timerStart("persistence.processor.timestamp.latency");
+        context.timerStart(MonitoredStage.PERSISTENCE_TIMESTAMP);
         e.makePersistTimestamp(startTimestamp, c, context);
 
     }
@@ -109,7 +109,7 @@ public class Batch {
         Preconditions.checkState(!isFull(), "batch is full");
         int index = numEvents++;
         PersistEvent e = events[index];
-        context.timerStart("persistence.processor.fence.latency");
+        context.timerStart(MonitoredStage.PERSISTENCE_FENCE);
         e.makePersistFence(tableID, fenceTimestamp, c, context);
 
     }
@@ -119,17 +119,28 @@ public class Batch {
         Preconditions.checkState(!isFull(), "batch is full");
         int index = numEvents++;
         PersistEvent e = events[index];
-        context.timerStart("persistence.processor.commit.latency");
+        context.timerStart(MonitoredStage.PERSISTENCE_COMMIT);
         e.makePersistCommit(startTimestamp, commitTimestamp, newLowWatermark, c, context);
 
     }
 
+    void addPreviousEpochCommit(long startTimestamp, long commitTimestamp, Channel c, MonitoringContext context,
+                                Optional<Long> newLowWatermark) {
+
+        Preconditions.checkState(!isFull(), "batch is full");
+        int index = numEvents++;
+        PersistEvent e = events[index];
+        context.timerStart(MonitoredStage.PERSISTENCE_COMMIT);
+        e.makePersistPreviousEpochCommit(startTimestamp, commitTimestamp, newLowWatermark, c, context);
+
+    }
+
     void addCommitRetry(long startTimestamp, Channel c, MonitoringContext context) {
 
         Preconditions.checkState(!isFull(), "batch is full");
         int index = numEvents++;
         PersistEvent e = events[index];
-        context.timerStart("persistence.processor.commit-retry.latency");
+        context.timerStart(MonitoredStage.PERSISTENCE_COMMIT_RETRY);
         e.makeCommitRetry(startTimestamp, c, context);
 
     }
@@ -139,7 +150,7 @@ public class Batch {
         Preconditions.checkState(!isFull(), "batch is full");
         int index = numEvents++;
         PersistEvent e = events[index];
-        context.timerStart("persistence.processor.abort.latency");
+        context.timerStart(MonitoredStage.PERSISTENCE_ABORT);
         e.makePersistAbort(startTimestamp, c, context);
 
     }
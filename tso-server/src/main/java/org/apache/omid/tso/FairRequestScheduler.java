@@ -0,0 +1,463 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.omid.tso;
+
+import io.netty.channel.Channel;
+import org.apache.omid.metrics.Gauge;
+import org.apache.omid.metrics.Meter;
+import org.apache.omid.metrics.MetricsRegistry;
+import org.apache.omid.metrics.Timer;
+import org.apache.phoenix.thirdparty.com.google.common.annotations.VisibleForTesting;
+import org.apache.phoenix.thirdparty.com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.apache.omid.metrics.MetricsUtils.name;
+
+/**
+ * Queues the requests received from the clients per tenant and hands them over to the {@link RequestProcessor} in
+ * weighted round-robin order, so a tenant flooding the TSO (e.g. a bulk load) can not monopolize the request
+ * pipeline and inflate the latency of the rest.
+ *
+ * In each round, a tenant with pending requests may dispatch up to its weight (1 by default) requests. When the
+ * requests queued by a tenant exceed the configured maximum, its connections stop being read until the queue
+ * drains to half of it, pushing the backpressure to the TCP connections of that tenant only.
+ *
+ * Tenant names come from the clients, so their number is not bounded. Only the tenants with a configured weight
+ * get their own metrics, all registered when the scheduler is created; the rest share the metrics of the default
+ * group. The queues of the tenants that have not dispatched any request for the configured idle timeout are evicted
+ * by the dispatcher, and created again on their next request.
+ */
+class FairRequestScheduler implements Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(FairRequestScheduler.class);
+
+    static final int DEFAULT_WEIGHT = 1;
+    static final String DEFAULT_METRICS_GROUP = "default";
+
+    private final RequestProcessor requestProcessor;
+    private final Panicker panicker;
+    private final Map<String, Integer> weights;
+    private final int maxQueuedRequestsPerTenant;
+    private final long tenantIdleTimeoutInNs;
+
+    // Metrics of the tenants with a configured weight. Immutable after construction
+    private final Map<String, TenantMetrics> metricsByTenant = new HashMap<>();
+    private final TenantMetrics defaultMetrics;
+
+    private final ConcurrentMap<String, TenantQueue> tenantsByName = new ConcurrentHashMap<>();
+    private final List<TenantQueue> tenants = new CopyOnWriteArrayList<>();
+    // One permit per queued request. Lets the dispatcher sleep when there's nothing to dispatch
+    private final Semaphore queuedRequests = new Semaphore(0);
+
+    private final ExecutorService dispatcherExecutor;
+    private volatile boolean stopped = false;
+    // Only accessed by the dispatcher
+    private long lastEvictionCheckInNs = System.nanoTime();
+
+    FairRequestScheduler(RequestProcessor requestProcessor,
+                         Map<String, Integer> weights,
+                         int maxQueuedRequestsPerTenant,
+                         long tenantIdleTimeoutInMs,
+                         Panicker panicker,
+                         MetricsRegistry metrics) {
+
+        this.requestProcessor = requestProcessor;
+        this.panicker = panicker;
+        this.weights = (weights == null) ? Collections.<String, Integer>emptyMap() : new HashMap<>(weights);
+        for (Map.Entry<String, Integer> weight : this.weights.entrySet()) {
+            if (weight.getValue() == null || weight.getValue() <= 0) {
+                throw new IllegalArgumentException(
+                        "Scheduling weight of tenant " + weight.getKey() + " must be positive: " + weight.getValue());
+            }
+        }
+        if (maxQueuedRequestsPerTenant <= 0) {
+            throw new IllegalArgumentException(
+                    "Max queued requests per tenant must be positive: " + maxQueuedRequestsPerTenant);
+        }
+        if (tenantIdleTimeoutInMs <= 0) {
+            throw new IllegalArgumentException("Tenant idle timeout must be positive: " + tenantIdleTimeoutInMs);
+        }
+        this.maxQueuedRequestsPerTenant = maxQueuedRequestsPerTenant;
+        this.tenantIdleTimeoutInNs = TimeUnit.MILLISECONDS.toNanos(tenantIdleTimeoutInMs);
+
+        // Register every metric up front, so they never collide when the tenants connect
+        Map<String, String> tenantsByMetricsName = new HashMap<>();
+        tenantsByMetricsName.put(DEFAULT_METRICS_GROUP, null);
+        for (String tenantName : this.weights.keySet()) {
+            String metricsName = sanitize(tenantName);
+            if (tenantsByMetricsName.containsKey(metricsName)) {
+                throw new IllegalArgumentException("Metrics of tenant " + tenantName + " would clash with the ones of "
+                        + (tenantsByMetricsName.get(metricsName) == null
+                           ? "the " + DEFAULT_METRICS_GROUP + " group"
+                           : "tenant " + tenantsByMetricsName.get(metricsName)));
+            }
+            tenantsByMetricsName.put(metricsName, tenantName);
+            metricsByTenant.put(tenantName, new TenantMetrics(metricsName, metrics));
+        }
+        this.defaultMetrics = new TenantMetrics(DEFAULT_METRICS_GROUP, metrics);
+
+        this.dispatcherExecutor = Executors.newSingleThreadExecutor(
+                new ThreadFactoryBuilder().setNameFormat("fair-request-scheduler-%d").setDaemon(true).build());
+        this.dispatcherExecutor.submit(new Runnable() {
+            @Override
+            public void run() {
+                dispatch();
+            }
+        });
+        LOG.info("Fair request scheduling enabled. Weights {}, max queued requests per tenant {}, "
+                 + "tenant idle timeout {} ms", this.weights, maxQueuedRequestsPerTenant, tenantIdleTimeoutInMs);
+
+    }
+
+    // ----------------------------------------------------------------------------------------------------------------
+    // Request entry points, called from the network threads
+    // ----------------------------------------------------------------------------------------------------------------
+
+    void timestampRequest(String tenant, Channel c, MonitoringContext monCtx) {
+        enqueue(tenant, new QueuedRequest(QueuedRequest.Type.TIMESTAMP, c, monCtx));
+    }
+
+    void timestampRequest(String tenant, long requestId, Channel c, MonitoringContext monCtx) {
+        QueuedRequest request = new QueuedRequest(QueuedRequest.Type.TIMESTAMP, c, monCtx);
+        request.hasRequestId = true;
+        request.requestId = requestId;
+        enqueue(tenant, request);
+    }
+
+    void commitRequest(String tenant, long startTimestamp, Collection<Long> writeSet, Collection<Long> checkOnlySet,
+                       Collection<Long> registerOnlySet, Collection<Long> tableIdSet, boolean isRetry, Channel c,
+                       MonitoringContext monCtx) {
+        QueuedRequest request = new QueuedRequest(QueuedRequest.Type.COMMIT, c, monCtx);
+        request.startTimestamp = startTimestamp;
+        request.writeSet = writeSet;
+        request.checkOnlySet = checkOnlySet;
+        request.registerOnlySet = registerOnlySet;
+        request.tableIdSet = tableIdSet;
+        request.isRetry = isRetry;
+        enqueue(tenant, request);
+    }
+
+    void fenceRequest(String tenant, long tableID, Channel c, MonitoringContext monCtx) {
+        QueuedRequest request = new QueuedRequest(QueuedRequest.Type.FENCE, c, monCtx);
+        request.tableID = tableID;
+        enqueue(tenant, request);
+    }
+
+    private void enqueue(String tenantName, QueuedRequest request) {
+
+        TenantQueue tenant = getTenantQueue(tenantName);
+        int queued = tenant.reserve();
+        while (queued == TenantQueue.EVICTED) {
+            // The dispatcher evicted the queue after we got it. Make sure it's gone and start over with a new one
+            tenantsByName.remove(tenantName, tenant);
+            tenant = getTenantQueue(tenantName);
+            queued = tenant.reserve();
+        }
+        tenant.requests.add(request);
+        queuedRequests.release();
+
+        if (queued > maxQueuedRequestsPerTenant && request.channel.config().isAutoRead()) {
+            LOG.debug("Tenant {} has {} queued requests. Pausing reads from {}", tenantName, queued, request.channel);
+            request.channel.config().setAutoRead(false);
+            tenant.pausedChannels.add(request.channel);
+            tenant.metrics.pausedReadsMeter.mark();
+            // The dispatcher may have drained (or even evicted) the queue before the channel was registered as paused
+            if (tenant.queued.get() <= maxQueuedRequestsPerTenant / 2) {
+                resumeReads(tenant);
+            }
+        }
+
+    }
+
+    /**
+     * Forgets a closed connection of the tenant, so it's not kept around if it was paused
+     */
+    void channelClosed(String tenantName, Channel c) {
+        TenantQueue tenant = tenantsByName.get(tenantName);
+        if (tenant != null && tenant.pausedChannels.remove(c)) {
+            LOG.debug("Paused channel {} of tenant {} closed", c, tenantName);
+        }
+    }
+
+    private TenantQueue getTenantQueue(String tenantName) {
+
+        TenantQueue tenant = tenantsByName.get(tenantName);
+        if (tenant == null) {
+            // Creating a queue has no side effects, so the ones losing the race are just discarded
+            Integer weight = weights.get(tenantName);
+            TenantMetrics tenantMetrics = metricsByTenant.get(tenantName);
+            TenantQueue newTenant = new TenantQueue(tenantName,
+                                                    (weight == null) ? DEFAULT_WEIGHT : weight,
+                                                    (tenantMetrics == null) ? defaultMetrics : tenantMetrics);
+            tenant = tenantsByName.putIfAbsent(tenantName, newTenant);
+            if (tenant == null) {
+                tenant = newTenant;
+                tenants.add(tenant);
+                LOG.info("New tenant {} with scheduling weight {}", tenantName, tenant.weight);
+            }
+        }
+        return tenant;
+
+    }
+
+    @VisibleForTesting
+    int getTenantCount() {
+        return tenants.size();
+    }
+
+    // ----------------------------------------------------------------------------------------------------------------
+    // Dispatcher
+    // ----------------------------------------------------------------------------------------------------------------
+
+    private void dispatch() {
+
+        try {
+            while (!stopped) {
+                evictIdleTenants();
+                // Wait until there's something to dispatch, waking up from time to time to evict idle tenants
+                if (!queuedRequests.tryAcquire(tenantIdleTimeoutInNs, TimeUnit.NANOSECONDS)) {
+                    continue;
+                }
+                queuedRequests.release();
+                for (TenantQueue tenant : tenants) {
+                    int credits = tenant.weight;
+                    while (credits > 0) {
+                        QueuedRequest request = tenant.requests.poll();
+                        if (request == null) {
+                            break;
+                        }
+                        queuedRequests.acquire();
+                        dispatch(tenant, request);
+                        credits--;
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Throwable t) {
+            // Without the dispatcher no request would be served anymore
+            panicker.panic("Fair request scheduler failed", t);
+        }
+        LOG.info("Fair request scheduler stopped");
+
+    }
+
+    private void dispatch(TenantQueue tenant, QueuedRequest request) {
+
+        int queued = tenant.queued.decrementAndGet();
+        if (queued <= maxQueuedRequestsPerTenant / 2 && !tenant.pausedChannels.isEmpty()) {
+            resumeReads(tenant);
+        }
+        long now = System.nanoTime();
+        tenant.lastDispatchInNs = now;
+        tenant.metrics.waitTimer.update(now - request.enqueuedAtInNs);
+        tenant.metrics.dispatchedMeter.mark();
+
+        switch (request.type) {
+            case TIMESTAMP:
+                if (request.hasRequestId) {
+                    requestProcessor.timestampRequest(request.requestId, request.channel, request.monCtx);
+                } else {
+                    requestProcessor.timestampRequest(request.channel, request.monCtx);
+                }
+                break;
+            case COMMIT:
+                requestProcessor.commitRequest(request.startTimestamp, request.writeSet, request.checkOnlySet,
+                                               request.registerOnlySet, request.tableIdSet, request.isRetry,
+                                               request.channel, request.monCtx);
+                break;
+            case FENCE:
+                requestProcessor.fenceRequest(request.tableID, request.channel, request.monCtx);
+                break;
+            default:
+                throw new IllegalStateException("Unknown request type " + request.type);
+        }
+
+    }
+
+    private void evictIdleTenants() {
+
+        long now = System.nanoTime();
+        if (now - lastEvictionCheckInNs < tenantIdleTimeoutInNs) {
+            return;
+        }
+        lastEvictionCheckInNs = now;
+        for (TenantQueue tenant : tenants) {
+            // Once evicted, the network threads can not queue anything else in it
+            if (now - tenant.lastDispatchInNs >= tenantIdleTimeoutInNs
+                    && tenant.pausedChannels.isEmpty()
+                    && tenant.queued.compareAndSet(0, TenantQueue.EVICTED)) {
+                tenantsByName.remove(tenant.name, tenant);
+                tenants.remove(tenant);
+                LOG.info("Tenant {} evicted after being idle", tenant.name);
+            }
+        }
+
+    }
+
+    private void resumeReads(TenantQueue tenant) {
+        for (Channel c : tenant.pausedChannels) {
+            if (tenant.pausedChannels.remove(c) && c.isActive()) {
+                LOG.debug("Resuming reads from {} of tenant {}", c, tenant.name);
+                c.config().setAutoRead(true);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+
+        stopped = true;
+        dispatcherExecutor.shutdownNow();
+        try {
+            if (!dispatcherExecutor.awaitTermination(5, TimeUnit.SECONDS)) {
+                LOG.warn("Fair request scheduler did not stop in time");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+    }
+
+    // Tenant names may be IP addresses, which would add levels to the dot-separated metric names
+    private static String sanitize(String name) {
+        return name.replaceAll("[^A-Za-z0-9_-]", "_");
+    }
+
+    // ----------------------------------------------------------------------------------------------------------------
+    // Helper classes
+    // ----------------------------------------------------------------------------------------------------------------
+
+    private static class TenantQueue {
+
+        static final int EVICTED = -1;
+
+        final String name;
+        final int weight;
+        final TenantMetrics metrics;
+        final Queue<QueuedRequest> requests = new ConcurrentLinkedQueue<>();
+        // Queued requests, including the ones reserved but not added yet, or EVICTED
+        final AtomicInteger queued = new AtomicInteger();
+        final Set<Channel> pausedChannels = Collections.newSetFromMap(new ConcurrentHashMap<Channel, Boolean>());
+        // Only accessed by the dispatcher once the queue is published
+        long lastDispatchInNs = System.nanoTime();
+
+        TenantQueue(String name, int weight, TenantMetrics metrics) {
+            this.name = name;
+            this.weight = weight;
+            this.metrics = metrics;
+        }
+
+        /**
+         * Reserves room for a new request
+         * @return the number of queued requests including the new one, or EVICTED if the queue can't be used anymore
+         */
+        int reserve() {
+            while (true) {
+                int current = queued.get();
+                if (current == EVICTED) {
+                    return EVICTED;
+                }
+                if (queued.compareAndSet(current, current + 1)) {
+                    return current + 1;
+                }
+            }
+        }
+
+    }
+
+    private class TenantMetrics {
+
+        final Timer waitTimer;
+        final Meter dispatchedMeter;
+        final Meter pausedReadsMeter;
+
+        TenantMetrics(String metricsName, MetricsRegistry metrics) {
+            this.waitTimer = metrics.timer(name("tso", "scheduler", metricsName, "wait"));
+            this.dispatchedMeter = metrics.meter(name("tso", "scheduler", metricsName, "dispatched"));
+            this.pausedReadsMeter = metrics.meter(name("tso", "scheduler", metricsName, "pausedReads"));
+            metrics.gauge(name("tso", "scheduler", metricsName, "queued"), new Gauge<Integer>() {
+                @Override
+                public Integer getValue() {
+                    int queued = 0;
+                    for (TenantQueue tenant : tenants) {
+                        if (tenant.metrics == TenantMetrics.this) {
+                            queued += Math.max(0, tenant.queued.get());
+                        }
+                    }
+                    return queued;
+                }
+            });
+        }
+
+    }
+
+    private static class QueuedRequest {
+
+        enum Type {
+            TIMESTAMP, COMMIT, FENCE
+        }
+
+        final Type type;
+        final Channel channel;
+        final MonitoringContext monCtx;
+        final long enqueuedAtInNs = System.nanoTime();
+
+        // Timestamp requests
+        boolean hasRequestId;
+        long requestId;
+
+        // Commit requests
+        long startTimestamp;
+        Collection<Long> writeSet;
+        Collection<Long> checkOnlySet;
+        Collection<Long> registerOnlySet;
+        Collection<Long> tableIdSet;
+        boolean isRetry;
+
+        // Fence requests
+        long tableID;
+
+        QueuedRequest(Type type, Channel channel, MonitoringContext monCtx) {
+            this.type = type;
+            this.channel = channel;
+            this.monCtx = monCtx;
+        }
+
+    }
+
+}
@@ -19,8 +19,10 @@ package org.apache.omid.tso;
 
 import org.apache.phoenix.thirdparty.com.google.common.annotations.VisibleForTesting;
 import com.google.inject.AbstractModule;
+import com.google.inject.Provider;
 import com.google.inject.Provides;
 import org.apache.curator.framework.CuratorFramework;
+import org.apache.omid.metrics.MetricsRegistry;
 import org.apache.omid.timestamp.storage.ZKModule;
 import org.apache.omid.tso.LeaseManagement.LeaseManagementException;
 import org.slf4j.Logger;
@@ -40,6 +42,10 @@ public class HALeaseManagementModule extends AbstractModule {
     private String currentTsoPath = "/current-tso";
     private String zkCluster = "localhost:2181";
     private String zkNamespace = "omid";
+    // Warm standby state replication. Disabled when the port is 0
+    private int replicationPort = 0;
+    private String replicaSyncPath = "/tso-replica";
+    private long replicationTimeoutInMs = 1000;
 
     // ----------------------------------------------------------------------------------------------------------------
     // WARNING: Do not remove empty constructor, needed by snake_yaml!
@@ -74,7 +80,8 @@ public class HALeaseManagementModule extends AbstractModule {
                                         TSOChannelHandler tsoChannelHandler,
                                         TSOStateManager stateManager,
                                         CuratorFramework zkClient,
-                                        Panicker panicker) throws LeaseManagementException {
+                                        Panicker panicker,
+                                        StateReplicator stateReplicator) throws LeaseManagementException {
 
         LOG.info("Connection to HA cluster [{}]", zkClient.getState());
 
@@ -85,7 +92,30 @@ public class HALeaseManagementModule extends AbstractModule {
                                 tsoLeasePath,
                                 currentTsoPath,
                                 zkClient,
-                                panicker);
+                                panicker,
+                                stateReplicator);
+
+    }
+
+    @Provides
+    @Singleton
+    StateReplicator provideStateReplicator(@Named(TSO_HOST_AND_PORT_KEY) String tsoHostAndPort,
+                                           CuratorFramework zkClient,
+                                           Provider<RequestProcessor> requestProcessorProvider,
+                                           Panicker panicker,
+                                           MetricsRegistry metrics) {
+
+        if (replicationPort == 0) {
+            return new VoidStateReplicator();
+        }
+        return new StateReplicatorImpl(tsoHostAndPort,
+                                       replicationPort,
+                                       replicaSyncPath,
+                                       replicationTimeoutInMs,
+                                       zkClient,
+                                       requestProcessorProvider,
+                                       panicker,
+                                       metrics);
 
     }
 
@@ -133,4 +163,28 @@ public class HALeaseManagementModule extends AbstractModule {
         this.zkNamespace = zkNamespace;
     }
 
+    public int getReplicationPort() {
+        return replicationPort;
+    }
+
+    public void setReplicationPort(int replicationPort) {
+        this.replicationPort = replicationPort;
+    }
+
+    public String getReplicaSyncPath() {
+        return replicaSyncPath;
+    }
+
+    public void setReplicaSyncPath(String replicaSyncPath) {
+        this.replicaSyncPath = replicaSyncPath;
+    }
+
+    public long getReplicationTimeoutInMs() {
+        return replicationTimeoutInMs;
+    }
+
+    public void setReplicationTimeoutInMs(long replicationTimeoutInMs) {
+        this.replicationTimeoutInMs = replicationTimeoutInMs;
+    }
+
 }
@@ -18,18 +18,61 @@
 package org.apache.omid.tso;
 
 import com.google.inject.AbstractModule;
+import com.google.inject.Provides;
 import org.apache.omid.committable.CommitTable;
+import org.apache.omid.committable.InMemoryCommitTable;
 import org.apache.omid.committable.NullCommitTable;
+import org.apache.omid.metrics.MetricsRegistry;
 
 import javax.inject.Singleton;
 
+/**
+ * By default the commits are not kept anywhere. With keepCommits they are kept in an {@link InMemoryCommitTable},
+ * which only the clients running in the same process as the TSO can read, and with evictBelowLowWatermark the
+ * entries of the transactions started before the low watermark are evicted from it. See
+ * {@link InMemoryCommitTable#InMemoryCommitTable(MetricsRegistry, boolean)} for when the eviction is safe.
+ *
+ * This class is instantiated by the yaml parser.
+ * Snake_yaml needs a public POJO style class to work properly with all the setters and getters.
+ */
 public class InMemoryCommitTableStorageModule extends AbstractModule {
 
+    private boolean keepCommits = false;
+    private boolean evictBelowLowWatermark = false;
+
     @Override
     public void configure() {
+    }
+
+    @Provides
+    @Singleton
+    CommitTable provideCommitTable(MetricsRegistry metrics) {
+
+        if (!keepCommits) {
+            return new NullCommitTable();
+        }
+        return new InMemoryCommitTable(metrics, evictBelowLowWatermark);
+
+    }
+
+    // ----------------------------------------------------------------------------------------------------------------
+    // WARNING: Do not remove getters/setters, needed by snake_yaml!
+    // ----------------------------------------------------------------------------------------------------------------
+
+    public boolean getKeepCommits() {
+        return keepCommits;
+    }
 
-        bind(CommitTable.class).to(NullCommitTable.class).in(Singleton.class);
+    public void setKeepCommits(boolean keepCommits) {
+        this.keepCommits = keepCommits;
+    }
+
+    public boolean getEvictBelowLowWatermark() {
+        return evictBelowLowWatermark;
+    }
 
+    public void setEvictBelowLowWatermark(boolean evictBelowLowWatermark) {
+        this.evictBelowLowWatermark = evictBelowLowWatermark;
     }
 
 }
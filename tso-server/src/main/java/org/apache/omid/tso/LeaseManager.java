@@ -18,6 +18,7 @@
 package org.apache.omid.tso;
 
 import org.apache.phoenix.thirdparty.com.google.common.base.Charsets;
+import org.apache.phoenix.thirdparty.com.google.common.base.Optional;
 import org.apache.phoenix.thirdparty.com.google.common.base.Preconditions;
 import org.apache.phoenix.thirdparty.com.google.common.util.concurrent.AbstractScheduledService;
 import org.apache.phoenix.thirdparty.com.google.common.util.concurrent.ThreadFactoryBuilder;
@@ -54,6 +55,7 @@ class LeaseManager extends AbstractScheduledService implements LeaseManagement {
     private final String tsoHostAndPort;
 
     private final TSOStateManager stateManager;
+    private final StateReplicator stateReplicator;
     private final ExecutorService tsoStateInitializer = Executors.newSingleThreadExecutor(
             new ThreadFactoryBuilder()
                     .setNameFormat("tso-state-initializer")
@@ -84,6 +86,21 @@ class LeaseManager extends AbstractScheduledService implements LeaseManagement {
                  CuratorFramework zkClient,
                  Panicker panicker) {
 
+        this(tsoHostAndPort, tsoChannelHandler, stateManager, leasePeriodInMs, leasePath, currentTSOPath, zkClient,
+             panicker, new VoidStateReplicator());
+
+    }
+
+    LeaseManager(String tsoHostAndPort,
+                 TSOChannelHandler tsoChannelHandler,
+                 TSOStateManager stateManager,
+                 long leasePeriodInMs,
+                 String leasePath,
+                 String currentTSOPath,
+                 CuratorFramework zkClient,
+                 Panicker panicker,
+                 StateReplicator stateReplicator) {
+
         this.tsoHostAndPort = tsoHostAndPort;
         this.tsoChannelHandler = tsoChannelHandler;
         this.stateManager = stateManager;
@@ -92,6 +109,7 @@ class LeaseManager extends AbstractScheduledService implements LeaseManagement {
         this.currentTSOPath = currentTSOPath;
         this.zkClient = zkClient;
         this.panicker = panicker;
+        this.stateReplicator = stateReplicator;
         LOG.info("LeaseManager {} initialized. Lease period {}ms", toString(), leasePeriodInMs);
 
     }
@@ -134,8 +152,17 @@ class LeaseManager extends AbstractScheduledService implements LeaseManagement {
                 @Override
                 public void run() {
                     try {
-                        TSOState newTSOState = stateManager.initialize();
+                        Optional<Long> replicatedLowWatermark = stateReplicator.takeOver();
+                        TSOState newTSOState;
+                        if (replicatedLowWatermark.isPresent()) {
+                            LOG.info("{} taking over with replicated state up to {}", tsoHostAndPort,
+                                     replicatedLowWatermark.get());
+                            newTSOState = stateManager.initialize(replicatedLowWatermark.get());
+                        } else {
+                            newTSOState = stateManager.initialize();
+                        }
                         advertiseTSOServerInfoThroughZK(newTSOState.getEpoch());
+                        stateReplicator.lead();
                         tsoChannelHandler.reconnect();
                     } catch (Exception e) {
                         Thread t = Thread.currentThread();
@@ -150,6 +177,15 @@ class LeaseManager extends AbstractScheduledService implements LeaseManagement {
                 public void run() {
                     // In case the TSO was paused close the connection
                     tsoChannelHandler.closeConnection();
+                    // Keep the state replicated from the current master (if any) to take over faster
+                    try {
+                        Optional<String> masterHost = getCurrentMasterHost();
+                        if (masterHost.isPresent()) {
+                            stateReplicator.followMaster(masterHost.get());
+                        }
+                    } catch (Exception e) {
+                        LOG.warn("{} can't follow the current master", tsoHostAndPort, e);
+                    }
                 }
             });
         }
@@ -285,6 +321,21 @@ class LeaseManager extends AbstractScheduledService implements LeaseManagement {
         LOG.info("Path {} ensured", path.getPath());
     }
 
+    private Optional<String> getCurrentMasterHost() throws Exception {
+
+        byte[] currentTSOInfoAsBytes = zkClient.getData().forPath(currentTSOPath);
+        if (currentTSOInfoAsBytes == null || currentTSOInfoAsBytes.length == 0) {
+            return Optional.absent();
+        }
+        String currentTSOInfo = new String(currentTSOInfoAsBytes, Charsets.UTF_8);
+        String currentTSOHostAndPort = currentTSOInfo.split("#")[0];
+        if (currentTSOHostAndPort.equals(tsoHostAndPort)) {
+            return Optional.absent();
+        }
+        return Optional.of(currentTSOHostAndPort.split(":")[0]);
+
+    }
+
     private void advertiseTSOServerInfoThroughZK(long epoch) throws Exception {
 
         Stat previousTSOZNodeStat = new Stat();
@@ -0,0 +1,64 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.omid.tso;
+
+/**
+ * Stages of the TSO request pipeline whose latency is tracked by a {@link MonitoringContext}.
+ *
+ * Each stage owns a fixed slot (its ordinal) in the monitoring context, so timing a stage does not require any
+ * lookup by name.
+ */
+public enum MonitoredStage {
+
+    REQUEST_TIMESTAMP("request.processor.timestamp.latency"),
+    REQUEST_COMMIT("request.processor.commit.latency"),
+    REQUEST_FENCE("request.processor.fence.latency"),
+    PERSISTENCE_TIMESTAMP("persistence.processor.timestamp.latency"),
+    PERSISTENCE_COMMIT("persistence.processor.commit.latency"),
+    PERSISTENCE_COMMIT_RETRY("persistence.processor.commit-retry.latency"),
+    PERSISTENCE_ABORT("persistence.processor.abort.latency"),
+    PERSISTENCE_FENCE("persistence.processor.fence.latency"),
+    REPLY_TIMESTAMP("reply.processor.timestamp.latency"),
+    REPLY_COMMIT("reply.processor.commit.latency"),
+    REPLY_ABORT("reply.processor.abort.latency"),
+    REPLY_FENCE("reply.processor.fence.latency"),
+    RETRY_COMMIT_RETRY("retry.processor.commit-retry.latency");
+
+    private static final MonitoredStage[] STAGES = values();
+
+    private final String metricName;
+
+    MonitoredStage(String metricName) {
+        this.metricName = metricName;
+    }
+
+    /**
+     * @return the name of the metric the latency of this stage is reported to, relative to the "tso" prefix
+     */
+    public String getMetricName() {
+        return metricName;
+    }
+
+    /**
+     * Cached copy of {@link #values()}, which clones the backing array on every call
+     */
+    static MonitoredStage[] all() {
+        return STAGES;
+    }
+
+}
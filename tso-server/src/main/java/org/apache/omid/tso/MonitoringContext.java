@@ -20,9 +20,9 @@ package org.apache.omid.tso;
 
 public interface MonitoringContext {
 
-    void timerStart(String name);
+    void timerStart(MonitoredStage stage);
 
-    void timerStop(String name);
+    void timerStop(MonitoredStage stage);
 
     void publish();
 
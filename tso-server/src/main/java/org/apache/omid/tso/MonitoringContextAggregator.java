@@ -0,0 +1,136 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.omid.tso;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramIterationValue;
+import org.HdrHistogram.Recorder;
+import org.apache.omid.metrics.MetricsRegistry;
+import org.apache.omid.metrics.Timer;
+import org.apache.phoenix.thirdparty.com.google.common.base.Preconditions;
+import org.apache.phoenix.thirdparty.com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.Closeable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.apache.omid.metrics.MetricsUtils.name;
+
+/**
+ * Collects the stage latencies published by the {@link MonitoringContextImpl}s of the TSO requests.
+ *
+ * Latencies are recorded into a per-stage HdrHistogram {@link Recorder}, which is wait-free and allocation-free for
+ * the recording threads. The recorded intervals are drained periodically by a background thread, which is the only
+ * one that updates the stage timers of the {@link MetricsRegistry}, once per distinct recorded latency. This keeps
+ * the cost of the metrics backend out of the request path.
+ */
+@ThreadSafe
+public class MonitoringContextAggregator implements Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(MonitoringContextAggregator.class);
+
+    // Latencies above this value are clamped, as the recorders do not resize in the request path
+    static final long MAX_TRACKABLE_LATENCY_IN_NS = TimeUnit.MINUTES.toNanos(1);
+    private static final int SIGNIFICANT_DIGITS = 3;
+
+    private final MonitoredStage[] stages = MonitoredStage.all();
+    private final Recorder[] recorders = new Recorder[stages.length];
+    private final Histogram[] intervalHistograms = new Histogram[stages.length];
+    private final Timer[] timers = new Timer[stages.length];
+
+    private ScheduledExecutorService reporter;
+
+    public MonitoringContextAggregator(MetricsRegistry metrics) {
+        for (MonitoredStage stage : stages) {
+            recorders[stage.ordinal()] = new Recorder(MAX_TRACKABLE_LATENCY_IN_NS, SIGNIFICANT_DIGITS);
+            timers[stage.ordinal()] = metrics.timer(name("tso", stage.getMetricName()));
+        }
+    }
+
+    /**
+     * Starts the background thread that drains the recorded latencies into the metrics registry
+     *
+     * @param reportIntervalInMs time between two consecutive drains. Must be positive
+     */
+    public synchronized void start(long reportIntervalInMs) {
+        Preconditions.checkArgument(reportIntervalInMs > 0,
+                                    "Monitor context report interval [%s ms] must be positive", reportIntervalInMs);
+        if (reporter != null) {
+            return;
+        }
+        reporter = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("monitoring-context-aggregator-%d").setDaemon(true).build());
+        reporter.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    report();
+                } catch (Throwable t) {
+                    LOG.error("Error reporting the monitored stage latencies", t);
+                }
+            }
+        }, reportIntervalInMs, reportIntervalInMs, TimeUnit.MILLISECONDS);
+        LOG.info("Reporting monitored stage latencies every {} ms", reportIntervalInMs);
+    }
+
+    /**
+     * Records the latency of a stage. Called from the request path.
+     */
+    void record(MonitoredStage stage, long elapsedInNs) {
+        recorders[stage.ordinal()].recordValue(Math.max(0, Math.min(elapsedInNs, MAX_TRACKABLE_LATENCY_IN_NS)));
+    }
+
+    /**
+     * Returns the latencies recorded for a stage since the previous call to this method or to {@link #report()}
+     */
+    synchronized Histogram getIntervalHistogram(MonitoredStage stage) {
+        int slot = stage.ordinal();
+        intervalHistograms[slot] = recorders[slot].getIntervalHistogram(intervalHistograms[slot]);
+        return intervalHistograms[slot];
+    }
+
+    /**
+     * Drains the latencies recorded since the last report into the stage timers
+     */
+    synchronized void report() {
+        for (MonitoredStage stage : stages) {
+            Histogram interval = getIntervalHistogram(stage);
+            if (interval.getTotalCount() == 0) {
+                continue;
+            }
+            Timer timer = timers[stage.ordinal()];
+            for (HistogramIterationValue value : interval.recordedValues()) {
+                timer.update(value.getValueIteratedTo(), value.getCountAddedInThisIterationStep());
+            }
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (reporter != null) {
+            reporter.shutdownNow();
+            reporter = null;
+        }
+        report();
+    }
+
+}
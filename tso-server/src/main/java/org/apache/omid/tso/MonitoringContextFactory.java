@@ -17,15 +17,16 @@
  */
 package org.apache.omid.tso;
 
-import org.apache.omid.metrics.MetricsRegistry;
-
 public class MonitoringContextFactory {
     private MonitoringContextFactory(){}
 
-    static public MonitoringContext getInstance(TSOServerConfig config, MetricsRegistry metrics) {
-        if (config.getMonitorContext())
-            return new MonitoringContextImpl(metrics);
+    /**
+     * @param aggregator collector of the stage latencies, or null when the monitoring of the contexts is disabled
+     */
+    static public MonitoringContext getInstance(MonitoringContextAggregator aggregator) {
+        if (aggregator != null)
+            return new MonitoringContextImpl(aggregator);
         else
-            return new MonitoringContextNullImpl();
+            return MonitoringContextNullImpl.INSTANCE;
     }
 }
@@ -17,57 +17,82 @@
  */
 package org.apache.omid.tso;
 
-import org.apache.phoenix.thirdparty.com.google.common.base.Stopwatch;
+import org.apache.phoenix.thirdparty.com.google.common.annotations.VisibleForTesting;
 import org.apache.phoenix.thirdparty.com.google.common.base.Throwables;
 import org.apache.omid.metrics.MetricsRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.annotation.concurrent.NotThreadSafe;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-
-import static org.apache.omid.metrics.MetricsUtils.name;
-import java.util.concurrent.TimeUnit;
 
+/**
+ * Keeps the stage timings of a single request in fixed slots indexed by {@link MonitoredStage}, as raw
+ * {@link System#nanoTime()} values, instead of looking up a timer by name for each stage. The elapsed times are
+ * handed to the {@link MonitoringContextAggregator} on {@link #publish()}.
+ *
+ * A new context, with its two slot arrays, is created for each request when the monitoring is enabled.
+ *
+ * The stages of a request are timed sequentially by the processors it traverses, so no synchronization is required
+ * beyond the happens-before edges provided by the disruptor ring buffers the context travels in.
+ */
 @NotThreadSafe
-public class MonitoringContextImpl implements MonitoringContext{
+public class MonitoringContextImpl implements MonitoringContext {
 
     private static final Logger LOG = LoggerFactory.getLogger(MonitoringContextImpl.class);
 
+    private static final int NUM_STAGES = MonitoredStage.all().length;
+
+    private final MonitoringContextAggregator aggregator;
+
+    private final long[] startTimesInNs = new long[NUM_STAGES];
+    private final long[] elapsedTimesInNs = new long[NUM_STAGES];
+    // Bitmaps of the stages started and stopped. There are less than 64 stages
+    private long startedStages;
+    private long stoppedStages;
+
     private volatile boolean flag;
-    private Map<String, Long> elapsedTimeMsMap = new ConcurrentHashMap<>();
-    private Map<String, Stopwatch> timers = new ConcurrentHashMap<>();
-    private MetricsRegistry metrics;
 
+    public MonitoringContextImpl(MonitoringContextAggregator aggregator) {
+        this.aggregator = aggregator;
+    }
+
+    @VisibleForTesting
     public MonitoringContextImpl(MetricsRegistry metrics) {
-        this.metrics = metrics;
+        this(new MonitoringContextAggregator(metrics));
     }
 
-    public void timerStart(String name) {
-        Stopwatch stopwatch = Stopwatch.createStarted();
-        timers.put(name, stopwatch);
+    @Override
+    public void timerStart(MonitoredStage stage) {
+        int slot = stage.ordinal();
+        startTimesInNs[slot] = System.nanoTime();
+        startedStages |= 1L << slot;
     }
 
-    public void timerStop(String name) {
+    @Override
+    public void timerStop(MonitoredStage stage) {
         if (flag) {
-            LOG.warn("timerStop({}) called after publish. Measurement was ignored. {}", name, Throwables.getStackTraceAsString(new Exception()));
+            LOG.warn("timerStop({}) called after publish. Measurement was ignored. {}", stage, Throwables.getStackTraceAsString(new Exception()));
             return;
         }
-        Stopwatch activeStopwatch = timers.get(name);
-        if (activeStopwatch == null) {
+        int slot = stage.ordinal();
+        long mask = 1L << slot;
+        if ((startedStages & mask) == 0) {
             throw new IllegalStateException(
-                    String.format("There is no %s timer in the %s monitoring context.", name, this));
+                    String.format("There is no %s timer in the %s monitoring context.", stage, this));
         }
-        activeStopwatch.stop();
-        elapsedTimeMsMap.put(name, activeStopwatch.elapsed(TimeUnit.NANOSECONDS));
-        timers.remove(name);
+        elapsedTimesInNs[slot] = System.nanoTime() - startTimesInNs[slot];
+        startedStages &= ~mask;
+        stoppedStages |= mask;
     }
 
+    @Override
     public void publish() {
         flag = true;
-        for (Map.Entry<String, Long> entry : elapsedTimeMsMap.entrySet()) {
-            metrics.timer(name("tso", entry.getKey())).update(entry.getValue());
+        long pending = stoppedStages;
+        while (pending != 0) {
+            int slot = Long.numberOfTrailingZeros(pending);
+            aggregator.record(MonitoredStage.all()[slot], elapsedTimesInNs[slot]);
+            pending &= pending - 1;
         }
     }
 
@@ -19,13 +19,17 @@
 package org.apache.omid.tso;
 
 public class MonitoringContextNullImpl implements MonitoringContext {
+
+    // Stateless, so a single instance can be shared by all the requests
+    static final MonitoringContextNullImpl INSTANCE = new MonitoringContextNullImpl();
+
     @Override
-    public void timerStart(String name) {
+    public void timerStart(MonitoredStage stage) {
 
     }
 
     @Override
-    public void timerStop(String name) {
+    public void timerStop(MonitoredStage stage) {
 
     }
 
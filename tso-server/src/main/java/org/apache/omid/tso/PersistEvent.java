@@ -35,6 +35,7 @@ public final class PersistEvent {
     private long startTimestamp = 0L;
     private long commitTimestamp = 0L;
     private Optional<Long> newLowWatermark;
+    private boolean previousEpoch = false;
 
     void makePersistCommit(long startTimestamp, long commitTimestamp, Optional<Long> newLowWatermark, Channel c, MonitoringContext monCtx) {
 
@@ -44,6 +45,15 @@ public final class PersistEvent {
         this.channel = c;
         this.monCtx = monCtx;
         this.newLowWatermark = newLowWatermark;
+        this.previousEpoch = false;
+    }
+
+    void makePersistPreviousEpochCommit(long startTimestamp, long commitTimestamp, Optional<Long> newLowWatermark,
+                                        Channel c, MonitoringContext monCtx) {
+
+        makePersistCommit(startTimestamp, commitTimestamp, newLowWatermark, c, monCtx);
+        this.previousEpoch = true;
+
     }
 
     void makeCommitRetry(long startTimestamp, Channel c, MonitoringContext monCtx) {
@@ -113,6 +123,12 @@ public final class PersistEvent {
 
     }
 
+    boolean isPreviousEpoch() {
+
+        return previousEpoch;
+
+    }
+
     public Optional<Long> getNewLowWatermark() {
         return newLowWatermark;
     }
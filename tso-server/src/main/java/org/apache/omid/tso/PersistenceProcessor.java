@@ -27,6 +27,11 @@ interface PersistenceProcessor extends Closeable {
     void addCommitToBatch(long startTimestamp, long commitTimestamp, Channel c, MonitoringContext monCtx, Optional<Long> lowWatermark)
             throws Exception;
 
+    // Commits of transactions started by a previous TSO master must be added to the commit table atomically, as the
+    // clients may have already invalidated them
+    void addPreviousEpochCommitToBatch(long startTimestamp, long commitTimestamp, Channel c, MonitoringContext monCtx,
+                                       Optional<Long> lowWatermark) throws Exception;
+
     void addCommitRetryToBatch(long startTimestamp, Channel c, MonitoringContext monCtx) throws Exception;
 
     void addAbortToBatch(long startTimestamp, Channel c, MonitoringContext monCtx) throws Exception;
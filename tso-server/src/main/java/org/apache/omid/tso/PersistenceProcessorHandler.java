@@ -33,6 +33,7 @@ import java.util.concurrent.ExecutionException;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import static com.codahale.metrics.MetricRegistry.name;
+import static org.apache.omid.tso.PersistEvent.Type.COMMIT;
 import static org.apache.omid.tso.PersistEvent.Type.COMMIT_RETRY;
 
 
@@ -51,12 +52,14 @@ public class PersistenceProcessorHandler implements WorkHandler<PersistenceProce
     private final ReplyProcessor replyProcessor;
     private final RetryProcessor retryProcessor;
     private final CommitTable.Writer writer;
+    private final StateReplicator stateReplicator;
     final Panicker panicker;
 
     // Metrics in this component
     private final Timer flushTimer;
     private final Histogram batchSizeHistogram;
     private final Histogram flushedCommitEventsHistogram;
+    private final RingBufferMonitor persistRingMonitor;
 
     @Inject
     PersistenceProcessorHandler(MetricsRegistry metrics,
@@ -65,7 +68,8 @@ public class PersistenceProcessorHandler implements WorkHandler<PersistenceProce
                                 CommitTable commitTable,
                                 ReplyProcessor replyProcessor,
                                 RetryProcessor retryProcessor,
-                                Panicker panicker)
+                                Panicker panicker,
+                                StateReplicator stateReplicator)
     throws InterruptedException, ExecutionException, IOException {
 
         this.id = String.valueOf(consecutiveSequenceCreator.getAndIncrement());
@@ -75,6 +79,7 @@ public class PersistenceProcessorHandler implements WorkHandler<PersistenceProce
         this.replyProcessor = replyProcessor;
         this.retryProcessor = retryProcessor;
         this.panicker = panicker;
+        this.stateReplicator = stateReplicator;
 
         // Metrics setup
         String flushTimerName = name("tso", "persistence-processor-handler", id, "flush", "latency");
@@ -83,6 +88,7 @@ public class PersistenceProcessorHandler implements WorkHandler<PersistenceProce
         flushedCommitEventsHistogram = metrics.histogram(flushedCommitEventsName);
         String batchSizeMetricsName = name("tso", "persistence-processor-handler", id, "batch", "size");
         batchSizeHistogram = metrics.histogram(batchSizeMetricsName);
+        persistRingMonitor = new RingBufferMonitor(metrics, "persist");
 
     }
 
@@ -93,25 +99,44 @@ public class PersistenceProcessorHandler implements WorkHandler<PersistenceProce
     @Override
     public void onEvent(PersistenceProcessorImpl.PersistBatchEvent batchEvent) throws Exception {
 
+        persistRingMonitor.eventDequeued(batchEvent.getEnqueuedAtInNs());
         int commitEventsToFlush = 0;
         Batch batch = batchEvent.getBatch();
         int numOfBatchedEvents = batch.getNumEvents();
         batchSizeHistogram.update(numOfBatchedEvents);
+
+        // Nothing in the batch can become visible before the standby replica (if any) has the conflict state
+        // required to take over the mastership
+        long maxCommitTimestamp = -1L;
+        for (int i=0; i < numOfBatchedEvents; i++) {
+            PersistEvent event = batch.get(i);
+            if (event.getType() == COMMIT) {
+                maxCommitTimestamp = Math.max(maxCommitTimestamp, event.getCommitTimestamp());
+            }
+        }
+        if (maxCommitTimestamp != -1L) {
+            stateReplicator.waitForReplicas(maxCommitTimestamp);
+        }
+
         for (int i=0; i < numOfBatchedEvents; i++) {
             PersistEvent event = batch.get(i);
             switch (event.getType()) {
                 case TIMESTAMP:
-                    event.getMonCtx().timerStop("persistence.processor.timestamp.latency");
+                    event.getMonCtx().timerStop(MonitoredStage.PERSISTENCE_TIMESTAMP);
                     break;
                 case COMMIT:
+                    if (event.isPreviousEpoch()) {
+                        persistPreviousEpochCommit(event);
+                        break;
+                    }
                     writer.addCommittedTransaction(event.getStartTimestamp(), event.getCommitTimestamp());
                     commitEventsToFlush++;
                     break;
                 case COMMIT_RETRY:
-                    event.getMonCtx().timerStop("persistence.processor.commit-retry.latency");
+                    event.getMonCtx().timerStop(MonitoredStage.PERSISTENCE_COMMIT_RETRY);
                     break;
                 case ABORT:
-                    event.getMonCtx().timerStop("persistence.processor.abort.latency");
+                    event.getMonCtx().timerStop(MonitoredStage.PERSISTENCE_ABORT);
                     break;
                 case FENCE:
                     // Persist the fence by using the fence identifier as both the start and commit timestamp.
@@ -131,20 +156,20 @@ public class PersistenceProcessorHandler implements WorkHandler<PersistenceProce
             PersistEvent event = batch.get(i);
             switch (event.getType()) {
                 case TIMESTAMP:
-                    event.getMonCtx().timerStart("reply.processor.timestamp.latency");
+                    event.getMonCtx().timerStart(MonitoredStage.REPLY_TIMESTAMP);
                     break;
                 case COMMIT:
-                    event.getMonCtx().timerStop("persistence.processor.commit.latency");
-                    event.getMonCtx().timerStart("reply.processor.commit.latency");
+                    event.getMonCtx().timerStop(MonitoredStage.PERSISTENCE_COMMIT);
+                    event.getMonCtx().timerStart(MonitoredStage.REPLY_COMMIT);
                     break;
                 case COMMIT_RETRY:
                     throw new IllegalStateException("COMMIT_RETRY events must be filtered before this step: " + event);
                 case ABORT:
-                    event.getMonCtx().timerStart("reply.processor.abort.latency");
+                    event.getMonCtx().timerStart(MonitoredStage.REPLY_ABORT);
                     break;
                 case FENCE:
-                    event.getMonCtx().timerStop("persistence.processor.fence.latency");
-                    event.getMonCtx().timerStart("reply.processor.fence.latency");
+                    event.getMonCtx().timerStop(MonitoredStage.PERSISTENCE_FENCE);
+                    event.getMonCtx().timerStart(MonitoredStage.REPLY_FENCE);
                     break;
                 default:
                     throw new IllegalStateException("Event not allowed in Persistent Processor Handler: " + event);
@@ -154,6 +179,18 @@ public class PersistenceProcessorHandler implements WorkHandler<PersistenceProce
 
     }
 
+    private void persistPreviousEpochCommit(PersistEvent event) throws IOException {
+
+        // The transaction may have been invalidated by a reader after the previous master crashed, so the commit
+        // must be added atomically. If it fails, the transaction is reported as aborted
+        if (!writer.atomicAddCommittedTransaction(event.getStartTimestamp(), event.getCommitTimestamp())) {
+            LOG.debug("Transaction {} started in a previous epoch was invalidated. Aborting it", event.getStartTimestamp());
+            event.getMonCtx().timerStop(MonitoredStage.PERSISTENCE_COMMIT);
+            event.makePersistAbort(event.getStartTimestamp(), event.getChannel(), event.getMonCtx());
+        }
+
+    }
+
     void flush(int commitEventsToFlush) {
 
         commitSuicideIfNotMaster();
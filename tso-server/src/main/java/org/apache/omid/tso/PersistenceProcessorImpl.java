@@ -62,6 +62,12 @@ class PersistenceProcessorImpl implements PersistenceProcessor {
     volatile private long batchSequence;
     private MetricsRegistry metrics;
 
+    // Timestamp fast lane attributes
+    private final ReplyProcessor replyProcessor;
+    private final boolean timestampFastLane;
+    // Sequence of the last batch with writes to the commit table. The current batch gets the sequence when flushed
+    private long lastBatchSequenceWithWrites = -1L;
+
     @Inject
     PersistenceProcessorImpl(TSOServerConfig config,
                              @Named("PersistenceStrategy") WaitStrategy strategy,
@@ -69,6 +75,7 @@ class PersistenceProcessorImpl implements PersistenceProcessor {
                              ObjectPool<Batch> batchPool,
                              Panicker panicker,
                              PersistenceProcessorHandler[] handlers,
+                             ReplyProcessor replyProcessor,
                              MetricsRegistry metrics)
             throws Exception {
 
@@ -83,12 +90,15 @@ class PersistenceProcessorImpl implements PersistenceProcessor {
         disruptor.handleExceptionsWith(new FatalExceptionHandler(panicker)); // This must be before handleEventsWith()
         disruptor.handleEventsWithWorkerPool(handlers);
         this.persistRing = disruptor.start();
+        RingBufferMonitor.registerRemainingCapacityGauge(metrics, "persist", persistRing);
 
         // ------------------------------------------------------------------------------------------------------------
         // Attribute initialization
         // ------------------------------------------------------------------------------------------------------------
 
         this.metrics = metrics;
+        this.replyProcessor = replyProcessor;
+        this.timestampFastLane = config.getTimestampFastLane();
         this.batchSequence = 0L;
         this.batchPool = batchPool;
         this.currentBatch = batchPool.borrowObject();
@@ -105,6 +115,7 @@ class PersistenceProcessorImpl implements PersistenceProcessor {
         long seq = persistRing.next();
         PersistBatchEvent e = persistRing.get(seq);
         makePersistBatch(e, batchSequence++, currentBatch);
+        e.enqueuedAtInNs = System.nanoTime();
         persistRing.publish(seq);
         currentBatch = batchPool.borrowObject();
 
@@ -116,6 +127,20 @@ class PersistenceProcessorImpl implements PersistenceProcessor {
             throws Exception {
 
         currentBatch.addCommit(startTimestamp, commitTimestamp, c, monCtx, newLowWatermark);
+        lastBatchSequenceWithWrites = batchSequence;
+        if (currentBatch.isFull()) {
+            triggerCurrentBatchFlush();
+        }
+
+    }
+
+    @Override
+    public void addPreviousEpochCommitToBatch(long startTimestamp, long commitTimestamp, Channel c,
+                                              MonitoringContext monCtx, Optional<Long> newLowWatermark)
+            throws Exception {
+
+        currentBatch.addPreviousEpochCommit(startTimestamp, commitTimestamp, c, monCtx, newLowWatermark);
+        lastBatchSequenceWithWrites = batchSequence;
         if (currentBatch.isFull()) {
             triggerCurrentBatchFlush();
         }
@@ -144,6 +169,14 @@ class PersistenceProcessorImpl implements PersistenceProcessor {
     @Override
     public void addTimestampToBatch(long startTimestamp, Channel c, MonitoringContext monCtx) throws Exception {
 
+        if (timestampFastLane) {
+            // The start timestamp only has to wait for the batches containing smaller commit timestamps, so it
+            // doesn't take a slot in the current batch
+            monCtx.timerStart(MonitoredStage.REPLY_TIMESTAMP);
+            replyProcessor.sendTimestampResponseWhenPersisted(lastBatchSequenceWithWrites, startTimestamp, c, monCtx);
+            return;
+        }
+
         currentBatch.addTimestamp(startTimestamp, c, monCtx);
         if (currentBatch.isFull()) {
             triggerCurrentBatchFlush();
@@ -155,6 +188,7 @@ class PersistenceProcessorImpl implements PersistenceProcessor {
     public void addFenceToBatch(long tableID, long fenceTimestamp, Channel c, MonitoringContext monCtx) throws Exception {
 
         currentBatch.addFence(tableID, fenceTimestamp, c, monCtx);
+        lastBatchSequenceWithWrites = batchSequence;
         if (currentBatch.isFull()) {
             triggerCurrentBatchFlush();
         }
@@ -184,6 +218,7 @@ class PersistenceProcessorImpl implements PersistenceProcessor {
 
         private long batchSequence;
         private Batch batch;
+        private long enqueuedAtInNs;
 
         static void makePersistBatch(PersistBatchEvent e, long batchSequence, Batch batch) {
             e.batch = batch;
@@ -198,6 +233,10 @@ class PersistenceProcessorImpl implements PersistenceProcessor {
             return batchSequence;
         }
 
+        long getEnqueuedAtInNs() {
+            return enqueuedAtInNs;
+        }
+
         final static EventFactory<PersistBatchEvent> EVENT_FACTORY = new EventFactory<PersistBatchEvent>() {
             public PersistBatchEvent newInstance() {
                 return new PersistBatchEvent();
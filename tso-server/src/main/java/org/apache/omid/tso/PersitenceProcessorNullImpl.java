@@ -29,6 +29,11 @@ public class PersitenceProcessorNullImpl implements PersistenceProcessor {
         System.out.println("a");
     }
 
+    @Override
+    public void addPreviousEpochCommitToBatch(long startTimestamp, long commitTimestamp, Channel c, MonitoringContext monCtx, Optional<Long> lowWatermark) throws Exception {
+
+    }
+
     @Override
     public void addCommitRetryToBatch(long startTimestamp, Channel c, MonitoringContext monCtx) throws Exception {
 
@@ -69,6 +69,21 @@ interface ReplyProcessor extends Closeable {
 
     void sendTimestampResponse(long startTimestamp, Channel channel, MonitoringContext monCtx);
 
+    /**
+     * Allow to send a timestamp response back to the client as soon as all the batches up to the one passed have been
+     * persisted, without waiting in a batch itself. This preserves the snapshot isolation properties, as the commits
+     * with a smaller timestamp than the one returned are in those batches.
+     *
+     * @param batchSequence
+     *            the sequence number of the last batch that must be persisted before replying
+     * @param startTimestamp
+     *            the start timestamp to return that will represent the tx identifier for the created transaction
+     * @param channel
+     *            the channel used to send the response back to the client
+     */
+    void sendTimestampResponseWhenPersisted(long batchSequence, long startTimestamp, Channel channel,
+                                            MonitoringContext monCtx);
+
     /**
      * Allow to send a fence response back to the client.
      *
@@ -82,5 +97,28 @@ interface ReplyProcessor extends Closeable {
 
     void sendFenceResponse(long tableID, long fenceTimestamp, Channel channel, MonitoringContext monCtx);
 
+    /**
+     * Allow to tell the client that a timestamp request was not processed because the TSO is overloaded, so it can
+     * retry it later. The response is sent right away, so it may overtake the responses to the timestamp requests
+     * received before in the same channel.
+     *
+     * @param requestId
+     *            the id of the rejected request, used by the client to match the response
+     * @param channel
+     *            the channel used to send the response back to the client
+     */
+    void sendOverloadedTimestampResponse(long requestId, Channel channel);
+
+    /**
+     * Allow to tell the client that a commit request was not processed because the TSO is overloaded, so it can
+     * retry it later.
+     *
+     * @param startTimestamp
+     *            the start timestamp of the transaction whose commit was not processed
+     * @param channel
+     *            the channel used to send the response back to the client
+     */
+    void sendOverloadedCommitResponse(long startTimestamp, Channel channel);
+
 }
 
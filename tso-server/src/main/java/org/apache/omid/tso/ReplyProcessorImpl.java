@@ -36,6 +36,7 @@ import io.netty.channel.Channel;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayDeque;
 import java.util.Comparator;
 import java.util.PriorityQueue;
 import java.util.concurrent.ExecutorService;
@@ -64,11 +65,18 @@ class ReplyProcessorImpl implements EventHandler<ReplyProcessorImpl.ReplyBatchEv
     @VisibleForTesting
     PriorityQueue<ReplyBatchEvent> futureEvents;
 
+    // Timestamp requests waiting for their batch sequence to be persisted. Ordered by batch sequence, as they come
+    // from the request processor thread
+    @VisibleForTesting
+    ArrayDeque<PendingTimestampReply> pendingTimestampReplies = new ArrayDeque<>();
+
     // Metrics
     private final Meter abortMeter;
     private final Meter commitMeter;
     private final Meter timestampMeter;
     private final Meter fenceMeter;
+    private final Meter overloadedMeter;
+    private final RingBufferMonitor replyRingMonitor;
 
     private final LowWatermarkWriter lowWatermarkWriter;
     private long highestLowWaterMarkSeen;
@@ -92,6 +100,8 @@ class ReplyProcessorImpl implements EventHandler<ReplyProcessorImpl.ReplyBatchEv
         disruptor.handleExceptionsWith(new FatalExceptionHandler(panicker));
         disruptor.handleEventsWith(this);
         this.replyRing = disruptor.start();
+        RingBufferMonitor.registerRemainingCapacityGauge(metrics, "reply", replyRing);
+        this.replyRingMonitor = new RingBufferMonitor(metrics, "reply");
 
         // ------------------------------------------------------------------------------------------------------------
         // Attribute initialization
@@ -110,6 +120,7 @@ class ReplyProcessorImpl implements EventHandler<ReplyProcessorImpl.ReplyBatchEv
         this.commitMeter = metrics.meter(name("tso", "commits"));
         this.timestampMeter = metrics.meter(name("tso", "timestampAllocation"));
         this.fenceMeter = metrics.meter(name("tso", "fences"));
+        this.overloadedMeter = metrics.meter(name("tso", "overloadedResponses"));
 
         LOG.info("ReplyProcessor initialized");
 
@@ -163,6 +174,12 @@ class ReplyProcessorImpl implements EventHandler<ReplyProcessorImpl.ReplyBatchEv
 
     public void onEvent(ReplyBatchEvent event, long sequence, boolean endOfBatch) throws Exception {
 
+        replyRingMonitor.eventDequeued(event.getEnqueuedAtInNs());
+        if (event.getType() == ReplyBatchEvent.Type.TIMESTAMP) {
+            handleTimestampEvent(event);
+            return;
+        }
+
         // Order of event's reply need to be guaranteed in order to preserve snapshot isolation.
         // This is done in order to present a scenario where a start id of N is returned
         // while commit smaller than still does not appear in the commit table.
@@ -180,6 +197,32 @@ class ReplyProcessorImpl implements EventHandler<ReplyProcessorImpl.ReplyBatchEv
         // Process events that arrived before and kept in futureEvents.
         processWaitingEvents();
 
+        // Finally, reply the timestamp requests whose previous commits are now persisted
+        processPendingTimestampReplies();
+
+    }
+
+    private void handleTimestampEvent(ReplyBatchEvent event) {
+
+        if (event.getBatchSequence() < nextIDToHandle.get()) {
+            sendTimestampResponse(event.getStartTimestamp(), event.getChannel(), event.getMonCtx());
+        } else {
+            pendingTimestampReplies.add(new PendingTimestampReply(event.getBatchSequence(),
+                                                                  event.getStartTimestamp(),
+                                                                  event.getChannel(),
+                                                                  event.getMonCtx()));
+        }
+
+    }
+
+    private void processPendingTimestampReplies() {
+
+        while (!pendingTimestampReplies.isEmpty()
+                && pendingTimestampReplies.peek().batchSequence < nextIDToHandle.get()) {
+            PendingTimestampReply reply = pendingTimestampReplies.poll();
+            sendTimestampResponse(reply.startTimestamp, reply.channel, reply.monCtx);
+        }
+
     }
 
     @Override
@@ -188,6 +231,24 @@ class ReplyProcessorImpl implements EventHandler<ReplyProcessorImpl.ReplyBatchEv
         long seq = replyRing.next();
         ReplyBatchEvent e = replyRing.get(seq);
         ReplyBatchEvent.makeReplyBatch(e, batch, batchSequence);
+        e.enqueuedAtInNs = System.nanoTime();
+        replyRing.publish(seq);
+
+    }
+
+    @Override
+    public void sendTimestampResponseWhenPersisted(long batchSequence, long startTimestamp, Channel c,
+                                                   MonitoringContext monCtx) {
+
+        if (batchSequence < nextIDToHandle.get()) {
+            // Fast path. The previous commits are already persisted, so reply straight from the caller thread
+            sendTimestampResponse(startTimestamp, c, monCtx);
+            return;
+        }
+        long seq = replyRing.next();
+        ReplyBatchEvent e = replyRing.get(seq);
+        ReplyBatchEvent.makeTimestampReply(e, batchSequence, startTimestamp, c, monCtx);
+        e.enqueuedAtInNs = System.nanoTime();
         replyRing.publish(seq);
 
     }
@@ -212,7 +273,7 @@ class ReplyProcessorImpl implements EventHandler<ReplyProcessorImpl.ReplyBatchEv
         builder.setCommitResponse(commitBuilder.build());
         c.writeAndFlush(builder.build());
         commitMeter.mark();
-        monCtx.timerStop("reply.processor.commit.latency");
+        monCtx.timerStop(MonitoredStage.REPLY_COMMIT);
     }
 
     @Override
@@ -225,7 +286,7 @@ class ReplyProcessorImpl implements EventHandler<ReplyProcessorImpl.ReplyBatchEv
         builder.setCommitResponse(commitBuilder.build());
         c.writeAndFlush(builder.build());
         abortMeter.mark();
-        monCtx.timerStop("reply.processor.abort.latency");
+        monCtx.timerStop(MonitoredStage.REPLY_ABORT);
     }
 
     @Override
@@ -237,7 +298,7 @@ class ReplyProcessorImpl implements EventHandler<ReplyProcessorImpl.ReplyBatchEv
         builder.setTimestampResponse(respBuilder.build());
         c.writeAndFlush(builder.build());
         timestampMeter.mark();
-        monCtx.timerStop("reply.processor.timestamp.latency");
+        monCtx.timerStop(MonitoredStage.REPLY_TIMESTAMP);
     }
 
     @Override
@@ -249,10 +310,34 @@ class ReplyProcessorImpl implements EventHandler<ReplyProcessorImpl.ReplyBatchEv
         fenceBuilder.setFenceId(fenceTimestamp);
         builder.setFenceResponse(fenceBuilder.build());
         c.writeAndFlush(builder.build());
-        monCtx.timerStop("reply.processor.fence.latency");
+        monCtx.timerStop(MonitoredStage.REPLY_FENCE);
         fenceMeter.mark();
     }
 
+    @Override
+    public void sendOverloadedTimestampResponse(long requestId, Channel c) {
+
+        TSOProto.Response.Builder builder = TSOProto.Response.newBuilder();
+        TSOProto.TimestampResponse.Builder respBuilder = TSOProto.TimestampResponse.newBuilder();
+        respBuilder.setOverloaded(true);
+        respBuilder.setRequestId(requestId);
+        builder.setTimestampResponse(respBuilder.build());
+        c.writeAndFlush(builder.build());
+        overloadedMeter.mark();
+    }
+
+    @Override
+    public void sendOverloadedCommitResponse(long startTimestamp, Channel c) {
+
+        TSOProto.Response.Builder builder = TSOProto.Response.newBuilder();
+        TSOProto.CommitResponse.Builder commitBuilder = TSOProto.CommitResponse.newBuilder();
+        commitBuilder.setStartTimestamp(startTimestamp);
+        commitBuilder.setOverloaded(true);
+        builder.setCommitResponse(commitBuilder.build());
+        c.writeAndFlush(builder.build());
+        overloadedMeter.mark();
+    }
+
     @Override
     public void close() {
 
@@ -274,14 +359,40 @@ class ReplyProcessorImpl implements EventHandler<ReplyProcessorImpl.ReplyBatchEv
 
     final static class ReplyBatchEvent {
 
+        enum Type {
+            BATCH, TIMESTAMP
+        }
+
+        private Type type;
         private Batch batch;
         private long batchSequence;
 
+        private long startTimestamp;
+        private Channel channel;
+        private MonitoringContext monCtx;
+
+        private long enqueuedAtInNs;
+
         static void makeReplyBatch(ReplyBatchEvent e, Batch batch, long batchSequence) {
+            e.type = Type.BATCH;
             e.batch = batch;
             e.batchSequence = batchSequence;
         }
 
+        static void makeTimestampReply(ReplyBatchEvent e, long batchSequence, long startTimestamp, Channel c,
+                                       MonitoringContext monCtx) {
+            e.type = Type.TIMESTAMP;
+            e.batch = null;
+            e.batchSequence = batchSequence;
+            e.startTimestamp = startTimestamp;
+            e.channel = c;
+            e.monCtx = monCtx;
+        }
+
+        Type getType() {
+            return type;
+        }
+
         Batch getBatch() {
             return batch;
         }
@@ -290,6 +401,22 @@ class ReplyProcessorImpl implements EventHandler<ReplyProcessorImpl.ReplyBatchEv
             return batchSequence;
         }
 
+        long getStartTimestamp() {
+            return startTimestamp;
+        }
+
+        Channel getChannel() {
+            return channel;
+        }
+
+        MonitoringContext getMonCtx() {
+            return monCtx;
+        }
+
+        long getEnqueuedAtInNs() {
+            return enqueuedAtInNs;
+        }
+
         final static EventFactory<ReplyBatchEvent> EVENT_FACTORY = new EventFactory<ReplyBatchEvent>() {
             public ReplyBatchEvent newInstance() {
                 return new ReplyBatchEvent();
@@ -298,5 +425,20 @@ class ReplyProcessorImpl implements EventHandler<ReplyProcessorImpl.ReplyBatchEv
 
     }
 
-}
+    static final class PendingTimestampReply {
+
+        private final long batchSequence;
+        private final long startTimestamp;
+        private final Channel channel;
+        private final MonitoringContext monCtx;
+
+        PendingTimestampReply(long batchSequence, long startTimestamp, Channel channel, MonitoringContext monCtx) {
+            this.batchSequence = batchSequence;
+            this.startTimestamp = startTimestamp;
+            this.channel = channel;
+            this.monCtx = monCtx;
+        }
+
+    }
 
+}
@@ -27,7 +27,30 @@ public interface RequestProcessor extends TSOStateManager.StateObserver, Closeab
 
     void timestampRequest(Channel c, MonitoringContext monCtx);
 
+    /**
+     * Timestamp request tagged with an id by the client. The id is echoed when the request is rejected because the
+     * TSO is overloaded, so the client can tell which of its outstanding timestamp requests was rejected
+     */
+    void timestampRequest(long requestId, Channel c, MonitoringContext monCtx);
+
     void commitRequest(long startTimestamp, Collection<Long> writeSet, Collection<Long> tableIdSet, boolean isRetry, Channel c, MonitoringContext monCtx);
 
+    /**
+     * Commit request that, besides the write set, carries conflict keys that are only checked against the writes
+     * committed after the transaction started (e.g. the key of a column family the transaction wrote a cell in) and
+     * conflict keys that are only registered on commit (e.g. the intention key of that column family)
+     */
+    void commitRequest(long startTimestamp, Collection<Long> writeSet, Collection<Long> checkOnlySet,
+                       Collection<Long> registerOnlySet, Collection<Long> tableIdSet, boolean isRetry, Channel c,
+                       MonitoringContext monCtx);
+
     void fenceRequest(long tableID, Channel c, MonitoringContext monCtx);
+
+    // State received from the master when running as a standby replica
+
+    void replicatedCommit(long commitTimestamp, Collection<Long> writeSet);
+
+    void replicatedFence(long tableID, long fenceTimestamp);
+
+    void replicatedLowWatermark(long lowWatermark);
 }
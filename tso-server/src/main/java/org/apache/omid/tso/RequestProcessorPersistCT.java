@@ -35,9 +35,10 @@ public class RequestProcessorPersistCT extends AbstractRequestProcessor {
                               Panicker panicker,
                               TSOServerConfig config,
                               LowWatermarkWriter lowWatermarkWriter,
-                              ReplyProcessor replyProcessor) throws IOException {
+                              ReplyProcessor replyProcessor,
+                              StateReplicator stateReplicator) throws IOException {
 
-        super(metrics, timestampOracle, panicker, config, lowWatermarkWriter, replyProcessor);
+        super(metrics, timestampOracle, panicker, config, lowWatermarkWriter, replyProcessor, stateReplicator);
         this.persistenceProcessor = persistenceProcessor;
         requestRing = disruptor.start();
     }
@@ -48,6 +49,12 @@ public class RequestProcessorPersistCT extends AbstractRequestProcessor {
         persistenceProcessor.addCommitToBatch(startTimestamp,commitTimestamp,c,monCtx , lowWatermark);
     }
 
+    @Override
+    public void forwardPreviousEpochCommit(long startTimestamp, long commitTimestamp, Channel c, MonitoringContext monCtx,
+                                           Optional<Long> lowWatermark) throws Exception {
+        persistenceProcessor.addPreviousEpochCommitToBatch(startTimestamp, commitTimestamp, c, monCtx, lowWatermark);
+    }
+
     @Override
     public void forwardCommitRetry(long startTimestamp, Channel c, MonitoringContext monCtx) throws Exception {
         persistenceProcessor.addCommitRetryToBatch(startTimestamp,c,monCtx);
@@ -32,6 +32,7 @@ public class RequestProcessorSkipCT extends AbstractRequestProcessor {
     private final LeaseManagement leaseManager;
     private final Panicker panicker;
     private final String tsoHostAndPort;
+    private final StateReplicator stateReplicator;
 
     @Inject
     RequestProcessorSkipCT(MetricsRegistry metrics,
@@ -41,13 +42,15 @@ public class RequestProcessorSkipCT extends AbstractRequestProcessor {
                            LeaseManagement leaseManager,
                            TSOServerConfig config,
                            LowWatermarkWriter lowWatermarkWriter,
-                           String tsoHostAndPort) throws IOException {
-        super(metrics, timestampOracle, panicker, config, lowWatermarkWriter, replyProcessor);
+                           String tsoHostAndPort,
+                           StateReplicator stateReplicator) throws IOException {
+        super(metrics, timestampOracle, panicker, config, lowWatermarkWriter, replyProcessor, stateReplicator);
         this.replyProcessor = replyProcessor;
         this.tsoHostAndPort = tsoHostAndPort;
         requestRing = disruptor.start();
         this.leaseManager = leaseManager;
         this.panicker = panicker;
+        this.stateReplicator = stateReplicator;
     }
 
     private void commitSuicideIfNotMaster() {
@@ -57,27 +60,38 @@ public class RequestProcessorSkipCT extends AbstractRequestProcessor {
     }
 
     @Override
-    public void forwardCommit(long startTimestamp, long commitTimestamp, Channel c, MonitoringContext monCtx, Optional<Long> newLowWatermark) {
+    public void forwardCommit(long startTimestamp, long commitTimestamp, Channel c, MonitoringContext monCtx, Optional<Long> newLowWatermark)
+            throws InterruptedException {
         commitSuicideIfNotMaster();
-        monCtx.timerStart("reply.processor.commit.latency");
+        // The commit is not persisted by the TSO in this mode, so the standby replica must have it before replying
+        stateReplicator.waitForReplicas(commitTimestamp);
+        monCtx.timerStart(MonitoredStage.REPLY_COMMIT);
         replyProcessor.sendCommitResponse(startTimestamp, commitTimestamp, c, monCtx, newLowWatermark);
     }
 
+    @Override
+    public void forwardPreviousEpochCommit(long startTimestamp, long commitTimestamp, Channel c, MonitoringContext monCtx, Optional<Long> newLowWatermark)
+            throws InterruptedException {
+        // The clients add their commits to the commit table atomically in this mode, so a transaction invalidated by
+        // a reader after the take over is aborted by its client when the commit can't be added
+        forwardCommit(startTimestamp, commitTimestamp, c, monCtx, newLowWatermark);
+    }
+
     @Override
     public void forwardCommitRetry(long startTimestamp, Channel c, MonitoringContext monCtx) {
-        monCtx.timerStart("reply.processor.abort.latency");
+        monCtx.timerStart(MonitoredStage.REPLY_ABORT);
         replyProcessor.sendAbortResponse(startTimestamp, c, monCtx);
     }
 
     @Override
     public void forwardAbort(long startTimestamp, Channel c, MonitoringContext monCtx) {
-        monCtx.timerStart("reply.processor.abort.latency");
+        monCtx.timerStart(MonitoredStage.REPLY_ABORT);
         replyProcessor.sendAbortResponse(startTimestamp, c, monCtx);
     }
 
     @Override
     public void forwardTimestamp(long startTimestamp, Channel c, MonitoringContext monCtx) {
-        monCtx.timerStart("reply.processor.timestamp.latency");
+        monCtx.timerStart(MonitoredStage.REPLY_TIMESTAMP);
         replyProcessor.sendTimestampResponse(startTimestamp, c, monCtx);
     }
 
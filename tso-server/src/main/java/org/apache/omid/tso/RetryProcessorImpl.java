@@ -70,6 +70,7 @@ class RetryProcessorImpl implements EventHandler<RetryProcessorImpl.RetryEvent>,
     private final Meter txAlreadyCommittedMeter;
     private final Meter invalidTxMeter;
     private final Meter noCTFoundMeter;
+    private final RingBufferMonitor retryRingMonitor;
 
     @Inject
     RetryProcessorImpl(@Named("RetryStrategy") WaitStrategy strategy,
@@ -91,6 +92,7 @@ class RetryProcessorImpl implements EventHandler<RetryProcessorImpl.RetryEvent>,
         disruptor.handleExceptionsWith(new FatalExceptionHandler(panicker)); // This must be before handleEventsWith()
         disruptor.handleEventsWith(this);
         this.retryRing = disruptor.start();
+        RingBufferMonitor.registerRemainingCapacityGauge(metrics, "retry", retryRing);
 
         // ------------------------------------------------------------------------------------------------------------
         // Attribute initialization
@@ -104,6 +106,7 @@ class RetryProcessorImpl implements EventHandler<RetryProcessorImpl.RetryEvent>,
         this.txAlreadyCommittedMeter = metrics.meter(name("tso", "retries", "commits", "tx-already-committed"));
         this.invalidTxMeter = metrics.meter(name("tso", "retries", "aborts", "tx-invalid"));
         this.noCTFoundMeter = metrics.meter(name("tso", "retries", "aborts", "tx-without-commit-timestamp"));
+        this.retryRingMonitor = new RingBufferMonitor(metrics, "retry");
 
         LOG.info("RetryProcessor initialized");
 
@@ -112,10 +115,11 @@ class RetryProcessorImpl implements EventHandler<RetryProcessorImpl.RetryEvent>,
     @Override
     public void onEvent(final RetryEvent event, final long sequence, final boolean endOfBatch) throws Exception {
 
+        retryRingMonitor.eventDequeued(event.getEnqueuedAtInNs());
         switch (event.getType()) {
             case COMMIT:
                 handleCommitRetry(event);
-                event.getMonCtx().timerStop("retry.processor.commit-retry.latency");
+                event.getMonCtx().timerStop(MonitoredStage.RETRY_COMMIT_RETRY);
                 break;
             default:
                 assert (false);
@@ -158,8 +162,9 @@ class RetryProcessorImpl implements EventHandler<RetryProcessorImpl.RetryEvent>,
     public void disambiguateRetryRequestHeuristically(long startTimestamp, Channel c, MonitoringContext monCtx) {
         long seq = retryRing.next();
         RetryEvent e = retryRing.get(seq);
-        monCtx.timerStart("retry.processor.commit-retry.latency");
+        monCtx.timerStart(MonitoredStage.RETRY_COMMIT_RETRY);
         RetryEvent.makeCommitRetry(e, startTimestamp, c, monCtx);
+        e.enqueuedAtInNs = System.nanoTime();
         retryRing.publish(seq);
     }
 
@@ -194,6 +199,8 @@ class RetryProcessorImpl implements EventHandler<RetryProcessorImpl.RetryEvent>,
         private Channel channel = null;
         private MonitoringContext monCtx;
 
+        private long enqueuedAtInNs;
+
         static void makeCommitRetry(RetryEvent e, long startTimestamp, Channel c, MonitoringContext monCtx) {
             e.monCtx = monCtx;
             e.type = Type.COMMIT;
@@ -217,6 +224,10 @@ class RetryProcessorImpl implements EventHandler<RetryProcessorImpl.RetryEvent>,
             return startTimestamp;
         }
 
+        long getEnqueuedAtInNs() {
+            return enqueuedAtInNs;
+        }
+
         public final static EventFactory<RetryEvent> EVENT_FACTORY = new EventFactory<RetryEvent>() {
             @Override
             public RetryEvent newInstance() {
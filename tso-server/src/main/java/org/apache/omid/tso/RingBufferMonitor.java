@@ -0,0 +1,67 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.omid.tso;
+
+import com.lmax.disruptor.RingBuffer;
+import org.apache.omid.metrics.Gauge;
+import org.apache.omid.metrics.MetricsRegistry;
+import org.apache.omid.metrics.Timer;
+
+import static org.apache.omid.metrics.MetricsUtils.name;
+
+/**
+ * Exposes the occupancy of a ring buffer of the TSO pipeline and the time its events wait in it before being handled.
+ *
+ * Producers stamp the events with {@link System#nanoTime()} when publishing them, and the event handler reports the
+ * residency time when it picks them up. A growing residency time or a shrinking remaining capacity point to the stage
+ * that is slowing down the pipeline.
+ *
+ * Updating the timer for every event would add its cost to the hot path of each stage, so only one out of
+ * {@link #SAMPLING_PERIOD} events is reported. Each event handler thread uses its own monitor.
+ */
+class RingBufferMonitor {
+
+    // Must be a power of two
+    static final int SAMPLING_PERIOD = 64;
+
+    private final Timer residencyTimer;
+    private int dequeuedEvents = 0;
+
+    RingBufferMonitor(MetricsRegistry metrics, String ringName) {
+        this.residencyTimer = metrics.timer(name("tso", ringName, "ring", "residency"));
+    }
+
+    static void registerRemainingCapacityGauge(MetricsRegistry metrics, String ringName, final RingBuffer<?> ring) {
+        metrics.gauge(name("tso", ringName, "ring", "remainingCapacity"), new Gauge<Long>() {
+            @Override
+            public Long getValue() {
+                return ring.remainingCapacity();
+            }
+        });
+    }
+
+    /**
+     * Called by the event handler when it picks up an event published at enqueuedAtInNs
+     */
+    void eventDequeued(long enqueuedAtInNs) {
+        if ((dequeuedEvents++ & (SAMPLING_PERIOD - 1)) == 0) {
+            residencyTimer.update(System.nanoTime() - enqueuedAtInNs);
+        }
+    }
+
+}
@@ -0,0 +1,86 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.omid.tso;
+
+import org.apache.phoenix.thirdparty.com.google.common.base.Optional;
+import com.google.inject.ImplementedBy;
+
+import java.io.Closeable;
+
+/**
+ * Replicates the conflict detection state of the master TSO (conflict map, fences and low watermark) to a standby
+ * replica, so the standby can take over with a warm state instead of aborting all the in-flight transactions.
+ *
+ * The master side methods are called from the TSO pipeline. The role methods are driven by the lease management.
+ */
+// NOTE: public is required explicitly in the interface definition for Guice injection
+@ImplementedBy(VoidStateReplicator.class)
+public interface StateReplicator extends Closeable {
+
+    // ----------------------------------------------------------------------------------------------------------------
+    // Master side. Called from the request processor thread
+    // ----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Sends the cells written by a transaction and its commit timestamp to the standby replica
+     */
+    void replicateCommit(long commitTimestamp, Iterable<Long> writeSet);
+
+    /**
+     * Sends a new fence to the standby replica
+     */
+    void replicateFence(long tableId, long fenceTimestamp);
+
+    /**
+     * Sends a new low watermark to the standby replica
+     */
+    void replicateLowWatermark(long lowWatermark);
+
+    /**
+     * Blocks until the standby replica acknowledges all the replicated state up to the timestamp passed. If the
+     * replica does not answer in time, it is marked as out of sync before returning, so it will not be able to
+     * take over with a warm state.
+     *
+     * @param timestamp
+     *            the commit or fence timestamp that must be replicated before it is made visible
+     */
+    void waitForReplicas(long timestamp) throws InterruptedException;
+
+    // ----------------------------------------------------------------------------------------------------------------
+    // Role changes. Called from the lease manager
+    // ----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Starts (or keeps) receiving the state replicated from the master running in the host passed
+     */
+    void followMaster(String masterHost);
+
+    /**
+     * Stops receiving replicated state before this replica becomes the master
+     *
+     * @return the low watermark the new master can start with when the replicated state is complete. Absent if the
+     *         replica was not in sync with the previous master.
+     */
+    Optional<Long> takeOver() throws Exception;
+
+    /**
+     * Starts accepting standby replicas once this replica is the master
+     */
+    void lead() throws Exception;
+
+}
@@ -0,0 +1,547 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.omid.tso;
+
+import org.apache.phoenix.thirdparty.com.google.common.annotations.VisibleForTesting;
+import org.apache.phoenix.thirdparty.com.google.common.base.Charsets;
+import org.apache.phoenix.thirdparty.com.google.common.base.Optional;
+import org.apache.phoenix.thirdparty.com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.inject.Provider;
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.utils.EnsurePath;
+import org.apache.omid.metrics.Counter;
+import org.apache.omid.metrics.Gauge;
+import org.apache.omid.metrics.MetricsRegistry;
+import org.apache.omid.metrics.Timer;
+import org.apache.omid.proto.TSOProto;
+import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.data.Stat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandler.Sharable;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
+import io.netty.handler.codec.LengthFieldPrepender;
+import io.netty.handler.codec.protobuf.ProtobufDecoder;
+import io.netty.handler.codec.protobuf.ProtobufEncoder;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.apache.omid.metrics.MetricsUtils.name;
+
+/**
+ * Replicates the conflict detection state of the master TSO to (at most) one standby replica through a dedicated
+ * channel.
+ *
+ * The master publishes in ZK (replicaSyncPath) the identity of the standby session that is in sync. Before any
+ * commit or fence is made visible, the standby in sync must have acknowledged it. If it does not in time, the
+ * master clears the ZK marker (conditionally on its version) and continues alone. When taking over, the standby
+ * claims the marker with a conditional update too, so at most one of both sides succeeds: either the standby has
+ * every visible decision of the previous master, or it takes over with a cold state as a regular replica.
+ */
+public class StateReplicatorImpl implements StateReplicator {
+
+    private static final Logger LOG = LoggerFactory.getLogger(StateReplicatorImpl.class);
+
+    private static final byte[] NO_REPLICA = new byte[0];
+
+    private final String tsoHostAndPort;
+    private final int replicationPort;
+    private final String replicaSyncPath;
+    private final long replicationTimeoutInNs;
+    private final CuratorFramework zkClient;
+    private final Provider<RequestProcessor> requestProcessorProvider;
+    private final Panicker panicker;
+
+    private final EventLoopGroup bossGroup;
+    private final EventLoopGroup workerGroup;
+    private final Random sessionIdGenerator = new Random();
+
+    // Master side state. Session changes are guarded by this object's monitor
+    private final ChannelInboundHandlerAdapter masterHandler = new MasterHandler();
+    private Channel serverChannel;
+    private volatile MasterSession currentSession;
+
+    // Standby side state
+    private StandbySession standbySession;
+
+    // Metrics in this component
+    private final Timer waitTimer;
+    private final Counter droppedSessionsCounter;
+
+    StateReplicatorImpl(String tsoHostAndPort,
+                        int replicationPort,
+                        String replicaSyncPath,
+                        long replicationTimeoutInMs,
+                        CuratorFramework zkClient,
+                        Provider<RequestProcessor> requestProcessorProvider,
+                        Panicker panicker,
+                        MetricsRegistry metrics) {
+
+        this.tsoHostAndPort = tsoHostAndPort;
+        this.replicationPort = replicationPort;
+        this.replicaSyncPath = replicaSyncPath;
+        this.replicationTimeoutInNs = TimeUnit.MILLISECONDS.toNanos(replicationTimeoutInMs);
+        this.zkClient = zkClient;
+        this.requestProcessorProvider = requestProcessorProvider;
+        this.panicker = panicker;
+
+        this.bossGroup = new NioEventLoopGroup(1, new ThreadFactoryBuilder().setNameFormat("replication-boss-%d").build());
+        this.workerGroup = new NioEventLoopGroup(1, new ThreadFactoryBuilder().setNameFormat("replication-worker-%d").build());
+
+        this.waitTimer = metrics.timer(name("tso", "replication", "wait", "latency"));
+        this.droppedSessionsCounter = metrics.counter(name("tso", "replication", "dropped", "sessions"));
+        metrics.gauge(name("tso", "replication", "inSync"), new Gauge<Integer>() {
+            @Override
+            public Integer getValue() {
+                return currentSession != null ? 1 : 0;
+            }
+        });
+
+        LOG.info("StateReplicator {} initialized. Replication port {}", tsoHostAndPort, replicationPort);
+
+    }
+
+    // ----------------------------------------------------------------------------------------------------------------
+    // Master side
+    // ----------------------------------------------------------------------------------------------------------------
+
+    @Override
+    public void replicateCommit(long commitTimestamp, Iterable<Long> writeSet) {
+
+        MasterSession session = currentSession;
+        if (session == null) {
+            return;
+        }
+        TSOProto.ReplicatedCommit.Builder commitBuilder = TSOProto.ReplicatedCommit.newBuilder()
+                .setCommitTimestamp(commitTimestamp);
+        for (Long cellId : writeSet) {
+            commitBuilder.addCellId(cellId);
+        }
+        session.send(commitTimestamp, TSOProto.ReplicationMessage.newBuilder().setCommit(commitBuilder).build());
+
+    }
+
+    @Override
+    public void replicateFence(long tableId, long fenceTimestamp) {
+
+        MasterSession session = currentSession;
+        if (session == null) {
+            return;
+        }
+        TSOProto.ReplicatedFence fence = TSOProto.ReplicatedFence.newBuilder()
+                .setTableId(tableId)
+                .setFenceTimestamp(fenceTimestamp)
+                .build();
+        session.send(fenceTimestamp, TSOProto.ReplicationMessage.newBuilder().setFence(fence).build());
+
+    }
+
+    @Override
+    public void replicateLowWatermark(long lowWatermark) {
+
+        MasterSession session = currentSession;
+        if (session == null) {
+            return;
+        }
+        session.channel.write(TSOProto.ReplicationMessage.newBuilder().setLowWatermark(lowWatermark).build());
+
+    }
+
+    @Override
+    public void waitForReplicas(long timestamp) throws InterruptedException {
+
+        MasterSession session = currentSession;
+        if (session == null || timestamp < session.firstTimestamp) {
+            // Nothing to wait for. The standby is not in sync or it joined after the timestamp was decided
+            return;
+        }
+
+        long startTimeInNs = System.nanoTime();
+        long deadlineInNs = startTimeInNs + replicationTimeoutInNs;
+        session.channel.flush();
+        synchronized (this) {
+            while (currentSession == session && session.ackedTimestamp < timestamp) {
+                long remainingInNs = deadlineInNs - System.nanoTime();
+                if (remainingInNs <= 0) {
+                    LOG.warn("Standby replica {} did not ack timestamp {} in time", session.channel, timestamp);
+                    dropSession(session);
+                    break;
+                }
+                TimeUnit.NANOSECONDS.timedWait(this, remainingInNs);
+            }
+        }
+        waitTimer.update(System.nanoTime() - startTimeInNs);
+
+    }
+
+    @Override
+    public synchronized void lead() throws Exception {
+
+        closeStandbySession();
+        if (serverChannel != null) {
+            return;
+        }
+        // Previous standby sessions are no longer valid
+        EnsurePath path = zkClient.newNamespaceAwareEnsurePath(replicaSyncPath);
+        path.ensure(zkClient.getZookeeperClient());
+        zkClient.setData().forPath(replicaSyncPath, NO_REPLICA);
+
+        ServerBootstrap bootstrap = new ServerBootstrap();
+        bootstrap.group(bossGroup, workerGroup);
+        bootstrap.channel(NioServerSocketChannel.class);
+        bootstrap.childOption(ChannelOption.TCP_NODELAY, true);
+        bootstrap.childHandler(new ChannelInitializer<SocketChannel>() {
+            @Override
+            public void initChannel(SocketChannel channel) throws Exception {
+                addCodecs(channel.pipeline());
+                channel.pipeline().addLast("handler", masterHandler);
+            }
+        });
+        serverChannel = bootstrap.bind(new InetSocketAddress(replicationPort)).syncUninterruptibly().channel();
+        LOG.info("{} accepting standby replicas in port {}", tsoHostAndPort, replicationPort);
+
+    }
+
+    private synchronized void startSession(Channel channel, TSOProto.ReplicationHandshake handshake) {
+
+        if (currentSession != null) {
+            LOG.info("Replacing standby replica {}", currentSession.channel);
+            dropSession(currentSession);
+        }
+        String marker = handshake.getStandbyId() + "#" + handshake.getSessionId();
+        try {
+            Stat stat = zkClient.setData().forPath(replicaSyncPath, marker.getBytes(Charsets.UTF_8));
+            currentSession = new MasterSession(channel, stat.getVersion());
+            LOG.info("Standby replica {} in sync", marker);
+        } catch (Exception e) {
+            LOG.error("Can't register standby replica {}", marker, e);
+            channel.close();
+        }
+
+    }
+
+    private synchronized void onAck(Channel channel, long ackedTimestamp) {
+
+        MasterSession session = currentSession;
+        if (session != null && session.channel == channel) {
+            session.ackedTimestamp = Math.max(session.ackedTimestamp, ackedTimestamp);
+            notifyAll();
+        }
+
+    }
+
+    private synchronized void onChannelClosed(Channel channel) {
+
+        MasterSession session = currentSession;
+        if (session != null && session.channel == channel) {
+            LOG.warn("Connection with standby replica {} lost", channel);
+            dropSession(session);
+        }
+
+    }
+
+    // Must be called holding the monitor
+    private void dropSession(MasterSession session) {
+
+        if (currentSession != session) {
+            return;
+        }
+        try {
+            // Conditional on the version written by this master. If it fails, the standby has already taken over
+            zkClient.setData().withVersion(session.markerVersion).forPath(replicaSyncPath, NO_REPLICA);
+        } catch (KeeperException.BadVersionException e) {
+            panicker.panic(tsoHostAndPort + " found that the standby replica took over. Committing suicide", e);
+        } catch (Exception e) {
+            panicker.panic(tsoHostAndPort + " can't mark the standby replica as out of sync", e);
+        }
+        currentSession = null;
+        session.channel.close();
+        droppedSessionsCounter.inc();
+        notifyAll();
+
+    }
+
+    // Marked sharable, as all the state is kept in the enclosing instance
+    @Sharable
+    private class MasterHandler extends ChannelInboundHandlerAdapter {
+
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+            TSOProto.ReplicationMessage message = (TSOProto.ReplicationMessage) msg;
+            if (message.hasHandshake()) {
+                startSession(ctx.channel(), message.getHandshake());
+            } else if (message.hasAckedTimestamp()) {
+                onAck(ctx.channel(), message.getAckedTimestamp());
+            } else {
+                LOG.error("Invalid replication message {}. Closing channel {}", message, ctx.channel());
+                ctx.channel().close();
+            }
+        }
+
+        @Override
+        public void channelInactive(ChannelHandlerContext ctx) {
+            onChannelClosed(ctx.channel());
+        }
+
+        @Override
+        public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+            LOG.warn("Error in replication channel {}", ctx.channel(), cause);
+            ctx.channel().close();
+        }
+
+    }
+
+    private static class MasterSession {
+
+        private final Channel channel;
+        private final int markerVersion;
+        // Written only from the request processor thread
+        private volatile long firstTimestamp = Long.MAX_VALUE;
+        // Guarded by the enclosing instance monitor
+        private long ackedTimestamp = -1L;
+
+        MasterSession(Channel channel, int markerVersion) {
+            this.channel = channel;
+            this.markerVersion = markerVersion;
+        }
+
+        void send(long timestamp, TSOProto.ReplicationMessage message) {
+            if (firstTimestamp == Long.MAX_VALUE) {
+                firstTimestamp = timestamp;
+            }
+            // Flushed when waiting for the acks, so the messages of a whole batch are sent together
+            channel.write(message);
+        }
+
+    }
+
+    // ----------------------------------------------------------------------------------------------------------------
+    // Standby side
+    // ----------------------------------------------------------------------------------------------------------------
+
+    @Override
+    public synchronized void followMaster(String masterHost) {
+
+        if (standbySession != null) {
+            if (standbySession.masterHost.equals(masterHost) && standbySession.channel.isActive()) {
+                return;
+            }
+            closeStandbySession();
+        }
+
+        final StandbySession session = new StandbySession(masterHost, sessionIdGenerator.nextLong());
+        Bootstrap bootstrap = new Bootstrap();
+        bootstrap.group(workerGroup);
+        bootstrap.channel(NioSocketChannel.class);
+        bootstrap.option(ChannelOption.TCP_NODELAY, true);
+        bootstrap.handler(new ChannelInitializer<SocketChannel>() {
+            @Override
+            public void initChannel(SocketChannel channel) throws Exception {
+                addCodecs(channel.pipeline());
+                channel.pipeline().addLast("handler", new StandbyHandler(session));
+            }
+        });
+        ChannelFuture connectFuture = bootstrap.connect(new InetSocketAddress(masterHost, replicationPort))
+                .awaitUninterruptibly();
+        if (!connectFuture.isSuccess()) {
+            LOG.warn("{} can't connect to master {} for replicating its state", tsoHostAndPort, masterHost,
+                     connectFuture.cause());
+            return;
+        }
+        session.channel = connectFuture.channel();
+        TSOProto.ReplicationHandshake handshake = TSOProto.ReplicationHandshake.newBuilder()
+                .setStandbyId(tsoHostAndPort)
+                .setSessionId(session.sessionId)
+                .build();
+        session.channel.writeAndFlush(TSOProto.ReplicationMessage.newBuilder().setHandshake(handshake).build());
+        standbySession = session;
+        LOG.info("{} replicating state from master {} (Session {})", tsoHostAndPort, masterHost, session.sessionId);
+
+    }
+
+    @Override
+    public synchronized Optional<Long> takeOver() throws Exception {
+
+        StandbySession session = standbySession;
+        if (session == null) {
+            return Optional.absent();
+        }
+        // Stop receiving state before checking if the replicated state is complete
+        closeStandbySession();
+        if (session.firstTimestamp == -1L) {
+            return Optional.absent();
+        }
+
+        Stat stat = new Stat();
+        byte[] marker;
+        try {
+            marker = zkClient.getData().storingStatIn(stat).forPath(replicaSyncPath);
+        } catch (KeeperException.NoNodeException e) {
+            return Optional.absent();
+        }
+        String expectedMarker = tsoHostAndPort + "#" + session.sessionId;
+        if (marker == null || !expectedMarker.equals(new String(marker, Charsets.UTF_8))) {
+            LOG.info("{} was not in sync with the previous master", tsoHostAndPort);
+            return Optional.absent();
+        }
+        try {
+            // Claim the marker, so the previous master can't mark this replica as out of sync anymore
+            zkClient.setData().withVersion(stat.getVersion()).forPath(replicaSyncPath, NO_REPLICA);
+        } catch (KeeperException.BadVersionException e) {
+            LOG.info("{} was marked as out of sync by the previous master", tsoHostAndPort);
+            return Optional.absent();
+        }
+        return Optional.of(Math.max(session.firstTimestamp, session.lowWatermark));
+
+    }
+
+    // Must be called holding the monitor
+    private void closeStandbySession() {
+
+        if (standbySession != null) {
+            standbySession.channel.close().syncUninterruptibly();
+            standbySession = null;
+        }
+
+    }
+
+    private class StandbyHandler extends ChannelInboundHandlerAdapter {
+
+        private final StandbySession session;
+        private long lastAckedTimestamp = -1L;
+
+        StandbyHandler(StandbySession session) {
+            this.session = session;
+        }
+
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+            TSOProto.ReplicationMessage message = (TSOProto.ReplicationMessage) msg;
+            RequestProcessor requestProcessor = requestProcessorProvider.get();
+            if (message.hasCommit()) {
+                TSOProto.ReplicatedCommit commit = message.getCommit();
+                requestProcessor.replicatedCommit(commit.getCommitTimestamp(), commit.getCellIdList());
+                session.onReplicated(commit.getCommitTimestamp());
+            } else if (message.hasFence()) {
+                TSOProto.ReplicatedFence fence = message.getFence();
+                requestProcessor.replicatedFence(fence.getTableId(), fence.getFenceTimestamp());
+                session.onReplicated(fence.getFenceTimestamp());
+            } else if (message.hasLowWatermark()) {
+                requestProcessor.replicatedLowWatermark(message.getLowWatermark());
+                session.lowWatermark = Math.max(session.lowWatermark, message.getLowWatermark());
+            }
+        }
+
+        @Override
+        public void channelReadComplete(ChannelHandlerContext ctx) {
+            // Ack once per read from the socket, so a batch of commits only requires one ack
+            long lastTimestamp = session.lastTimestamp;
+            if (lastTimestamp > lastAckedTimestamp) {
+                lastAckedTimestamp = lastTimestamp;
+                ctx.writeAndFlush(TSOProto.ReplicationMessage.newBuilder().setAckedTimestamp(lastTimestamp).build());
+            }
+        }
+
+        @Override
+        public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+            LOG.warn("Error in replication channel {}", ctx.channel(), cause);
+            ctx.channel().close();
+        }
+
+    }
+
+    private static class StandbySession {
+
+        private final String masterHost;
+        private final long sessionId;
+        private volatile Channel channel;
+        // Written only from the channel's event loop
+        private volatile long firstTimestamp = -1L;
+        private volatile long lastTimestamp = -1L;
+        private volatile long lowWatermark = -1L;
+
+        StandbySession(String masterHost, long sessionId) {
+            this.masterHost = masterHost;
+            this.sessionId = sessionId;
+        }
+
+        void onReplicated(long timestamp) {
+            if (firstTimestamp == -1L) {
+                firstTimestamp = timestamp;
+            }
+            lastTimestamp = timestamp;
+        }
+
+    }
+
+    // ----------------------------------------------------------------------------------------------------------------
+    // Helper methods
+    // ----------------------------------------------------------------------------------------------------------------
+
+    private static void addCodecs(ChannelPipeline pipeline) {
+
+        // Same max packet length as for the client requests
+        pipeline.addLast("lengthbaseddecoder", new LengthFieldBasedFrameDecoder(10 * 1024 * 1024, 0, 4, 0, 4));
+        pipeline.addLast("lengthprepender", new LengthFieldPrepender(4));
+        pipeline.addLast("protobufdecoder", new ProtobufDecoder(TSOProto.ReplicationMessage.getDefaultInstance()));
+        pipeline.addLast("protobufencoder", new ProtobufEncoder());
+
+    }
+
+    @VisibleForTesting
+    boolean hasReplicaInSync() {
+        return currentSession != null;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+
+        closeStandbySession();
+        if (serverChannel != null) {
+            serverChannel.close().syncUninterruptibly();
+            serverChannel = null;
+        }
+        MasterSession session = currentSession;
+        if (session != null) {
+            currentSession = null;
+            session.channel.close();
+        }
+        bossGroup.shutdownGracefully();
+        workerGroup.shutdownGracefully();
+
+    }
+
+}
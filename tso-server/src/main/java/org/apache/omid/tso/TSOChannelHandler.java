@@ -20,6 +20,7 @@ package org.apache.omid.tso;
 import java.io.Closeable;
 import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.net.SocketAddress;
 import java.nio.channels.ClosedChannelException;
 import java.util.concurrent.ThreadFactory;
 
@@ -27,6 +28,7 @@ import javax.inject.Inject;
 
 import org.apache.omid.metrics.MetricsRegistry;
 import org.apache.omid.proto.TSOProto;
+import org.apache.omid.tso.util.NettyTransport;
 import org.apache.phoenix.thirdparty.com.google.common.annotations.VisibleForTesting;
 import org.apache.phoenix.thirdparty.com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.slf4j.Logger;
@@ -42,9 +44,7 @@ import io.netty.channel.ChannelPipeline;
 import io.netty.channel.EventLoopGroup;
 import io.netty.channel.group.ChannelGroup;
 import io.netty.channel.group.DefaultChannelGroup;
-import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.SocketChannel;
-import io.netty.channel.socket.nio.NioServerSocketChannel;
 import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
 import io.netty.handler.codec.LengthFieldPrepender;
 import io.netty.handler.codec.protobuf.ProtobufDecoder;
@@ -76,26 +76,60 @@ public class TSOChannelHandler extends ChannelInboundHandlerAdapter implements C
 
     private MetricsRegistry metrics;
 
+    // Null when the monitoring of the request contexts is disabled
+    private final MonitoringContextAggregator monitoringAggregator;
+
+    // Null when the requests are handed over to the request processor in arrival order
+    private final FairRequestScheduler fairScheduler;
+
     private static final AttributeKey<TSOChannelContext> TSO_CTX =
             AttributeKey.valueOf("TSO_CTX");
 
     @Inject
-    public TSOChannelHandler(TSOServerConfig config, RequestProcessor requestProcessor, MetricsRegistry metrics) {
+    public TSOChannelHandler(TSOServerConfig config,
+                             RequestProcessor requestProcessor,
+                             Panicker panicker,
+                             MetricsRegistry metrics) {
 
         this.config = config;
         this.metrics = metrics;
         this.requestProcessor = requestProcessor;
 
+        if (config.getMonitorContext()) {
+            this.monitoringAggregator = new MonitoringContextAggregator(metrics);
+            this.monitoringAggregator.start(config.getMonitorContextReportIntervalInMs());
+        } else {
+            this.monitoringAggregator = null;
+        }
+
+        if (config.getFairScheduling()) {
+            this.fairScheduler = new FairRequestScheduler(requestProcessor,
+                                                          config.getFairSchedulingWeights(),
+                                                          config.getFairSchedulingMaxQueuedRequestsPerTenant(),
+                                                          config.getFairSchedulingTenantIdleTimeoutInMs(),
+                                                          panicker,
+                                                          metrics);
+        } else {
+            this.fairScheduler = null;
+        }
+
         // Setup netty listener
-        int workerThreadCount= (Runtime.getRuntime().availableProcessors() * 2 + 1) * 2;
+        int workerThreadCount = config.getNetworkWorkerThreads();
+        if (workerThreadCount <= 0) {
+            workerThreadCount = (Runtime.getRuntime().availableProcessors() * 2 + 1) * 2;
+        }
         ThreadFactory bossThreadFactory = new ThreadFactoryBuilder().setNameFormat("tsoserver-boss-%d").build();
         ThreadFactory workerThreadFactory = new ThreadFactoryBuilder().setNameFormat("tsoserver-worker-%d").build();
-        EventLoopGroup workerGroup = new NioEventLoopGroup(workerThreadCount, workerThreadFactory);
-        EventLoopGroup bossGroup = new NioEventLoopGroup(bossThreadFactory);
+        EventLoopGroup workerGroup =
+                NettyTransport.newEventLoopGroup(config.getNativeTransport(), workerThreadCount, workerThreadFactory);
+        EventLoopGroup bossGroup = NettyTransport.newEventLoopGroup(config.getNativeTransport(), 1, bossThreadFactory);
+        LOG.info("Using {} transport with {} worker threads",
+                 workerGroup.getClass().getSimpleName(), workerThreadCount);
 
         this.bootstrap = new ServerBootstrap();
         bootstrap.group(bossGroup,  workerGroup);
-        bootstrap.channel(NioServerSocketChannel.class);
+        bootstrap.channel(NettyTransport.serverSocketChannelClass(bossGroup));
+        NettyTransport.configureLowLatencyOptions(bootstrap, config.getBusyPollInMicros());
         bootstrap.childHandler(new ChannelInitializer<SocketChannel>() {
             @Override
             public void initChannel(SocketChannel channel) throws Exception {
@@ -156,6 +190,10 @@ public class TSOChannelHandler extends ChannelInboundHandlerAdapter implements C
     public void channelInactive(ChannelHandlerContext ctx) throws Exception {
         //ChannelGroup will automatically remove closed Channels
         LOG.debug("TSO channel inactive: {}", ctx.channel());
+        TSOChannelContext tsoCtx = ctx.channel().attr(TSO_CTX).get();
+        if (fairScheduler != null && tsoCtx != null) {
+            fairScheduler.channelClosed(tsoCtx.getTenant(), ctx.channel());
+        }
     }
 
     /**
@@ -174,21 +212,42 @@ public class TSOChannelHandler extends ChannelInboundHandlerAdapter implements C
                 ctx.channel().close();
             }
 
-            if (request.hasTimestampRequest()) {
-                requestProcessor.timestampRequest(ctx.channel(), MonitoringContextFactory.getInstance(config,metrics));
+            if (fairScheduler != null) {
+                scheduleRequest(ctx, request);
+            } else if (request.hasTimestampRequest()) {
+                TSOProto.TimestampRequest tr = request.getTimestampRequest();
+                if (tr.hasRequestId()) {
+                    requestProcessor.timestampRequest(tr.getRequestId(),
+                                                      ctx.channel(),
+                                                      MonitoringContextFactory.getInstance(monitoringAggregator));
+                } else {
+                    requestProcessor.timestampRequest(ctx.channel(),
+                                                      MonitoringContextFactory.getInstance(monitoringAggregator));
+                }
             } else if (request.hasCommitRequest()) {
                 TSOProto.CommitRequest cr = request.getCommitRequest();
-                requestProcessor.commitRequest(cr.getStartTimestamp(),
-                                               cr.getCellIdList(),
-                                               cr.getTableIdList(),
-                                               cr.getIsRetry(),
-                                               ctx.channel(),
-                                               MonitoringContextFactory.getInstance(config,metrics));
+                if (cr.getCheckOnlyCellIdCount() == 0 && cr.getRegisterOnlyCellIdCount() == 0) {
+                    requestProcessor.commitRequest(cr.getStartTimestamp(),
+                                                   cr.getCellIdList(),
+                                                   cr.getTableIdList(),
+                                                   cr.getIsRetry(),
+                                                   ctx.channel(),
+                                                   MonitoringContextFactory.getInstance(monitoringAggregator));
+                } else {
+                    requestProcessor.commitRequest(cr.getStartTimestamp(),
+                                                   cr.getCellIdList(),
+                                                   cr.getCheckOnlyCellIdList(),
+                                                   cr.getRegisterOnlyCellIdList(),
+                                                   cr.getTableIdList(),
+                                                   cr.getIsRetry(),
+                                                   ctx.channel(),
+                                                   MonitoringContextFactory.getInstance(monitoringAggregator));
+                }
             } else if (request.hasFenceRequest()) {
                 TSOProto.FenceRequest fr = request.getFenceRequest();
                 requestProcessor.fenceRequest(fr.getTableId(),
                         ctx.channel(),
-                        MonitoringContextFactory.getInstance(config,metrics));
+                        MonitoringContextFactory.getInstance(monitoringAggregator));
             } else {
                 LOG.error("Invalid request {}. Closing channel {}", request, ctx.channel());
                 ctx.channel().close();
@@ -198,6 +257,46 @@ public class TSOChannelHandler extends ChannelInboundHandlerAdapter implements C
         }
     }
 
+    private void scheduleRequest(ChannelHandlerContext ctx, TSOProto.Request request) {
+        TSOChannelContext tsoCtx = ctx.channel().attr(TSO_CTX).get();
+        if (tsoCtx == null) { // The channel is being closed as the handshake was not completed
+            return;
+        }
+        String tenant = tsoCtx.getTenant();
+        if (request.hasTimestampRequest()) {
+            TSOProto.TimestampRequest tr = request.getTimestampRequest();
+            if (tr.hasRequestId()) {
+                fairScheduler.timestampRequest(tenant,
+                                               tr.getRequestId(),
+                                               ctx.channel(),
+                                               MonitoringContextFactory.getInstance(monitoringAggregator));
+            } else {
+                fairScheduler.timestampRequest(tenant,
+                                               ctx.channel(),
+                                               MonitoringContextFactory.getInstance(monitoringAggregator));
+            }
+        } else if (request.hasCommitRequest()) {
+            TSOProto.CommitRequest cr = request.getCommitRequest();
+            fairScheduler.commitRequest(tenant,
+                                        cr.getStartTimestamp(),
+                                        cr.getCellIdList(),
+                                        cr.getCheckOnlyCellIdList(),
+                                        cr.getRegisterOnlyCellIdList(),
+                                        cr.getTableIdList(),
+                                        cr.getIsRetry(),
+                                        ctx.channel(),
+                                        MonitoringContextFactory.getInstance(monitoringAggregator));
+        } else if (request.hasFenceRequest()) {
+            fairScheduler.fenceRequest(tenant,
+                                       request.getFenceRequest().getTableId(),
+                                       ctx.channel(),
+                                       MonitoringContextFactory.getInstance(monitoringAggregator));
+        } else {
+            LOG.error("Invalid request {}. Closing channel {}", request, ctx.channel());
+            ctx.channel().close();
+        }
+    }
+
     @SuppressWarnings("ThrowableResultOfMethodCallIgnored")
     @Override
     public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
@@ -220,6 +319,13 @@ public class TSOChannelHandler extends ChannelInboundHandlerAdapter implements C
 
         bootstrap.config().group().terminationFuture().awaitUninterruptibly();
         bootstrap.config().childGroup().terminationFuture().awaitUninterruptibly();
+
+        if (fairScheduler != null) {
+            fairScheduler.close();
+        }
+        if (monitoringAggregator != null) {
+            monitoringAggregator.close();
+        }
     }
 
     // ----------------------------------------------------------------------------------------------------------------
@@ -232,9 +338,15 @@ public class TSOChannelHandler extends ChannelInboundHandlerAdapter implements C
     private static class TSOChannelContext {
 
         boolean handshakeComplete;
+        String tenant;
 
-        TSOChannelContext() {
+        TSOChannelContext(String tenant) {
             handshakeComplete = false;
+            this.tenant = tenant;
+        }
+
+        String getTenant() {
+            return tenant;
         }
 
         boolean getHandshakeComplete() {
@@ -254,7 +366,7 @@ public class TSOChannelHandler extends ChannelInboundHandlerAdapter implements C
 
             response.setClientCompatible(true)
                     .setServerCapabilities(TSOProto.Capabilities.newBuilder().build());
-            TSOChannelContext tsoCtx = new TSOChannelContext();
+            TSOChannelContext tsoCtx = new TSOChannelContext(getTenant(ctx.channel(), request));
             tsoCtx.setHandshakeComplete();
             ctx.channel().attr(TSO_CTX).set(tsoCtx);
         } else {
@@ -265,6 +377,18 @@ public class TSOChannelHandler extends ChannelInboundHandlerAdapter implements C
 
     }
 
+    // The tenant of the connection, as declared by the client or otherwise its IP address
+    private static String getTenant(Channel channel, TSOProto.HandshakeRequest request) {
+        if (request.hasTenantId() && !request.getTenantId().isEmpty()) {
+            return request.getTenantId();
+        }
+        SocketAddress address = channel.remoteAddress();
+        if (address instanceof InetSocketAddress && ((InetSocketAddress) address).getAddress() != null) {
+            return ((InetSocketAddress) address).getAddress().getHostAddress();
+        }
+        return String.valueOf(address);
+    }
+
     private boolean handshakeCompleted(ChannelHandlerContext ctx) {
 
         TSOChannelContext tsoCtx = ctx.channel().attr(TSO_CTX).get();
@@ -27,6 +27,8 @@ import org.apache.omid.tools.hbase.SecureHBaseConfig;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Map;
+
 /**
  * Reads the configuration parameters of a TSO server instance from CONFIG_FILE_NAME.
  * If file CONFIG_FILE_NAME is missing defaults to DEFAULT_CONFIG_FILE_NAME
@@ -49,6 +51,13 @@ public class TSOServerConfig extends SecureHBaseConfig {
       WORLD_TIME
     };
 
+    // What to do with new timestamp and commit requests when the request pipeline is overloaded
+    public static enum ADMISSION_CONTROL_POLICY {
+      BLOCK,  // Wait for room in the pipeline, blocking the network thread
+      REJECT, // Reply with a retriable overloaded response
+      SHED    // Drop the request. The client will retry it after its request timeout
+    };
+
     // ----------------------------------------------------------------------------------------------------------------
     // Instantiation
     // ----------------------------------------------------------------------------------------------------------------
@@ -91,8 +100,30 @@ public class TSOServerConfig extends SecureHBaseConfig {
 
     private Boolean lowLatency;
 
+    private boolean timestampFastLane = true;
+
+    private boolean nativeTransport;
+
+    private int networkWorkerThreads;
+
+    private int busyPollInMicros;
+
     public boolean monitorContext;
 
+    private int monitorContextReportIntervalInMs;
+
+    private String admissionControlPolicy;
+
+    private double admissionControlThreshold;
+
+    private boolean fairScheduling;
+
+    private Map<String, Integer> fairSchedulingWeights;
+
+    private int fairSchedulingMaxQueuedRequestsPerTenant;
+
+    private long fairSchedulingTenantIdleTimeoutInMs;
+
     public boolean getMonitorContext() {
         return monitorContext;
     }
@@ -101,6 +132,66 @@ public class TSOServerConfig extends SecureHBaseConfig {
         this.monitorContext = monitorContext;
     }
 
+    public int getMonitorContextReportIntervalInMs() {
+        return monitorContextReportIntervalInMs;
+    }
+
+    public void setMonitorContextReportIntervalInMs(int monitorContextReportIntervalInMs) {
+        this.monitorContextReportIntervalInMs = monitorContextReportIntervalInMs;
+    }
+
+    public String getAdmissionControlPolicy() {
+        return admissionControlPolicy;
+    }
+
+    public void setAdmissionControlPolicy(String admissionControlPolicy) {
+        this.admissionControlPolicy = admissionControlPolicy;
+    }
+
+    public ADMISSION_CONTROL_POLICY getAdmissionControlPolicyEnum() {
+        return TSOServerConfig.ADMISSION_CONTROL_POLICY.valueOf(admissionControlPolicy);
+    }
+
+    public double getAdmissionControlThreshold() {
+        return admissionControlThreshold;
+    }
+
+    public void setAdmissionControlThreshold(double admissionControlThreshold) {
+        this.admissionControlThreshold = admissionControlThreshold;
+    }
+
+    public boolean getFairScheduling() {
+        return fairScheduling;
+    }
+
+    public void setFairScheduling(boolean fairScheduling) {
+        this.fairScheduling = fairScheduling;
+    }
+
+    public Map<String, Integer> getFairSchedulingWeights() {
+        return fairSchedulingWeights;
+    }
+
+    public void setFairSchedulingWeights(Map<String, Integer> fairSchedulingWeights) {
+        this.fairSchedulingWeights = fairSchedulingWeights;
+    }
+
+    public int getFairSchedulingMaxQueuedRequestsPerTenant() {
+        return fairSchedulingMaxQueuedRequestsPerTenant;
+    }
+
+    public void setFairSchedulingMaxQueuedRequestsPerTenant(int fairSchedulingMaxQueuedRequestsPerTenant) {
+        this.fairSchedulingMaxQueuedRequestsPerTenant = fairSchedulingMaxQueuedRequestsPerTenant;
+    }
+
+    public long getFairSchedulingTenantIdleTimeoutInMs() {
+        return fairSchedulingTenantIdleTimeoutInMs;
+    }
+
+    public void setFairSchedulingTenantIdleTimeoutInMs(long fairSchedulingTenantIdleTimeoutInMs) {
+        this.fairSchedulingTenantIdleTimeoutInMs = fairSchedulingTenantIdleTimeoutInMs;
+    }
+
     public Boolean getLowLatency() {
         return lowLatency;
     }
@@ -109,6 +200,38 @@ public class TSOServerConfig extends SecureHBaseConfig {
         this.lowLatency = lowLatency;
     }
 
+    public boolean getTimestampFastLane() {
+        return timestampFastLane;
+    }
+
+    public void setTimestampFastLane(boolean timestampFastLane) {
+        this.timestampFastLane = timestampFastLane;
+    }
+
+    public boolean getNativeTransport() {
+        return nativeTransport;
+    }
+
+    public void setNativeTransport(boolean nativeTransport) {
+        this.nativeTransport = nativeTransport;
+    }
+
+    public int getNetworkWorkerThreads() {
+        return networkWorkerThreads;
+    }
+
+    public void setNetworkWorkerThreads(int networkWorkerThreads) {
+        this.networkWorkerThreads = networkWorkerThreads;
+    }
+
+    public int getBusyPollInMicros() {
+        return busyPollInMicros;
+    }
+
+    public void setBusyPollInMicros(int busyPollInMicros) {
+        this.busyPollInMicros = busyPollInMicros;
+    }
+
     public int getPort() {
         return port;
     }
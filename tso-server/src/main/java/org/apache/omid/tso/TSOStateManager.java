@@ -32,9 +32,11 @@ public interface TSOStateManager {
 
         // TSO state variables
         private final long lowWatermark;
+        private final long epoch;
 
         public TSOState(long lowWatermark, long epoch) {
             this.lowWatermark = lowWatermark;
+            this.epoch = epoch;
         }
 
         public long getLowWatermark() {
@@ -42,8 +44,7 @@ public interface TSOStateManager {
         }
 
         public long getEpoch() {
-            // In this implementation the epoch == low watermark
-            return lowWatermark;
+            return epoch;
         }
 
         @Override
@@ -94,4 +95,17 @@ public interface TSOStateManager {
      */
     TSOState initialize() throws Exception;
 
+    /**
+     * Allows to initialize the state when taking over from a master whose conflict detection state has been
+     * replicated to this TSO. The low watermark is not advanced to the new epoch, so the transactions started
+     * with the previous master that are above the replicated low watermark can still commit
+     *
+     * @param replicatedLowWatermark
+     *            the low watermark up to which the replicated conflict detection state is complete
+     * @return the new state
+     * @throws Exception
+     *             when problems resetting occur
+     */
+    TSOState initialize(long replicatedLowWatermark) throws Exception;
+
 }
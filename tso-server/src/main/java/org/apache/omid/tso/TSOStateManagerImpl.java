@@ -59,12 +59,19 @@ public class TSOStateManagerImpl implements TSOStateManager {
     @Override
     public TSOState initialize() throws Exception {
 
+        return initialize(Long.MAX_VALUE);
+
+    }
+
+    @Override
+    public TSOState initialize(long replicatedLowWatermark) throws Exception {
+
         LOG.info("Initializing TSO Server state...");
         // The timestamp oracle dictates the new state
         timestampOracle.initialize();
-        long lowWatermark = timestampOracle.getLast();
-        // In this implementation the epoch == low watermark
-        long epoch = lowWatermark;
+        long epoch = timestampOracle.getLast();
+        // Without replicated state the low watermark == epoch, so all the previous transactions are aborted
+        long lowWatermark = Math.min(replicatedLowWatermark, epoch);
         state = new TSOState(lowWatermark, epoch);
 
         // Then, notify registered observers about the new state
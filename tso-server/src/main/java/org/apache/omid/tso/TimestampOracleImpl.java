@@ -21,8 +21,10 @@ import org.apache.phoenix.thirdparty.com.google.common.annotations.VisibleForTes
 import org.apache.phoenix.thirdparty.com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 import org.apache.omid.committable.CommitTable;
+import org.apache.omid.metrics.Counter;
 import org.apache.omid.metrics.Gauge;
 import org.apache.omid.metrics.MetricsRegistry;
+import org.apache.omid.metrics.Timer;
 import org.apache.omid.timestamp.storage.TimestampStorage;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -33,6 +35,8 @@ import javax.inject.Singleton;
 import java.io.IOException;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static org.apache.omid.metrics.MetricsUtils.name;
 
@@ -63,21 +67,24 @@ public class TimestampOracleImpl implements TimestampOracle {
     }
 
     private class AllocateTimestampBatchTask implements Runnable {
-        long previousMaxTimestamp;
-
-        AllocateTimestampBatchTask(long previousMaxTimestamp) {
-            this.previousMaxTimestamp = previousMaxTimestamp;
-        }
 
         @Override
         public void run() {
+            long previousMaxTimestamp = maxAllocatedTimestamp;
             long newMaxTimestamp = previousMaxTimestamp + TIMESTAMP_BATCH;
             try {
                 storage.updateMaxTimestamp(previousMaxTimestamp, newMaxTimestamp);
+                nextAllocationThreshold = newMaxTimestamp - TIMESTAMP_REMAINING_THRESHOLD;
                 maxAllocatedTimestamp = newMaxTimestamp;
-                previousMaxTimestamp = newMaxTimestamp;
+                allocationInProgress.set(false);
             } catch (Throwable e) {
+                // No more allocations are tried after this, the TSO is going to stop anyway
                 panicker.panic("Can't store the new max timestamp", e);
+                return;
+            }
+            // The producers may have gone through the whole batch whilst it was being persisted
+            if (lastTimestamp.get() >= nextAllocationThreshold) {
+                triggerAllocation();
             }
         }
 
@@ -86,20 +93,25 @@ public class TimestampOracleImpl implements TimestampOracle {
     static final long TIMESTAMP_BATCH = 10_000_000 * CommitTable.MAX_CHECKPOINTS_PER_TXN; // 10 million
     private static final long TIMESTAMP_REMAINING_THRESHOLD = 1_000_000 * CommitTable.MAX_CHECKPOINTS_PER_TXN; // 1 million
 
-    private long lastTimestamp;
-
-    private long maxTimestamp;
+    // Timestamps are reserved atomically, so next() can be called concurrently from multiple threads
+    private final AtomicLong lastTimestamp = new AtomicLong();
 
     private TimestampStorage storage;
     private Panicker panicker;
 
-    private long nextAllocationThreshold;
+    // Timestamps below this value are already persisted and can be given to the producers
     private volatile long maxAllocatedTimestamp;
+    private volatile long nextAllocationThreshold;
+    private final AtomicBoolean allocationInProgress = new AtomicBoolean(false);
 
     private Executor executor = Executors.newSingleThreadExecutor(
             new ThreadFactoryBuilder().setNameFormat("ts-persist-%d").build());
 
-    private Runnable allocateTimestampsBatchTask;
+    private final Runnable allocateTimestampsBatchTask = new AllocateTimestampBatchTask();
+
+    // Metrics in this component
+    private final Counter allocationStallsCounter;
+    private final Timer allocationStallTimer;
 
     @Inject
     public TimestampOracleImpl(MetricsRegistry metrics,
@@ -112,63 +124,80 @@ public class TimestampOracleImpl implements TimestampOracle {
         metrics.gauge(name("tso", "maxTimestamp"), new Gauge<Long>() {
             @Override
             public Long getValue() {
-                return maxTimestamp;
+                return maxAllocatedTimestamp;
             }
         });
+        this.allocationStallsCounter = metrics.counter(name("tso", "timestampOracle", "allocation", "stalls"));
+        this.allocationStallTimer = metrics.timer(name("tso", "timestampOracle", "allocation", "stall", "latency"));
 
     }
 
     @Override
     public void initialize() throws IOException {
 
-        this.lastTimestamp = this.maxTimestamp = storage.getMaxTimestamp();
-
-        this.allocateTimestampsBatchTask = new AllocateTimestampBatchTask(lastTimestamp);
+        long maxTimestamp = storage.getMaxTimestamp();
+        this.lastTimestamp.set(maxTimestamp);
+        this.maxAllocatedTimestamp = maxTimestamp;
+        this.nextAllocationThreshold = Long.MAX_VALUE;
+        this.allocationInProgress.set(false);
 
         // Trigger first allocation of timestamps
-        executor.execute(allocateTimestampsBatchTask);
+        triggerAllocation();
 
-        LOG.info("Initializing timestamp oracle with timestamp {}", this.lastTimestamp);
+        LOG.info("Initializing timestamp oracle with timestamp {}", maxTimestamp);
     }
 
     /**
      * Returns the next timestamp if available. Otherwise spins till the ts-persist thread allocates a new timestamp.
+     * Safe to be called from multiple threads.
      */
-    @SuppressWarnings("StatementWithEmptyBody")
     @Override
     public long next() {
-        lastTimestamp += CommitTable.MAX_CHECKPOINTS_PER_TXN;
 
-        if (lastTimestamp >= nextAllocationThreshold) {
-            // set the nextAllocationThread to max value of long in order to
-            // make sure only one call to this function will execute a thread to extend the timestamp batch.
-            nextAllocationThreshold = Long.MAX_VALUE; 
+        long timestamp = lastTimestamp.addAndGet(CommitTable.MAX_CHECKPOINTS_PER_TXN);
+
+        if (timestamp >= nextAllocationThreshold) {
+            triggerAllocation();
+        }
+
+        if (timestamp >= maxAllocatedTimestamp) {
+            waitForAllocation(timestamp);
+        }
+
+        return timestamp;
+
+    }
+
+    private void triggerAllocation() {
+
+        // Only one allocation can be in progress, so only the producer winning the race submits the task
+        if (allocationInProgress.compareAndSet(false, true)) {
             executor.execute(allocateTimestampsBatchTask);
         }
 
-        if (lastTimestamp >= maxTimestamp) {
-            assert (maxTimestamp <= maxAllocatedTimestamp);
-            while (maxAllocatedTimestamp == maxTimestamp) {
-                // spin
-            }
-            assert (maxAllocatedTimestamp > maxTimestamp);
-            maxTimestamp = maxAllocatedTimestamp;
-            nextAllocationThreshold = maxTimestamp - TIMESTAMP_REMAINING_THRESHOLD;
-            assert (nextAllocationThreshold > lastTimestamp && nextAllocationThreshold < maxTimestamp);
-            assert (lastTimestamp < maxTimestamp);
+    }
+
+    private void waitForAllocation(long timestamp) {
+
+        allocationStallsCounter.inc();
+        long startStallTimeInNs = System.nanoTime();
+        while (timestamp >= maxAllocatedTimestamp) {
+            triggerAllocation();
+            Thread.yield();
         }
+        allocationStallTimer.update(System.nanoTime() - startStallTimeInNs);
 
-        return lastTimestamp;
     }
 
     @Override
     public long getLast() {
-        return lastTimestamp;
+        return lastTimestamp.get();
     }
 
     @Override
     public String toString() {
-        return String.format("TimestampOracle -> LastTimestamp: %d, MaxTimestamp: %d", lastTimestamp, maxTimestamp);
+        return String.format("TimestampOracle -> LastTimestamp: %d, MaxTimestamp: %d",
+                             lastTimestamp.get(), maxAllocatedTimestamp);
     }
 
 }
@@ -0,0 +1,62 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.omid.tso;
+
+import org.apache.phoenix.thirdparty.com.google.common.base.Optional;
+
+import java.io.IOException;
+
+/**
+ * No-op replicator used when the TSO does not run with a warm standby
+ */
+public class VoidStateReplicator implements StateReplicator {
+
+    @Override
+    public void replicateCommit(long commitTimestamp, Iterable<Long> writeSet) {
+    }
+
+    @Override
+    public void replicateFence(long tableId, long fenceTimestamp) {
+    }
+
+    @Override
+    public void replicateLowWatermark(long lowWatermark) {
+    }
+
+    @Override
+    public void waitForReplicas(long timestamp) {
+    }
+
+    @Override
+    public void followMaster(String masterHost) {
+    }
+
+    @Override
+    public Optional<Long> takeOver() {
+        return Optional.absent();
+    }
+
+    @Override
+    public void lead() {
+    }
+
+    @Override
+    public void close() throws IOException {
+    }
+
+}
@@ -21,8 +21,10 @@ import org.apache.phoenix.thirdparty.com.google.common.annotations.VisibleForTes
 import org.apache.phoenix.thirdparty.com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 import org.apache.omid.committable.CommitTable;
+import org.apache.omid.metrics.Counter;
 import org.apache.omid.metrics.Gauge;
 import org.apache.omid.metrics.MetricsRegistry;
+import org.apache.omid.metrics.Timer;
 import org.apache.omid.timestamp.storage.TimestampStorage;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -34,6 +36,8 @@ import java.io.IOException;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static org.apache.omid.metrics.MetricsUtils.name;
 
@@ -49,19 +53,24 @@ public class WorldClockOracleImpl implements TimestampOracle {
     static final long TIMESTAMP_INTERVAL_MS = 10_000; // 10 seconds interval
     private static final long TIMESTAMP_ALLOCATION_INTERVAL_MS = 7_000; // 7 seconds
 
-    private long lastTimestamp;
-    private long maxTimestamp;
+    // Timestamps are reserved atomically, so next() can be called concurrently from multiple threads
+    private final AtomicLong lastTimestamp = new AtomicLong();
 
     private TimestampStorage storage;
     private Panicker panicker;
 
     private volatile long maxAllocatedTime;
+    private final AtomicBoolean allocationRequested = new AtomicBoolean(false);
 
     private final ScheduledExecutorService scheduler =
             Executors.newScheduledThreadPool(1, new ThreadFactoryBuilder().setNameFormat("ts-persist-%d").build());
 
     private Runnable allocateTimestampsBatchTask;
 
+    // Metrics in this component
+    private final Counter allocationStallsCounter;
+    private final Timer allocationStallTimer;
+
     private class AllocateTimestampBatchTask implements Runnable {
         long previousMaxTime;
 
@@ -76,6 +85,7 @@ public class WorldClockOracleImpl implements TimestampOracle {
                 storage.updateMaxTimestamp(previousMaxTime, newMaxTime);
                 maxAllocatedTime = newMaxTime;
                 previousMaxTime = newMaxTime;
+                allocationRequested.set(false);
             } catch (Throwable e) {
                 panicker.panic("Can't store the new max timestamp", e);
             }
@@ -93,24 +103,28 @@ public class WorldClockOracleImpl implements TimestampOracle {
         metrics.gauge(name("tso", "maxTimestamp"), new Gauge<Long>() {
             @Override
             public Long getValue() {
-                return maxTimestamp;
+                return maxAllocatedTime;
             }
         });
+        this.allocationStallsCounter = metrics.counter(name("tso", "timestampOracle", "allocation", "stalls"));
+        this.allocationStallTimer = metrics.timer(name("tso", "timestampOracle", "allocation", "stall", "latency"));
 
     }
 
     @Override
     public void initialize() throws IOException {
 
-        this.lastTimestamp = this.maxTimestamp = storage.getMaxTimestamp();
+        long maxTimestamp = storage.getMaxTimestamp();
+        this.lastTimestamp.set(maxTimestamp);
+        this.maxAllocatedTime = maxTimestamp;
 
-        this.allocateTimestampsBatchTask = new AllocateTimestampBatchTask(lastTimestamp);
+        this.allocateTimestampsBatchTask = new AllocateTimestampBatchTask(maxTimestamp);
 
         // Trigger first allocation of timestamps
         scheduler.schedule(allocateTimestampsBatchTask, 0, TimeUnit.MILLISECONDS);
 
         // Waiting for the current epoch to start. Occurs in case of failover when the previous TSO allocated the current time frame.
-        while ((System.currentTimeMillis() * MAX_TX_PER_MS) < this.lastTimestamp) {
+        while ((System.currentTimeMillis() * MAX_TX_PER_MS) < maxTimestamp) {
             try {
                 Thread.sleep(1000);
             } catch (InterruptedException e) {
@@ -125,44 +139,51 @@ public class WorldClockOracleImpl implements TimestampOracle {
 
     /**
      * Returns the next timestamp if available. Otherwise spins till the ts-persist thread allocates a new timestamp.
+     * Safe to be called from multiple threads.
      */
     @Override
     public long next() {
 
         long currentMsFirstTimestamp = System.currentTimeMillis() * MAX_TX_PER_MS;
 
-        lastTimestamp += CommitTable.MAX_CHECKPOINTS_PER_TXN;
-
-        // Return the next timestamp in case we are still in the same millisecond as the previous timestamp was. 
-        if (lastTimestamp >= currentMsFirstTimestamp) {
-            return lastTimestamp;
-        }
-
-        if (currentMsFirstTimestamp >= maxTimestamp) { // Intentional race to reduce synchronization overhead in every access to maxTimestamp                                                                                                                       
-            while (maxAllocatedTime <= currentMsFirstTimestamp) { // Waiting for the interval allocation
-                try {
-                    Thread.sleep(1000);
-                } catch (InterruptedException e) {
-                   continue;
-                }
+        while (true) {
+            long last = lastTimestamp.get();
+            // Use the next timestamp in case we are still in the same millisecond as the previous timestamp was
+            long timestamp = Math.max(last + CommitTable.MAX_CHECKPOINTS_PER_TXN, currentMsFirstTimestamp);
+            if (timestamp >= maxAllocatedTime) {
+                waitForAllocation(timestamp);
+            }
+            if (lastTimestamp.compareAndSet(last, timestamp)) {
+                return timestamp;
             }
-            assert (maxAllocatedTime > maxTimestamp);
-            maxTimestamp = maxAllocatedTime;
         }
 
-        lastTimestamp = currentMsFirstTimestamp;
+    }
+
+    private void waitForAllocation(long timestamp) {
+
+        allocationStallsCounter.inc();
+        long startStallTimeInNs = System.nanoTime();
+        // Don't wait for the periodic allocation. Only the producer winning the race asks for it
+        if (allocationRequested.compareAndSet(false, true)) {
+            scheduler.execute(allocateTimestampsBatchTask);
+        }
+        while (timestamp >= maxAllocatedTime) {
+            Thread.yield();
+        }
+        allocationStallTimer.update(System.nanoTime() - startStallTimeInNs);
 
-        return lastTimestamp;
     }
 
     @Override
     public long getLast() {
-        return lastTimestamp;
+        return lastTimestamp.get();
     }
 
     @Override
     public String toString() {
-        return String.format("TimestampOracle -> LastTimestamp: %d, MaxTimestamp: %d", lastTimestamp, maxTimestamp);
+        return String.format("TimestampOracle -> LastTimestamp: %d, MaxTimestamp: %d",
+                             lastTimestamp.get(), maxAllocatedTime);
     }
 
     @VisibleForTesting
@@ -63,6 +63,9 @@ public class ProgrammableTSOServer extends ChannelInboundHandlerAdapter {
 
     private Queue<Response> responseQueue = new LinkedList<>();
 
+    // Responses held back until the response to the next request is sent
+    private Queue<TSOProto.Response> deferredResponses = new LinkedList<>();
+
     private static final AttributeKey<TSOChannelContext> TSO_CTX =
             AttributeKey.valueOf("TSO_CTX");
 
@@ -115,6 +118,7 @@ public class ProgrammableTSOServer extends ChannelInboundHandlerAdapter {
      */
     public void cleanResponses() {
         responseQueue.clear();
+        deferredResponses.clear();
     }
 
     // ******************** End of Main interface for tests *******************
@@ -143,11 +147,24 @@ public class ProgrammableTSOServer extends ChannelInboundHandlerAdapter {
 
             Response resp = responseQueue.poll();
             if (request.hasTimestampRequest()) {
-                if (resp == null || resp.type != ResponseType.TIMESTAMP) {
-                    throw new IllegalStateException("Expecting TS response to send but got " + resp);
+                if (resp == null) {
+                    throw new IllegalStateException("Expecting TS response to send but got null");
+                }
+                switch (resp.type) {
+                    case TIMESTAMP:
+                        TimestampResponse tsResp = (TimestampResponse) resp;
+                        if (tsResp.deferred) {
+                            deferredResponses.add(buildTimestampResponse(tsResp.startTS));
+                            return;
+                        }
+                        sendTimestampResponse(tsResp.startTS, channel);
+                        break;
+                    case OVERLOADED_TIMESTAMP:
+                        sendOverloadedTimestampResponse(request.getTimestampRequest().getRequestId(), channel);
+                        break;
+                    default:
+                        throw new IllegalStateException("Expecting TS response to send but got " + resp.type);
                 }
-                TimestampResponse tsResp = (TimestampResponse) resp;
-                sendTimestampResponse(tsResp.startTS, channel);
             } else if (request.hasCommitRequest()) {
                 if (resp == null) {
                     throw new IllegalStateException("Expecting COMMIT response to send but got null");
@@ -167,6 +184,10 @@ public class ProgrammableTSOServer extends ChannelInboundHandlerAdapter {
             } else {
                 LOG.error("Invalid request {}", request);
                 ctx.channel().close();
+                return;
+            }
+            while (!deferredResponses.isEmpty()) {
+                channel.writeAndFlush(deferredResponses.poll());
             }
         } else {
             LOG.error("Unknown message type", msg);
@@ -206,10 +227,22 @@ public class ProgrammableTSOServer extends ChannelInboundHandlerAdapter {
     }
 
     private void sendTimestampResponse(long startTimestamp, Channel c) {
+        c.writeAndFlush(buildTimestampResponse(startTimestamp));
+    }
+
+    private TSOProto.Response buildTimestampResponse(long startTimestamp) {
         TSOProto.Response.Builder builder = TSOProto.Response.newBuilder();
         TSOProto.TimestampResponse.Builder respBuilder = TSOProto.TimestampResponse.newBuilder();
         respBuilder.setStartTimestamp(startTimestamp);
         builder.setTimestampResponse(respBuilder.build());
+        return builder.build();
+    }
+
+    private void sendOverloadedTimestampResponse(long requestId, Channel c) {
+        TSOProto.Response.Builder builder = TSOProto.Response.newBuilder();
+        TSOProto.TimestampResponse.Builder respBuilder = TSOProto.TimestampResponse.newBuilder();
+        respBuilder.setOverloaded(true).setRequestId(requestId);
+        builder.setTimestampResponse(respBuilder.build());
         c.writeAndFlush(builder.build());
     }
 
@@ -248,10 +281,31 @@ public class ProgrammableTSOServer extends ChannelInboundHandlerAdapter {
     public static class TimestampResponse extends Response {
 
         final long startTS;
+        final boolean deferred;
 
         public TimestampResponse(long startTS) {
+            this(startTS, false);
+        }
+
+        /**
+         * @param deferred whether the response is sent after the response to the next request, as if the TSO took
+         *                 longer to reply it
+         */
+        public TimestampResponse(long startTS, boolean deferred) {
             super(ResponseType.TIMESTAMP);
             this.startTS = startTS;
+            this.deferred = deferred;
+        }
+
+    }
+
+    /**
+     * Tells the client the timestamp request was rejected because the TSO is overloaded, echoing its id
+     */
+    public static class OverloadedTimestampResponse extends Response {
+
+        public OverloadedTimestampResponse() {
+            super(ResponseType.OVERLOADED_TIMESTAMP);
         }
 
     }
@@ -283,7 +337,7 @@ public class ProgrammableTSOServer extends ChannelInboundHandlerAdapter {
     abstract static class Response {
 
         enum ResponseType {
-            TIMESTAMP, COMMIT, ABORT
+            TIMESTAMP, OVERLOADED_TIMESTAMP, COMMIT, ABORT
         }
 
         final ResponseType type;
@@ -0,0 +1,290 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.omid.tso;
+
+import org.apache.phoenix.thirdparty.com.google.common.collect.Lists;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelConfig;
+import org.apache.omid.metrics.Gauge;
+import org.apache.omid.metrics.Meter;
+import org.apache.omid.metrics.MetricsRegistry;
+import org.apache.omid.metrics.NullMetricsProvider;
+import org.apache.omid.metrics.Timer;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class TestFairRequestScheduler {
+
+    private static final String BLOCKER = "blocker";
+    private static final String BATCH = "batch";
+    private static final String INTERACTIVE = "interactive";
+
+    private static final long IDLE_TIMEOUT_IN_MS = 60_000;
+
+    private RequestProcessor requestProcessor;
+    private Panicker panicker;
+    private FairRequestScheduler scheduler;
+
+    private Channel blockerChannel;
+    private Channel batchChannel;
+    private Channel interactiveChannel;
+    private ChannelConfig batchChannelConfig;
+
+    // Channels of the requests handed over to the request processor, in order
+    private List<Channel> dispatched;
+    private CountDownLatch dispatcherBlocked;
+    private CountDownLatch releaseDispatcher;
+
+    @BeforeMethod
+    public void setup() {
+
+        scheduler = null;
+        dispatched = Collections.synchronizedList(new ArrayList<Channel>());
+        dispatcherBlocked = new CountDownLatch(1);
+        releaseDispatcher = new CountDownLatch(1);
+
+        blockerChannel = mock(Channel.class);
+        batchChannel = mock(Channel.class);
+        interactiveChannel = mock(Channel.class);
+        batchChannelConfig = mock(ChannelConfig.class);
+        doReturn(batchChannelConfig).when(batchChannel).config();
+        doReturn(true).when(batchChannelConfig).isAutoRead();
+        doReturn(true).when(batchChannel).isActive();
+        panicker = mock(Panicker.class);
+
+        requestProcessor = mock(RequestProcessor.class);
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                Channel c = (Channel) invocation.getArguments()[0];
+                if (c == blockerChannel) {
+                    dispatcherBlocked.countDown();
+                    releaseDispatcher.await();
+                } else {
+                    dispatched.add(c);
+                }
+                return null;
+            }
+        }).when(requestProcessor).timestampRequest(any(Channel.class), any(MonitoringContext.class));
+
+    }
+
+    @AfterMethod
+    public void teardown() {
+        if (scheduler != null) {
+            scheduler.close();
+        }
+    }
+
+    @Test(timeOut = 10_000)
+    public void testRequestsAreDispatchedInWeightedRoundRobinOrder() throws Exception {
+
+        Map<String, Integer> weights = new HashMap<>();
+        weights.put(INTERACTIVE, 3);
+        scheduler = new FairRequestScheduler(requestProcessor, weights, 1000, IDLE_TIMEOUT_IN_MS, panicker,
+                                             new NullMetricsProvider());
+
+        // Keep the dispatcher busy while the requests of both tenants are queued
+        scheduler.timestampRequest(BLOCKER, blockerChannel, MonitoringContextNullImpl.INSTANCE);
+        dispatcherBlocked.await();
+        for (int i = 0; i < 6; i++) {
+            scheduler.timestampRequest(BATCH, batchChannel, MonitoringContextNullImpl.INSTANCE);
+        }
+        for (int i = 0; i < 6; i++) {
+            scheduler.timestampRequest(INTERACTIVE, interactiveChannel, MonitoringContextNullImpl.INSTANCE);
+        }
+        releaseDispatcher.countDown();
+
+        verify(requestProcessor, timeout(1000).times(13)).timestampRequest(any(Channel.class),
+                                                                           any(MonitoringContext.class));
+        // The interactive tenant gets 3 requests dispatched for each one of the batch tenant
+        assertEquals(dispatched.subList(0, 8),
+                     Lists.newArrayList(batchChannel, interactiveChannel, interactiveChannel, interactiveChannel,
+                                        batchChannel, interactiveChannel, interactiveChannel, interactiveChannel));
+        // Once the interactive tenant has nothing else to dispatch, the batch tenant gets the whole pipeline
+        assertEquals(dispatched.subList(8, 12),
+                     Lists.newArrayList(batchChannel, batchChannel, batchChannel, batchChannel));
+
+    }
+
+    @Test(timeOut = 10_000)
+    public void testReadsArePausedWhileTenantHasTooManyQueuedRequests() throws Exception {
+
+        scheduler = new FairRequestScheduler(requestProcessor, null, 4, IDLE_TIMEOUT_IN_MS, panicker,
+                                             new NullMetricsProvider());
+
+        scheduler.timestampRequest(BLOCKER, blockerChannel, MonitoringContextNullImpl.INSTANCE);
+        dispatcherBlocked.await();
+        for (int i = 0; i < 5; i++) {
+            scheduler.timestampRequest(BATCH, batchChannel, MonitoringContextNullImpl.INSTANCE);
+        }
+        verify(batchChannelConfig, times(1)).setAutoRead(false);
+        verify(batchChannelConfig, times(0)).setAutoRead(true);
+
+        releaseDispatcher.countDown();
+        verify(batchChannelConfig, timeout(1000).times(1)).setAutoRead(true);
+        verify(requestProcessor, timeout(1000).times(6)).timestampRequest(any(Channel.class),
+                                                                          any(MonitoringContext.class));
+
+    }
+
+    @Test(timeOut = 10_000)
+    public void testClosedChannelsAreNotResumed() throws Exception {
+
+        scheduler = new FairRequestScheduler(requestProcessor, null, 4, IDLE_TIMEOUT_IN_MS, panicker,
+                                             new NullMetricsProvider());
+
+        scheduler.timestampRequest(BLOCKER, blockerChannel, MonitoringContextNullImpl.INSTANCE);
+        dispatcherBlocked.await();
+        for (int i = 0; i < 5; i++) {
+            scheduler.timestampRequest(BATCH, batchChannel, MonitoringContextNullImpl.INSTANCE);
+        }
+        verify(batchChannelConfig, times(1)).setAutoRead(false);
+        scheduler.channelClosed(BATCH, batchChannel);
+
+        releaseDispatcher.countDown();
+        verify(requestProcessor, timeout(1000).times(6)).timestampRequest(any(Channel.class),
+                                                                          any(MonitoringContext.class));
+        verify(batchChannelConfig, times(0)).setAutoRead(true);
+
+    }
+
+    @Test(timeOut = 10_000)
+    public void testDispatcherFailuresPanic() throws Exception {
+
+        doThrow(new IllegalStateException("Dispatcher failure")).when(requestProcessor)
+                .fenceRequest(anyLong(), any(Channel.class), any(MonitoringContext.class));
+        scheduler = new FairRequestScheduler(requestProcessor, null, 1000, IDLE_TIMEOUT_IN_MS, panicker,
+                                             new NullMetricsProvider());
+
+        scheduler.fenceRequest(BATCH, 1L, batchChannel, MonitoringContextNullImpl.INSTANCE);
+        verify(panicker, timeout(1000).times(1)).panic(anyString(), any(IllegalStateException.class));
+
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testNonPositiveWeightsAreRejected() {
+
+        Map<String, Integer> weights = new HashMap<>();
+        weights.put(BATCH, 0);
+        scheduler = new FairRequestScheduler(requestProcessor, weights, 1000, IDLE_TIMEOUT_IN_MS, panicker,
+                                             new NullMetricsProvider());
+
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testTenantsWithClashingMetricNamesAreRejected() {
+
+        Map<String, Integer> weights = new HashMap<>();
+        weights.put("10.0.0.1", 2);
+        weights.put("10_0_0_1", 2);
+        scheduler = new FairRequestScheduler(requestProcessor, weights, 1000, IDLE_TIMEOUT_IN_MS, panicker,
+                                             new NullMetricsProvider());
+
+    }
+
+    @Test(timeOut = 10_000)
+    public void testMetricsAreOnlyRegisteredWhenTheSchedulerIsCreated() throws Exception {
+
+        MetricsRegistry metrics = mock(MetricsRegistry.class);
+        doReturn(mock(Timer.class)).when(metrics).timer(anyString());
+        doReturn(mock(Meter.class)).when(metrics).meter(anyString());
+        Map<String, Integer> weights = new HashMap<>();
+        weights.put(INTERACTIVE, 3);
+        scheduler = new FairRequestScheduler(requestProcessor, weights, 1000, IDLE_TIMEOUT_IN_MS, panicker, metrics);
+
+        // Race the first requests of several tenants, two of them with names sanitized to the same metric name
+        final String[] tenantNames = { INTERACTIVE, "10.0.0.1", "10_0_0_1" };
+        final CountDownLatch start = new CountDownLatch(1);
+        ExecutorService clients = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < 8; i++) {
+            clients.submit(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                    for (String tenantName : tenantNames) {
+                        scheduler.timestampRequest(tenantName, batchChannel, MonitoringContextNullImpl.INSTANCE);
+                    }
+                }
+            });
+        }
+        start.countDown();
+        clients.shutdown();
+        assertTrue(clients.awaitTermination(5, TimeUnit.SECONDS));
+
+        verify(requestProcessor, timeout(1000).times(24)).timestampRequest(any(Channel.class),
+                                                                           any(MonitoringContext.class));
+        assertEquals(scheduler.getTenantCount(), 3);
+        verify(metrics, times(2)).gauge(anyString(), any(Gauge.class));
+        verify(metrics, times(1)).gauge(eq("tso.scheduler.interactive.queued"), any(Gauge.class));
+        verify(metrics, times(1)).gauge(eq("tso.scheduler.default.queued"), any(Gauge.class));
+
+    }
+
+    @Test(timeOut = 10_000)
+    public void testIdleTenantsAreEvicted() throws Exception {
+
+        scheduler = new FairRequestScheduler(requestProcessor, null, 1000, 100, panicker, new NullMetricsProvider());
+
+        scheduler.timestampRequest(BATCH, batchChannel, MonitoringContextNullImpl.INSTANCE);
+        verify(requestProcessor, timeout(1000).times(1)).timestampRequest(any(Channel.class),
+                                                                          any(MonitoringContext.class));
+        while (scheduler.getTenantCount() > 0) {
+            Thread.sleep(10);
+        }
+
+        // The tenant gets a new queue on its next request
+        scheduler.timestampRequest(BATCH, batchChannel, MonitoringContextNullImpl.INSTANCE);
+        verify(requestProcessor, timeout(1000).times(2)).timestampRequest(any(Channel.class),
+                                                                          any(MonitoringContext.class));
+
+    }
+
+}
@@ -0,0 +1,86 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.omid.tso;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import org.apache.omid.committable.CommitTable;
+import org.apache.omid.committable.InMemoryCommitTable;
+import org.apache.omid.committable.NullCommitTable;
+import org.apache.omid.metrics.MetricsRegistry;
+import org.apache.omid.metrics.NullMetricsProvider;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class TestInMemoryCommitTableStorageModule {
+
+    // Enough to trigger an eviction when the low watermark is updated
+    private static final int NUM_TXS = 2048;
+    private static final long START_TS = CommitTable.MAX_CHECKPOINTS_PER_TXN;
+
+    @Test(timeOut = 10_000)
+    public void testCommitsAreNotKeptByDefault() {
+        assertTrue(commitTable(new InMemoryCommitTableStorageModule()) instanceof NullCommitTable);
+    }
+
+    @Test(timeOut = 10_000)
+    public void testCommitsAreKeptUntilDeletedWhenEvictionIsDisabled() throws Exception {
+
+        InMemoryCommitTableStorageModule module = new InMemoryCommitTableStorageModule();
+        module.setKeepCommits(true);
+
+        InMemoryCommitTable.Client client = writeAndUpdateLowWatermark(commitTable(module));
+        assertEquals(client.lookupCommitTimestamp(START_TS), START_TS + 1);
+
+    }
+
+    @Test(timeOut = 10_000)
+    public void testCommitsBelowTheLowWatermarkAreEvictedWhenEvictionIsEnabled() throws Exception {
+
+        InMemoryCommitTableStorageModule module = new InMemoryCommitTableStorageModule();
+        module.setKeepCommits(true);
+        module.setEvictBelowLowWatermark(true);
+
+        InMemoryCommitTable.Client client = writeAndUpdateLowWatermark(commitTable(module));
+        assertEquals(client.lookupCommitTimestamp(START_TS), InMemoryCommitTable.NO_COMMIT_TIMESTAMP);
+
+    }
+
+    private static CommitTable commitTable(InMemoryCommitTableStorageModule module) {
+        return Guice.createInjector(module, new AbstractModule() {
+            @Override
+            protected void configure() {
+                bind(MetricsRegistry.class).toInstance(new NullMetricsProvider());
+            }
+        }).getInstance(CommitTable.class);
+    }
+
+    private static InMemoryCommitTable.Client writeAndUpdateLowWatermark(CommitTable commitTable) throws Exception {
+        assertTrue(commitTable instanceof InMemoryCommitTable);
+        CommitTable.Writer writer = commitTable.getWriter();
+        for (long i = 1; i <= NUM_TXS; i++) {
+            writer.addCommittedTransaction(i * START_TS, i * START_TS + 1);
+        }
+        writer.updateLowWatermark((NUM_TXS + 1) * START_TS);
+        writer.flush();
+        return (InMemoryCommitTable.Client) commitTable.getClient();
+    }
+
+}
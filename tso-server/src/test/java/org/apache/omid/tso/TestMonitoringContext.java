@@ -0,0 +1,144 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.omid.tso;
+
+import org.apache.omid.metrics.MetricsRegistry;
+import org.apache.omid.metrics.Timer;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.apache.omid.metrics.MetricsUtils.name;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.verify;
+import static org.mockito.MockitoAnnotations.initMocks;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.fail;
+
+public class TestMonitoringContext {
+
+    @Mock
+    private MetricsRegistry metrics;
+    @Mock
+    private Timer commitTimer;
+
+    private MonitoringContextAggregator aggregator;
+
+    @BeforeMethod
+    void setup() {
+        initMocks(this);
+        doReturn(mock(Timer.class)).when(metrics).timer(anyString());
+        doReturn(commitTimer).when(metrics).timer(name("tso", MonitoredStage.REQUEST_COMMIT.getMetricName()));
+        aggregator = new MonitoringContextAggregator(metrics);
+    }
+
+    @Test(timeOut = 10_000)
+    public void testStageLatenciesAreOnlyRecordedOnPublish() {
+
+        MonitoringContextImpl monCtx = new MonitoringContextImpl(aggregator);
+        monCtx.timerStart(MonitoredStage.REQUEST_COMMIT);
+        monCtx.timerStop(MonitoredStage.REQUEST_COMMIT);
+        monCtx.timerStart(MonitoredStage.REPLY_COMMIT);
+        monCtx.timerStop(MonitoredStage.REPLY_COMMIT);
+        assertEquals(aggregator.getIntervalHistogram(MonitoredStage.REQUEST_COMMIT).getTotalCount(), 0);
+
+        monCtx.publish();
+        assertEquals(aggregator.getIntervalHistogram(MonitoredStage.REQUEST_COMMIT).getTotalCount(), 1);
+        assertEquals(aggregator.getIntervalHistogram(MonitoredStage.REPLY_COMMIT).getTotalCount(), 1);
+        assertEquals(aggregator.getIntervalHistogram(MonitoredStage.REQUEST_TIMESTAMP).getTotalCount(), 0);
+
+        // Stops after publishing are ignored
+        monCtx.timerStart(MonitoredStage.REQUEST_COMMIT);
+        monCtx.timerStop(MonitoredStage.REQUEST_COMMIT);
+        monCtx.publish();
+        assertEquals(aggregator.getIntervalHistogram(MonitoredStage.REQUEST_COMMIT).getTotalCount(), 0);
+
+    }
+
+    @Test(timeOut = 10_000)
+    public void testStoppingAStageNotStartedFails() {
+
+        MonitoringContextImpl monCtx = new MonitoringContextImpl(aggregator);
+        try {
+            monCtx.timerStop(MonitoredStage.PERSISTENCE_COMMIT);
+            fail();
+        } catch (IllegalStateException e) {
+            // Expected
+        }
+        monCtx.timerStart(MonitoredStage.PERSISTENCE_COMMIT);
+        monCtx.timerStop(MonitoredStage.PERSISTENCE_COMMIT);
+        try {
+            monCtx.timerStop(MonitoredStage.PERSISTENCE_COMMIT);
+            fail();
+        } catch (IllegalStateException e) {
+            // Expected, the stage was already stopped
+        }
+
+    }
+
+    @Test(timeOut = 10_000)
+    public void testReportDrainsTheRecordedLatenciesIntoTheTimers() {
+
+        for (int i = 0; i < 10; i++) {
+            MonitoringContextImpl monCtx = new MonitoringContextImpl(aggregator);
+            monCtx.timerStart(MonitoredStage.REQUEST_COMMIT);
+            monCtx.timerStop(MonitoredStage.REQUEST_COMMIT);
+            monCtx.publish();
+        }
+        aggregator.record(MonitoredStage.REQUEST_COMMIT, 2 * MonitoringContextAggregator.MAX_TRACKABLE_LATENCY_IN_NS);
+        verify(commitTimer, never()).update(anyLong(), anyLong());
+
+        aggregator.report();
+        ArgumentCaptor<Long> counts = ArgumentCaptor.forClass(Long.class);
+        verify(commitTimer, atLeastOnce()).update(anyLong(), counts.capture());
+        long reported = 0;
+        for (long count : counts.getAllValues()) {
+            reported += count;
+        }
+        assertEquals(reported, 11);
+        // The latencies are reported in bulk, never one by one
+        verify(commitTimer, never()).update(anyLong());
+
+        // Nothing new to report
+        reset(commitTimer);
+        aggregator.report();
+        verify(commitTimer, never()).update(anyLong(), anyLong());
+
+    }
+
+    @Test(timeOut = 10_000)
+    public void testReportIntervalMustBePositive() {
+
+        try {
+            aggregator.start(0);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+        aggregator.close();
+
+    }
+
+}
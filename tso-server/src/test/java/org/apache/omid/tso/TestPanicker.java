@@ -21,6 +21,7 @@ import org.apache.phoenix.thirdparty.com.google.common.base.Optional;
 import org.apache.commons.pool2.ObjectPool;
 import org.apache.omid.committable.CommitTable;
 import org.apache.omid.metrics.MetricsRegistry;
+import org.apache.omid.metrics.NullMetricsProvider;
 import org.apache.omid.timestamp.storage.TimestampStorage;
 import org.mockito.Mock;
 import org.mockito.Mockito;
@@ -51,12 +52,13 @@ public class TestPanicker {
 
     @Mock
     private CommitTable.Writer mockWriter;
-    @Mock
+    // A mocked registry would hand out null metrics, making the stages fail with NPEs instead of the injected errors
     private MetricsRegistry metrics;
 
     @BeforeMethod
     public void initMocksAndComponents() {
         MockitoAnnotations.initMocks(this);
+        metrics = new NullMetricsProvider();
     }
 
     @AfterMethod
@@ -127,7 +129,8 @@ public class TestPanicker {
                                                           commitTable,
                                                           mock(ReplyProcessor.class),
                                                           mock(RetryProcessor.class),
-                                                          panicker);
+                                                          panicker,
+                                                          new VoidStateReplicator());
         }
 
         PersistenceProcessor proc = new PersistenceProcessorImpl(config,
@@ -136,6 +139,7 @@ public class TestPanicker {
                                                                  batchPool,
                                                                  panicker,
                                                                  handlers,
+                                                                 mock(ReplyProcessor.class),
                                                                  metrics);
 
         proc.addCommitToBatch(1, 2, null, new MonitoringContextImpl(metrics), Optional.<Long>absent());
@@ -143,7 +147,8 @@ public class TestPanicker {
         LowWatermarkWriter lowWatermarkWriter = new LowWatermarkWriterImpl(config, commitTable, metrics);
 
         new RequestProcessorPersistCT(metrics, mock(TimestampOracle.class), proc, panicker,
-                mock(TSOServerConfig.class), lowWatermarkWriter, mock(ReplyProcessor.class));
+                mock(TSOServerConfig.class), lowWatermarkWriter, mock(ReplyProcessor.class),
+                new VoidStateReplicator());
 
         verify(panicker, timeout(1000).atLeastOnce()).panic(anyString(), any(Throwable.class));
 
@@ -183,7 +188,8 @@ public class TestPanicker {
                                                           commitTable,
                                                           mock(ReplyProcessor.class),
                                                           mock(RetryProcessor.class),
-                                                          panicker);
+                                                          panicker,
+                                                          new VoidStateReplicator());
         }
 
         PersistenceProcessor proc = new PersistenceProcessorImpl(config,
@@ -192,13 +198,14 @@ public class TestPanicker {
                                                                  batchPool,
                                                                  panicker,
                                                                  handlers,
+                                                                 mock(ReplyProcessor.class),
                                                                  metrics);
         proc.addCommitToBatch(1, 2, null, new MonitoringContextImpl(metrics), Optional.<Long>absent());
 
         LowWatermarkWriter lowWatermarkWriter = new LowWatermarkWriterImpl(config, commitTable, metrics);
 
         new RequestProcessorPersistCT(metrics, mock(TimestampOracle.class), proc, panicker, mock(TSOServerConfig.class),
-                lowWatermarkWriter, mock(ReplyProcessor.class));
+                lowWatermarkWriter, mock(ReplyProcessor.class), new VoidStateReplicator());
 
         verify(panicker, timeout(1000).atLeastOnce()).panic(anyString(), any(Throwable.class));
 
@@ -43,11 +43,13 @@ import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
 
 // TODO Refactor: Make visible currentBatch in PersistenceProcessorImpl to add proper verifications
 public class TestPersistenceProcessor {
@@ -113,7 +115,8 @@ public class TestPersistenceProcessor {
                                                           commitTable,
                                                           mock(ReplyProcessor.class),
                                                           retryProcessor,
-                                                          panicker);
+                                                          panicker,
+                                                          new VoidStateReplicator());
         }
 
         // Component under test
@@ -124,6 +127,7 @@ public class TestPersistenceProcessor {
                                              mock(ObjectPool.class),
                                              panicker,
                                              handlers,
+                                             mock(ReplyProcessor.class),
                                              metrics);
 
         lowWatermarkWriter.persistLowWatermark(ANY_LWM).get();
@@ -160,12 +164,13 @@ public class TestPersistenceProcessor {
                                                           commitTable,
                                                           replyProcessor,
                                                           retryProcessor,
-                                                          panicker);
+                                                          panicker,
+                                                          new VoidStateReplicator());
         }
 
         // Component under test
         PersistenceProcessorImpl proc = new PersistenceProcessorImpl(tsoConfig, new BlockingWaitStrategy(), commitTable, batchPool,
-                                                                     panicker, handlers, metrics);
+                                                                     panicker, handlers, replyProcessor, metrics);
 
         verify(batchPool, times(1)).borrowObject(); // Called during initialization
 
@@ -204,12 +209,13 @@ public class TestPersistenceProcessor {
                                                           commitTable,
                                                           replyProcessor,
                                                           retryProcessor,
-                                                          panicker);
+                                                          panicker,
+                                                          new VoidStateReplicator());
         }
 
         // Component under test
         PersistenceProcessorImpl proc = new PersistenceProcessorImpl(tsoConfig, new BlockingWaitStrategy(), commitTable, batchPool,
-                                                                     panicker, handlers, metrics);
+                                                                     panicker, handlers, replyProcessor, metrics);
 
         verify(batchPool, times(1)).borrowObject(); // Called during initialization
 
@@ -275,12 +281,13 @@ public class TestPersistenceProcessor {
                                                           commitTable,
                                                           replyProcessor,
                                                           retryProcessor,
-                                                          panicker);
+                                                          panicker,
+                                                          new VoidStateReplicator());
         }
 
         // Component under test
         PersistenceProcessorImpl proc = new PersistenceProcessorImpl(tsoConfig, new BlockingWaitStrategy(), commitTable, batchPool,
-                                                                     panicker, handlers, metrics);
+                                                                     panicker, handlers, replyProcessor, metrics);
 
         // The non-ha lease manager always return true for
         // stillInLeasePeriod(), so verify the currentBatch sends replies as master
@@ -291,6 +298,86 @@ public class TestPersistenceProcessor {
 
     }
 
+    @Test(timeOut = 30_000)
+    public void testTimestampsTakeTheFastLaneAndCommitsTheBatchesByDefault() throws Exception {
+
+        TSOServerConfig tsoConfig = new TSOServerConfig();
+        assertTrue(tsoConfig.getTimestampFastLane(), "The timestamp fast lane should be enabled by default");
+
+        ObjectPool<Batch> batchPool = spy(new BatchPoolModule(tsoConfig).getBatchPool());
+        ReplyProcessor replyProcessor = mock(ReplyProcessor.class);
+        PersistenceProcessorImpl proc = newPersistenceProcessor(tsoConfig, batchPool, replyProcessor);
+
+        // No write is waiting to be persisted, so the timestamp doesn't have to wait for any batch
+        Channel channel = mock(Channel.class);
+        MonitoringContextImpl monCtx = mock(MonitoringContextImpl.class);
+        proc.addTimestampToBatch(ANY_ST, channel, monCtx);
+        verify(replyProcessor).sendTimestampResponseWhenPersisted(-1L, ANY_ST, channel, monCtx);
+        assertTrue(proc.currentBatch.isEmpty(), "The timestamp should not take a slot in the batch");
+
+        // The commit goes to the current batch, the first one, and the next timestamp waits for it
+        proc.addCommitToBatch(ANY_ST, ANY_CT, mock(Channel.class), mock(MonitoringContextImpl.class),
+                              Optional.<Long>absent());
+        proc.addTimestampToBatch(ANY_ST + 1, channel, monCtx);
+        verify(replyProcessor).sendTimestampResponseWhenPersisted(0L, ANY_ST + 1, channel, monCtx);
+        assertEquals(proc.currentBatch.getNumEvents(), 1);
+        assertEquals(proc.currentBatch.get(0).getType(), PersistEvent.Type.COMMIT);
+
+        Batch commitBatch = proc.currentBatch;
+        proc.triggerCurrentBatchFlush();
+        verify(replyProcessor, timeout(1000).times(1)).manageResponsesBatch(0L, commitBatch);
+        verify(replyProcessor, never()).sendTimestampResponse(anyLong(), any(Channel.class),
+                                                              any(MonitoringContextImpl.class));
+
+    }
+
+    @Test(timeOut = 30_000)
+    public void testTimestampsGoToTheBatchesWhenTheFastLaneIsDisabled() throws Exception {
+
+        TSOServerConfig tsoConfig = new TSOServerConfig();
+        tsoConfig.setTimestampFastLane(false);
+
+        ObjectPool<Batch> batchPool = spy(new BatchPoolModule(tsoConfig).getBatchPool());
+        ReplyProcessor replyProcessor = mock(ReplyProcessor.class);
+        PersistenceProcessorImpl proc = newPersistenceProcessor(tsoConfig, batchPool, replyProcessor);
+
+        proc.addTimestampToBatch(ANY_ST, mock(Channel.class), mock(MonitoringContextImpl.class));
+        assertEquals(proc.currentBatch.getNumEvents(), 1);
+        assertEquals(proc.currentBatch.get(0).getType(), PersistEvent.Type.TIMESTAMP);
+
+        Batch timestampBatch = proc.currentBatch;
+        proc.triggerCurrentBatchFlush();
+        verify(replyProcessor, timeout(1000).times(1)).manageResponsesBatch(0L, timestampBatch);
+        verify(replyProcessor, never()).sendTimestampResponseWhenPersisted(anyLong(), anyLong(), any(Channel.class),
+                                                                           any(MonitoringContextImpl.class));
+
+    }
+
+    private PersistenceProcessorImpl newPersistenceProcessor(TSOServerConfig tsoConfig,
+                                                             ObjectPool<Batch> batchPool,
+                                                             ReplyProcessor replyProcessor) throws Exception {
+
+        // Init a non-HA lease manager
+        VoidLeaseManager leaseManager = spy(new VoidLeaseManager(mock(TSOChannelHandler.class),
+                                                                 mock(TSOStateManager.class)));
+
+        PersistenceProcessorHandler[] handlers = new PersistenceProcessorHandler[tsoConfig.getNumConcurrentCTWriters()];
+        for (int i = 0; i < tsoConfig.getNumConcurrentCTWriters(); i++) {
+            handlers[i] = new PersistenceProcessorHandler(metrics,
+                                                          "localhost:1234",
+                                                          leaseManager,
+                                                          commitTable,
+                                                          replyProcessor,
+                                                          retryProcessor,
+                                                          panicker,
+                                                          new VoidStateReplicator());
+        }
+
+        return new PersistenceProcessorImpl(tsoConfig, new BlockingWaitStrategy(), commitTable, batchPool,
+                                            panicker, handlers, replyProcessor, metrics);
+
+    }
+
     @Test(timeOut = 30_000)
     public void testCommitPersistenceWithHALeaseManagerAndMinimumCommitTableWriters() throws Exception {
 
@@ -335,7 +422,7 @@ public class TestPersistenceProcessor {
 
         // Component under test
         PersistenceProcessorImpl proc = new PersistenceProcessorImpl(tsoConfig, new BlockingWaitStrategy(), commitTable, batchPool,
-                                                                     panicker, handlers, metrics);
+                                                                     panicker, handlers, mock(ReplyProcessor.class), metrics);
 
         // Test: Configure the lease manager to return true always
         doReturn(true).when(simulatedHALeaseManager).stillInLeasePeriod();
@@ -356,7 +443,7 @@ public class TestPersistenceProcessor {
 
         // Component under test
         PersistenceProcessorImpl proc = new PersistenceProcessorImpl(tsoConfig, new BlockingWaitStrategy(), commitTable, batchPool,
-                                                                     panicker, handlers, metrics);
+                                                                     panicker, handlers, mock(ReplyProcessor.class), metrics);
 
         // Test: Configure the lease manager to return true first and false later for stillInLeasePeriod
         doReturn(true).doReturn(false).when(simulatedHALeaseManager).stillInLeasePeriod();
@@ -377,7 +464,7 @@ public class TestPersistenceProcessor {
 
         // Component under test
         PersistenceProcessorImpl proc = new PersistenceProcessorImpl(tsoConfig, new BlockingWaitStrategy(), commitTable, batchPool,
-                                                                     panicker, handlers, metrics);
+                                                                     panicker, handlers, mock(ReplyProcessor.class), metrics);
 
         // Test: Configure the lease manager to return false for stillInLeasePeriod
         doReturn(false).when(simulatedHALeaseManager).stillInLeasePeriod();
@@ -398,7 +485,7 @@ public class TestPersistenceProcessor {
 
         // Component under test
         PersistenceProcessorImpl proc = new PersistenceProcessorImpl(tsoConfig, new BlockingWaitStrategy(), commitTable, batchPool,
-                                                                     panicker, handlers, metrics);
+                                                                     panicker, handlers, mock(ReplyProcessor.class), metrics);
 
         // Test: Configure the lease manager to return true first and false later for stillInLeasePeriod and raise
         // an exception when flush
@@ -424,7 +511,8 @@ public class TestPersistenceProcessor {
                                                           commitTable,
                                                           new ReplyProcessorImpl(new BlockingWaitStrategy(), metrics, panicker, batchPool, lowWatermarkWriter),
                                                           retryProcessor,
-                                                          new RuntimeExceptionPanicker());
+                                                          new RuntimeExceptionPanicker(),
+                                                          new VoidStateReplicator());
         }
         return handlers;
     }
@@ -449,11 +537,12 @@ public class TestPersistenceProcessor {
                                                           commitTable,
                                                           replyProcessor,
                                                           mock(RetryProcessor.class),
-                                                          panicker);
+                                                          panicker,
+                                                          new VoidStateReplicator());
         }
 
         PersistenceProcessorImpl proc = new PersistenceProcessorImpl(config, new BlockingWaitStrategy(), commitTable, batchPool,
-                                                                     panicker, handlers, metrics);
+                                                                     panicker, handlers, replyProcessor, metrics);
 
         MonitoringContextImpl monCtx = new MonitoringContextImpl(metrics);
 
@@ -487,11 +576,12 @@ public class TestPersistenceProcessor {
                                                           commitTable,
                                                           replyProcessor,
                                                           retryProcessor,
-                                                          panicker);
+                                                          panicker,
+                                                          new VoidStateReplicator());
         }
 
         PersistenceProcessorImpl proc = new PersistenceProcessorImpl(config, new BlockingWaitStrategy(), commitTable, batchPool,
-                                                                     panicker, handlers, metrics);
+                                                                     panicker, handlers, replyProcessor, metrics);
 
         // Configure writer to explode with a runtime exception
         doThrow(new RuntimeException("Kaboom!")).when(mockWriter).addCommittedTransaction(anyLong(), anyLong());
@@ -118,7 +118,8 @@ public class TestPersistenceProcessorHandler {
                                                                  commitTable,
                                                                  replyProcessor,
                                                                  retryProcessor,
-                                                                 panicker));
+                                                                 panicker,
+                                                                 new VoidStateReplicator()));
 
     }
 
@@ -141,7 +142,8 @@ public class TestPersistenceProcessorHandler {
                                                           commitTable,
                                                           mock(ReplyProcessor.class),
                                                           retryProcessor,
-                                                          panicker);
+                                                          panicker,
+                                                          new VoidStateReplicator());
         }
 
         for (int i = 0; i < tsoConfig.getNumConcurrentCTWriters(); i++) {
@@ -405,7 +407,8 @@ public class TestPersistenceProcessorHandler {
                                                                  commitTable,
                                                                  replyProcessor,
                                                                  retryProcessor,
-                                                                 panicker));
+                                                                 panicker,
+                                                                 new VoidStateReplicator()));
 
         // Prepare test batch
         Batch batch = new Batch(BATCH_ID, BATCH_SIZE);
@@ -447,7 +450,8 @@ public class TestPersistenceProcessorHandler {
                                                                  commitTable,
                                                                  replyProcessor,
                                                                  retryProcessor,
-                                                                 panicker));
+                                                                 panicker,
+                                                                 new VoidStateReplicator()));
 
         // Prepare test batch
         Batch batch = new Batch(BATCH_ID, BATCH_SIZE);
@@ -482,7 +486,8 @@ public class TestPersistenceProcessorHandler {
                                                                  commitTable,
                                                                  replyProcessor,
                                                                  retryProcessor,
-                                                                 panicker));
+                                                                 panicker,
+                                                                 new VoidStateReplicator()));
 
         // Prepare test batch
         batch = new Batch(BATCH_ID, BATCH_SIZE);
@@ -259,6 +259,55 @@ public class TestReplyProcessor {
 
     }
 
+    @Test(timeOut = 10_000)
+    public void testTimestampReplyWaitsForPreviousBatchWithWrites() throws Exception {
+
+        // Timestamp request issued after a commit that belongs to the batch #0 not persisted yet
+        ReplyBatchEvent timestampEvent = ReplyBatchEvent.EVENT_FACTORY.newInstance();
+        ReplyBatchEvent.makeTimestampReply(timestampEvent, 0, THIRD_ST, mock(Channel.class), monCtx);
+
+        replyProcessor.onEvent(timestampEvent, ANY_DISRUPTOR_SEQUENCE, false);
+
+        assertEquals(replyProcessor.pendingTimestampReplies.size(), 1);
+        verify(replyProcessor, never()).sendTimestampResponse(eq(THIRD_ST), any(Channel.class), eq(monCtx));
+
+        // Persisting batch #0 releases the timestamp reply after the commit reply
+        Batch firstBatch = batchPool.borrowObject();
+        firstBatch.addCommit(FIRST_ST, FIRST_CT, mock(Channel.class), monCtx, Optional.<Long>absent());
+        ReplyBatchEvent firstBatchEvent = ReplyBatchEvent.EVENT_FACTORY.newInstance();
+        ReplyBatchEvent.makeReplyBatch(firstBatchEvent, firstBatch, 0);
+
+        replyProcessor.onEvent(firstBatchEvent, ANY_DISRUPTOR_SEQUENCE, false);
+
+        assertEquals(replyProcessor.nextIDToHandle.get(), 1);
+        assertEquals(replyProcessor.pendingTimestampReplies.size(), 0);
+
+        InOrder inOrderReplies = inOrder(replyProcessor, replyProcessor);
+        inOrderReplies.verify(replyProcessor, times(1)).sendCommitResponse(eq(FIRST_ST), eq(FIRST_CT), any(Channel.class), eq(monCtx), any(Optional.class));
+        inOrderReplies.verify(replyProcessor, times(1)).sendTimestampResponse(eq(THIRD_ST), any(Channel.class), eq(monCtx));
+
+    }
+
+    @Test(timeOut = 10_000)
+    public void testTimestampReplyIsSentImmediatelyWhenPreviousBatchesArePersisted() throws Exception {
+
+        // No batch with writes yet
+        replyProcessor.sendTimestampResponseWhenPersisted(-1, FIRST_ST, mock(Channel.class), monCtx);
+        verify(replyProcessor, times(1)).sendTimestampResponse(eq(FIRST_ST), any(Channel.class), eq(monCtx));
+
+        // Batch #0 already replied
+        Batch firstBatch = batchPool.borrowObject();
+        firstBatch.addCommit(SECOND_ST, SECOND_CT, mock(Channel.class), monCtx, Optional.<Long>absent());
+        ReplyBatchEvent firstBatchEvent = ReplyBatchEvent.EVENT_FACTORY.newInstance();
+        ReplyBatchEvent.makeReplyBatch(firstBatchEvent, firstBatch, 0);
+        replyProcessor.onEvent(firstBatchEvent, ANY_DISRUPTOR_SEQUENCE, false);
+
+        replyProcessor.sendTimestampResponseWhenPersisted(0, THIRD_ST, mock(Channel.class), monCtx);
+        verify(replyProcessor, times(1)).sendTimestampResponse(eq(THIRD_ST), any(Channel.class), eq(monCtx));
+        assertEquals(replyProcessor.pendingTimestampReplies.size(), 0);
+
+    }
+
     @Test
     public void testUpdateLowWaterMarkOnlyForMaxInBatch() throws Exception {
 
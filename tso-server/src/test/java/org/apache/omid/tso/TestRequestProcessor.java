@@ -26,6 +26,8 @@ import org.apache.omid.metrics.MetricsRegistry;
 import org.apache.omid.metrics.NullMetricsProvider;
 import io.netty.channel.Channel;
 import org.mockito.ArgumentCaptor;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.testng.annotations.BeforeMethod;
@@ -34,13 +36,17 @@ import org.testng.annotations.Test;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyLong;
 import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.testng.Assert.assertTrue;
 
@@ -85,7 +91,7 @@ public class TestRequestProcessor {
         config.setConflictMapSize(CONFLICT_MAP_SIZE);
 
         requestProc = new RequestProcessorPersistCT(metrics, timestampOracle, persist, new MockPanicker(),
-                config, lowWatermarkWriter,replyProcessor);
+                config, lowWatermarkWriter,replyProcessor, new VoidStateReplicator());
 
         // Initialize the state for the experiment
         stateManager.register(requestProc);
@@ -150,6 +156,41 @@ public class TestRequestProcessor {
 
     }
 
+    @Test(timeOut = 30_000)
+    public void testCommitWithCheckOnlyAndRegisterOnlyKeys() throws Exception {
+
+        long[] startTS = new long[3];
+        for (int i = 0; i < startTS.length; i++) {
+            requestProc.timestampRequest(null, new MonitoringContextImpl(metrics));
+            ArgumentCaptor<Long> TScapture = ArgumentCaptor.forClass(Long.class);
+            verify(persist, timeout(100).times(i + 1)).addTimestampToBatch(
+                    TScapture.capture(), any(Channel.class), any(MonitoringContextImpl.class));
+            startTS[i] = TScapture.getValue();
+        }
+
+        // The youngest transaction registers key 100 without checking it, and checks key 200 without registering it
+        requestProc.commitRequest(startTS[2], Lists.newArrayList(1L), Lists.newArrayList(200L),
+                                  Lists.newArrayList(100L), new ArrayList<Long>(0), false, null,
+                                  new MonitoringContextImpl(metrics));
+        verify(persist, timeout(100).times(1)).addCommitToBatch(eq(startTS[2]), anyLong(), any(Channel.class),
+                any(MonitoringContextImpl.class), any(Optional.class));
+
+        // A concurrent transaction checking the registered key conflicts...
+        requestProc.commitRequest(startTS[1], Lists.newArrayList(2L), Lists.newArrayList(100L),
+                                  new ArrayList<Long>(0), new ArrayList<Long>(0), false, null,
+                                  new MonitoringContextImpl(metrics));
+        verify(persist, timeout(100).times(1)).addAbortToBatch(eq(startTS[1]), any(Channel.class),
+                any(MonitoringContextImpl.class));
+
+        // ...but not a concurrent one writing the key that was only checked
+        requestProc.commitRequest(startTS[0], Lists.newArrayList(200L), new ArrayList<Long>(0),
+                                  new ArrayList<Long>(0), new ArrayList<Long>(0), false, null,
+                                  new MonitoringContextImpl(metrics));
+        verify(persist, timeout(100).times(1)).addCommitToBatch(eq(startTS[0]), anyLong(), any(Channel.class),
+                any(MonitoringContextImpl.class), any(Optional.class));
+
+    }
+
     @Test(timeOut = 30_000)
     public void testFence() {
 
@@ -207,4 +248,72 @@ public class TestRequestProcessor {
 
 
     }
-}
\ No newline at end of file
+
+    @Test(timeOut = 10_000)
+    public void testRequestsAreRejectedWhenRingIsOverloaded() throws Exception {
+
+        TimestampOracleImpl timestampOracle =
+                new TimestampOracleImpl(metrics, new TimestampOracleImpl.InMemoryTimestampStorage(), new MockPanicker());
+        TSOStateManager stateManager = new TSOStateManagerImpl(timestampOracle);
+
+        // Block the request processor thread while handling the first timestamp request
+        final CountDownLatch handlingFirstRequest = new CountDownLatch(1);
+        final CountDownLatch releaseFirstRequest = new CountDownLatch(1);
+        final AtomicInteger timestampsHandled = new AtomicInteger();
+        PersistenceProcessor persist = mock(PersistenceProcessor.class);
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                handlingFirstRequest.countDown();
+                releaseFirstRequest.await();
+                timestampsHandled.incrementAndGet();
+                return null;
+            }
+        }).when(persist).addTimestampToBatch(anyLong(), any(Channel.class), any(MonitoringContext.class));
+        // The request processor only times out waiting for requests once it has released the ones it handled
+        final CountDownLatch ringDrained = new CountDownLatch(1);
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                if (timestampsHandled.get() == 2) {
+                    ringDrained.countDown();
+                }
+                return null;
+            }
+        }).when(persist).triggerCurrentBatchFlush();
+
+        // Reject requests as soon as there's one in the ring
+        TSOServerConfig config = new TSOServerConfig();
+        config.setConflictMapSize(CONFLICT_MAP_SIZE);
+        config.setAdmissionControlPolicy("REJECT");
+        config.setAdmissionControlThreshold(1.0 / 4096);
+
+        RequestProcessor requestProc = new RequestProcessorPersistCT(metrics, timestampOracle, persist,
+                new MockPanicker(), config, lowWatermarkWriter, replyProcessor, new VoidStateReplicator());
+        stateManager.register(requestProc);
+        stateManager.initialize();
+
+        requestProc.timestampRequest(1L, null, new MonitoringContextImpl(metrics));
+        handlingFirstRequest.await();
+
+        // The first request has not been released from the ring yet, so the following ones must be rejected
+        requestProc.timestampRequest(2L, null, new MonitoringContextImpl(metrics));
+        verify(replyProcessor, times(1)).sendOverloadedTimestampResponse(eq(2L), any(Channel.class));
+        requestProc.commitRequest(1L, Lists.newArrayList(1L), new ArrayList<Long>(0), false, null,
+                                  new MonitoringContextImpl(metrics));
+        verify(replyProcessor, times(1)).sendOverloadedCommitResponse(eq(1L), any(Channel.class));
+        // ...but the timestamp requests without id, as the client could not match the overloaded response
+        requestProc.timestampRequest(null, new MonitoringContextImpl(metrics));
+        verify(replyProcessor, times(1)).sendOverloadedTimestampResponse(anyLong(), any(Channel.class));
+
+        // Once the ring is drained requests are admitted again
+        releaseFirstRequest.countDown();
+        verify(persist, timeout(1000).times(2)).addTimestampToBatch(anyLong(), any(Channel.class), any(MonitoringContext.class));
+        ringDrained.await();
+        requestProc.timestampRequest(3L, null, new MonitoringContextImpl(metrics));
+        verify(persist, timeout(1000).times(3)).addTimestampToBatch(anyLong(), any(Channel.class), any(MonitoringContext.class));
+        verify(replyProcessor, times(1)).sendOverloadedTimestampResponse(anyLong(), any(Channel.class));
+
+    }
+
+}
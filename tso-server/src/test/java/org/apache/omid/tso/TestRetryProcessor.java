@@ -25,6 +25,7 @@ import org.apache.omid.committable.CommitTable;
 import org.apache.omid.committable.CommitTable.CommitTimestamp;
 import org.apache.omid.committable.InMemoryCommitTable;
 import org.apache.omid.metrics.MetricsRegistry;
+import org.apache.omid.metrics.NullMetricsProvider;
 import io.netty.channel.Channel;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
@@ -55,10 +56,10 @@ public class TestRetryProcessor {
     @Mock
     private Panicker panicker;
     @Mock
-    private MetricsRegistry metrics;
-    @Mock
     private MonitoringContextImpl monCtx;
 
+    private MetricsRegistry metrics = new NullMetricsProvider();
+
     private CommitTable commitTable;
 
     @BeforeMethod(alwaysRun = true, timeOut = 30_000)
@@ -0,0 +1,184 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.omid.tso;
+
+import static org.apache.omid.tso.client.TSOClient.DEFAULT_ZK_CLUSTER;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.test.TestingServer;
+import org.apache.curator.utils.CloseableUtils;
+import org.apache.omid.TestUtils;
+import org.apache.omid.metrics.NullMetricsProvider;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.google.inject.util.Providers;
+import org.apache.phoenix.thirdparty.com.google.common.base.Optional;
+
+public class TestStateReplicator {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TestStateReplicator.class);
+
+    private static final String MASTER_ID = "localhost:1234";
+    private static final String STANDBY_ID = "localhost:1235";
+
+    private CuratorFramework zkClient;
+    private TestingServer zkServer;
+
+    @BeforeClass
+    public void beforeClass() throws Exception {
+
+        LOG.info("Starting ZK Server");
+        zkServer = TestUtils.provideTestingZKServer();
+        LOG.info("ZK Server Started @ {}", zkServer.getConnectString());
+
+        zkClient = TestUtils.provideConnectedZKClient(DEFAULT_ZK_CLUSTER);
+
+    }
+
+    @AfterClass
+    public void afterClass() throws Exception {
+
+        zkClient.close();
+
+        CloseableUtils.closeQuietly(zkServer);
+        zkServer = null;
+        LOG.info("ZK Server Stopped");
+
+    }
+
+    @Test(timeOut = 30_000)
+    public void testStandbyInSyncTakesOverWithReplicatedState() throws Exception {
+
+        int replicationPort = TestUtils.getFreeLocalPort();
+        RequestProcessor standbyRequestProcessor = mock(RequestProcessor.class);
+
+        StateReplicatorImpl master = newReplicator(MASTER_ID, replicationPort, "/test1_replica", 5000,
+                                                   mock(RequestProcessor.class));
+        StateReplicatorImpl standby = newReplicator(STANDBY_ID, replicationPort, "/test1_replica", 5000,
+                                                    standbyRequestProcessor);
+        try {
+            master.lead();
+            standby.followMaster("localhost");
+            waitForReplicaInSync(master);
+
+            master.replicateCommit(100L, Arrays.asList(1L, 2L));
+            master.replicateLowWatermark(50L);
+            master.replicateFence(7L, 200L);
+            master.waitForReplicas(200L);
+            assertTrue(master.hasReplicaInSync(), "The standby should still be in sync");
+
+            verify(standbyRequestProcessor).replicatedCommit(eq(100L), eq((Collection<Long>) Arrays.asList(1L, 2L)));
+            verify(standbyRequestProcessor).replicatedLowWatermark(50L);
+            verify(standbyRequestProcessor).replicatedFence(7L, 200L);
+
+            // The previous master dies...
+            master.close();
+            // ...and the standby can take over from the first replicated timestamp
+            Optional<Long> replicatedLowWatermark = standby.takeOver();
+            assertTrue(replicatedLowWatermark.isPresent());
+            assertEquals(replicatedLowWatermark.get().longValue(), 100L);
+        } finally {
+            master.close();
+            standby.close();
+        }
+
+    }
+
+    @Test(timeOut = 30_000)
+    public void testStandbyNotAckingInTimeCantTakeOverWithReplicatedState() throws Exception {
+
+        int replicationPort = TestUtils.getFreeLocalPort();
+        RequestProcessor slowRequestProcessor = mock(RequestProcessor.class);
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                Thread.sleep(1000);
+                return null;
+            }
+        }).when(slowRequestProcessor).replicatedCommit(anyLong(), any(Collection.class));
+
+        StateReplicatorImpl master = newReplicator(MASTER_ID, replicationPort, "/test2_replica", 100,
+                                                   mock(RequestProcessor.class));
+        StateReplicatorImpl standby = newReplicator(STANDBY_ID, replicationPort, "/test2_replica", 100,
+                                                    slowRequestProcessor);
+        try {
+            master.lead();
+            standby.followMaster("localhost");
+            waitForReplicaInSync(master);
+
+            master.replicateCommit(100L, Arrays.asList(1L, 2L));
+            master.waitForReplicas(100L);
+            assertFalse(master.hasReplicaInSync(), "The standby should have been dropped");
+
+            // Timestamps decided after dropping the standby don't wait for it
+            master.replicateCommit(300L, Arrays.asList(3L));
+            master.waitForReplicas(300L);
+
+            master.close();
+            assertFalse(standby.takeOver().isPresent(), "The standby should take over with a cold state");
+        } finally {
+            master.close();
+            standby.close();
+        }
+
+    }
+
+    @Test(timeOut = 10_000)
+    public void testReplicaNotFollowingAnyMasterCantTakeOverWithReplicatedState() throws Exception {
+
+        StateReplicatorImpl replicator = newReplicator(STANDBY_ID, TestUtils.getFreeLocalPort(), "/test3_replica",
+                                                       100, mock(RequestProcessor.class));
+        try {
+            assertFalse(replicator.takeOver().isPresent());
+        } finally {
+            replicator.close();
+        }
+
+    }
+
+    private StateReplicatorImpl newReplicator(String id, int replicationPort, String replicaSyncPath,
+                                              long timeoutInMs, RequestProcessor requestProcessor) {
+        return new StateReplicatorImpl(id, replicationPort, replicaSyncPath, timeoutInMs, zkClient,
+                                       Providers.of(requestProcessor), new MockPanicker(), new NullMetricsProvider());
+    }
+
+    private void waitForReplicaInSync(StateReplicatorImpl master) throws InterruptedException {
+        while (!master.hasReplicaInSync()) {
+            Thread.sleep(10);
+        }
+    }
+
+}
@@ -87,7 +87,7 @@ public class TestTSOChannelHandlerNetty {
     private TSOChannelHandler getTSOChannelHandler(int port) {
         TSOServerConfig config = new TSOServerConfig();
         config.setPort(port);
-        return new TSOChannelHandler(config, requestProcessor, new NullMetricsProvider());
+        return new TSOChannelHandler(config, requestProcessor, new MockPanicker(), new NullMetricsProvider());
     }
 
     @Test(timeOut = 10_000)
@@ -19,10 +19,12 @@ package org.apache.omid.tso;
 
 import org.apache.omid.committable.CommitTable;
 import org.apache.omid.metrics.MetricsRegistry;
+import org.apache.omid.metrics.NullMetricsProvider;
 import org.apache.omid.timestamp.storage.TimestampStorage;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
 import org.slf4j.Logger;
@@ -30,6 +32,7 @@ import org.slf4j.LoggerFactory;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import java.util.BitSet;
 import java.util.concurrent.CountDownLatch;
 
 import static org.mockito.Matchers.any;
@@ -39,14 +42,15 @@ import static org.mockito.Mockito.atLeastOnce;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.verify;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertTrue;
 
 public class TestTimestampOracle {
 
     private static final Logger LOG = LoggerFactory.getLogger(TestTimestampOracle.class);
 
-    @Mock
-    private MetricsRegistry metrics;
+    @Spy
+    private MetricsRegistry metrics = new NullMetricsProvider();
     @Mock
     private Panicker panicker;
     @Mock
@@ -79,6 +83,52 @@ public class TestTimestampOracle {
         LOG.info("Last timestamp: {}", last);
     }
 
+    @Test(timeOut = 60_000)
+    public void testConcurrentProducersGetUniqueTimestamps() throws Exception {
+
+        // Intialize component under test
+        timestampOracle.initialize();
+
+        final int numProducers = 4;
+        // Enough to go through several allocation batches
+        final int timestampsPerProducer = (int) (2 * TimestampOracleImpl.TIMESTAMP_BATCH
+                / CommitTable.MAX_CHECKPOINTS_PER_TXN / numProducers);
+        final BitSet[] timestampsPerThread = new BitSet[numProducers];
+        Thread[] producers = new Thread[numProducers];
+        for (int p = 0; p < numProducers; p++) {
+            final BitSet timestamps = new BitSet();
+            timestampsPerThread[p] = timestamps;
+            producers[p] = new Thread("Producer-" + p) {
+                @Override
+                public void run() {
+                    long last = 0;
+                    for (int i = 0; i < timestampsPerProducer; i++) {
+                        long current = timestampOracle.next();
+                        assertTrue(current > last, "Not monotonic growth in a producer");
+                        timestamps.set((int) (current / CommitTable.MAX_CHECKPOINTS_PER_TXN) - 1);
+                        last = current;
+                    }
+                }
+            };
+            producers[p].start();
+        }
+        for (Thread producer : producers) {
+            producer.join();
+        }
+
+        // Every timestamp must have been given exactly once
+        BitSet allTimestamps = new BitSet();
+        for (BitSet timestamps : timestampsPerThread) {
+            assertEquals(timestamps.cardinality(), timestampsPerProducer, "Timestamp not unique or lost");
+            assertFalse(allTimestamps.intersects(timestamps), "Timestamp given to more than one producer");
+            allTimestamps.or(timestamps);
+        }
+        int totalTimestamps = numProducers * timestampsPerProducer;
+        assertEquals(allTimestamps.nextClearBit(0), totalTimestamps, "Gap in the timestamps given");
+        assertEquals(timestampOracle.getLast(), totalTimestamps * CommitTable.MAX_CHECKPOINTS_PER_TXN);
+
+    }
+
     @Test(timeOut = 10_000)
     public void testTimestampOraclePanicsWhenTheStorageHasProblems() throws Exception {
 
@@ -18,10 +18,12 @@
 package org.apache.omid.tso;
 
 import org.apache.omid.metrics.MetricsRegistry;
+import org.apache.omid.metrics.NullMetricsProvider;
 import org.apache.omid.timestamp.storage.TimestampStorage;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
 import org.slf4j.Logger;
@@ -29,6 +31,7 @@ import org.slf4j.LoggerFactory;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import java.util.Arrays;
 import java.util.concurrent.CountDownLatch;
 
 import static org.mockito.Matchers.any;
@@ -37,14 +40,15 @@ import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.atLeastOnce;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.verify;
+import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertTrue;
 
 public class TestWorldTimeOracle {
 
     private static final Logger LOG = LoggerFactory.getLogger(TestWorldTimeOracle.class);
 
-    @Mock
-    private MetricsRegistry metrics;
+    @Spy
+    private MetricsRegistry metrics = new NullMetricsProvider();
     @Mock
     private Panicker panicker;
     @Mock
@@ -81,6 +85,59 @@ public class TestWorldTimeOracle {
         LOG.info("Last timestamp: {}", last);
     }
 
+    @Test(timeOut = 30_000)
+    public void testConcurrentProducersGetUniqueTimestamps() throws Exception {
+
+        // Intialize component under test
+        worldClockOracle.initialize();
+
+        final int numProducers = 4;
+        final int timestampsPerProducer = 100_000;
+        final long[][] timestampsPerThread = new long[numProducers][timestampsPerProducer];
+        // Released together so that they race for the same timestamps
+        final CountDownLatch startLatch = new CountDownLatch(1);
+        Thread[] producers = new Thread[numProducers];
+        for (int p = 0; p < numProducers; p++) {
+            final long[] timestamps = timestampsPerThread[p];
+            producers[p] = new Thread("Producer-" + p) {
+                @Override
+                public void run() {
+                    try {
+                        startLatch.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                    for (int i = 0; i < timestampsPerProducer; i++) {
+                        timestamps[i] = worldClockOracle.next();
+                    }
+                }
+            };
+            producers[p].start();
+        }
+        startLatch.countDown();
+        for (Thread producer : producers) {
+            producer.join();
+        }
+
+        long[] allTimestamps = new long[numProducers * timestampsPerProducer];
+        for (int p = 0; p < numProducers; p++) {
+            long[] timestamps = timestampsPerThread[p];
+            for (int i = 1; i < timestampsPerProducer; i++) {
+                assertTrue(timestamps[i] > timestamps[i - 1], "Not monotonic growth in a producer");
+            }
+            System.arraycopy(timestamps, 0, allTimestamps, p * timestampsPerProducer, timestampsPerProducer);
+        }
+
+        // Every timestamp must have been given to a single producer
+        Arrays.sort(allTimestamps);
+        for (int i = 1; i < allTimestamps.length; i++) {
+            assertTrue(allTimestamps[i] > allTimestamps[i - 1], "Timestamp given to more than one producer");
+        }
+        assertEquals(worldClockOracle.getLast(), allTimestamps[allTimestamps.length - 1]);
+
+    }
+
     @Test(timeOut = 10_000)
     public void testTimestampOraclePanicsWhenTheStorageHasProblems() throws Exception {
 
@@ -0,0 +1,177 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.omid.tso.client;
+
+import org.apache.phoenix.thirdparty.com.google.common.collect.Sets;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.Module;
+
+import org.apache.omid.TestUtils;
+import org.apache.omid.tso.TSOMockModule;
+import org.apache.omid.tso.TSOServer;
+import org.apache.omid.tso.TSOServerConfig;
+import org.apache.omid.tso.client.OmidClientConfiguration.ConnSelectionPolicy;
+import org.apache.omid.tso.util.DummyCellIdImpl;
+import io.netty.channel.EventLoopGroup;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+public class TestTSOClientPool {
+
+    private static final String TSO_SERVER_HOST = "localhost";
+    private static final int POOL_SIZE = 4;
+
+    private int tsoServerPortForTest;
+    private TSOServer tsoServer;
+
+    @BeforeClass
+    public void setup() throws Exception {
+
+        tsoServerPortForTest = TestUtils.getFreeLocalPort();
+
+        TSOServerConfig tsoConfig = new TSOServerConfig();
+        tsoConfig.setConflictMapSize(1000);
+        tsoConfig.setPort(tsoServerPortForTest);
+        Module tsoServerMockModule = new TSOMockModule(tsoConfig);
+        Injector injector = Guice.createInjector(tsoServerMockModule);
+
+        tsoServer = injector.getInstance(TSOServer.class);
+        tsoServer.startAsync();
+        tsoServer.awaitRunning();
+        TestUtils.waitForSocketListening(TSO_SERVER_HOST, tsoServerPortForTest, 100);
+
+    }
+
+    @AfterClass
+    public void tearDown() throws Exception {
+
+        tsoServer.stopAsync();
+        tsoServer.awaitTerminated();
+        tsoServer = null;
+        TestUtils.waitForSocketNotListening(TSO_SERVER_HOST, tsoServerPortForTest, 1000);
+
+    }
+
+    private TSOClientPool newPool(ConnSelectionPolicy selectionPolicy) throws Exception {
+        OmidClientConfiguration tsoClientConf = new OmidClientConfiguration();
+        tsoClientConf.setConnectionString(TSO_SERVER_HOST + ":" + tsoServerPortForTest);
+        tsoClientConf.setConnectionPoolSize(POOL_SIZE);
+        tsoClientConf.setConnectionSelectionPolicy(selectionPolicy);
+        return TSOClientPool.newInstance(tsoClientConf);
+    }
+
+    @Test(timeOut = 30_000)
+    public void testTimestampsGrowMonotonicallyAcrossConnections() throws Exception {
+        TSOClientPool pool = newPool(ConnSelectionPolicy.ROUND_ROBIN);
+        try {
+            long previousTs = pool.getNewStartTimestamp().get();
+            // Go around the pool a few times, so every connection is used more than once
+            for (int i = 0; i < POOL_SIZE * 3; i++) {
+                long ts = pool.getNewStartTimestamp().get();
+                assertTrue(ts > previousTs, "Timestamps should grow whatever the connection used");
+                previousTs = ts;
+            }
+        } finally {
+            pool.close().get();
+        }
+    }
+
+    @Test(timeOut = 30_000)
+    public void testConflictsAreDetectedAcrossConnections() throws Exception {
+        TSOClientPool pool = newPool(ConnSelectionPolicy.ROUND_ROBIN);
+        try {
+            CellId cell = new DummyCellIdImpl(0xdeadbeefL);
+            long startTsTx1 = pool.getNewStartTimestamp().get();
+            long startTsTx2 = pool.getNewStartTimestamp().get();
+
+            long commitTsTx1 = pool.commit(startTsTx1, Sets.newHashSet(cell)).get();
+            assertTrue(commitTsTx1 > startTsTx2);
+
+            // Round robin sends the second commit through another connection
+            try {
+                pool.commit(startTsTx2, Sets.newHashSet(cell)).get();
+                fail("Tx2 should have been aborted as it conflicts with Tx1");
+            } catch (ExecutionException e) {
+                assertEquals(e.getCause().getClass(), AbortException.class);
+            }
+        } finally {
+            pool.close().get();
+        }
+    }
+
+    @Test(timeOut = 30_000)
+    public void testConcurrentThreadsWithThreadAffinity() throws Exception {
+        final TSOClientPool pool = newPool(ConnSelectionPolicy.THREAD_AFFINITY);
+        try {
+            final List<Throwable> errors = new ArrayList<>();
+            List<Thread> threads = new ArrayList<>();
+            for (int i = 0; i < POOL_SIZE * 2; i++) {
+                final long cellId = i;
+                Thread t = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            for (int j = 0; j < 100; j++) {
+                                long startTs = pool.getNewStartTimestamp().get();
+                                long commitTs = pool.commit(startTs, Sets.newHashSet(new DummyCellIdImpl(cellId))).get();
+                                assertTrue(commitTs > startTs);
+                            }
+                        } catch (Throwable e) {
+                            synchronized (errors) {
+                                errors.add(e);
+                            }
+                        }
+                    }
+                });
+                threads.add(t);
+                t.start();
+            }
+            for (Thread t : threads) {
+                t.join();
+            }
+            assertTrue(errors.isEmpty(), "Transactions shouldn't fail: " + errors);
+        } finally {
+            pool.close().get();
+        }
+    }
+
+    @Test(timeOut = 30_000)
+    public void testClosingAPooledClientKeepsTheSharedWorkerGroup() throws Exception {
+        OmidClientConfiguration tsoClientConf = new OmidClientConfiguration();
+        EventLoopGroup workerGroup = TSOClient.newWorkerGroup(tsoClientConf);
+        try {
+            TSOClient client = new TSOClient(tsoClientConf, workerGroup);
+            client.close().get();
+            assertFalse(workerGroup.isShuttingDown(), "Only the pool can release the worker group of its clients");
+        } finally {
+            workerGroup.shutdownGracefully();
+        }
+    }
+
+}
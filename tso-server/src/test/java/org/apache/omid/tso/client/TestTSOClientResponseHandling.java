@@ -17,9 +17,11 @@
  */
 package org.apache.omid.tso.client;
 
+import org.apache.phoenix.thirdparty.com.google.common.collect.Sets;
 import org.apache.omid.tso.ProgrammableTSOServer;
 import org.apache.omid.tso.ProgrammableTSOServer.AbortResponse;
 import org.apache.omid.tso.ProgrammableTSOServer.CommitResponse;
+import org.apache.omid.tso.ProgrammableTSOServer.OverloadedTimestampResponse;
 import org.apache.omid.tso.ProgrammableTSOServer.TimestampResponse;
 import org.testng.annotations.BeforeClass;
 import org.testng.annotations.BeforeMethod;
@@ -93,4 +95,23 @@ public class TestTSOClientResponseHandling {
         assertEquals(commitTS, COMMIT_TS);
     }
 
+    @Test(timeOut = 10_000)
+    public void testOverloadedResponseIsMatchedWithTheRejectedTimestampRequest() throws Exception {
+
+        // The TSO holds the response to the first request and rejects the second one right away, so the overloaded
+        // response overtakes the response to the first request
+        tsoServer.queueResponse(new TimestampResponse(START_TS, true));
+        tsoServer.queueResponse(new OverloadedTimestampResponse());
+        tsoServer.queueResponse(new TimestampResponse(START_TS + 1));
+        tsoServer.queueResponse(new TimestampResponse(START_TS + 2));
+
+        TSOFuture<Long> first = tsoClient.getNewStartTimestamp();
+        TSOFuture<Long> rejected = tsoClient.getNewStartTimestamp();
+        TSOFuture<Long> third = tsoClient.getNewStartTimestamp();
+
+        // Only the rejected request is retried, and no request gets a timestamp handed out before it was sent
+        assertEquals(first.get().longValue(), START_TS);
+        assertEquals(Sets.newHashSet(rejected.get(), third.get()), Sets.newHashSet(START_TS + 1, START_TS + 2));
+    }
+
 }
@@ -39,6 +39,7 @@ import java.util.concurrent.ExecutionException;
 
 import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
 
 public class TestTSOClientRowAndCellLevelConflict {
 
@@ -202,4 +203,78 @@ public class TestTSOClientRowAndCellLevelConflict {
         assertTrue(true, "Transaction should be committed");
     }
     
+    @Test(timeOut = 30_000)
+    public void testHierarchicalConflictAnalysisConflict() throws Exception {
+
+        tsoClientConf.setConflictAnalysisLevel(ConflictDetectionLevel.HIERARCHICAL);
+
+        TSOClient client = TSOClient.newInstance(tsoClientConf);
+
+        CellId cell = new DummyGroupedCellId(0xdeadbeefL, 0xfeedcafeL, false);
+        CellId group = new DummyGroupedCellId(0xdeadbeeeL, 0xfeedcafeL, true);
+
+        // A write to a group conflicts with a concurrent write to one of its cells...
+        long ts1 = client.getNewStartTimestamp().get();
+        long ts2 = client.getNewStartTimestamp().get();
+        client.commit(ts1, Sets.newHashSet(cell)).get();
+        try {
+            client.commit(ts2, Sets.newHashSet(group)).get();
+            fail("Transaction should be aborted");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof AbortException, "Transaction should be aborted");
+        }
+
+        // ...and the other way around
+        long ts3 = client.getNewStartTimestamp().get();
+        long ts4 = client.getNewStartTimestamp().get();
+        client.commit(ts3, Sets.newHashSet(group)).get();
+        try {
+            client.commit(ts4, Sets.newHashSet(cell)).get();
+            fail("Transaction should be aborted");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof AbortException, "Transaction should be aborted");
+        }
+    }
+
+    @Test(timeOut = 30_000)
+    public void testHierarchicalConflictAnalysisCommit() throws Exception {
+
+        tsoClientConf.setConflictAnalysisLevel(ConflictDetectionLevel.HIERARCHICAL);
+
+        TSOClient client = TSOClient.newInstance(tsoClientConf);
+
+        // Writes to different cells of the same group do not conflict
+        CellId c1 = new DummyGroupedCellId(0xdeadbeefL, 0xfeedcafeL, false);
+        CellId c2 = new DummyGroupedCellId(0xdeadbeeeL, 0xfeedcafeL, false);
+
+        long ts1 = client.getNewStartTimestamp().get();
+        long ts2 = client.getNewStartTimestamp().get();
+
+        client.commit(ts1, Sets.newHashSet(c1)).get();
+        client.commit(ts2, Sets.newHashSet(c2)).get();
+    }
+
+    private static class DummyGroupedCellId extends DummyCellIdImpl implements GroupedCellId {
+
+        private final long groupId;
+        private final boolean isGroupWrite;
+
+        DummyGroupedCellId(long cellId, long groupId, boolean isGroupWrite) {
+            super(cellId);
+            this.groupId = groupId;
+            this.isGroupWrite = isGroupWrite;
+        }
+
+        @Override
+        public long getGroupId() {
+            return groupId;
+        }
+
+        @Override
+        public boolean isGroupWrite() {
+            return isGroupWrite;
+        }
+
+    }
+
 }